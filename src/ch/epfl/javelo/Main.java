@@ -1,9 +1,224 @@
 package ch.epfl.javelo;
 
-public class Main {
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphContainer;
+import ch.epfl.javelo.projection.SwissBounds;
+import ch.epfl.javelo.routing.*;
 
-    public static void main(String[] args) {
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
+/**
+ * Main class
+ * Headless batch mode of JaVelo: computes the best routes between the pairs of points of a CSV file, and writes
+ * their length, total ascent and cost to another CSV file.
+ * Every line of the input file contains the coordinates of the start and end points in the Swiss coordinate
+ * system: "startE,startN,endE,endN". Lines that don't start with a digit (headers, comments) are ignored.
+ * Every point is replaced by the closest node of the graph within SEARCH_DISTANCE meters. The output file contains
+ * one line per route, in the order of the input file, whose fields are empty if the points couldn't be snapped to
+ * a node or if no route exists. Malformed lines (not four numbers) are reported on the standard error and give a
+ * line whose fields are all empty, the other routes being computed anyway.
+ * The graph is stored in a folder or in a container (see GraphContainer), whose checksums are verified before any
+ * route is computed: a corrupted container stops the program instead of giving wrong routes.
+ * The graph is loaded once, and the routes are computed in parallel by a fork-join pool, each worker using its own
+ * search state. They are read and written by chunks of CHUNK_SIZE, so that files of any size can be processed.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
 
+public final class Main {
+
+    private static final String COST_FUNCTION_NAME = "citybike";
+    private static final String HEADER = "startNodeId,endNodeId,length,ascent,cost";
+
+    //maximal distance, in meters, between a point and the node it is snapped to
+    private static final double SEARCH_DISTANCE = 500;
+    //maximal distance between two samples of the elevation profiles, as in RouteBean
+    private static final int MAX_STEP_LENGTH = 5;
+    //number of routes computed in parallel before their results are written
+    private static final int CHUNK_SIZE = 4096;
+
+    private Main() {}
+
+    /**
+     * Computes the routes of the input file given as second argument on the graph stored in the folder or the
+     * container given as first argument, and writes them in the output file given as third argument, using the
+     * number of threads given as fourth argument (the number of available processors if absent).
+     *
+     * @param args folder or container of the graph, input file, output file, and optionally the number of threads
+     * @throws IOException          if something went wrong while reading the graph or the files, or if the
+     *                              container of the graph is corrupted
+     * @throws InterruptedException if the thread was interrupted while waiting for the routes
+     * @throws ExecutionException   if the computation of a route threw an exception
+     */
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        if (args.length < 3) {
+            System.err.println("usage: Main <graph directory or container> <input.csv> <output.csv> [threads]");
+            System.exit(1);
+        }
+        Path graphBasePath = Path.of(args[0]);
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        Preconditions.checkArgument(threads > 0);
+
+        Graph graph;
+        //the tables computed offline are stored next to the container, or in the folder of the graph
+        Path tablesBasePath;
+        if (Files.isRegularFile(graphBasePath)) {
+            GraphContainer container = GraphContainer.open(graphBasePath);
+            container.verify();
+            graph = Graph.loadFrom(container);
+            tablesBasePath = graphBasePath.toAbsolutePath().getParent();
+        } else {
+            graph = Graph.loadFrom(graphBasePath);
+            tablesBasePath = graphBasePath;
+        }
+        CostFunction cf = CompiledCostFunction.loadOrCompile(tablesBasePath, COST_FUNCTION_NAME, graph,
+                new CityBikeCF(graph));
+        RouteComputer routeComputer = new RouteComputer(graph, cf)
+                .withComponents(GraphComponents.loadOrCompute(tablesBasePath, COST_FUNCTION_NAME, graph, cf));
+        try {
+            LandmarkTable landmarks = LandmarkTable.loadFrom(tablesBasePath, COST_FUNCTION_NAME, graph);
+            //a table of another graph is ignored, its distances wouldn't be lower bounds
+            if (landmarks != null) {
+                routeComputer = routeComputer.withLandmarks(landmarks);
+            }
+        } catch (NoSuchFileException e) {
+            //no landmark table, the crow-flies distance is used alone
+        }
+        ConcurrentRouteComputer concurrentRouteComputer = new ConcurrentRouteComputer(routeComputer, threads);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        int routeCount = 0;
+        int foundCount = 0;
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[1]));
+             BufferedWriter writer = Files.newBufferedWriter(Path.of(args[2]))) {
+            writer.write(HEADER);
+            writer.newLine();
+
+            //coordinates of the points of the routes, null for malformed lines
+            List<double[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            String line;
+            int lineNumber = 0;
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                line = reader.readLine();
+                ++lineNumber;
+                endOfFile = line == null;
+                if (!endOfFile && !line.isEmpty() && Character.isDigit(line.charAt(0))) {
+                    double[] coordinates = coordinates(line);
+                    if (coordinates == null) {
+                        System.err.printf("line %d ignored, malformed: %s%n", lineNumber, line);
+                    }
+                    chunk.add(coordinates);
+                }
+                if (chunk.size() == CHUNK_SIZE || (endOfFile && !chunk.isEmpty())) {
+                    String[] results = pool.submit(() -> IntStream.range(0, chunk.size())
+                            .parallel()
+                            .mapToObj(i -> routeLine(graph, cf, concurrentRouteComputer, chunk.get(i)))
+                            .toArray(String[]::new)).get();
+                    for (String result : results) {
+                        writer.write(result);
+                        writer.newLine();
+                        //lines of routes that weren't found end with the empty cost field
+                        if (!result.endsWith(",")) {
+                            ++foundCount;
+                        }
+                    }
+                    routeCount += chunk.size();
+                    chunk.clear();
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf(Locale.ROOT, "%d routes (%d found) in %.2f s, %.1f routes/s on %d threads%n",
+                routeCount, foundCount, seconds, routeCount / seconds, threads);
+    }
+
+    //coordinates startE, startN, endE and endN given by a line of the input file, null if it is malformed
+    private static double[] coordinates(String line) {
+        String[] fields = line.split(",");
+        if (fields.length != 4) {
+            return null;
+        }
+        double[] coordinates = new double[fields.length];
+        try {
+            for (int i = 0; i < fields.length; ++i) {
+                coordinates[i] = Double.parseDouble(fields[i].strip());
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return coordinates;
+    }
+
+    //computes the route between the points of given coordinates (see coordinates), and returns the corresponding
+    //line of the output file
+    private static String routeLine(Graph graph, CostFunction cf, ConcurrentRouteComputer routeComputer,
+                                    double[] coordinates) {
+        if (coordinates == null) {
+            return ",,,,";
+        }
+        int startNodeId = closestNode(graph, coordinates[0], coordinates[1]);
+        int endNodeId = closestNode(graph, coordinates[2], coordinates[3]);
+        if (startNodeId == -1 || endNodeId == -1) {
+            return startNodeId + "," + endNodeId + ",,,";
+        }
+        if (startNodeId == endNodeId) {
+            return startNodeId + "," + endNodeId + ",0,0,0";
+        }
+
+        Route route = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+        if (route == null) {
+            return startNodeId + "," + endNodeId + ",,,";
+        }
+        double ascent = ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH).totalAscent();
+        return String.format(Locale.ROOT, "%d,%d,%.1f,%.1f,%.1f",
+                startNodeId, endNodeId, route.length(), ascent, cost(graph, cf, route));
+    }
+
+    //closest node of the graph within SEARCH_DISTANCE of the point, -1 if there is none
+    private static int closestNode(Graph graph, double e, double n) {
+        return SwissBounds.containsEN(e, n) ? graph.nodeClosestTo(e, n, SEARCH_DISTANCE) : -1;
+    }
+
+    //cost of the route, sum of the costs of its edges, which are the cheapest edges joining its nodes as in
+    //RouteComputer: it is the cost computed by the search. The edges of the routes of RouteComputer (CompactRoute)
+    //aren't built.
+    private static double cost(Graph graph, CostFunction cf, Route route) {
+        double cost = 0;
+        if (route instanceof CompactRoute compactRoute) {
+            for (int i = 0; i < compactRoute.edgeCount(); ++i) {
+                int edgeId = compactRoute.edgeId(i);
+                cost += cf.costFactor(compactRoute.nodeId(i), edgeId) * graph.edgeLength(edgeId);
+            }
+            return cost;
+        }
+        for (Edge edge : route.edges()) {
+            double edgeCost = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); ++i) {
+                int edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+                if (graph.edgeTargetNodeId(edgeId) == edge.toNodeId()) {
+                    edgeCost = Math.min(edgeCost, cf.costFactor(edge.fromNodeId(), edgeId) * graph.edgeLength(edgeId));
+                }
+            }
+            cost += edgeCost;
+        }
+        return cost;
     }
 }
@@ -0,0 +1,329 @@
+package ch.epfl.javelo;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToIntBiFunction;
+
+/**
+ * SegmentedLruCache class
+ * A thread-safe cache bounded by the total weight of its values, using the segmented LRU eviction policy: a value
+ * enters the cache in the probationary segment, and is promoted to the protected segment (PROTECTED_SHARE of the
+ * weight) when it is read again. The values evicted first are the least recently used ones of the probationary
+ * segment, so that values read only once (e.g. by a scan) can't evict the values read frequently. A value that was
+ * just stored is never evicted to make room for itself: once it is alone in the probationary segment, the values of
+ * the protected segment are evicted instead.
+ * The keys are distributed over independent stripes, each with its own lock and its share of the maximal weight,
+ * so that threads using different keys rarely wait for each other. The numbers of hits, misses and evictions are
+ * counted without locking.
+ * Null keys and values are not accepted.
+ *
+ * @param <K> type of the keys
+ * @param <V> type of the values
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class SegmentedLruCache<K, V> {
+
+    //share of the weight of a stripe reserved to the protected segment
+    private static final double PROTECTED_SHARE = 0.8;
+    private static final int DEFAULT_STRIPE_COUNT = 16;
+
+    private final Stripe<K, V>[] stripes;
+    private final ToIntBiFunction<? super K, ? super V> weigher;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    //value stored in the cache with its weight, computed once
+    private record Entry<V>(V value, int weight) {}
+
+    //a part of the cache, only accessed while holding its lock
+    private static final class Stripe<K, V> {
+        //both segments are in access order, their first entry being the least recently used one
+        private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        private final long maxWeight;
+        private final long maxProtectedWeight;
+        private long probationWeight;
+        private long protectedWeight;
+
+        private Stripe(long maxWeight) {
+            this.maxWeight = maxWeight;
+            this.maxProtectedWeight = (long) (maxWeight * PROTECTED_SHARE);
+        }
+    }
+
+    /**
+     * Constructs a cache whose values all weigh 1, i.e. bounded by its number of values.
+     *
+     * @param maxSize maximal number of values of the cache
+     * @throws IllegalArgumentException if maxSize is not strictly positive
+     */
+
+    public SegmentedLruCache(long maxSize) {
+        this(maxSize, DEFAULT_STRIPE_COUNT, (k, v) -> 1);
+    }
+
+    /**
+     * Constructs a cache bounded by the total weight of its values.
+     *
+     * @param maxWeight   maximal total weight of the values of the cache
+     * @param stripeCount number of independent stripes, rounded up to a power of two, and reduced so that every
+     *                    stripe can hold a weight of at least 1
+     * @param weigher     function giving the weight of a value (e.g. its size in memory), which must be positive
+     * @throws IllegalArgumentException if maxWeight or stripeCount is not strictly positive
+     */
+
+    public SegmentedLruCache(long maxWeight, int stripeCount, ToIntBiFunction<? super K, ? super V> weigher) {
+        Preconditions.checkArgument(maxWeight > 0 && stripeCount > 0);
+        int count = Integer.highestOneBit(stripeCount);
+        if (count < stripeCount) {
+            count <<= 1;
+        }
+        while (count > 1 && maxWeight / count < 1) {
+            count >>= 1;
+        }
+        //arrays of a generic type can't be created, the array only ever holds Stripe<K, V> instances
+        @SuppressWarnings("unchecked")
+        Stripe<K, V>[] stripes = (Stripe<K, V>[]) new Stripe<?, ?>[count];
+        for (int i = 0; i < count; ++i) {
+            //the remainder of the division is given to the first stripes
+            stripes[i] = new Stripe<>(maxWeight / count + (i < maxWeight % count ? 1 : 0));
+        }
+        this.stripes = stripes;
+        this.weigher = weigher;
+    }
+
+    /**
+     * Returns the value associated to the key, and counts a hit or a miss.
+     *
+     * @param key the key of the value
+     * @return the value associated to the key, null if it isn't in the cache
+     */
+
+    public V get(K key) {
+        Stripe<K, V> stripe = stripeOf(key);
+        Entry<V> entry;
+        synchronized (stripe) {
+            entry = stripe.protectedSegment.get(key);
+            if (entry == null) {
+                entry = stripe.probation.remove(key);
+                if (entry != null) {
+                    promote(stripe, key, entry);
+                }
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value();
+    }
+
+    /**
+     * Returns the value associated to the key, computing it with the given function and storing it in the cache if it
+     * isn't there (unless the function returns null). The function is called without holding any lock, so that slow
+     * computations don't block the other threads: several threads missing the same key at the same time may all
+     * compute its value, the last one being kept.
+     *
+     * @param key      the key of the value
+     * @param function the function computing the value of a key, returning null if there is none
+     * @return the value associated to the key, null if it isn't in the cache and the function returned null
+     */
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> function) {
+        V value = get(key);
+        if (value == null) {
+            value = function.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Associates the value to the key in the cache, replacing the previous value, and evicts the least recently
+     * used values if needed. Values heavier than a stripe of the cache are not stored.
+     *
+     * @param key   the key of the value
+     * @param value the value to store
+     * @throws NullPointerException if key or value is null
+     */
+
+    public void put(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException();
+        }
+        int weight = weigher.applyAsInt(key, value);
+        Preconditions.checkArgument(weight >= 0);
+        Stripe<K, V> stripe = stripeOf(key);
+        int evicted = 0;
+        synchronized (stripe) {
+            remove(stripe, key);
+            if (weight > stripe.maxWeight) {
+                return;
+            }
+            stripe.probation.put(key, new Entry<>(value, weight));
+            stripe.probationWeight += weight;
+            //the least recently used values of the probationary segment are evicted first, the new value being
+            //the most recently used one, and those of the protected segment once the new value is alone (it fits
+            //in the stripe, the protected segment can't be empty then)
+            while (stripe.probationWeight + stripe.protectedWeight > stripe.maxWeight) {
+                if (stripe.probation.size() == 1) {
+                    Iterator<Entry<V>> iterator = stripe.protectedSegment.values().iterator();
+                    stripe.protectedWeight -= iterator.next().weight();
+                    iterator.remove();
+                } else {
+                    Iterator<Entry<V>> iterator = stripe.probation.values().iterator();
+                    stripe.probationWeight -= iterator.next().weight();
+                    iterator.remove();
+                }
+                ++evicted;
+            }
+        }
+        evictions.add(evicted);
+    }
+
+    /**
+     * Removes the value associated to the key, if any.
+     *
+     * @param key the key of the value
+     */
+
+    public void invalidate(K key) {
+        Stripe<K, V> stripe = stripeOf(key);
+        synchronized (stripe) {
+            remove(stripe, key);
+        }
+    }
+
+    /**
+     * Removes all the values of the cache, the statistics are kept.
+     */
+
+    public void invalidateAll() {
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.probation.clear();
+                stripe.protectedSegment.clear();
+                stripe.probationWeight = 0;
+                stripe.protectedWeight = 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of values in the cache.
+     *
+     * @return long number of values
+     */
+
+    public long size() {
+        long size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.probation.size() + stripe.protectedSegment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns the total weight of the values in the cache.
+     *
+     * @return long total weight
+     */
+
+    public long weight() {
+        long weight = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            synchronized (stripe) {
+                weight += stripe.probationWeight + stripe.protectedWeight;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Returns the number of times get found a value.
+     *
+     * @return long number of hits
+     */
+
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of times get didn't find a value.
+     *
+     * @return long number of misses
+     */
+
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of values evicted to respect the maximal weight.
+     *
+     * @return long number of evictions
+     */
+
+    public long evictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Returns the ratio of hits among the calls to get.
+     *
+     * @return double between 0 and 1, NaN if get was never called
+     */
+
+    public double hitRate() {
+        long hitCount = hitCount();
+        long requestCount = hitCount + missCount();
+        return requestCount == 0 ? Double.NaN : (double) hitCount / requestCount;
+    }
+
+    private Stripe<K, V> stripeOf(K key) {
+        int hash = key.hashCode();
+        //spreads the high bits, as HashMap does
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    //moves an entry just read from the probationary segment to the protected one, demoting the least recently used
+    //entries of the protected segment if it becomes too heavy
+    private static <K, V> void promote(Stripe<K, V> stripe, K key, Entry<V> entry) {
+        stripe.probationWeight -= entry.weight();
+        stripe.protectedSegment.put(key, entry);
+        stripe.protectedWeight += entry.weight();
+        Iterator<Map.Entry<K, Entry<V>>> iterator = stripe.protectedSegment.entrySet().iterator();
+        while (stripe.protectedWeight > stripe.maxProtectedWeight && stripe.protectedSegment.size() > 1) {
+            Map.Entry<K, Entry<V>> eldest = iterator.next();
+            iterator.remove();
+            stripe.protectedWeight -= eldest.getValue().weight();
+            stripe.probation.put(eldest.getKey(), eldest.getValue());
+            stripe.probationWeight += eldest.getValue().weight();
+        }
+    }
+
+    private static <K, V> void remove(Stripe<K, V> stripe, K key) {
+        Entry<V> previous = stripe.probation.remove(key);
+        if (previous != null) {
+            stripe.probationWeight -= previous.weight();
+        }
+        previous = stripe.protectedSegment.remove(key);
+        if (previous != null) {
+            stripe.protectedWeight -= previous.weight();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DataFiles Class
+ * Reads and writes the binary files stored next to the files of the graph: the files of the graph itself and the
+ * tables computed from it offline (incoming edges, indexes, contraction hierarchies, landmarks, compiled cost
+ * functions, components).
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class DataFiles {
+
+    // Non-instantiable class
+    private DataFiles() {}
+
+    /**
+     * Returns the content of the given file, mapped in memory.
+     *
+     * @param filePath path of the file to load
+     * @return a read-only buffer with the data of the file
+     * @throws IOException if something went wrong while loading data from the file
+     */
+
+    public static MappedByteBuffer load(Path filePath) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Writes the remaining bytes of the given buffer in the given file, replacing its content if it exists.
+     *
+     * @param filePath path of the file to write
+     * @param data     buffer whose bytes between its position and its limit are written
+     * @throws IOException if something went wrong while writing the file
+     */
+
+    public static void write(Path filePath, ByteBuffer data) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+
+/**
+ * EdgePoint record
+ * Represents the point of an edge of the graph closest to a given reference point (see GraphEdgeIndex), from which
+ * routes can start or at which they can end (see RouteComputer).
+ *
+ * @param edgeId              identity of the edge
+ * @param sourceNodeId        identity of the node at which the edge starts
+ * @param position            position of the point along the edge, in meters, between 0 and the length of the edge
+ * @param point               the point on the edge
+ * @param distanceToReference the distance, in meters, between the point and the reference point
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public record EdgePoint(int edgeId, int sourceNodeId, double position, PointCh point, double distanceToReference) {
+
+    /**
+     * EdgePoint constructor.
+     *
+     * @throws IllegalArgumentException if position or distanceToReference is negative
+     */
+
+    public EdgePoint {
+        Preconditions.checkArgument(position >= 0 && distanceToReference >= 0);
+    }
+}
@@ -1,15 +1,23 @@
 package ch.epfl.javelo.data;
 
 import ch.epfl.javelo.Functions;
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.SegmentedLruCache;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.io.IOException;
 import java.nio.*;
-import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
 
 /**
  * Graph class
@@ -33,6 +41,30 @@ public final class Graph {
     //attribute sets of the graph
     private final List<AttributeSet> ATTRIBUTE_SETS;
 
+    //incoming edges of the nodes, derived from the nodes and edges on first use if they weren't given
+    private volatile GraphInEdges inEdges;
+
+    //index of the edges used by edgePointClosestTo, loaded with the graph or built on first use
+    private volatile GraphEdgeIndex edgeIndex;
+
+    //adaptive index of the nodes used by nodeClosestTo, null if the grid of sectors is used
+    private final NodeQuadtree nodeQuadtree;
+
+    //coordinates of the nodes (E then N for each node) decoded once, null if they are read from NODES every time
+    private final double[] nodeCoordinates;
+
+    //fingerprint of the graph, computed on first use
+    private volatile Long fingerprint;
+
+    //profiles of the edges recently decoded, weighted by their number of samples, null if they are decoded every time
+    private final SegmentedLruCache<Integer, DoubleUnaryOperator> profileCache;
+
+    //stripes of the profile cache, so that the threads computing routes rarely wait for each other
+    private static final int PROFILE_CACHE_STRIPES = 64;
+
+    //margin, in meters, by which the nodes of a sector may be outside of its rectangle
+    private static final double SECTOR_MARGIN = 1;
+
     /**
      * Graph constructor, we use List.copyOf() to make sure it stays immuable.
      *
@@ -43,10 +75,122 @@ public final class Graph {
      */
 
     public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, List<AttributeSet> attributeSets) {
+        this(nodes, sectors, edges, null, attributeSets);
+    }
+
+    /**
+     * Graph constructor with the incoming edges of the nodes already known (see GraphInEdges).
+     *
+     * @param nodes         GraphNodes, nodes of the graph
+     * @param sectors       GraphSectors, sectors of the graph
+     * @param edges         GraphEdges, edges of the graph
+     * @param inEdges       GraphInEdges, incoming edges of the nodes, or null to derive them on first use
+     * @param attributeSets List<AttributeSet>, attribute sets of the graph
+     * @throws IllegalArgumentException if inEdges doesn't have as many nodes as nodes
+     */
+
+    public Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, GraphInEdges inEdges,
+                 List<AttributeSet> attributeSets) {
+        this(nodes, sectors, edges, inEdges, attributeSets, null, null, null, null);
+    }
+
+    private Graph(GraphNodes nodes, GraphSectors sectors, GraphEdges edges, GraphInEdges inEdges,
+                  List<AttributeSet> attributeSets, double[] nodeCoordinates,
+                  SegmentedLruCache<Integer, DoubleUnaryOperator> profileCache, GraphEdgeIndex edgeIndex,
+                  NodeQuadtree nodeQuadtree) {
+        Preconditions.checkArgument(inEdges == null || inEdges.count() == nodes.count());
+        Preconditions.checkArgument(edgeIndex == null || edgeIndex.edgeCount() == edges.count());
+        Preconditions.checkArgument(nodeQuadtree == null || nodeQuadtree.nodeCount() == nodes.count());
         NODES = nodes;
         SECTORS = sectors;
         EDGES = edges;
+        this.inEdges = inEdges;
+        this.edgeIndex = edgeIndex;
+        this.nodeQuadtree = nodeQuadtree;
         ATTRIBUTE_SETS = List.copyOf(attributeSets);
+        this.nodeCoordinates = nodeCoordinates;
+        this.profileCache = profileCache;
+    }
+
+    /**
+     * Returns a graph identical to this one, except that the coordinates of its nodes are decoded once and kept in
+     * memory (16 bytes per node), which makes nodeE, nodeN and the node distances cheaper.
+     *
+     * @return Graph with a cache of the coordinates of the nodes
+     */
+
+    public Graph withNodeCoordinatesCache() {
+        if (nodeCoordinates != null) {
+            return this;
+        }
+        double[] coordinates = new double[2 * NODES.count()];
+        for (int nodeId = 0; nodeId < NODES.count(); ++nodeId) {
+            coordinates[2 * nodeId] = NODES.nodeE(nodeId);
+            coordinates[2 * nodeId + 1] = NODES.nodeN(nodeId);
+        }
+        return new Graph(NODES, SECTORS, EDGES, inEdges, ATTRIBUTE_SETS, coordinates, profileCache, edgeIndex,
+                nodeQuadtree);
+    }
+
+    /**
+     * Returns a graph identical to this one, except that nodeClosestTo uses the given adaptive index of the nodes
+     * instead of the grid of sectors (see NodeQuadtree).
+     *
+     * @param nodeQuadtree the NodeQuadtree of the nodes of this graph, or null to use the grid of sectors
+     * @return Graph using the quadtree
+     * @throws IllegalArgumentException if the quadtree doesn't have as many nodes as this graph
+     */
+
+    public Graph withNodeQuadtree(NodeQuadtree nodeQuadtree) {
+        return new Graph(NODES, SECTORS, EDGES, inEdges, ATTRIBUTE_SETS, nodeCoordinates, profileCache, edgeIndex,
+                nodeQuadtree);
+    }
+
+    /**
+     * Returns a graph identical to this one, except that edgeProfile keeps the profiles it decodes in a cache shared
+     * by all the threads, so that the profiles of popular edges are decoded only once. The cache is bounded by the
+     * total number of samples of its profiles (4 bytes each), and evicts them with the segmented LRU policy (see
+     * SegmentedLruCache). The edges without profile are not cached.
+     *
+     * @param maxSampleCount maximal total number of samples of the cached profiles
+     * @return Graph with a cache of the profiles of the edges
+     * @throws IllegalArgumentException if maxSampleCount is not strictly positive
+     */
+
+    public Graph withProfileCache(long maxSampleCount) {
+        return new Graph(NODES, SECTORS, EDGES, inEdges, ATTRIBUTE_SETS, nodeCoordinates,
+                new SegmentedLruCache<>(maxSampleCount, PROFILE_CACHE_STRIPES,
+                        (edgeId, profile) -> profileSampleCount(edgeId)), edgeIndex, nodeQuadtree);
+    }
+
+    /**
+     * Returns the number of profiles found in the cache of the profiles (see withProfileCache).
+     *
+     * @return long number of hits, 0 if the graph doesn't have a cache
+     */
+
+    public long profileCacheHitCount() {
+        return profileCache == null ? 0 : profileCache.hitCount();
+    }
+
+    /**
+     * Returns the number of profiles that had to be decoded despite the cache of the profiles (see withProfileCache).
+     *
+     * @return long number of misses, 0 if the graph doesn't have a cache
+     */
+
+    public long profileCacheMissCount() {
+        return profileCache == null ? 0 : profileCache.missCount();
+    }
+
+    /**
+     * Returns the ratio of the profiles found in the cache of the profiles (see withProfileCache).
+     *
+     * @return double between 0 and 1, NaN if the graph doesn't have a cache or if it was never used
+     */
+
+    public double profileCacheHitRate() {
+        return profileCache == null ? Double.NaN : profileCache.hitRate();
     }
 
     /**
@@ -59,36 +203,89 @@ public final class Graph {
      */
 
     private static MappedByteBuffer loadData(Path basePath, String filename) throws IOException {
-        Path filePath = basePath.resolve(filename);
-        try (FileChannel channel = FileChannel.open(filePath)) {
-            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
-        }
+        return DataFiles.load(basePath.resolve(filename));
     }
 
     /**
-     * Returns the JaVelo Graph obtained from the files in the basePath folder
+     * Returns the JaVelo Graph obtained from the files in the basePath folder, or from the container basePath if it
+     * is a file (see GraphContainer). The checksums of a container are then not verified: to detect a corrupted
+     * container, open it with GraphContainer.open and use loadFrom(GraphContainer) instead.
      *
-     * @param basePath path where data files are stored
+     * @param basePath path where data files are stored, or path of a container
      * @return Graph instance
      * @throws IOException if something went wrong while loading data from resources
      */
 
     public static Graph loadFrom(Path basePath) throws IOException {
-        //initialize buffers
-        IntBuffer nodesBuffer = loadData(basePath, "nodes.bin").asIntBuffer();
-        ByteBuffer edgesBuffer = loadData(basePath, "edges.bin");
-        IntBuffer profilesBuffer = loadData(basePath, "profile_ids.bin").asIntBuffer();
-        ShortBuffer elevationsBuffer = loadData(basePath, "elevations.bin").asShortBuffer();
-        ByteBuffer sectorsBuffer = loadData(basePath, "sectors.bin");
+        if (Files.isRegularFile(basePath)) {
+            return loadFrom(GraphContainer.open(basePath));
+        }
+
+        //the incoming edges, the index of the edges and the quadtree of the nodes are optional
+        return of(loadData(basePath, "nodes.bin"), loadData(basePath, "edges.bin"),
+                loadData(basePath, "profile_ids.bin"), loadData(basePath, "elevations.bin"),
+                loadData(basePath, "sectors.bin"), loadData(basePath, "attributes.bin"),
+                loadOptionalData(basePath, GraphInEdges.FILE_NAME),
+                loadOptionalData(basePath, GraphEdgeIndex.FILE_NAME),
+                loadOptionalData(basePath, NodeQuadtree.FILE_NAME));
+    }
 
+    /**
+     * Returns the JaVelo Graph obtained from the sections of the given container, without verifying their checksums.
+     * The caller must check them, with GraphContainer.verify or in the background with GraphContainer.verification,
+     * and decide what to do with a corrupted container (a corrupted section can give wrong routes, but doesn't
+     * prevent loading the graph).
+     *
+     * @param container container of the files of the graph
+     * @return Graph instance
+     * @throws IOException if a required section is missing
+     */
+
+    public static Graph loadFrom(GraphContainer container) throws IOException {
+        for (String name : GraphContainer.SECTION_NAMES.subList(0, GraphContainer.REQUIRED_SECTION_COUNT)) {
+            if (container.section(name) == null) {
+                throw new IOException(container.file() + " has no section " + name);
+            }
+        }
+        return of(container.section("nodes.bin"), container.section("edges.bin"),
+                container.section("profile_ids.bin"), container.section("elevations.bin"),
+                container.section("sectors.bin"), container.section("attributes.bin"),
+                container.section(GraphInEdges.FILE_NAME), container.section(GraphEdgeIndex.FILE_NAME),
+                container.section(NodeQuadtree.FILE_NAME));
+    }
+
+    //data of the file, null if it doesn't exist
+    private static ByteBuffer loadOptionalData(Path basePath, String filename) throws IOException {
+        return Files.exists(basePath.resolve(filename)) ? loadData(basePath, filename) : null;
+    }
+
+    //graph of the given files, the last three being optional (null if absent)
+    private static Graph of(ByteBuffer nodes, ByteBuffer edges, ByteBuffer profileIds, ByteBuffer elevations,
+                            ByteBuffer sectors, ByteBuffer attributes, ByteBuffer inEdges, ByteBuffer edgeIndex,
+                            ByteBuffer nodeQuadtree) {
         //initialize attributes
-        LongBuffer sectorsAttributesBuffer = loadData(basePath, "attributes.bin").asLongBuffer();
+        LongBuffer sectorsAttributesBuffer = attributes.asLongBuffer();
         ArrayList<AttributeSet> attributeSets = new ArrayList<>(sectorsAttributesBuffer.capacity());
         while (sectorsAttributesBuffer.hasRemaining()) {
             attributeSets.add(new AttributeSet(sectorsAttributesBuffer.get()));
         }
 
-        return new Graph(new GraphNodes(nodesBuffer), new GraphSectors(sectorsBuffer), new GraphEdges(edgesBuffer, profilesBuffer, elevationsBuffer), attributeSets);
+        GraphNodes graphNodes = new GraphNodes(nodes.asIntBuffer());
+        GraphSectors graphSectors = new GraphSectors(sectors);
+        GraphEdges graphEdges = new GraphEdges(edges, profileIds.asIntBuffer(), elevations.asShortBuffer());
+        GraphInEdges graphInEdges = inEdges == null ? null : new GraphInEdges(inEdges.asIntBuffer());
+        Graph graph = new Graph(graphNodes, graphSectors, graphEdges, graphInEdges, attributeSets);
+        if (edgeIndex == null && nodeQuadtree == null) {
+            return graph;
+        }
+
+        //an index of the edges or a quadtree of the nodes built for another graph (or in an older format) is ignored,
+        //as if it were absent: the index is then built on first use, and nodeClosestTo uses the grid of sectors
+        Graph checkedGraph = new Graph(graphNodes, graphSectors, graphEdges, graphInEdges, attributeSets, null, null,
+                edgeIndex == null ? null : GraphEdgeIndex.of(edgeIndex, graph),
+                nodeQuadtree == null ? null : NodeQuadtree.of(nodeQuadtree, graph));
+        checkedGraph.fingerprint = graph.fingerprint;
+        return checkedGraph;
     }
 
     /**
@@ -101,6 +298,47 @@ public final class Graph {
         return NODES.count();
     }
 
+    /**
+     * Get the total number of edges in the graph
+     *
+     * @return int the total number of edges in the graph
+     */
+
+    public int edgeCount() {
+        return EDGES.count();
+    }
+
+    /**
+     * Returns a fingerprint of the content of the graph (nodes, sectors, edges, profiles and attribute sets), which
+     * differs with a high probability between two different graphs. It allows recognising the tables computed
+     * offline from the graph (see CompiledCostFunction and GraphComponents), whatever the byte order of the files it
+     * was loaded from. Its computation reads the whole graph, it is done once.
+     *
+     * @return long fingerprint of the graph
+     */
+
+    public long fingerprint() {
+        Long result = fingerprint;
+        if (result == null) {
+            result = computeFingerprint();
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    private long computeFingerprint() {
+        //the checksum covers the big-endian bytes of the buffers, so that the fingerprint doesn't depend on the byte
+        //order of the container of the graph (see GraphContainer)
+        CRC32 crc = new CRC32();
+        crc.update(GraphContainer.inOrder("sectors.bin", SECTORS.buffer().duplicate().clear(),
+                SECTORS.buffer().order()));
+        crc.update(GraphContainer.inOrder("edges.bin", EDGES.edgesBuffer().duplicate().clear(),
+                EDGES.edgesBuffer().order()));
+        int hash = Objects.hash(NODES.buffer().duplicate().clear(), EDGES.profileIds().duplicate().clear(),
+                EDGES.elevations().duplicate().clear(), ATTRIBUTE_SETS);
+        return crc.getValue() << Integer.SIZE | Integer.toUnsignedLong(hash);
+    }
+
     /**
      * Get the position of a given node of identity 'nodeId'
      *
@@ -109,7 +347,54 @@ public final class Graph {
      */
 
     public PointCh nodePoint(int nodeId) {
-        return new PointCh(NODES.nodeE(nodeId), NODES.nodeN(nodeId));
+        return new PointCh(nodeE(nodeId), nodeN(nodeId));
+    }
+
+    /**
+     * Get the E coordinate of a given node of identity 'nodeId', without creating a PointCh
+     *
+     * @param nodeId id of the node
+     * @return double the E coordinate of the node
+     */
+
+    public double nodeE(int nodeId) {
+        return nodeCoordinates != null ? nodeCoordinates[2 * nodeId] : NODES.nodeE(nodeId);
+    }
+
+    /**
+     * Get the N coordinate of a given node of identity 'nodeId', without creating a PointCh
+     *
+     * @param nodeId id of the node
+     * @return double the N coordinate of the node
+     */
+
+    public double nodeN(int nodeId) {
+        return nodeCoordinates != null ? nodeCoordinates[2 * nodeId + 1] : NODES.nodeN(nodeId);
+    }
+
+    /**
+     * Get the squared distance (in squared meters) between two nodes, without creating any PointCh
+     *
+     * @param nodeId1 id of the first node
+     * @param nodeId2 id of the second node
+     * @return double the squared distance between the nodes
+     */
+
+    public double nodeSquaredDistance(int nodeId1, int nodeId2) {
+        return Math2.squaredNorm(nodeE(nodeId1) - nodeE(nodeId2), nodeN(nodeId1) - nodeN(nodeId2));
+    }
+
+    /**
+     * Get the distance (in meters) between two nodes, without creating any PointCh.
+     * Equal to nodePoint(nodeId1).distanceTo(nodePoint(nodeId2))
+     *
+     * @param nodeId1 id of the first node
+     * @param nodeId2 id of the second node
+     * @return double the distance between the nodes
+     */
+
+    public double nodeDistance(int nodeId1, int nodeId2) {
+        return Math2.norm(nodeE(nodeId1) - nodeE(nodeId2), nodeN(nodeId1) - nodeN(nodeId2));
     }
 
     /**
@@ -135,6 +420,56 @@ public final class Graph {
         return NODES.edgeId(nodeId, edgeIndex);
     }
 
+    /**
+     * Get the number of edges coming into the node of given identity
+     *
+     * @param nodeId id of the node
+     * @return int the number of edges coming into the node
+     */
+
+    public int nodeInDegree(int nodeId) {
+        return inEdges().inDegree(nodeId);
+    }
+
+    /**
+     * Get the identity of the edgeIndex-th edge coming into the node of identity 'nodeId'
+     *
+     * @param nodeId    id of the node
+     * @param edgeIndex index of the edge
+     * @return int the identity of the edgeIndex-th edge coming into the node
+     */
+
+    public int nodeInEdgeId(int nodeId, int edgeIndex) {
+        return inEdges().edgeId(nodeId, edgeIndex);
+    }
+
+    /**
+     * Get the identity of the origin node of the edgeIndex-th edge coming into the node of identity 'nodeId'
+     *
+     * @param nodeId    id of the node
+     * @param edgeIndex index of the edge
+     * @return int the identity of the origin node of the edgeIndex-th edge coming into the node
+     */
+
+    public int nodeInEdgeSourceNodeId(int nodeId, int edgeIndex) {
+        return inEdges().sourceNodeId(nodeId, edgeIndex);
+    }
+
+    //incoming edges of the nodes, derived once (by a single thread) if they weren't given to the constructor
+    GraphInEdges inEdges() {
+        GraphInEdges result = inEdges;
+        if (result == null) {
+            synchronized (this) {
+                result = inEdges;
+                if (result == null) {
+                    result = GraphInEdges.of(NODES, EDGES);
+                    inEdges = result;
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * Get the identity of the closest node to a given point, at the given maximum distance (in meters)
      * or -1 if no node matches these criteria
@@ -145,19 +480,47 @@ public final class Graph {
      */
 
     public int nodeClosestTo(PointCh point, double searchDistance) {
-        //we get all the sectors in the area
-        List<GraphSectors.Sector> sectorsInArea = SECTORS.sectorsInArea(point, searchDistance);
+        return nodeClosestTo(point.e(), point.n(), searchDistance);
+    }
 
+    /**
+     * Get the identity of the closest node to the point of coordinates (e, n), at the given maximum distance (in
+     * meters) or -1 if no node matches these criteria. The sectors are visited without allocating anything, and those
+     * farther than the closest node found so far are skipped. If the graph has a quadtree of its nodes (see
+     * withNodeQuadtree), it is used instead of the sectors, with the same result.
+     *
+     * @param e              E coordinate of the point
+     * @param n              N coordinate of the point
+     * @param searchDistance maximum distance to search around the point
+     * @return int identity of the closest point to the given point in the search distance radius
+     */
+
+    public int nodeClosestTo(double e, double n, double searchDistance) {
+        if (nodeQuadtree != null) {
+            return nodeQuadtree.nodeClosestTo(this, e, n, searchDistance);
+        }
         double lowestDistance = searchDistance > 0 ? searchDistance * searchDistance : 0;
         int nearestNodeId = -1;
 
-        //we loop through all the nodes of every sector to find out which one is the nearest
-        for (GraphSectors.Sector s : sectorsInArea) {
-            for (int nodeToCheck = s.startNodeId(); nodeToCheck < s.endNodeId(); nodeToCheck++) {
-                double distance = point.squaredDistanceTo(nodePoint(nodeToCheck));
-                if (distance < lowestDistance) {
-                    lowestDistance = distance;
-                    nearestNodeId = nodeToCheck;
+        for (int row = SECTORS.row(n - searchDistance); row <= SECTORS.row(n + searchDistance); ++row) {
+            for (int column = SECTORS.column(e - searchDistance); column <= SECTORS.column(e + searchDistance); ++column) {
+                //no node of the sector can be closer than the nearest one found so far
+                if (sectorSquaredDistanceTo(row, column, e, n) >= lowestDistance) {
+                    continue;
+                }
+                int endNodeId = SECTORS.endNodeId(row, column);
+                for (int nodeToCheck = SECTORS.startNodeId(row, column); nodeToCheck < endNodeId; nodeToCheck++) {
+                    //the N coordinate is only read for the nodes close enough along the E axis
+                    double dE = nodeE(nodeToCheck) - e;
+                    if (dE * dE >= lowestDistance) {
+                        continue;
+                    }
+                    double dN = nodeN(nodeToCheck) - n;
+                    double distance = dE * dE + dN * dN;
+                    if (distance < lowestDistance) {
+                        lowestDistance = distance;
+                        nearestNodeId = nodeToCheck;
+                    }
                 }
             }
         }
@@ -165,6 +528,144 @@ public final class Graph {
         return nearestNodeId;
     }
 
+    /**
+     * Get the identities of the k closest nodes to a given point, at the given maximum distance (in meters), by
+     * increasing distance. Equally distant nodes are ordered by identity, so that the first one is the one returned by
+     * nodeClosestTo.
+     *
+     * @param point          given point
+     * @param searchDistance maximum distance to search around the point
+     * @param k              maximal number of nodes
+     * @return int[] identities of at most k nodes, closer to the point than searchDistance
+     * @throws IllegalArgumentException if k is negative
+     */
+
+    public int[] nodesClosestTo(PointCh point, double searchDistance, int k) {
+        Preconditions.checkArgument(k >= 0);
+        if (k == 0) {
+            return new int[0];
+        }
+        double e = point.e();
+        double n = point.n();
+        double maxDistance = searchDistance > 0 ? searchDistance * searchDistance : 0;
+        //closest nodes found so far, by increasing distance
+        int[] nodeIds = new int[k];
+        double[] distances = new double[k];
+        int count = 0;
+
+        for (int row = SECTORS.row(n - searchDistance); row <= SECTORS.row(n + searchDistance); ++row) {
+            for (int column = SECTORS.column(e - searchDistance); column <= SECTORS.column(e + searchDistance); ++column) {
+                if (sectorSquaredDistanceTo(row, column, e, n) >= (count < k ? maxDistance : distances[k - 1])) {
+                    continue;
+                }
+                int endNodeId = SECTORS.endNodeId(row, column);
+                for (int nodeId = SECTORS.startNodeId(row, column); nodeId < endNodeId; nodeId++) {
+                    double distance = squaredDistanceTo(nodeId, e, n);
+                    if (distance >= (count < k ? maxDistance : distances[k - 1])) {
+                        continue;
+                    }
+                    //the nodes are visited by increasing identity, so the node goes after the equally distant ones
+                    int i = count < k ? count++ : k - 1;
+                    while (i > 0 && distances[i - 1] > distance) {
+                        nodeIds[i] = nodeIds[i - 1];
+                        distances[i] = distances[i - 1];
+                        --i;
+                    }
+                    nodeIds[i] = nodeId;
+                    distances[i] = distance;
+                }
+            }
+        }
+
+        return Arrays.copyOf(nodeIds, count);
+    }
+
+    /**
+     * Calls the action with the identity of every node closer to the point of coordinates (e, n) than the given
+     * radius (in meters), by increasing identity, without allocating anything.
+     *
+     * @param e      E coordinate of the point
+     * @param n      N coordinate of the point
+     * @param radius radius of the search around the point
+     * @param action action called with the identity of each node
+     */
+
+    public void forEachNodeWithin(double e, double n, double radius, IntConsumer action) {
+        double maxDistance = radius > 0 ? radius * radius : 0;
+        for (int row = SECTORS.row(n - radius); row <= SECTORS.row(n + radius); ++row) {
+            for (int column = SECTORS.column(e - radius); column <= SECTORS.column(e + radius); ++column) {
+                if (sectorSquaredDistanceTo(row, column, e, n) >= maxDistance) {
+                    continue;
+                }
+                int endNodeId = SECTORS.endNodeId(row, column);
+                for (int nodeId = SECTORS.startNodeId(row, column); nodeId < endNodeId; nodeId++) {
+                    if (squaredDistanceTo(nodeId, e, n) < maxDistance) {
+                        action.accept(nodeId);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the identities of all the nodes closer to a given point than the given radius (in meters), by increasing
+     * identity.
+     *
+     * @param point  given point
+     * @param radius radius of the search around the point
+     * @return int[] identities of the nodes
+     */
+
+    public int[] nodesWithin(PointCh point, double radius) {
+        IntStream.Builder nodeIds = IntStream.builder();
+        forEachNodeWithin(point.e(), point.n(), radius, nodeIds);
+        return nodeIds.build().toArray();
+    }
+
+    /**
+     * Get the point of the edges closest to a given point, at the given maximum distance (in meters), or null if no
+     * edge matches these criteria (see GraphEdgeIndex). Contrary to nodeClosestTo, the point found can be in the
+     * middle of a long edge far from its nodes.
+     *
+     * @param point          given point
+     * @param searchDistance maximum distance to search around the point
+     * @return EdgePoint the closest point of an edge, null if no edge is closer than searchDistance
+     */
+
+    public EdgePoint edgePointClosestTo(PointCh point, double searchDistance) {
+        return edgeIndex().closestEdgePoint(this, point.e(), point.n(), searchDistance);
+    }
+
+    //index of the edges, built once (by a single thread) if it wasn't loaded with the graph
+    private GraphEdgeIndex edgeIndex() {
+        GraphEdgeIndex result = edgeIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = edgeIndex;
+                if (result == null) {
+                    result = GraphEdgeIndex.build(this);
+                    edgeIndex = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    //squared distance between the node and the point of coordinates (e, n), without creating any PointCh
+    private double squaredDistanceTo(int nodeId, double e, double n) {
+        double dE = nodeE(nodeId) - e;
+        double dN = nodeN(nodeId) - n;
+        return dE * dE + dN * dN;
+    }
+
+    //lower bound of the squared distance between the nodes of the sector and the point of coordinates (e, n),
+    //SECTOR_MARGIN meters smaller than the distance to the rectangle of the sector, which the nodes may overstep by
+    //rounding errors
+    private double sectorSquaredDistanceTo(int row, int column, double e, double n) {
+        double distance = Math.max(Math.sqrt(SECTORS.squaredDistanceTo(row, column, e, n)) - SECTOR_MARGIN, 0);
+        return distance * distance;
+    }
+
     /**
      * Get the identity of the destination node of the given edge
      *
@@ -229,10 +730,51 @@ public final class Graph {
      */
 
     public DoubleUnaryOperator edgeProfile(int edgeId) {
-        if (EDGES.hasProfile(edgeId)) {
-            return Functions.sampled(EDGES.profileSamples(edgeId), EDGES.length(edgeId));
-        } else {
+        if (!EDGES.hasProfile(edgeId)) {
             return Functions.constant(Double.NaN);
         }
+        if (profileCache == null) {
+            return Functions.sampled(EDGES.profileSamples(edgeId), EDGES.length(edgeId));
+        }
+        //the sampled functions are immutable, they can be shared by all the routes
+        return profileCache.computeIfAbsent(edgeId,
+                id -> Functions.sampled(EDGES.profileSamples(id), EDGES.length(id)));
+    }
+
+    //number of samples of the profile of the edge, as computed by GraphEdges.profileSamples
+    private int profileSampleCount(int edgeId) {
+        return 1 + (int) Math.ceil(EDGES.length(edgeId) / 2);
+    }
+
+    /**
+     * Get the elevation at the given position along the edge of identity 'edgeId', equal to
+     * edgeProfile(edgeId).applyAsDouble(position) but without decoding the whole profile (see GraphEdges.elevationAt).
+     *
+     * @param edgeId   id of the edge
+     * @param position position along the edge, in meters
+     * @return double elevation at the position, Double.NaN if the edge doesn't have a profile
+     */
+
+    public double edgeElevationAt(int edgeId, double position) {
+        return EDGES.elevationAt(edgeId, position);
+    }
+
+    /**
+     * Get the elevations at the positions startPosition + i * stepLength along the edge of identity 'edgeId', for i
+     * from 0 to count - 1, decoding its profile at most once (see GraphEdges.elevationsAt). The elevation profiles of
+     * routes are sampled this way, edge by edge, without building their edges (see ElevationProfileComputer).
+     *
+     * @param edgeId        id of the edge
+     * @param startPosition first position along the edge, in meters
+     * @param stepLength    distance between two consecutive positions, in meters
+     * @param destination   array in which the elevations are written
+     * @param offset        index in destination of the first elevation
+     * @param count         number of elevations
+     * @throws IndexOutOfBoundsException if the destination array is too small
+     */
+
+    public void edgeElevationsAt(int edgeId, double startPosition, double stepLength, double[] destination,
+                                 int offset, int count) {
+        EDGES.elevationsAt(edgeId, startPosition, stepLength, destination, offset, count);
     }
 }
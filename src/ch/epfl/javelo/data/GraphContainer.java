@@ -0,0 +1,402 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.CRC32;
+
+/**
+ * GraphContainer class
+ * A single file holding all the files of a graph as sections, that Graph.loadFrom can load instead of a directory.
+ * The file starts with a header (always in big-endian order):
+ * - the magic number MAGIC (int), the version of the format (short), the byte order of the sections (byte, 0 for
+ * big-endian and 1 for little-endian) and a reserved byte, the number of sections (int) and a reserved int,
+ * - for each section, its name (SECTION_NAME_BYTES bytes of ASCII, padded with zeros), its offset and its size in
+ * the file (2 longs), the CRC32 of its content (int) and a reserved int.
+ * The sections follow, each one starting at an offset multiple of 8. They are named after the files they replace
+ * (see SECTION_NAMES), and their content is the one of these files, with the values in the byte order of the
+ * container. Each section is mapped separately, so that a container can be larger than 2 GB.
+ * The header is checked when the container is opened, which is fast. The checksums of the sections are only
+ * checked by verify, or in the background by verification, which doesn't delay the loading of the graph.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class GraphContainer {
+
+    /**
+     * Magic number at the beginning of every container, "JVLO" in ASCII.
+     */
+
+    public static final int MAGIC = 0x4A56_4C4F;
+
+    /**
+     * Version of the format written by this class, the containers of later versions being rejected.
+     */
+
+    public static final short VERSION = 1;
+
+    /**
+     * Maximal number of bytes of the name of a section.
+     */
+
+    public static final int SECTION_NAME_BYTES = 24;
+
+    /**
+     * Names of the sections that a container can hold, in the order they are written: the six files needed by
+     * Graph.loadFrom, then the optional ones (incoming edges, index of the edges and quadtree of the nodes).
+     */
+
+    public static final List<String> SECTION_NAMES = List.of("nodes.bin", "edges.bin", "profile_ids.bin",
+            "elevations.bin", "sectors.bin", "attributes.bin",
+            GraphInEdges.FILE_NAME, GraphEdgeIndex.FILE_NAME, NodeQuadtree.FILE_NAME);
+
+    /**
+     * Number of sections that every container must hold, the first ones of SECTION_NAMES.
+     */
+
+    public static final int REQUIRED_SECTION_COUNT = 6;
+
+    //sizes in bytes of the successive values of the records of each section, used to change their byte order
+    private static final Map<String, int[]> SECTION_LAYOUTS = Map.of(
+            "nodes.bin", new int[]{Integer.BYTES},
+            //target node, length, elevation gain, attribute set
+            "edges.bin", new int[]{Integer.BYTES, Short.BYTES, Short.BYTES, Short.BYTES},
+            "profile_ids.bin", new int[]{Integer.BYTES},
+            "elevations.bin", new int[]{Short.BYTES},
+            //first node, number of nodes
+            "sectors.bin", new int[]{Integer.BYTES, Short.BYTES},
+            "attributes.bin", new int[]{Long.BYTES},
+            GraphInEdges.FILE_NAME, new int[]{Integer.BYTES},
+            //ints and floats
+            GraphEdgeIndex.FILE_NAME, new int[]{Integer.BYTES},
+            NodeQuadtree.FILE_NAME, new int[]{Integer.BYTES});
+
+    private static final int HEADER_BYTES = 16;
+    private static final int SECTION_ENTRY_BYTES = SECTION_NAME_BYTES + 2 * Long.BYTES + 2 * Integer.BYTES;
+    private static final int SECTION_ALIGNMENT = 8;
+    private static final byte BIG_ENDIAN = 0;
+    private static final byte LITTLE_ENDIAN = 1;
+
+    private final Path file;
+    private final short version;
+    private final ByteOrder order;
+    //content of each section, in the order of the file, and its expected checksum
+    private final Map<String, ByteBuffer> sections;
+    private final Map<String, Integer> checksums;
+
+    //verification of the checksums, started on the first call to verification()
+    private CompletableFuture<Void> verification;
+
+    private GraphContainer(Path file, short version, ByteOrder order, Map<String, ByteBuffer> sections,
+                           Map<String, Integer> checksums) {
+        this.file = file;
+        this.version = version;
+        this.order = order;
+        this.sections = Collections.unmodifiableMap(sections);
+        this.checksums = checksums;
+    }
+
+    /**
+     * Opens the container stored in the given file, checking its header but not the checksums of its sections.
+     *
+     * @param file path of the container
+     * @return GraphContainer of the file
+     * @throws IOException if the file can't be read, isn't a container, is of a later version or is truncated
+     */
+
+    public static GraphContainer open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException(file + " is not a graph container");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException(file + " is not a graph container");
+            }
+            short version = header.getShort(4);
+            if (version < 1 || version > VERSION) {
+                throw new IOException(file + " is a graph container of unsupported version " + version);
+            }
+            byte orderFlag = header.get(6);
+            if (orderFlag != BIG_ENDIAN && orderFlag != LITTLE_ENDIAN) {
+                throw new IOException(file + " has an invalid byte order flag " + orderFlag);
+            }
+            ByteOrder order = orderFlag == BIG_ENDIAN ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+            int sectionCount = header.getInt(8);
+            if (sectionCount < 0 || HEADER_BYTES + (long) sectionCount * SECTION_ENTRY_BYTES > size) {
+                throw new IOException(file + " has a truncated section table");
+            }
+
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    (long) sectionCount * SECTION_ENTRY_BYTES);
+            Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+            Map<String, Integer> checksums = new LinkedHashMap<>();
+            for (int i = 0; i < sectionCount; ++i) {
+                int entry = i * SECTION_ENTRY_BYTES;
+                byte[] nameBytes = new byte[SECTION_NAME_BYTES];
+                table.get(entry, nameBytes);
+                int nameLength = 0;
+                while (nameLength < SECTION_NAME_BYTES && nameBytes[nameLength] != 0) {
+                    ++nameLength;
+                }
+                String name = new String(nameBytes, 0, nameLength, StandardCharsets.US_ASCII);
+                long offset = table.getLong(entry + SECTION_NAME_BYTES);
+                long length = table.getLong(entry + SECTION_NAME_BYTES + Long.BYTES);
+                if (offset < 0 || length < 0 || length > Integer.MAX_VALUE || offset + length > size) {
+                    throw new IOException(file + " has a section " + name + " outside of the file");
+                }
+                if (sections.containsKey(name)) {
+                    throw new IOException(file + " has several sections " + name);
+                }
+                sections.put(name, channel.map(FileChannel.MapMode.READ_ONLY, offset, length).order(order));
+                checksums.put(name, table.getInt(entry + SECTION_NAME_BYTES + 2 * Long.BYTES));
+            }
+            return new GraphContainer(file, version, order, sections, checksums);
+        }
+    }
+
+    /**
+     * Writes the files of the graph stored in the given directory (see SECTION_NAMES) in a container, the optional
+     * ones being included if they exist. The container is written next to its final location then moved there, so
+     * that a reader never sees a partially written container.
+     *
+     * @param directory directory of the files of the graph
+     * @param file      path of the container
+     * @param order     byte order of the values of the sections in the container
+     * @throws IOException if a required file is missing, or if something went wrong while reading or writing files
+     */
+
+    public static void pack(Path directory, Path file, ByteOrder order) throws IOException {
+        Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+        for (int i = 0; i < SECTION_NAMES.size(); ++i) {
+            Path sectionFile = directory.resolve(SECTION_NAMES.get(i));
+            if (i < REQUIRED_SECTION_COUNT || Files.exists(sectionFile)) {
+                sections.put(SECTION_NAMES.get(i), ByteBuffer.wrap(Files.readAllBytes(sectionFile)));
+            }
+        }
+        write(sections, file, order);
+    }
+
+    /**
+     * Writes the given sections in a container, their content being given in big-endian order, as in the files of
+     * the graph. The container is written next to its final location then moved there.
+     *
+     * @param sections content of each section, by name, in the order they are written
+     * @param file     path of the container
+     * @param order    byte order of the values of the sections in the container
+     * @throws IllegalArgumentException if a name isn't one of SECTION_NAMES, or if a required section is missing
+     * @throws IOException              if something went wrong while writing the file
+     */
+
+    public static void write(Map<String, ByteBuffer> sections, Path file, ByteOrder order) throws IOException {
+        Preconditions.checkArgument(SECTION_NAMES.containsAll(sections.keySet())
+                && sections.keySet().containsAll(SECTION_NAMES.subList(0, REQUIRED_SECTION_COUNT)));
+
+        List<ByteBuffer> contents = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES + sections.size() * SECTION_ENTRY_BYTES);
+        header.putInt(MAGIC)
+                .putShort(VERSION)
+                .put(order == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN)
+                .put((byte) 0)
+                .putInt(sections.size())
+                .putInt(0);
+        long offset = alignedOffset(header.capacity());
+        for (Map.Entry<String, ByteBuffer> section : sections.entrySet()) {
+            ByteBuffer content = inOrder(section.getKey(), section.getValue(), order);
+            CRC32 crc = new CRC32();
+            crc.update(content.duplicate());
+            byte[] name = section.getKey().getBytes(StandardCharsets.US_ASCII);
+            header.put(name).put(new byte[SECTION_NAME_BYTES - name.length])
+                    .putLong(offset)
+                    .putLong(content.remaining())
+                    .putInt((int) crc.getValue())
+                    .putInt(0);
+            contents.add(content);
+            offset = alignedOffset(offset + content.remaining());
+        }
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(channel, header.flip());
+            for (ByteBuffer content : contents) {
+                writeFully(channel, ByteBuffer.allocate((int) (alignedOffset(channel.position())
+                        - channel.position())));
+                writeFully(channel, content);
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Packs the graph whose directory is given as first argument in the container whose path is given as second
+     * argument, in big-endian order unless "little" is given as third argument.
+     *
+     * @param args directory of the graph, path of the container and optionally the byte order (big or little)
+     * @throws IOException if something went wrong while reading the graph or writing the container
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3 || (args.length == 3 && !args[2].matches("big|little"))) {
+            System.err.println("usage: GraphContainer <graph directory> <container file> [big|little]");
+            System.exit(1);
+        }
+        ByteOrder order = args.length == 3 && args[2].equals("little") ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        Path file = Path.of(args[1]);
+        pack(Path.of(args[0]), file, order);
+        GraphContainer container = open(file);
+        container.verify();
+        System.out.printf("%s: %d sections, %d bytes%n", file, container.sectionNames().size(), Files.size(file));
+    }
+
+    /**
+     * Returns the path of the file of the container.
+     *
+     * @return Path of the file
+     */
+
+    public Path file() {
+        return file;
+    }
+
+    /**
+     * Returns the version of the format of the container.
+     *
+     * @return short version, between 1 and VERSION
+     */
+
+    public short version() {
+        return version;
+    }
+
+    /**
+     * Returns the byte order of the values of the sections.
+     *
+     * @return ByteOrder of the sections
+     */
+
+    public ByteOrder order() {
+        return order;
+    }
+
+    /**
+     * Returns the names of the sections of the container, in the order of the file.
+     *
+     * @return List<String> names of the sections
+     */
+
+    public List<String> sectionNames() {
+        return List.copyOf(sections.keySet());
+    }
+
+    /**
+     * Returns the content of the section of the given name, in the byte order of the container.
+     *
+     * @param name name of the section
+     * @return ByteBuffer with the content of the section, null if the container doesn't have it
+     */
+
+    public ByteBuffer section(String name) {
+        ByteBuffer section = sections.get(name);
+        return section == null ? null : section.duplicate().order(order);
+    }
+
+    /**
+     * Computes the checksums of all the sections and compares them with the ones of the section table.
+     *
+     * @throws IOException if the content of a section doesn't match its checksum
+     */
+
+    public void verify() throws IOException {
+        for (Map.Entry<String, ByteBuffer> section : sections.entrySet()) {
+            CRC32 crc = new CRC32();
+            crc.update(section.getValue().duplicate());
+            if ((int) crc.getValue() != checksums.get(section.getKey())) {
+                throw new IOException(file + " is corrupted: bad checksum of section " + section.getKey());
+            }
+        }
+    }
+
+    /**
+     * Returns the verification of the checksums of the sections (see verify), started in a background (daemon)
+     * thread on the first call, and completed exceptionally with an IOException if a section is corrupted.
+     *
+     * @return CompletableFuture<Void> completed once the sections are verified
+     */
+
+    public synchronized CompletableFuture<Void> verification() {
+        if (verification == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    verify();
+                    future.complete(null);
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            }, "graph-container-verification");
+            thread.setDaemon(true);
+            thread.start();
+            verification = future;
+        }
+        return verification;
+    }
+
+    //content of the section, given in big-endian order, with its values in the given byte order. Reversing the values
+    //twice gives the content back: the bytes of a section in the given order are also turned back to big-endian.
+    static ByteBuffer inOrder(String name, ByteBuffer content, ByteOrder order) {
+        ByteBuffer source = content.duplicate();
+        if (order == ByteOrder.BIG_ENDIAN) {
+            return source;
+        }
+        int[] layout = SECTION_LAYOUTS.get(name);
+        int recordBytes = 0;
+        for (int valueBytes : layout) {
+            recordBytes += valueBytes;
+        }
+        Preconditions.checkArgument(source.remaining() % recordBytes == 0);
+
+        //each value is reversed in place in a copy of the content
+        byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        for (int record = 0; record < bytes.length; record += recordBytes) {
+            int start = record;
+            for (int valueBytes : layout) {
+                for (int i = 0, j = start + valueBytes - 1; i < valueBytes / 2; ++i, --j) {
+                    byte b = bytes[start + i];
+                    bytes[start + i] = bytes[j];
+                    bytes[j] = b;
+                }
+                start += valueBytes;
+            }
+        }
+        return ByteBuffer.wrap(bytes);
+    }
+
+    private static long alignedOffset(long offset) {
+        return (offset + SECTION_ALIGNMENT - 1) / SECTION_ALIGNMENT * SECTION_ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
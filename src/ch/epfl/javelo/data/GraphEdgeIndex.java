@@ -0,0 +1,420 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * GraphEdgeIndex class
+ * A packed R-tree over the edges of the graph, used to find the point of an edge closest to a given point (see
+ * Graph.edgePointClosestTo), which lets routes start and end in the middle of long edges instead of at their nodes.
+ * The edges are sorted by the Hilbert value of their middle, so that consecutive edges are close to each other, then
+ * the boxes of the first level group NODE_SIZE consecutive edges, those of each following level NODE_SIZE consecutive
+ * boxes of the previous one, up to a single root box. The search descends the tree, skipping the boxes farther than
+ * the closest edge found so far.
+ * The index is stored in the file FILE_NAME next to the files of the graph, built once by the main method:
+ * - the version of the format and the number of edges (2 ints),
+ * - the fingerprint of the graph the index was built for (see Graph.fingerprint), as 2 ints (its high then low bits),
+ * so that an index of another graph is never used,
+ * - for each edge, in the order of the tree, its identity and the identity of its source node (2 ints),
+ * - the boxes of all the levels above the edges, from the first level to the root (minE, minN, maxE, maxN each, as
+ * floats relative to SwissBounds.MIN_E and SwissBounds.MIN_N, rounded outwards).
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class GraphEdgeIndex {
+
+    /**
+     * Name of the file of the index, next to the other files of the graph.
+     */
+
+    public static final String FILE_NAME = "edge_index.bin";
+
+    //number of children of every box
+    private static final int NODE_SIZE = 16;
+    //number of cells of the grid on which the Hilbert values are computed, along each axis
+    private static final int HILBERT_SIZE = 1 << 16;
+    //margin subtracted from the distances to the boxes, so that the rounding errors of the distances to the edges
+    //can't make them smaller than the distances to the boxes
+    private static final double MARGIN = 1e-6;
+
+    //version of the format of the stored index, to increment whenever it changes
+    private static final int FORMAT_VERSION = 1;
+
+    //Offsets of the header fields, followed by the entries. The fingerprint is stored as two ints, so that the byte
+    //order of a container can be changed int by int (see GraphContainer).
+    private static final int OFFSET_VERSION = 0;
+    private static final int OFFSET_EDGE_COUNT = OFFSET_VERSION + Integer.BYTES;
+    private static final int OFFSET_FINGERPRINT = OFFSET_EDGE_COUNT + Integer.BYTES;
+    private static final int HEADER_BYTES = OFFSET_FINGERPRINT + Long.BYTES;
+
+    private static final int ENTRY_INTS = 2;
+    private static final int OFFSET_EDGE_ID = 0;
+    private static final int OFFSET_SOURCE_NODE_ID = 1;
+
+    private final int edgeCount;
+    private final long fingerprint;
+    //identity of each edge and of its source node, in the order of the tree
+    private final IntBuffer entries;
+    //boxes of the levels above the edges, 4 floats each
+    private final FloatBuffer boxes;
+    //index of the first box of each level above the edges, the last one being the root, and total number of boxes
+    private final int[] levelStarts;
+
+    /**
+     * GraphEdgeIndex constructor.
+     *
+     * @param buffer buffer with the content of the file of the index (see the description of the class)
+     * @throws IllegalArgumentException if the buffer isn't in the current format, or if its size doesn't match its
+     *                                  number of edges
+     */
+
+    public GraphEdgeIndex(ByteBuffer buffer) {
+        Preconditions.checkArgument(hasValidHeader(buffer));
+        edgeCount = buffer.getInt(OFFSET_EDGE_COUNT);
+        fingerprint = fingerprint(buffer);
+        levelStarts = levelStarts(edgeCount);
+        int boxCount = levelStarts[levelStarts.length - 1];
+        int entriesBytes = edgeCount * ENTRY_INTS * Integer.BYTES;
+        entries = buffer.slice(HEADER_BYTES, entriesBytes).order(buffer.order()).asIntBuffer();
+        boxes = buffer.slice(HEADER_BYTES + entriesBytes, boxCount * 4 * Float.BYTES).order(buffer.order())
+                .asFloatBuffer();
+    }
+
+    /**
+     * Builds the index of the edges of the graph.
+     *
+     * @param graph the Graph whose edges are indexed
+     * @return GraphEdgeIndex of the edges of the graph
+     */
+
+    public static GraphEdgeIndex build(Graph graph) {
+        int edgeCount = graph.edgeCount();
+        int[] sourceNodeIds = new int[edgeCount];
+        for (int nodeId = 0; nodeId < graph.nodeCount(); ++nodeId) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                sourceNodeIds[graph.nodeOutEdgeId(nodeId, i)] = nodeId;
+            }
+        }
+
+        //the Hilbert value of each edge in the 32 most significant bits, its identity in the others
+        long[] keys = new long[edgeCount];
+        for (int edgeId = 0; edgeId < edgeCount; ++edgeId) {
+            int targetNodeId = graph.edgeTargetNodeId(edgeId);
+            double middleE = (graph.nodeE(sourceNodeIds[edgeId]) + graph.nodeE(targetNodeId)) / 2;
+            double middleN = (graph.nodeN(sourceNodeIds[edgeId]) + graph.nodeN(targetNodeId)) / 2;
+            int x = Math2.clamp(0, (int) ((middleE - SwissBounds.MIN_E) / SwissBounds.WIDTH * HILBERT_SIZE),
+                    HILBERT_SIZE - 1);
+            int y = Math2.clamp(0, (int) ((middleN - SwissBounds.MIN_N) / SwissBounds.HEIGHT * HILBERT_SIZE),
+                    HILBERT_SIZE - 1);
+            keys[edgeId] = hilbertValue(x, y) << Integer.SIZE | edgeId;
+        }
+        Arrays.sort(keys);
+
+        int[] levelStarts = levelStarts(edgeCount);
+        int boxCount = levelStarts[levelStarts.length - 1];
+        ByteBuffer buffer = ByteBuffer.allocate(byteCount(edgeCount));
+        putHeader(buffer, edgeCount, graph.fingerprint());
+        IntBuffer entries = buffer.slice(HEADER_BYTES, edgeCount * ENTRY_INTS * Integer.BYTES).asIntBuffer();
+        for (int i = 0; i < edgeCount; ++i) {
+            int edgeId = (int) keys[i];
+            entries.put(ENTRY_INTS * i + OFFSET_EDGE_ID, edgeId);
+            entries.put(ENTRY_INTS * i + OFFSET_SOURCE_NODE_ID, sourceNodeIds[edgeId]);
+        }
+
+        //the boxes are computed in doubles, and rounded outwards once stored
+        double[] childBoxes = new double[4 * edgeCount];
+        for (int i = 0; i < edgeCount; ++i) {
+            int edgeId = (int) keys[i];
+            int sourceNodeId = sourceNodeIds[edgeId];
+            int targetNodeId = graph.edgeTargetNodeId(edgeId);
+            childBoxes[4 * i] = Math.min(graph.nodeE(sourceNodeId), graph.nodeE(targetNodeId)) - SwissBounds.MIN_E;
+            childBoxes[4 * i + 1] = Math.min(graph.nodeN(sourceNodeId), graph.nodeN(targetNodeId)) - SwissBounds.MIN_N;
+            childBoxes[4 * i + 2] = Math.max(graph.nodeE(sourceNodeId), graph.nodeE(targetNodeId)) - SwissBounds.MIN_E;
+            childBoxes[4 * i + 3] = Math.max(graph.nodeN(sourceNodeId), graph.nodeN(targetNodeId)) - SwissBounds.MIN_N;
+        }
+        FloatBuffer boxes = buffer.slice(HEADER_BYTES + edgeCount * ENTRY_INTS * Integer.BYTES,
+                boxCount * 4 * Float.BYTES).asFloatBuffer();
+        int childCount = edgeCount;
+        for (int level = 0; level < levelStarts.length - 1; ++level) {
+            int parentCount = levelStarts[level + 1] - levelStarts[level];
+            double[] parentBoxes = new double[4 * parentCount];
+            for (int parent = 0; parent < parentCount; ++parent) {
+                double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                        Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+                for (int child = parent * NODE_SIZE; child < Math.min((parent + 1) * NODE_SIZE, childCount); ++child) {
+                    box[0] = Math.min(box[0], childBoxes[4 * child]);
+                    box[1] = Math.min(box[1], childBoxes[4 * child + 1]);
+                    box[2] = Math.max(box[2], childBoxes[4 * child + 2]);
+                    box[3] = Math.max(box[3], childBoxes[4 * child + 3]);
+                }
+                System.arraycopy(box, 0, parentBoxes, 4 * parent, 4);
+                int b = 4 * (levelStarts[level] + parent);
+                boxes.put(b, roundedDown(box[0]));
+                boxes.put(b + 1, roundedDown(box[1]));
+                boxes.put(b + 2, roundedUp(box[2]));
+                boxes.put(b + 3, roundedUp(box[3]));
+            }
+            childBoxes = parentBoxes;
+            childCount = parentCount;
+        }
+        return new GraphEdgeIndex(buffer);
+    }
+
+    /**
+     * Returns the index stored in the given buffer (see the description of the class), if it was built for the given
+     * graph and written in the current format.
+     *
+     * @param buffer buffer with the content of the file of the index
+     * @param graph  the Graph of the index
+     * @return GraphEdgeIndex instance, or null if the stored index doesn't match the graph or the format
+     */
+
+    public static GraphEdgeIndex of(ByteBuffer buffer, Graph graph) {
+        if (!hasValidHeader(buffer)
+                || buffer.getInt(OFFSET_EDGE_COUNT) != graph.edgeCount()
+                || fingerprint(buffer) != graph.fingerprint()) {
+            return null;
+        }
+        return new GraphEdgeIndex(buffer);
+    }
+
+    /**
+     * Loads the index stored in the basePath folder (see writeTo), if it was built for the given graph and written in
+     * the current format.
+     *
+     * @param basePath path where data files are stored
+     * @param graph    the Graph of the index
+     * @return GraphEdgeIndex loaded from the file, or null if the stored index doesn't match the graph or the format
+     * @throws IOException if something went wrong while loading data from the file
+     */
+
+    public static GraphEdgeIndex loadFrom(Path basePath, Graph graph) throws IOException {
+        return of(DataFiles.load(basePath.resolve(FILE_NAME)), graph);
+    }
+
+    /**
+     * Builds the index of the graph whose directory is given as argument, and writes it next to its files.
+     *
+     * @param args directory of the graph
+     * @throws IOException if something went wrong while loading the graph or writing the index
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: GraphEdgeIndex <graph directory>");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        build(Graph.loadFrom(basePath)).writeTo(basePath);
+    }
+
+    /**
+     * Writes the index in the basePath folder, next to the files of the graph, preceded by the header identifying the
+     * graph it was built for.
+     *
+     * @param basePath path where data files are stored
+     * @throws IOException if something went wrong while writing the file
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(byteCount(edgeCount));
+        putHeader(bytes, edgeCount, fingerprint);
+        bytes.position(HEADER_BYTES);
+        bytes.asIntBuffer().put(entries.duplicate().clear());
+        bytes.position(HEADER_BYTES + entries.capacity() * Integer.BYTES);
+        bytes.asFloatBuffer().put(boxes.duplicate().clear());
+        bytes.clear();
+        DataFiles.write(basePath.resolve(FILE_NAME), bytes);
+    }
+
+    /**
+     * Returns the number of indexed edges.
+     *
+     * @return int number of edges
+     */
+
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Returns the point of the edges of the graph closest to the point of coordinates (e, n), at the given maximum
+     * distance (in meters), or null if there is none. If several edges are equally close, the one of smallest
+     * identity is chosen. The position of the point along its edge is proportional to its position along the
+     * segment between the nodes of the edge.
+     *
+     * @param graph          the Graph of the index
+     * @param e              E coordinate of the point
+     * @param n              N coordinate of the point
+     * @param searchDistance maximum distance to search around the point
+     * @return EdgePoint the closest point of an edge, null if no edge is closer than searchDistance
+     * @throws IllegalArgumentException if the graph doesn't have as many edges as the index
+     */
+
+    public EdgePoint closestEdgePoint(Graph graph, double e, double n, double searchDistance) {
+        Preconditions.checkArgument(graph.edgeCount() == edgeCount);
+        if (edgeCount == 0 || !(searchDistance > 0)) {
+            return null;
+        }
+        //squared distance, entry and fraction of the segment of the closest edge point found so far
+        double[] best = {searchDistance * searchDistance, -1, 0};
+        search(graph, levelStarts.length - 1, 0, e, n, best);
+        if (best[1] < 0) {
+            return null;
+        }
+
+        int entry = (int) best[1];
+        int edgeId = entries.get(ENTRY_INTS * entry + OFFSET_EDGE_ID);
+        int sourceNodeId = entries.get(ENTRY_INTS * entry + OFFSET_SOURCE_NODE_ID);
+        int targetNodeId = graph.edgeTargetNodeId(edgeId);
+        double fraction = best[2];
+        PointCh point = new PointCh(
+                Math2.interpolate(graph.nodeE(sourceNodeId), graph.nodeE(targetNodeId), fraction),
+                Math2.interpolate(graph.nodeN(sourceNodeId), graph.nodeN(targetNodeId), fraction));
+        return new EdgePoint(edgeId, sourceNodeId, fraction * graph.edgeLength(edgeId), point,
+                Math.sqrt(best[0]));
+    }
+
+    //visits the children of the index-th box of the level (the level 0 being the edges, the root being at the level
+    //levelStarts.length - 1), skipping those farther than the closest edge point found so far
+    private void search(Graph graph, int level, int index, double e, double n, double[] best) {
+        if (level == 0) {
+            checkEdge(graph, index, e, n, best);
+            return;
+        }
+        int childLevelSize = level == 1 ? edgeCount : levelStarts[level - 1] - levelStarts[level - 2];
+        for (int child = index * NODE_SIZE; child < Math.min((index + 1) * NODE_SIZE, childLevelSize); ++child) {
+            if (level == 1 || boxSquaredDistanceTo(levelStarts[level - 2] + child, e, n) <= best[0]) {
+                search(graph, level - 1, child, e, n, best);
+            }
+        }
+    }
+
+    //updates best if the edge of the entry is closer to the point than the closest edge point found so far
+    private void checkEdge(Graph graph, int entry, double e, double n, double[] best) {
+        int edgeId = entries.get(ENTRY_INTS * entry + OFFSET_EDGE_ID);
+        int sourceNodeId = entries.get(ENTRY_INTS * entry + OFFSET_SOURCE_NODE_ID);
+        int targetNodeId = graph.edgeTargetNodeId(edgeId);
+        double sourceE = graph.nodeE(sourceNodeId);
+        double sourceN = graph.nodeN(sourceNodeId);
+        double targetE = graph.nodeE(targetNodeId);
+        double targetN = graph.nodeN(targetNodeId);
+
+        double segmentLength = Math2.norm(targetE - sourceE, targetN - sourceN);
+        double fraction = segmentLength == 0
+                ? 0
+                : Math2.clamp(0, Math2.projectionLength(sourceE, sourceN, targetE, targetN, e, n) / segmentLength, 1);
+        double dE = Math2.interpolate(sourceE, targetE, fraction) - e;
+        double dN = Math2.interpolate(sourceN, targetN, fraction) - n;
+        double squaredDistance = dE * dE + dN * dN;
+        boolean isBest = best[1] < 0
+                ? squaredDistance < best[0]
+                : squaredDistance < best[0] || (squaredDistance == best[0]
+                        && edgeId < entries.get(ENTRY_INTS * (int) best[1] + OFFSET_EDGE_ID));
+        if (isBest) {
+            best[0] = squaredDistance;
+            best[1] = entry;
+            best[2] = fraction;
+        }
+    }
+
+    //lower bound of the squared distance between the point and the edges of the box
+    private double boxSquaredDistanceTo(int box, double e, double n) {
+        double localE = e - SwissBounds.MIN_E;
+        double localN = n - SwissBounds.MIN_N;
+        double dE = Math.max(Math.max(boxes.get(4 * box) - localE, localE - boxes.get(4 * box + 2)), 0);
+        double dN = Math.max(Math.max(boxes.get(4 * box + 1) - localN, localN - boxes.get(4 * box + 3)), 0);
+        double distance = Math.max(Math.sqrt(dE * dE + dN * dN) - MARGIN, 0);
+        return distance * distance;
+    }
+
+    //check if the buffer starts with a header of the current format, followed by as many bytes as it announces
+    private static boolean hasValidHeader(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(OFFSET_VERSION) != FORMAT_VERSION) {
+            return false;
+        }
+        int edgeCount = buffer.getInt(OFFSET_EDGE_COUNT);
+        return edgeCount >= 0 && buffer.capacity() == byteCount(edgeCount);
+    }
+
+    //fingerprint of the graph stored in the header of the buffer
+    private static long fingerprint(ByteBuffer buffer) {
+        return (long) buffer.getInt(OFFSET_FINGERPRINT) << Integer.SIZE
+                | Integer.toUnsignedLong(buffer.getInt(OFFSET_FINGERPRINT + Integer.BYTES));
+    }
+
+    private static void putHeader(ByteBuffer buffer, int edgeCount, long fingerprint) {
+        buffer.putInt(OFFSET_VERSION, FORMAT_VERSION)
+                .putInt(OFFSET_EDGE_COUNT, edgeCount)
+                .putInt(OFFSET_FINGERPRINT, (int) (fingerprint >>> Integer.SIZE))
+                .putInt(OFFSET_FINGERPRINT + Integer.BYTES, (int) fingerprint);
+    }
+
+    //size in bytes of the file of an index of the given number of edges
+    private static int byteCount(int edgeCount) {
+        int[] levelStarts = levelStarts(edgeCount);
+        return HEADER_BYTES + edgeCount * ENTRY_INTS * Integer.BYTES
+                + levelStarts[levelStarts.length - 1] * 4 * Float.BYTES;
+    }
+
+    //index of the first box of each level above the edges in the buffer of the boxes, followed by their total number
+    private static int[] levelStarts(int edgeCount) {
+        int levelCount = 0;
+        for (int count = edgeCount; count > 1 || levelCount == 0; count = ceilDivByNodeSize(count)) {
+            ++levelCount;
+        }
+        int[] levelStarts = new int[levelCount + 1];
+        int count = edgeCount;
+        for (int level = 0; level < levelCount; ++level) {
+            count = ceilDivByNodeSize(count);
+            levelStarts[level + 1] = levelStarts[level] + count;
+        }
+        return levelStarts;
+    }
+
+    private static int ceilDivByNodeSize(int count) {
+        return (count + NODE_SIZE - 1) / NODE_SIZE;
+    }
+
+    //Hilbert value of the cell (x, y) of a HILBERT_SIZE x HILBERT_SIZE grid
+    private static long hilbertValue(int x, int y) {
+        long value = 0;
+        for (int s = HILBERT_SIZE / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            value += (long) s * s * ((3 * rx) ^ ry);
+            //rotation of the quadrant, so that the curve is continuous
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = HILBERT_SIZE - 1 - x;
+                    y = HILBERT_SIZE - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return value;
+    }
+
+    private static float roundedDown(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
+
+    private static float roundedUp(double value) {
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+}
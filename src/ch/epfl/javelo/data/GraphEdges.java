@@ -5,6 +5,8 @@ import ch.epfl.javelo.Q28_4;
 import ch.epfl.javelo.Bits;
 
 import java.nio.*;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * GraphEdges class
@@ -54,6 +56,17 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
     private final static int PROFILE_COMPRESSED_Q0_4 = 3;
 
 
+    /**
+     * Returns the number of edges, each of them using BBUFFER_EDGE_ENTRY_SIZE bytes in the edgesBuffer.
+     *
+     * @return int number of edges
+     */
+
+    public int count() {
+        return edgesBuffer.capacity() / BBUFFER_EDGE_ENTRY_SIZE;
+    }
+
+
     /**
      * Check if the edge of identity 'edgeId' goes in the opposite direction of the OSM path from which it comes
      * index parameter of getInt() is a byte (ByteBuffer).
@@ -120,13 +133,30 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
     }
 
     /**
-     * Returns the profile sample of the edge of identity 'edgeId'
+     * Returns the profile sample of the edge of identity 'edgeId', decoded by the default implementation (see
+     * ProfileDecoder.defaultDecoder).
      *
      * @param edgeId identity of the edge
      * @return float[] the profileSample of the edge of identity 'edgeId', empty float[] if profileType == 0.
      */
 
     public float[] profileSamples(int edgeId) {
+        return profileSamples(edgeId, ProfileDecoder.defaultDecoder());
+    }
+
+    /**
+     * Returns the profile sample of the edge of identity 'edgeId', decoded by the given implementation, all of them
+     * returning the same samples.
+     *
+     * @param edgeId  identity of the edge
+     * @param decoder the implementation decoding the samples
+     * @return float[] the profileSample of the edge of identity 'edgeId', empty float[] if profileType == 0.
+     */
+
+    public float[] profileSamples(int edgeId, ProfileDecoder decoder) {
+        if (decoder == ProfileDecoder.BULK) {
+            return bulkProfileSamples(edgeId);
+        }
         int profileType = Bits.extractUnsigned(profileIds.get(edgeId), OFFSET_TYPE_PROFILE, LENGTH_TYPE_PROFILE);
         int indexFirstSample = Bits.extractUnsigned(profileIds.get(edgeId), OFFSET_IDENTITY_FIRST_SAMPLE, LENGTH_IDENTITY_FIRST_SAMPLE);
         int samplesNumber = 1 + Math2.ceilDiv(Short.toUnsignedInt(edgesBuffer.getShort((edgeId * BBUFFER_EDGE_ENTRY_SIZE) + OFFSET_LENGTH)), Q28_4.ofInt(2));
@@ -179,6 +209,210 @@ public record GraphEdges(ByteBuffer edgesBuffer, IntBuffer profileIds, ShortBuff
         return data;
     }
 
+    //profileSamples decoded a value of the elevations buffer at a time, the samples being written directly in the
+    //direction of the edge
+    private float[] bulkProfileSamples(int edgeId) {
+        int profileId = profileIds.get(edgeId);
+        int profileType = Bits.extractUnsigned(profileId, OFFSET_TYPE_PROFILE, LENGTH_TYPE_PROFILE);
+        if (profileType == PROFILE_INEXISTENT) {
+            return new float[]{};
+        }
+        int indexFirstSample = Bits.extractUnsigned(profileId, OFFSET_IDENTITY_FIRST_SAMPLE, LENGTH_IDENTITY_FIRST_SAMPLE);
+        int samplesNumber = 1 + Math2.ceilDiv(Short.toUnsignedInt(edgesBuffer.getShort((edgeId * BBUFFER_EDGE_ENTRY_SIZE) + OFFSET_LENGTH)), Q28_4.ofInt(2));
+        float[] data = new float[samplesNumber];
+        //the i-th sample of the OSM track is written at index + i * step
+        int index = isInverted(edgeId) ? samplesNumber - 1 : 0;
+        int step = isInverted(edgeId) ? -1 : 1;
+
+        int sample = Short.toUnsignedInt(elevations.get(indexFirstSample));
+        data[index] = Q28_4.asFloat(sample);
+        if (profileType == PROFILE_NOT_COMPRESSED) {
+            for (int i = 1; i < samplesNumber; ++i) {
+                data[index + i * step] = Q28_4.asFloat(Short.toUnsignedInt(elevations.get(indexFirstSample + i)));
+            }
+            return data;
+        }
+
+        int bits = profileType == PROFILE_COMPRESSED_Q4_4 ? 8 : 4;
+        int perShort = Short.SIZE / bits;
+        int i = 1;
+        for (int word = indexFirstSample + 1; i < samplesNumber; ++word) {
+            //the value is placed in the 16 most significant bits of an int, so that each difference can be moved to
+            //the most significant bits by a left shift, then sign-extended by an arithmetic right shift
+            int value = elevations.get(word) << Short.SIZE;
+            for (int j = 0; j < perShort && i < samplesNumber; ++j, ++i) {
+                sample += (value << (j * bits)) >> (Integer.SIZE - bits);
+                data[index + i * step] = Q28_4.asFloat(sample);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns the elevation at the given position along the edge of identity 'edgeId', equal to the value at that
+     * position of the function Functions.sampled(profileSamples(edgeId), length(edgeId)), but read directly from the
+     * elevations buffer without allocating any array: only the samples preceding the position (in the order of the
+     * OSM track) are read, and the compressed differences are summed as Q28.4 integers, which is exact.
+     * Unlike Functions.sampled, an edge of length 0 with a profile doesn't throw, its only sample being returned.
+     *
+     * @param edgeId   identity of the edge
+     * @param position position along the edge, in meters
+     * @return double elevation at the position, Double.NaN if the edge doesn't have a profile
+     */
+
+    public double elevationAt(int edgeId, double position) {
+        int profileId = profileIds.get(edgeId);
+        int profileType = Bits.extractUnsigned(profileId, OFFSET_TYPE_PROFILE, LENGTH_TYPE_PROFILE);
+        if (profileType == PROFILE_INEXISTENT) {
+            return Double.NaN;
+        }
+        int indexFirstSample = Bits.extractUnsigned(profileId, OFFSET_IDENTITY_FIRST_SAMPLE, LENGTH_IDENTITY_FIRST_SAMPLE);
+        int lengthQ28_4 = Short.toUnsignedInt(edgesBuffer.getShort((edgeId * BBUFFER_EDGE_ENTRY_SIZE) + OFFSET_LENGTH));
+        int samplesNumber = 1 + Math2.ceilDiv(lengthQ28_4, Q28_4.ofInt(2));
+        boolean inverted = isInverted(edgeId);
+
+        //same computations as Functions.sampled, with indices in the direction of the edge
+        double xMax = Q28_4.asDouble(lengthQ28_4);
+        int lowerBound;
+        int upperBound;
+        double fraction;
+        if (position < 0 || samplesNumber == 1) {
+            lowerBound = upperBound = 0;
+            fraction = 0;
+        } else if (position >= xMax) {
+            lowerBound = upperBound = samplesNumber - 1;
+            fraction = 0;
+        } else {
+            double xOnUnitSteps = position / (xMax / (samplesNumber - 1));
+            lowerBound = (int) Math.floor(xOnUnitSteps);
+            upperBound = (int) Math.ceil(xOnUnitSteps);
+            fraction = xOnUnitSteps - Math.floor(xOnUnitSteps);
+        }
+
+        //indices in the order of the OSM track, the smallest one being decoded first
+        int lowerIndex = inverted ? samplesNumber - 1 - lowerBound : lowerBound;
+        int upperIndex = inverted ? samplesNumber - 1 - upperBound : upperBound;
+        int firstIndex = Math.min(lowerIndex, upperIndex);
+        int firstSample = sampleQ28_4(profileType, indexFirstSample, firstIndex);
+        int secondSample = firstIndex == Math.max(lowerIndex, upperIndex)
+                ? firstSample
+                : nextSampleQ28_4(profileType, indexFirstSample, firstIndex, firstSample);
+
+        float lowerSample = Q28_4.asFloat(lowerIndex == firstIndex ? firstSample : secondSample);
+        float upperSample = Q28_4.asFloat(upperIndex == firstIndex ? firstSample : secondSample);
+        if (lowerBound == upperBound) {
+            return lowerSample;
+        }
+        return Math2.interpolate(lowerSample, upperSample, fraction);
+    }
+
+    /**
+     * Writes in the destination array the elevations along the edge of identity 'edgeId' at the positions
+     * startPosition + i * stepLength, for i from 0 to count - 1, each one being equal to elevationAt(edgeId, position).
+     * The profile is decoded at most once: consecutive positions only read the samples between them.
+     *
+     * @param edgeId        identity of the edge
+     * @param startPosition first position along the edge, in meters
+     * @param stepLength    distance between two consecutive positions, in meters
+     * @param destination   array in which the elevations are written
+     * @param offset        index in destination of the first elevation
+     * @param count         number of elevations
+     * @throws IndexOutOfBoundsException if the destination array is too small
+     */
+
+    public void elevationsAt(int edgeId, double startPosition, double stepLength, double[] destination, int offset,
+                             int count) {
+        Objects.checkFromIndexSize(offset, count, destination.length);
+        int profileId = profileIds.get(edgeId);
+        int profileType = Bits.extractUnsigned(profileId, OFFSET_TYPE_PROFILE, LENGTH_TYPE_PROFILE);
+        if (profileType == PROFILE_INEXISTENT) {
+            Arrays.fill(destination, offset, offset + count, Double.NaN);
+            return;
+        }
+        int indexFirstSample = Bits.extractUnsigned(profileId, OFFSET_IDENTITY_FIRST_SAMPLE, LENGTH_IDENTITY_FIRST_SAMPLE);
+        int lengthQ28_4 = Short.toUnsignedInt(edgesBuffer.getShort((edgeId * BBUFFER_EDGE_ENTRY_SIZE) + OFFSET_LENGTH));
+        int samplesNumber = 1 + Math2.ceilDiv(lengthQ28_4, Q28_4.ofInt(2));
+        boolean inverted = isInverted(edgeId);
+        double xMax = Q28_4.asDouble(lengthQ28_4);
+
+        //sample of the OSM track currently decoded, moved forward or backward to the samples needed
+        int cursorIndex = 0;
+        int cursorSample = sampleQ28_4(profileType, indexFirstSample, 0);
+
+        for (int i = 0; i < count; ++i) {
+            double position = startPosition + i * stepLength;
+            int lowerBound;
+            int upperBound;
+            double fraction;
+            if (position < 0 || samplesNumber == 1) {
+                lowerBound = upperBound = 0;
+                fraction = 0;
+            } else if (position >= xMax) {
+                lowerBound = upperBound = samplesNumber - 1;
+                fraction = 0;
+            } else {
+                double xOnUnitSteps = position / (xMax / (samplesNumber - 1));
+                lowerBound = (int) Math.floor(xOnUnitSteps);
+                upperBound = (int) Math.ceil(xOnUnitSteps);
+                fraction = xOnUnitSteps - Math.floor(xOnUnitSteps);
+            }
+
+            int lowerIndex = inverted ? samplesNumber - 1 - lowerBound : lowerBound;
+            int upperIndex = inverted ? samplesNumber - 1 - upperBound : upperBound;
+            int firstIndex = Math.min(lowerIndex, upperIndex);
+            if (profileType == PROFILE_NOT_COMPRESSED) {
+                cursorIndex = firstIndex;
+                cursorSample = sampleQ28_4(profileType, indexFirstSample, firstIndex);
+            } else {
+                int bits = profileType == PROFILE_COMPRESSED_Q4_4 ? 8 : 4;
+                while (cursorIndex < firstIndex) {
+                    cursorSample += difference(indexFirstSample, bits, ++cursorIndex);
+                }
+                while (cursorIndex > firstIndex) {
+                    cursorSample -= difference(indexFirstSample, bits, cursorIndex--);
+                }
+            }
+            int secondSample = firstIndex == Math.max(lowerIndex, upperIndex)
+                    ? cursorSample
+                    : nextSampleQ28_4(profileType, indexFirstSample, firstIndex, cursorSample);
+
+            float lowerSample = Q28_4.asFloat(lowerIndex == firstIndex ? cursorSample : secondSample);
+            float upperSample = Q28_4.asFloat(upperIndex == firstIndex ? cursorSample : secondSample);
+            destination[offset + i] = lowerBound == upperBound
+                    ? lowerSample
+                    : Math2.interpolate(lowerSample, upperSample, fraction);
+        }
+    }
+
+    //Q28.4 value of the index-th sample of a profile, in the order of the OSM track
+    private int sampleQ28_4(int profileType, int indexFirstSample, int index) {
+        if (profileType == PROFILE_NOT_COMPRESSED) {
+            return Short.toUnsignedInt(elevations.get(indexFirstSample + index));
+        }
+        int bits = profileType == PROFILE_COMPRESSED_Q4_4 ? 8 : 4;
+        int sample = Short.toUnsignedInt(elevations.get(indexFirstSample));
+        for (int i = 1; i <= index; ++i) {
+            sample += difference(indexFirstSample, bits, i);
+        }
+        return sample;
+    }
+
+    //Q28.4 value of the sample following the index-th one, whose value is given
+    private int nextSampleQ28_4(int profileType, int indexFirstSample, int index, int sample) {
+        if (profileType == PROFILE_NOT_COMPRESSED) {
+            return Short.toUnsignedInt(elevations.get(indexFirstSample + index + 1));
+        }
+        return sample + difference(indexFirstSample, profileType == PROFILE_COMPRESSED_Q4_4 ? 8 : 4, index + 1);
+    }
+
+    //Q28.4 difference between the index-th sample of a compressed profile and the previous one (index >= 1), the
+    //differences being stored from the most significant bits of the values following the first sample
+    private int difference(int indexFirstSample, int bits, int index) {
+        int perShort = Short.SIZE / bits;
+        short value = elevations.get(indexFirstSample + 1 + (index - 1) / perShort);
+        return Bits.extractSigned(value, Short.SIZE - bits * (1 + (index - 1) % perShort), bits);
+    }
+
     //inverse an array
     private void inverseArray(float[] data) {
         int i = 0;
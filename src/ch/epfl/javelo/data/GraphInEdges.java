@@ -0,0 +1,150 @@
+package ch.epfl.javelo.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+/**
+ * GraphInEdges record
+ * Represents the edges of the JaVelo graph grouped by destination node (the edges coming into each node), which are
+ * needed by searches going backward in the graph.
+ * The buffer starts with nodeCount + 1 offsets: the offset of a node is the index in the buffer of its first incoming
+ * edge, the last one being the size of the buffer. The incoming edges follow, two int values each: the identity of
+ * the edge and the identity of its origin node.
+ *
+ * @param buffer buffer containing the offsets of the nodes followed by their incoming edges
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public record GraphInEdges(IntBuffer buffer) {
+
+    //name of the file containing the incoming edges, next to the other files of the graph
+    static final String FILE_NAME = "in_edges.bin";
+
+    private static final int OFFSET_EDGE_ID = 0;
+    private static final int OFFSET_SOURCE_NODE_ID = OFFSET_EDGE_ID + 1;
+    private static final int IN_EDGE_INTS = OFFSET_SOURCE_NODE_ID + 1;
+
+    /**
+     * Derives the incoming edges of every node from the nodes and edges of the graph.
+     *
+     * @param nodes GraphNodes, nodes of the graph
+     * @param edges GraphEdges, edges of the graph
+     * @return GraphInEdges of the graph
+     */
+
+    public static GraphInEdges of(GraphNodes nodes, GraphEdges edges) {
+        int nodeCount = nodes.count();
+        int[] inDegrees = new int[nodeCount];
+        int edgeCount = 0;
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            for (int i = 0; i < nodes.outDegree(nodeId); ++i) {
+                ++inDegrees[edges.targetNodeId(nodes.edgeId(nodeId, i))];
+                ++edgeCount;
+            }
+        }
+
+        IntBuffer buffer = IntBuffer.allocate(nodeCount + 1 + IN_EDGE_INTS * edgeCount);
+        //next free index of each node, initialized to its offset
+        int[] fill = new int[nodeCount];
+        int offset = nodeCount + 1;
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            buffer.put(nodeId, offset);
+            fill[nodeId] = offset;
+            offset += IN_EDGE_INTS * inDegrees[nodeId];
+        }
+        buffer.put(nodeCount, offset);
+
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            for (int i = 0; i < nodes.outDegree(nodeId); ++i) {
+                int edgeId = nodes.edgeId(nodeId, i);
+                int target = edges.targetNodeId(edgeId);
+                buffer.put(fill[target] + OFFSET_EDGE_ID, edgeId);
+                buffer.put(fill[target] + OFFSET_SOURCE_NODE_ID, nodeId);
+                fill[target] += IN_EDGE_INTS;
+            }
+        }
+        return new GraphInEdges(buffer);
+    }
+
+    /**
+     * Returns the number of nodes, the first offset being the index following the offsets.
+     *
+     * @return int number of nodes
+     */
+
+    public int count() {
+        return buffer.get(0) - 1;
+    }
+
+    /**
+     * Returns the number of edges coming into the node of identity nodeId.
+     *
+     * @param nodeId starts at 0
+     * @return int number of incoming edges of the node
+     */
+
+    public int inDegree(int nodeId) {
+        return (buffer.get(nodeId + 1) - buffer.get(nodeId)) / IN_EDGE_INTS;
+    }
+
+    /**
+     * Returns the identity of the edgeIndex-th edge coming into the node of identity nodeId.
+     *
+     * @param nodeId    starts at 0
+     * @param edgeIndex starts at 0
+     * @return int identity of the edge
+     */
+
+    public int edgeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+        return buffer.get(buffer.get(nodeId) + IN_EDGE_INTS * edgeIndex + OFFSET_EDGE_ID);
+    }
+
+    /**
+     * Returns the identity of the origin node of the edgeIndex-th edge coming into the node of identity nodeId.
+     *
+     * @param nodeId    starts at 0
+     * @param edgeIndex starts at 0
+     * @return int identity of the origin node of the edge
+     */
+
+    public int sourceNodeId(int nodeId, int edgeIndex) {
+        assert 0 <= edgeIndex && edgeIndex < inDegree(nodeId);
+        return buffer.get(buffer.get(nodeId) + IN_EDGE_INTS * edgeIndex + OFFSET_SOURCE_NODE_ID);
+    }
+
+    /**
+     * Writes the incoming edges in the file in_edges.bin of the basePath folder, where Graph.loadFrom finds them
+     * instead of deriving them again.
+     *
+     * @param basePath path where data files are stored
+     * @throws IOException if something went wrong while writing the file
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(buffer.capacity() * Integer.BYTES);
+        bytes.asIntBuffer().put(buffer.duplicate().clear());
+        DataFiles.write(basePath.resolve(FILE_NAME), bytes);
+    }
+
+    /**
+     * Derives the incoming edges of the graph stored in the folder given as argument, and writes them in the same
+     * folder (see writeTo).
+     *
+     * @param args folder of the graph
+     * @throws IOException if something went wrong while reading the graph or writing the file
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: GraphInEdges <graph directory>");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        Graph.loadFrom(basePath).inEdges().writeTo(basePath);
+    }
+}
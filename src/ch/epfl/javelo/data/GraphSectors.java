@@ -47,19 +47,13 @@ public record GraphSectors(ByteBuffer buffer) {
 
         ArrayList<Sector> result = new ArrayList<>();
 
-        int bottomEIndex = Math2.clamp(0,
-                (int) (((center.e() - distance) - SwissBounds.MIN_E) / (SwissBounds.WIDTH / SECTORS_ON_AXIS)), 127);
-
-        int bottomNIndex = Math2.clamp(0,
-                (int) (((center.n() - distance) - SwissBounds.MIN_N) / (SwissBounds.HEIGHT / SECTORS_ON_AXIS)), 127);
+        int bottomEIndex = column(center.e() - distance);
+        int bottomNIndex = row(center.n() - distance);
         // We have the (bottomEIndex, bottomNIndex) sector,
         // that corresponds to the sector included in the bottom left of the square.
 
-        int topEIndex = Math2.clamp(0,
-                (int) (((center.e() + distance) - SwissBounds.MIN_E) / (SwissBounds.WIDTH / SECTORS_ON_AXIS)), 127);
-
-        int topNIndex = Math2.clamp(0,
-                (int) (((center.n() + distance) - SwissBounds.MIN_N) / (SwissBounds.HEIGHT / SECTORS_ON_AXIS)), 127);
+        int topEIndex = column(center.e() + distance);
+        int topNIndex = row(center.n() + distance);
         // We have the (topEIndex, topNIndex) sector, that corresponds to the sector included in the top right of the square.
 
 
@@ -86,4 +80,75 @@ public record GraphSectors(ByteBuffer buffer) {
 
         return result;
     }
+
+    /**
+     * Returns the column (index along the E axis, between 0 and 127) of the sector containing the given E coordinate,
+     * the coordinates outside Switzerland being given the closest column. With row, startNodeId and endNodeId, it
+     * allows visiting the sectors of an area without allocating any Sector.
+     *
+     * @param e E coordinate
+     * @return int column of the sector
+     */
+
+    public int column(double e) {
+        return Math2.clamp(0, (int) ((e - SwissBounds.MIN_E) / (SwissBounds.WIDTH / SECTORS_ON_AXIS)), 127);
+    }
+
+    /**
+     * Returns the row (index along the N axis, between 0 and 127) of the sector containing the given N coordinate,
+     * the coordinates outside Switzerland being given the closest row.
+     *
+     * @param n N coordinate
+     * @return int row of the sector
+     */
+
+    public int row(double n) {
+        return Math2.clamp(0, (int) ((n - SwissBounds.MIN_N) / (SwissBounds.HEIGHT / SECTORS_ON_AXIS)), 127);
+    }
+
+    /**
+     * Returns the identity of the first node of the sector at the given row and column.
+     *
+     * @param row    row of the sector, between 0 and 127
+     * @param column column of the sector, between 0 and 127
+     * @return int identity of the first node of the sector
+     */
+
+    public int startNodeId(int row, int column) {
+        return buffer.getInt((SECTORS_ON_AXIS * row + column) * SECTOR_BYTES + OFFSET_ID);
+    }
+
+    /**
+     * Returns the identity of the last node of the sector at the given row and column + 1.
+     *
+     * @param row    row of the sector, between 0 and 127
+     * @param column column of the sector, between 0 and 127
+     * @return int identity of the last node of the sector + 1
+     */
+
+    public int endNodeId(int row, int column) {
+        int indexBytes = (SECTORS_ON_AXIS * row + column) * SECTOR_BYTES;
+        return buffer.getInt(indexBytes + OFFSET_ID) + Short.toUnsignedInt(buffer.getShort(indexBytes + OFFSET_NB));
+    }
+
+    /**
+     * Returns the squared distance between a point and the rectangle of the sector at the given row and column, 0 if
+     * the point is inside. No node of the sector is closer to the point.
+     *
+     * @param row    row of the sector, between 0 and 127
+     * @param column column of the sector, between 0 and 127
+     * @param e      E coordinate of the point
+     * @param n      N coordinate of the point
+     * @return double squared distance, in squared meters
+     */
+
+    public double squaredDistanceTo(int row, int column, double e, double n) {
+        double sectorWidth = SwissBounds.WIDTH / SECTORS_ON_AXIS;
+        double sectorHeight = SwissBounds.HEIGHT / SECTORS_ON_AXIS;
+        double minE = SwissBounds.MIN_E + column * sectorWidth;
+        double minN = SwissBounds.MIN_N + row * sectorHeight;
+        double dE = Math.max(Math.max(minE - e, e - (minE + sectorWidth)), 0);
+        double dN = Math.max(Math.max(minN - n, n - (minN + sectorHeight)), 0);
+        return dE * dE + dN * dN;
+    }
 }
@@ -0,0 +1,410 @@
+package ch.epfl.javelo.data;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.SwissBounds;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * NodeQuadtree class
+ * An adaptive index of the nodes of the graph, used by Graph.nodeClosestTo instead of the fixed 128 x 128 grid of
+ * sectors when it is available. Starting from the rectangle of SwissBounds, every cell holding more than
+ * MAX_LEAF_NODES nodes is split in four equal quadrants, so that dense cities are covered by small cells and empty
+ * mountains by a few large ones, and a query reads about the same number of nodes everywhere. Each cell keeps the
+ * bounding box of its nodes, and the search visits the closest cells first, skipping those farther than the closest
+ * node found so far.
+ * The quadtree is stored in the file FILE_NAME next to the files of the graph, built once by the main method:
+ * - the version of the format, the number of nodes and the number of cells (3 ints),
+ * - the fingerprint of the graph the quadtree was built for (see Graph.fingerprint), as 2 ints (its high then low
+ * bits), so that a quadtree of another graph is never used,
+ * - the identities of the nodes, those of each cell being contiguous and sorted (1 int each),
+ * - the cells, the root first and the children of each cell contiguous: the range of its nodes, the index of its
+ * first child and its number of children, 0 for a leaf (4 ints), then the bounding box of its nodes (minE, minN,
+ * maxE, maxN as floats relative to SwissBounds.MIN_E and SwissBounds.MIN_N, rounded outwards).
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class NodeQuadtree {
+
+    /**
+     * Name of the file of the quadtree, next to the other files of the graph.
+     */
+
+    public static final String FILE_NAME = "node_quadtree.bin";
+
+    /**
+     * Maximal number of nodes of a leaf, unless the cell can't be split anymore (see MAX_DEPTH).
+     */
+
+    public static final int MAX_LEAF_NODES = 64;
+
+    //maximal depth of the cells, the deepest ones being about 1 meter wide, so that identical nodes stop the split
+    private static final int MAX_DEPTH = 18;
+    //margin subtracted from the distances to the cells, so that the rounding errors of the distances to the nodes
+    //can't make them smaller than the distances to the cells
+    private static final double MARGIN = 1e-6;
+
+    //version of the format of the stored quadtree, to increment whenever it changes
+    private static final int FORMAT_VERSION = 1;
+
+    //Indices of the header fields, in ints. The fingerprint is stored as two ints, so that the byte order of a
+    //container can be changed int by int (see GraphContainer).
+    private static final int HEADER_VERSION = 0;
+    private static final int HEADER_NODE_COUNT = HEADER_VERSION + 1;
+    private static final int HEADER_CELL_COUNT = HEADER_NODE_COUNT + 1;
+    private static final int HEADER_FINGERPRINT = HEADER_CELL_COUNT + 1;
+    private static final int HEADER_INTS = HEADER_FINGERPRINT + 2;
+
+    private static final int CELL_INTS = 8;
+    private static final int OFFSET_START = 0;
+    private static final int OFFSET_END = 1;
+    private static final int OFFSET_FIRST_CHILD = 2;
+    private static final int OFFSET_CHILD_COUNT = 3;
+    private static final int OFFSET_BOX = 4;
+
+    private final int nodeCount;
+    private final int cellCount;
+    private final long fingerprint;
+    private final IntBuffer nodeIds;
+    //cells of CELL_INTS ints each, the floats of the boxes being read from their bits
+    private final IntBuffer cells;
+
+    /**
+     * NodeQuadtree constructor.
+     *
+     * @param buffer buffer with the content of the file of the quadtree (see the description of the class)
+     * @throws IllegalArgumentException if the buffer isn't in the current format, or if its size doesn't match its
+     *                                  numbers of nodes and cells
+     */
+
+    public NodeQuadtree(ByteBuffer buffer) {
+        Preconditions.checkArgument(hasValidHeader(buffer));
+        nodeCount = buffer.getInt(HEADER_NODE_COUNT * Integer.BYTES);
+        cellCount = buffer.getInt(HEADER_CELL_COUNT * Integer.BYTES);
+        fingerprint = fingerprint(buffer);
+        nodeIds = buffer.slice(HEADER_INTS * Integer.BYTES, nodeCount * Integer.BYTES).order(buffer.order())
+                .asIntBuffer();
+        cells = buffer.slice((HEADER_INTS + nodeCount) * Integer.BYTES, CELL_INTS * cellCount * Integer.BYTES)
+                .order(buffer.order()).asIntBuffer();
+    }
+
+    /**
+     * Builds the quadtree of the nodes of the graph.
+     *
+     * @param graph the Graph whose nodes are indexed
+     * @return NodeQuadtree of the nodes of the graph
+     */
+
+    public static NodeQuadtree build(Graph graph) {
+        int nodeCount = graph.nodeCount();
+        int[] nodeIds = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            nodeIds[nodeId] = nodeId;
+        }
+        //cells built so far, CELL_INTS ints each
+        int[][] cells = {new int[CELL_INTS * 64]};
+        int[] cellCount = {1};
+        buildCell(graph, nodeIds, 0, 0, nodeCount, SwissBounds.MIN_E, SwissBounds.MIN_N,
+                SwissBounds.MAX_E, SwissBounds.MAX_N, 0, cells, cellCount);
+
+        ByteBuffer buffer = ByteBuffer.allocate((HEADER_INTS + nodeCount + CELL_INTS * cellCount[0]) * Integer.BYTES);
+        IntBuffer ints = buffer.asIntBuffer();
+        putHeader(ints, nodeCount, cellCount[0], graph.fingerprint());
+        ints.put(nodeIds).put(cells[0], 0, CELL_INTS * cellCount[0]);
+        return new NodeQuadtree(buffer);
+    }
+
+    //fills the cell of the given index with the nodes between start and end of nodeIds, contained in the given
+    //rectangle, and splits it if it holds too many of them
+    private static void buildCell(Graph graph, int[] nodeIds, int cell, int start, int end, double minE, double minN,
+                                  double maxE, double maxN, int depth, int[][] cells, int[] cellCount) {
+        double[] box = {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+        for (int i = start; i < end; ++i) {
+            box[0] = Math.min(box[0], graph.nodeE(nodeIds[i]) - SwissBounds.MIN_E);
+            box[1] = Math.min(box[1], graph.nodeN(nodeIds[i]) - SwissBounds.MIN_N);
+            box[2] = Math.max(box[2], graph.nodeE(nodeIds[i]) - SwissBounds.MIN_E);
+            box[3] = Math.max(box[3], graph.nodeN(nodeIds[i]) - SwissBounds.MIN_N);
+        }
+        int c = CELL_INTS * cell;
+        cells[0][c + OFFSET_START] = start;
+        cells[0][c + OFFSET_END] = end;
+        cells[0][c + OFFSET_BOX] = Float.floatToIntBits(roundedDown(box[0]));
+        cells[0][c + OFFSET_BOX + 1] = Float.floatToIntBits(roundedDown(box[1]));
+        cells[0][c + OFFSET_BOX + 2] = Float.floatToIntBits(roundedUp(box[2]));
+        cells[0][c + OFFSET_BOX + 3] = Float.floatToIntBits(roundedUp(box[3]));
+
+        if (end - start <= MAX_LEAF_NODES || depth == MAX_DEPTH) {
+            //the nodes of a leaf are read in the order of their identities, which are ordered by sector
+            Arrays.sort(nodeIds, start, end);
+            return;
+        }
+
+        //the nodes are partitioned by quadrant (south-west, south-east, north-west, north-east)
+        double middleE = (minE + maxE) / 2;
+        double middleN = (minN + maxN) / 2;
+        int[] quadrantEnds = new int[4];
+        int[] sorted = new int[end - start];
+        int[] quadrants = new int[end - start];
+        for (int i = start; i < end; ++i) {
+            int quadrant = (graph.nodeE(nodeIds[i]) < middleE ? 0 : 1) + (graph.nodeN(nodeIds[i]) < middleN ? 0 : 2);
+            quadrants[i - start] = quadrant;
+            ++quadrantEnds[quadrant];
+        }
+        int[] quadrantStarts = new int[4];
+        for (int q = 1; q < 4; ++q) {
+            quadrantStarts[q] = quadrantStarts[q - 1] + quadrantEnds[q - 1];
+        }
+        int[] next = quadrantStarts.clone();
+        for (int i = start; i < end; ++i) {
+            sorted[next[quadrants[i - start]]++] = nodeIds[i];
+        }
+        System.arraycopy(sorted, 0, nodeIds, start, sorted.length);
+
+        //the non-empty quadrants are the children of the cell, stored contiguously
+        int childCount = 0;
+        for (int q = 0; q < 4; ++q) {
+            if (quadrantEnds[q] > 0) {
+                ++childCount;
+            }
+        }
+        int firstChild = cellCount[0];
+        cellCount[0] += childCount;
+        if (CELL_INTS * cellCount[0] > cells[0].length) {
+            cells[0] = Arrays.copyOf(cells[0], Math.max(2 * cells[0].length, CELL_INTS * cellCount[0]));
+        }
+        cells[0][c + OFFSET_FIRST_CHILD] = firstChild;
+        cells[0][c + OFFSET_CHILD_COUNT] = childCount;
+
+        int child = firstChild;
+        for (int q = 0; q < 4; ++q) {
+            if (quadrantEnds[q] == 0) {
+                continue;
+            }
+            buildCell(graph, nodeIds, child++, start + quadrantStarts[q], start + quadrantStarts[q] + quadrantEnds[q],
+                    q % 2 == 0 ? minE : middleE, q < 2 ? minN : middleN,
+                    q % 2 == 0 ? middleE : maxE, q < 2 ? middleN : maxN, depth + 1, cells, cellCount);
+        }
+    }
+
+    /**
+     * Returns the quadtree stored in the given buffer (see the description of the class), if it was built for the
+     * given graph and written in the current format.
+     *
+     * @param buffer buffer with the content of the file of the quadtree
+     * @param graph  the Graph of the quadtree
+     * @return NodeQuadtree instance, or null if the stored quadtree doesn't match the graph or the format
+     */
+
+    public static NodeQuadtree of(ByteBuffer buffer, Graph graph) {
+        if (!hasValidHeader(buffer)
+                || buffer.getInt(HEADER_NODE_COUNT * Integer.BYTES) != graph.nodeCount()
+                || fingerprint(buffer) != graph.fingerprint()) {
+            return null;
+        }
+        return new NodeQuadtree(buffer);
+    }
+
+    /**
+     * Loads the quadtree stored in the basePath folder (see writeTo), if it was built for the given graph and written
+     * in the current format.
+     *
+     * @param basePath path where data files are stored
+     * @param graph    the Graph of the quadtree
+     * @return NodeQuadtree loaded from the file, or null if the stored quadtree doesn't match the graph or the format
+     * @throws IOException if something went wrong while loading data from the file
+     */
+
+    public static NodeQuadtree loadFrom(Path basePath, Graph graph) throws IOException {
+        return of(DataFiles.load(basePath.resolve(FILE_NAME)), graph);
+    }
+
+    /**
+     * Builds the quadtree of the graph whose directory is given as argument, writes it next to its files, and prints
+     * its number of cells and the numbers of nodes of its leaves.
+     *
+     * @param args directory of the graph
+     * @throws IOException if something went wrong while loading the graph or writing the quadtree
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("usage: NodeQuadtree <graph directory>");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        NodeQuadtree quadtree = build(Graph.loadFrom(basePath));
+        quadtree.writeTo(basePath);
+
+        int leafCount = 0;
+        int maxLeafNodes = 0;
+        for (int cell = 0; cell < quadtree.cellCount; ++cell) {
+            if (quadtree.cells.get(CELL_INTS * cell + OFFSET_CHILD_COUNT) == 0) {
+                ++leafCount;
+                maxLeafNodes = Math.max(maxLeafNodes, quadtree.cells.get(CELL_INTS * cell + OFFSET_END)
+                        - quadtree.cells.get(CELL_INTS * cell + OFFSET_START));
+            }
+        }
+        System.out.printf("%d nodes, %d cells, %d leaves of at most %d nodes%n",
+                quadtree.nodeCount, quadtree.cellCount, leafCount, maxLeafNodes);
+    }
+
+    /**
+     * Writes the quadtree in the basePath folder, next to the files of the graph, preceded by the header identifying
+     * the graph it was built for.
+     *
+     * @param basePath path where data files are stored
+     * @throws IOException if something went wrong while writing the file
+     */
+
+    public void writeTo(Path basePath) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate((HEADER_INTS + nodeCount + CELL_INTS * cellCount) * Integer.BYTES);
+        IntBuffer ints = bytes.asIntBuffer();
+        putHeader(ints, nodeCount, cellCount, fingerprint);
+        ints.put(nodeIds.duplicate().clear()).put(cells.duplicate().clear());
+        DataFiles.write(basePath.resolve(FILE_NAME), bytes);
+    }
+
+    /**
+     * Returns the number of indexed nodes.
+     *
+     * @return int number of nodes
+     */
+
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the number of cells of the quadtree, its leaves included.
+     *
+     * @return int number of cells
+     */
+
+    public int cellCount() {
+        return cellCount;
+    }
+
+    /**
+     * Get the identity of the closest node to the point of coordinates (e, n), at the given maximum distance (in
+     * meters) or -1 if no node matches these criteria. If several nodes are equally close, the one of smallest
+     * identity is chosen, as Graph.nodeClosestTo does with the grid of sectors.
+     *
+     * @param graph          the Graph of the quadtree
+     * @param e              E coordinate of the point
+     * @param n              N coordinate of the point
+     * @param searchDistance maximum distance to search around the point
+     * @return int identity of the closest node in the search distance radius, -1 if there is none
+     * @throws IllegalArgumentException if the graph doesn't have as many nodes as the quadtree
+     */
+
+    public int nodeClosestTo(Graph graph, double e, double n, double searchDistance) {
+        Preconditions.checkArgument(graph.nodeCount() == nodeCount);
+        if (nodeCount == 0 || !(searchDistance > 0)) {
+            return -1;
+        }
+        //squared distance and identity of the closest node found so far
+        double[] best = {searchDistance * searchDistance, -1};
+        if (cellSquaredDistanceTo(0, e, n) <= best[0]) {
+            search(graph, 0, e, n, best);
+        }
+        return (int) best[1];
+    }
+
+    //visits the nodes of the cell, or its children by increasing distance, skipping those farther than the closest
+    //node found so far
+    private void search(Graph graph, int cell, double e, double n, double[] best) {
+        int c = CELL_INTS * cell;
+        int childCount = cells.get(c + OFFSET_CHILD_COUNT);
+        if (childCount == 0) {
+            int end = cells.get(c + OFFSET_END);
+            for (int i = cells.get(c + OFFSET_START); i < end; ++i) {
+                int nodeId = nodeIds.get(i);
+                //the N coordinate is only read for the nodes close enough along the E axis
+                double dE = graph.nodeE(nodeId) - e;
+                if (dE * dE > best[0]) {
+                    continue;
+                }
+                double dN = graph.nodeN(nodeId) - n;
+                double distance = dE * dE + dN * dN;
+                if (distance < best[0] || (distance == best[0] && best[1] >= 0 && nodeId < best[1])) {
+                    best[0] = distance;
+                    best[1] = nodeId;
+                }
+            }
+            return;
+        }
+
+        //the children are visited by increasing distance of their boxes (insertion sort of at most 4)
+        int firstChild = cells.get(c + OFFSET_FIRST_CHILD);
+        int[] children = new int[childCount];
+        double[] distances = new double[childCount];
+        for (int i = 0; i < childCount; ++i) {
+            double distance = cellSquaredDistanceTo(firstChild + i, e, n);
+            int j = i;
+            while (j > 0 && distances[j - 1] > distance) {
+                children[j] = children[j - 1];
+                distances[j] = distances[j - 1];
+                --j;
+            }
+            children[j] = firstChild + i;
+            distances[j] = distance;
+        }
+        for (int i = 0; i < childCount && distances[i] <= best[0]; ++i) {
+            search(graph, children[i], e, n, best);
+        }
+    }
+
+    //lower bound of the squared distance between the point and the nodes of the cell
+    private double cellSquaredDistanceTo(int cell, double e, double n) {
+        int box = CELL_INTS * cell + OFFSET_BOX;
+        double localE = e - SwissBounds.MIN_E;
+        double localN = n - SwissBounds.MIN_N;
+        double dE = Math.max(Math.max(Float.intBitsToFloat(cells.get(box)) - localE,
+                localE - Float.intBitsToFloat(cells.get(box + 2))), 0);
+        double dN = Math.max(Math.max(Float.intBitsToFloat(cells.get(box + 1)) - localN,
+                localN - Float.intBitsToFloat(cells.get(box + 3))), 0);
+        double distance = Math.max(Math.sqrt(dE * dE + dN * dN) - MARGIN, 0);
+        return distance * distance;
+    }
+
+    private static float roundedDown(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
+
+    private static float roundedUp(double value) {
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+
+    //check if the buffer starts with a header of the current format, followed by as many bytes as it announces
+    private static boolean hasValidHeader(ByteBuffer buffer) {
+        if (buffer.capacity() < HEADER_INTS * Integer.BYTES
+                || buffer.getInt(HEADER_VERSION * Integer.BYTES) != FORMAT_VERSION) {
+            return false;
+        }
+        long nodeCount = buffer.getInt(HEADER_NODE_COUNT * Integer.BYTES);
+        long cellCount = buffer.getInt(HEADER_CELL_COUNT * Integer.BYTES);
+        return nodeCount >= 0 && cellCount > 0
+                && buffer.capacity() == (HEADER_INTS + nodeCount + CELL_INTS * cellCount) * Integer.BYTES;
+    }
+
+    //fingerprint of the graph stored in the header of the buffer
+    private static long fingerprint(ByteBuffer buffer) {
+        return (long) buffer.getInt(HEADER_FINGERPRINT * Integer.BYTES) << Integer.SIZE
+                | Integer.toUnsignedLong(buffer.getInt((HEADER_FINGERPRINT + 1) * Integer.BYTES));
+    }
+
+    //writes the header at the start of the buffer, which is then positioned after it
+    private static void putHeader(IntBuffer ints, int nodeCount, int cellCount, long fingerprint) {
+        ints.put(FORMAT_VERSION).put(nodeCount).put(cellCount)
+                .put((int) (fingerprint >>> Integer.SIZE)).put((int) fingerprint);
+    }
+}
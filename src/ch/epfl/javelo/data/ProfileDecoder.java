@@ -0,0 +1,52 @@
+package ch.epfl.javelo.data;
+
+import java.util.Locale;
+
+/**
+ * ProfileDecoder enum
+ * The implementations of GraphEdges.profileSamples, which decode the same samples:
+ * - SCALAR: extracts the compressed differences one at a time, and sums them as floats,
+ * - BULK: reads every value of the elevations buffer once, unpacks all the differences it contains with shifts, sums
+ * them as Q28.4 integers (which is exact, as the float sums of SCALAR) and writes the samples directly in the
+ * direction of the edge, which is faster on the batch jobs decoding millions of profiles.
+ * The implementation used by default is given by the system property PROPERTY ("scalar" or "bulk"), SCALAR if it
+ * is absent.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public enum ProfileDecoder {
+    SCALAR, BULK;
+
+    /**
+     * Name of the system property choosing the default implementation, e.g. -Djavelo.profileDecoder=bulk.
+     */
+
+    public static final String PROPERTY = "javelo.profileDecoder";
+
+    private static final ProfileDecoder DEFAULT = fromProperty(System.getProperty(PROPERTY));
+
+    /**
+     * Returns the implementation used by GraphEdges.profileSamples(int), given by the system property PROPERTY when
+     * the class was loaded.
+     *
+     * @return ProfileDecoder the default implementation
+     */
+
+    public static ProfileDecoder defaultDecoder() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the implementation of the given name, ignoring case.
+     *
+     * @param name name of the implementation, SCALAR if null
+     * @return ProfileDecoder the implementation
+     * @throws IllegalArgumentException if no implementation has this name
+     */
+
+    public static ProfileDecoder fromProperty(String name) {
+        return name == null ? SCALAR : valueOf(name.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -3,6 +3,7 @@ package ch.epfl.javelo.gui;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
+import ch.epfl.javelo.routing.GraphComponents;
 import ch.epfl.javelo.routing.RoutePoint;
 import javafx.beans.property.*;
 import javafx.geometry.Point2D;
@@ -52,6 +53,22 @@ public final class AnnotatedMapManager {
 
     public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean rteBean,
                                Consumer<String> errorReporter) {
+        this(graph, tileManager, rteBean, errorReporter, null);
+    }
+
+    /**
+     * Constructor of AnnotatedMapManager, whose waypoints are refused if the components prove that no route can
+     * join them to their neighbours
+     *
+     * @param graph           Graph instance
+     * @param tileManager     TileManager instance
+     * @param rteBean         RouteBean instance
+     * @param errorReporter   Consumer<String> instance
+     * @param graphComponents GraphComponents instance for the cost function of the routes, or null
+     */
+
+    public AnnotatedMapManager(Graph graph, TileManager tileManager, RouteBean rteBean,
+                               Consumer<String> errorReporter, GraphComponents graphComponents) {
         routeBean = rteBean;
         mouseCoordinatesProperty = new SimpleObjectProperty<>(Point2D.ZERO);
         mousePositionOnRouteProperty = new SimpleDoubleProperty(Double.NaN);
@@ -65,7 +82,8 @@ public final class AnnotatedMapManager {
                 new WaypointsManager(graph,
                         mapViewParametersProperty,
                         routeBean.waypoints(),
-                        errorReporter);
+                        errorReporter,
+                        graphComponents);
 
         BaseMapManager baseMapManager =
                 new BaseMapManager(tileManager,
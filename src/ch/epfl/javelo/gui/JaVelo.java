@@ -1,11 +1,16 @@
 package ch.epfl.javelo.gui;
 
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphContainer;
 import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.CompiledCostFunction;
 import ch.epfl.javelo.routing.CostFunction;
 import ch.epfl.javelo.routing.GpxGenerator;
+import ch.epfl.javelo.routing.GraphComponents;
+import ch.epfl.javelo.routing.LandmarkTable;
 import ch.epfl.javelo.routing.RouteComputer;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Orientation;
 import javafx.scene.Scene;
 import javafx.scene.control.Menu;
@@ -18,6 +23,8 @@ import javafx.stage.Stage;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 
 import static javafx.beans.binding.Bindings.createDoubleBinding;
@@ -34,12 +41,14 @@ import static javafx.scene.control.SplitPane.setResizableWithParent;
 public final class JaVelo extends Application {
 
     private static final String GRAPH_DATA_DIRECTORY = "javelo-data";
+    private static final String COST_FUNCTION_NAME = "citybike";
     private static final String OSM_CACHE_PATH = "osm-cache";
     private static final String TILE_SERVER_HOST = "tile.openstreetmap.org";
     private static final String MAIN_WINDOW_TITLE = "JaVelo";
     private static final String MENU_TITLE = "Fichier";
     private static final String MENU_ACTION_TEXT = "Exporter GPX";
     private static final String GPX_FILE_EXPORTED_NAME = "javelo.gpx";
+    private static final String ERROR_MESSAGE_CORRUPTED_GRAPH = "Données du graphe corrompues !";
 
     private static final int ELEVATION_PROFILE_MANAGER_PANE_INDEX = 1;
 
@@ -57,19 +66,40 @@ public final class JaVelo extends Application {
      */
     @Override
     public void start(Stage primaryStage) throws Exception {
-        Graph graph = Graph.loadFrom(Path.of(GRAPH_DATA_DIRECTORY));
+        Path graphBasePath = Path.of(GRAPH_DATA_DIRECTORY);
+        //the graph is stored in a folder, or in a container (see GraphContainer) verified once the window is shown
+        GraphContainer container = Files.isRegularFile(graphBasePath) ? GraphContainer.open(graphBasePath) : null;
+        Graph graph = container == null ? Graph.loadFrom(graphBasePath) : Graph.loadFrom(container);
+        Path tablesBasePath = container == null ? graphBasePath : graphBasePath.toAbsolutePath().getParent();
         Path cacheBasePath = Path.of(OSM_CACHE_PATH);
-        CostFunction cf = new CityBikeCF(graph);
+        //the cost factors and components stored next to the graph (see CompiledCostFunction.main and
+        //GraphComponents.main) if they match it, computed otherwise
+        CostFunction cf = CompiledCostFunction.loadOrCompile(tablesBasePath, COST_FUNCTION_NAME, graph,
+                new CityBikeCF(graph));
+
+        GraphComponents components = GraphComponents.loadOrCompute(tablesBasePath, COST_FUNCTION_NAME, graph, cf);
+
+        //the landmark table (see LandmarkTable.main) is optional, it only speeds up the computation of routes
+        RouteComputer routeComputer = new RouteComputer(graph, cf).withComponents(components);
+        try {
+            LandmarkTable landmarks = LandmarkTable.loadFrom(tablesBasePath, COST_FUNCTION_NAME, graph);
+            //a table of another graph is ignored, its distances wouldn't be lower bounds
+            if (landmarks != null) {
+                routeComputer = routeComputer.withLandmarks(landmarks);
+            }
+        } catch (NoSuchFileException e) {
+            //no landmark table, the crow-flies distance is used alone
+        }
 
         TileManager tileManager =
                 new TileManager(cacheBasePath, TILE_SERVER_HOST);
 
-        RouteBean routeBean = new RouteBean(new RouteComputer(graph, cf));
+        RouteBean routeBean = new RouteBean(routeComputer);
 
         ErrorManager errorManager = new ErrorManager();
 
         AnnotatedMapManager annotatedMapManager = new AnnotatedMapManager(graph, tileManager,
-                routeBean, errorManager::displayError);
+                routeBean, errorManager::displayError, components);
 
         ElevationProfileManager elevationProfileManager = new ElevationProfileManager(
                 routeBean.elevationProfileProperty(), routeBean.highlightedPositionProperty());
@@ -97,6 +127,14 @@ public final class JaVelo extends Application {
         primaryStage.setTitle(MAIN_WINDOW_TITLE);
         primaryStage.setScene(new Scene(borderPane));
         primaryStage.show();
+
+        //a corrupted container is reported like the other errors, the routes computed on it may be wrong
+        if (container != null) {
+            container.verification().exceptionally(e -> {
+                Platform.runLater(() -> errorManager.displayError(ERROR_MESSAGE_CORRUPTED_GRAPH));
+                return null;
+            });
+        }
     }
 
     //initialize the menu
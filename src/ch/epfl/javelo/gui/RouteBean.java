@@ -24,22 +24,21 @@ public final class RouteBean {
     private final ObjectProperty<ElevationProfile> elevationProfileProperty;
     private final DoubleProperty highlightedPositionProperty;
 
-    //Memory cache array with access-order
-    private final LinkedHashMap<PairOfWaypoints, Route> routeComputingBuffer;
+    //computes the routes between consecutive waypoints, through a cache keyed by their nodes
+    private final RouteCache.Loader routeLoader;
 
-    //Memory cache capacity
-    private final static int CACHE_CAPACITY = 100;
+    //Memory cache capacity, in edges: e.g. 100 routes of 1000 edges, a single route being cached as long as it has at
+    //most 50 000 edges (the cache then has two stripes, see RouteCache)
+    private final static int CACHE_CAPACITY = 100_000;
+
+    //identity of the cost function of the cache of a bean created with a RouteComputer
+    private static final String COST_FUNCTION_ID = "default";
 
     //max step length for the elevation profile
     private static final int MAX_STEP_LENGTH = 5;
 
     private static final int MIN_NUMBER_OF_WAYPOINTS = 2;
 
-    private static final float LOAD_FACTOR = 0.75f;
-
-    //used in cache
-    private record PairOfWaypoints(Waypoint w1, Waypoint w2) {
-    }
 
     /**
      * Constructor for new RouteBean.
@@ -48,13 +47,24 @@ public final class RouteBean {
      */
 
     public RouteBean(RouteComputer routeComputer) {
+        this(new RouteCache(CACHE_CAPACITY).cached(COST_FUNCTION_ID, routeComputer::bestRouteBetween));
+    }
+
+    /**
+     * Constructor for new RouteBean computing its routes with the given loader, which can be shared with other beans
+     * (see RouteCache.cached).
+     *
+     * @param routeLoader the loader that will be used to dynamically adapt the route to the list of waypoints
+     */
+
+    public RouteBean(RouteCache.Loader routeLoader) {
         waypointsList = FXCollections.observableArrayList();
         routeProperty = new SimpleObjectProperty<>();
         highlightedPositionProperty = new SimpleDoubleProperty(Double.NaN);
         elevationProfileProperty = new SimpleObjectProperty<>();
-        routeComputingBuffer = new LinkedHashMap<>(CACHE_CAPACITY, LOAD_FACTOR, true);
+        this.routeLoader = routeLoader;
 
-        addListeners(routeComputer);
+        addListeners();
     }
 
     /**
@@ -162,21 +172,11 @@ public final class RouteBean {
 
     //creates the listeners to update the route and elevationProfile according to
     // the modifications of the waypoints list.
-    private void addListeners(RouteComputer routeComputer) {
-        waypointsList.addListener((ListChangeListener<Waypoint>) change ->
-                updateRouteAndElevationProfile(routeComputer));
-    }
-
-    //for inner working, see tileManager.
-    private void addToCache(PairOfWaypoints pair, Route route) {
-        if (routeComputingBuffer.size() >= CACHE_CAPACITY) {
-            //complexity is 0(1)
-            routeComputingBuffer.remove(routeComputingBuffer.entrySet().iterator().next().getKey());
-        }
-        routeComputingBuffer.put(pair, route);
+    private void addListeners() {
+        waypointsList.addListener((ListChangeListener<Waypoint>) change -> updateRouteAndElevationProfile());
     }
 
-    private void updateRouteAndElevationProfile(RouteComputer routeComputer) {
+    private void updateRouteAndElevationProfile() {
         //if there is not enough waypoints in the ObservableList, the computed route as well
         // as its elevationProfile are null.
         if (waypointsList.size() < MIN_NUMBER_OF_WAYPOINTS) {
@@ -194,23 +194,15 @@ public final class RouteBean {
                     continue;
                 }
 
-                PairOfWaypoints routeSegmentWaypoints = new PairOfWaypoints(waypointsList.get(i),
-                        waypointsList.get(i + 1));
-
-                //we check if the best route between the two waypoints is stored in the buffer.
-                if (!routeComputingBuffer.containsKey(routeSegmentWaypoints)) {
-                    bestRoute = routeComputer.bestRouteBetween(waypointsList.get(i).nodeId(),
-                            waypointsList.get(i + 1).nodeId());
-                    //if no route is found between the two waypoints,
-                    // the computed route as well as its elevationProfile are null.
-                    if (bestRoute == null) {
-                        containsNull = true;
-                        break;
-                    }
-                    //only executed if bestRoute != null
-                    addToCache(routeSegmentWaypoints, bestRoute);
-                } else {
-                    bestRoute = routeComputingBuffer.get(routeSegmentWaypoints);
+                //the route is only computed if the cache doesn't contain the route between the nodes of the two
+                //waypoints, wherever they were clicked.
+                bestRoute = routeLoader.bestRouteBetween(waypointsList.get(i).nodeId(),
+                        waypointsList.get(i + 1).nodeId());
+                //if no route is found between the two waypoints,
+                // the computed route as well as its elevationProfile are null.
+                if (bestRoute == null) {
+                    containsNull = true;
+                    break;
                 }
                 segments.add(bestRoute);
             }
@@ -3,6 +3,7 @@ package ch.epfl.javelo.gui;
 import ch.epfl.javelo.data.Graph;
 import ch.epfl.javelo.projection.PointCh;
 import ch.epfl.javelo.projection.PointWebMercator;
+import ch.epfl.javelo.routing.GraphComponents;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.ListChangeListener;
@@ -31,6 +32,9 @@ public final class WaypointsManager {
     private final ObservableList<Waypoint> transitPointsList;
     private final Consumer<String> errorManager;
 
+    //components of the graph used to refuse waypoints that can't be joined to their neighbours, may be null
+    private final GraphComponents components;
+
     //pane containing the waypoints
     private final Pane pane;
 
@@ -50,6 +54,7 @@ public final class WaypointsManager {
     private final static String PIN_STYLE_CLASS_LAST = "last";
 
     private static final String ERROR_MESSAGE_NO_ROUTES_AROUND = "Aucune route à proximité !";
+    private static final String ERROR_MESSAGE_NO_ITINERARY = "Aucun itinéraire possible !";
 
     /**
      * WaypointsManager constructor.
@@ -62,10 +67,28 @@ public final class WaypointsManager {
 
     public WaypointsManager(Graph g, ObjectProperty<MapViewParameters> mapViewParametersObjectProperty,
                             ObservableList<Waypoint> transitPList, Consumer<String> errorReporter) {
+        this(g, mapViewParametersObjectProperty, transitPList, errorReporter, null);
+    }
+
+    /**
+     * WaypointsManager constructor, refusing the waypoints that can't be joined to their neighbours by a route
+     * according to the given components.
+     *
+     * @param g                               JaVelo Graph instance
+     * @param mapViewParametersObjectProperty MapViewParameters wrapped into a JavaFx property
+     * @param transitPList                    ObservableList of Waypoint(s)
+     * @param errorReporter                   Object for reporting errors
+     * @param graphComponents                 GraphComponents of the graph for the cost function of the routes, or null
+     */
+
+    public WaypointsManager(Graph g, ObjectProperty<MapViewParameters> mapViewParametersObjectProperty,
+                            ObservableList<Waypoint> transitPList, Consumer<String> errorReporter,
+                            GraphComponents graphComponents) {
         graph = g;
         mapViewParametersProperty = mapViewParametersObjectProperty;
         transitPointsList = transitPList;
         errorManager = errorReporter;
+        components = graphComponents;
 
         latestMousePosition = new SimpleObjectProperty<>(Point2D.ZERO);
 
@@ -96,11 +119,33 @@ public final class WaypointsManager {
     public void addWaypoint(double x, double y) {
         Waypoint newWaypoint = createWaypoint(x, y);
 
-        if (newWaypoint != null) {
-            transitPointsList.add(newWaypoint);
-        } else {
+        if (newWaypoint == null) {
             errorManager.accept(ERROR_MESSAGE_NO_ROUTES_AROUND);
+        } else if (!canBeJoined(transitPointsList.size(), newWaypoint, transitPointsList.size())) {
+            errorManager.accept(ERROR_MESSAGE_NO_ITINERARY);
+        } else {
+            transitPointsList.add(newWaypoint);
+        }
+    }
+
+    //check if the waypoint can be joined by a route from the waypoint at index 'previousIndex - 1' and to the one at
+    //index 'nextIndex' of the list, when they exist. Always true without components.
+    private boolean canBeJoined(int previousIndex, Waypoint waypoint, int nextIndex) {
+        if (components == null) {
+            return true;
+        }
+        int nodeId = waypoint.nodeId();
+        if (previousIndex > 0) {
+            int previousNodeId = transitPointsList.get(previousIndex - 1).nodeId();
+            if (previousNodeId != nodeId && !components.mayReach(previousNodeId, nodeId)) {
+                return false;
+            }
+        }
+        if (nextIndex < transitPointsList.size()) {
+            int nextNodeId = transitPointsList.get(nextIndex).nodeId();
+            return nextNodeId == nodeId || components.mayReach(nodeId, nextNodeId);
         }
+        return true;
     }
 
     //create an instance of waypoint for the given coordinates or return null
@@ -211,10 +256,13 @@ public final class WaypointsManager {
                 Waypoint newWaypoint =
                         createWaypoint(group.getLayoutX(), group.getLayoutY());
 
-                if (newWaypoint != null) {
-                    transitPointsList.set(transitPointsList.indexOf(waypoint), newWaypoint);
+                int index = transitPointsList.indexOf(waypoint);
+                if (newWaypoint != null && canBeJoined(index, newWaypoint, index + 1)) {
+                    transitPointsList.set(index, newWaypoint);
                 } else {
-                    errorManager.accept(ERROR_MESSAGE_NO_ROUTES_AROUND);
+                    errorManager.accept(newWaypoint == null
+                            ? ERROR_MESSAGE_NO_ROUTES_AROUND
+                            : ERROR_MESSAGE_NO_ITINERARY);
                     //to be sure waypoints are replaced at the correct position
                     draw();
                 }
@@ -0,0 +1,250 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CompactRoute class
+ * A simple route, equivalent to a SingleRoute, represented by the identities of its edges in the graph. Only the
+ * positions of its nodes along the route are computed when it is built: its edges, whose profiles are costly to
+ * decode, and its points are built on the first call to edges() and points(), and the other methods read the graph
+ * directly. Routes used only for their length or their nodes (e.g. to compute distances) are therefore much cheaper
+ * to build than a SingleRoute.
+ * Instances are thread-safe, the lazy lists (and the index of the edges used by pointClosestTo, see RouteEdgeIndex)
+ * being possibly built several times by concurrent first calls.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class CompactRoute implements Route {
+
+    private final Graph graph;
+    private final int startNodeId;
+    private final int[] edgeIds;
+    //position of each node along the route, the last one being the length of the route
+    private final double[] nodePositions;
+
+    //built on first use
+    private volatile List<Edge> edges;
+    private volatile List<PointCh> points;
+    private volatile RouteEdgeIndex edgeIndex;
+
+    /**
+     * CompactRoute constructor.
+     *
+     * @param graph       the Graph of the edges
+     * @param startNodeId identity of the first node of the route
+     * @param edgeIds     identities of the edges of the route, in order, each one starting at the end of the previous
+     *                    one (the first one starting at startNodeId)
+     * @throws IllegalArgumentException if edgeIds is empty
+     */
+
+    public CompactRoute(Graph graph, int startNodeId, int[] edgeIds) {
+        Preconditions.checkArgument(edgeIds.length > 0);
+        this.graph = graph;
+        this.startNodeId = startNodeId;
+        this.edgeIds = edgeIds.clone();
+        nodePositions = new double[edgeIds.length + 1];
+        for (int i = 0; i < edgeIds.length; ++i) {
+            nodePositions[i + 1] = nodePositions[i] + graph.edgeLength(edgeIds[i]);
+        }
+    }
+
+    /**
+     * Returns the graph of the edges of the route, whose data (e.g. elevations) can then be read without building the
+     * edges.
+     *
+     * @return Graph of the route
+     */
+
+    Graph graph() {
+        return graph;
+    }
+
+    @Override
+    public int edgeCount() {
+        return edgeIds.length;
+    }
+
+    /**
+     * Returns the identity in the graph of the index-th edge of the route.
+     *
+     * @param index starts at 0
+     * @return int identity of the edge
+     */
+
+    public int edgeId(int index) {
+        return edgeIds[index];
+    }
+
+    /**
+     * Returns the identity of the index-th node of the route, the node at index edgeCount() being its last node.
+     *
+     * @param index between 0 and edgeCount() (included)
+     * @return int identity of the node
+     */
+
+    public int nodeId(int index) {
+        return index == 0 ? startNodeId : graph.edgeTargetNodeId(edgeIds[index - 1]);
+    }
+
+    @Override
+    public int indexOfSegmentAt(double position) {
+        return 0;
+    }
+
+    @Override
+    public double length() {
+        return nodePositions[edgeIds.length];
+    }
+
+    @Override
+    public List<Edge> edges() {
+        List<Edge> edges = this.edges;
+        if (edges == null) {
+            List<Edge> list = new ArrayList<>(edgeIds.length);
+            for (int i = 0; i < edgeIds.length; ++i) {
+                list.add(Edge.of(graph, edgeIds[i], nodeId(i), nodeId(i + 1)));
+            }
+            edges = List.copyOf(list);
+            this.edges = edges;
+        }
+        return edges;
+    }
+
+    @Override
+    public List<PointCh> points() {
+        List<PointCh> points = this.points;
+        if (points == null) {
+            List<PointCh> list = new ArrayList<>(edgeIds.length + 1);
+            for (int i = 0; i <= edgeIds.length; ++i) {
+                list.add(graph.nodePoint(nodeId(i)));
+            }
+            points = List.copyOf(list);
+            this.points = points;
+        }
+        return points;
+    }
+
+    @Override
+    public PointCh pointAt(double position) {
+        position = Math2.clamp(0.0, position, length());
+        int binarySearchResult = Arrays.binarySearch(nodePositions, position);
+        if (binarySearchResult >= 0) {
+            return graph.nodePoint(nodeId(binarySearchResult));
+        }
+        int indexEdge = -(binarySearchResult + 2);
+        return pointOnEdge(indexEdge, position - nodePositions[indexEdge]);
+    }
+
+    @Override
+    public double elevationAt(double position) {
+        position = Math2.clamp(0.0, position, length());
+        int binarySearchResult = Arrays.binarySearch(nodePositions, position);
+        if (binarySearchResult >= 0) {
+            //the elevation of a node is the one of the edge starting there, except for the last node
+            if (binarySearchResult < edgeIds.length) {
+                return edgeElevationAt(binarySearchResult, 0);
+            } else {
+                int lastEdge = edgeIds.length - 1;
+                return edgeElevationAt(lastEdge, graph.edgeLength(edgeIds[lastEdge]));
+            }
+        }
+        int indexEdge = -(binarySearchResult + 2);
+        return edgeElevationAt(indexEdge, position - nodePositions[indexEdge]);
+    }
+
+    @Override
+    public int nodeClosestTo(double position) {
+        position = Math2.clamp(0.0, position, length());
+        int binarySearchResult = Arrays.binarySearch(nodePositions, position);
+        if (binarySearchResult >= 0) {
+            return nodeId(binarySearchResult);
+        }
+        int indexEdge = -(binarySearchResult + 2);
+        if (position - nodePositions[indexEdge] > graph.edgeLength(edgeIds[indexEdge]) / 2) {
+            return nodeId(indexEdge + 1);
+        } else {
+            return nodeId(indexEdge);
+        }
+    }
+
+    @Override
+    public RoutePoint pointClosestTo(PointCh point) {
+        if (edgeIds.length >= RouteEdgeIndex.MIN_EDGE_COUNT) {
+            int index = edgeIndex().closestEdgeIndex(point.e(), point.n(),
+                    i -> pointOnEdge(i, projectionOnEdge(i, point)).distanceTo(point));
+            if (index < 0) {
+                return RoutePoint.NONE;
+            }
+            double lengthOfProjection = projectionOnEdge(index, point);
+            PointCh nearestPointOnEdge = pointOnEdge(index, lengthOfProjection);
+            return new RoutePoint(nearestPointOnEdge, nodePositions[index] + lengthOfProjection,
+                    nearestPointOnEdge.distanceTo(point));
+        }
+
+        RoutePoint nearestPoint = RoutePoint.NONE;
+        for (int i = 0; i < edgeIds.length; ++i) {
+            double lengthOfProjection = projectionOnEdge(i, point);
+            PointCh nearestPointOnEdge = pointOnEdge(i, lengthOfProjection);
+            double distance = nearestPointOnEdge.distanceTo(point);
+            nearestPoint = nearestPoint.min(nearestPointOnEdge, nodePositions[i] + lengthOfProjection, distance);
+        }
+        return nearestPoint;
+    }
+
+    //position on the index-th edge of the projection of the point, as Edge.positionClosestTo but clamped to the edge
+    private double projectionOnEdge(int index, PointCh point) {
+        int fromNodeId = nodeId(index);
+        int toNodeId = nodeId(index + 1);
+        return Math2.clamp(0.0, Math2.projectionLength(
+                graph.nodeE(fromNodeId), graph.nodeN(fromNodeId), graph.nodeE(toNodeId), graph.nodeN(toNodeId),
+                point.e(), point.n()), graph.edgeLength(edgeIds[index]));
+    }
+
+    private RouteEdgeIndex edgeIndex() {
+        RouteEdgeIndex index = edgeIndex;
+        if (index == null) {
+            double[] edgeCoordinates = new double[4 * edgeIds.length];
+            for (int i = 0; i < edgeIds.length; ++i) {
+                int fromNodeId = nodeId(i);
+                int toNodeId = nodeId(i + 1);
+                edgeCoordinates[4 * i] = graph.nodeE(fromNodeId);
+                edgeCoordinates[4 * i + 1] = graph.nodeN(fromNodeId);
+                edgeCoordinates[4 * i + 2] = graph.nodeE(toNodeId);
+                edgeCoordinates[4 * i + 3] = graph.nodeN(toNodeId);
+            }
+            index = new RouteEdgeIndex(edgeCoordinates);
+            edgeIndex = index;
+        }
+        return index;
+    }
+
+    //point at the given position on the index-th edge, as Edge.pointAt
+    private PointCh pointOnEdge(int index, double position) {
+        int fromNodeId = nodeId(index);
+        int toNodeId = nodeId(index + 1);
+        double edgeLength = graph.edgeLength(edgeIds[index]);
+        if (edgeLength == 0) {
+            return new PointCh(graph.nodeE(fromNodeId), graph.nodeN(toNodeId));
+        }
+        return new PointCh(Math2.interpolate(graph.nodeE(fromNodeId), graph.nodeE(toNodeId), position / edgeLength),
+                Math2.interpolate(graph.nodeN(fromNodeId), graph.nodeN(toNodeId), position / edgeLength));
+    }
+
+    //elevation at the given position on the index-th edge, read from the graph without decoding its profile if the
+    //edges weren't built
+    private double edgeElevationAt(int index, double position) {
+        List<Edge> edges = this.edges;
+        return edges != null
+                ? edges.get(index).elevationAt(position)
+                : graph.edgeElevationAt(edgeIds[index], position);
+    }
+}
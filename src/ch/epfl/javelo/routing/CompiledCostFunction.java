@@ -0,0 +1,170 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.DataFiles;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+/**
+ * CompiledCostFunction record
+ * A cost function whose cost factors are read from a table indexed by edge identity, computed once from another
+ * cost function. Evaluating it only costs an array access, which makes it much faster than cost functions examining
+ * the attributes of the edges, such as CityBikeCF.
+ * The compiled cost function must only depend on the edge (not on the node it is taken from), which is the case of
+ * all the cost functions of JaVelo. The factors are stored as float values, they are therefore only equal to the
+ * original ones up to the float precision.
+ * The stored cost factors are preceded by a header: the version of the format, the number of edges and the
+ * fingerprint of the graph they were computed for (see Graph.fingerprint), so that factors computed for another
+ * graph, or written in an older format, are never loaded.
+ *
+ * @param factors buffer containing the cost factor of each edge
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public record CompiledCostFunction(FloatBuffer factors) implements CostFunction {
+
+    private static final String DEFAULT_NAME = "citybike";
+    private static final String FILE_PREFIX = "costs_";
+    private static final String FILE_SUFFIX = ".bin";
+
+    //version of the format of the stored cost factors, to increment whenever it changes
+    private static final int FORMAT_VERSION = 1;
+
+    //Offsets of the header fields in the stored file, followed by the cost factors
+    private static final int OFFSET_VERSION = 0;
+    private static final int OFFSET_EDGE_COUNT = OFFSET_VERSION + Integer.BYTES;
+    private static final int OFFSET_FINGERPRINT = OFFSET_EDGE_COUNT + Integer.BYTES;
+    private static final int HEADER_BYTES = OFFSET_FINGERPRINT + Long.BYTES;
+
+    /**
+     * Computes the cost factors of all the edges of the graph for the given cost function, in parallel.
+     *
+     * @param graph        the Graph of the cost function
+     * @param costFunction the CostFunction to compile, only depending on the edges
+     * @return CompiledCostFunction equivalent to costFunction
+     */
+
+    public static CompiledCostFunction compile(Graph graph, CostFunction costFunction) {
+        float[] factors = new float[graph.edgeCount()];
+        IntStream.range(0, graph.nodeCount()).parallel().forEach(nodeId -> {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                factors[edgeId] = (float) costFunction.costFactor(nodeId, edgeId);
+            }
+        });
+        return new CompiledCostFunction(FloatBuffer.wrap(factors));
+    }
+
+    /**
+     * Compiles the CityBikeCF cost function of the graph stored in the folder given as first argument, and writes
+     * it in the same folder under the name given as second argument ("citybike" if absent).
+     *
+     * @param args folder of the graph, and optionally the name of the cost function
+     * @throws IOException if something went wrong while reading the graph or writing the cost factors
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: CompiledCostFunction <graph directory> [name]");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        String name = args.length > 1 ? args[1] : DEFAULT_NAME;
+
+        Graph graph = Graph.loadFrom(basePath);
+        compile(graph, new CityBikeCF(graph)).writeTo(basePath, name, graph);
+    }
+
+    /**
+     * Loads the cost factors stored in the basePath folder under the given name (see writeTo), if they were computed
+     * for the given graph and written in the current format.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the cost function
+     * @param graph    the Graph of the cost function
+     * @return CompiledCostFunction instance, or null if the stored cost factors don't match the graph or the format
+     * @throws IOException if something went wrong while loading data from the file
+     */
+
+    public static CompiledCostFunction loadFrom(Path basePath, String name, Graph graph) throws IOException {
+        ByteBuffer bytes = DataFiles.load(basePath.resolve(FILE_PREFIX + name + FILE_SUFFIX));
+        if (bytes.capacity() < HEADER_BYTES
+                || bytes.getInt(OFFSET_VERSION) != FORMAT_VERSION
+                || bytes.getInt(OFFSET_EDGE_COUNT) != graph.edgeCount()
+                || bytes.capacity() != HEADER_BYTES + graph.edgeCount() * Float.BYTES
+                || bytes.getLong(OFFSET_FINGERPRINT) != graph.fingerprint()) {
+            return null;
+        }
+        return new CompiledCostFunction(bytes.position(HEADER_BYTES).slice().asFloatBuffer());
+    }
+
+    /**
+     * Loads the cost factors stored in the basePath folder under the given name if they exist and match the graph,
+     * otherwise compiles the given cost function.
+     *
+     * @param basePath     path where data files are stored
+     * @param name         name of the cost function
+     * @param graph        the Graph of the cost function
+     * @param costFunction the CostFunction compiled if no matching cost factors are stored
+     * @return CompiledCostFunction instance
+     * @throws IOException if something went wrong while loading data from the file
+     */
+
+    public static CompiledCostFunction loadOrCompile(Path basePath, String name, Graph graph,
+                                                     CostFunction costFunction) throws IOException {
+        try {
+            CompiledCostFunction stored = loadFrom(basePath, name, graph);
+            if (stored != null) {
+                return stored;
+            }
+        } catch (NoSuchFileException e) {
+            //no stored cost factors, they are computed below
+        }
+        return compile(graph, costFunction);
+    }
+
+    /**
+     * Writes the cost factors in the basePath folder under the given name, next to the files of the graph, preceded
+     * by the header identifying the graph they were computed for.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the cost function
+     * @param graph    the Graph of the cost function
+     * @throws IOException if something went wrong while writing the file
+     * @throws IllegalArgumentException if the graph doesn't have as many edges as the cost function
+     */
+
+    public void writeTo(Path basePath, String name, Graph graph) throws IOException {
+        Preconditions.checkArgument(graph.edgeCount() == edgeCount());
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES + factors.capacity() * Float.BYTES)
+                .putInt(FORMAT_VERSION)
+                .putInt(edgeCount())
+                .putLong(graph.fingerprint());
+        bytes.asFloatBuffer().put(factors.duplicate().clear());
+        bytes.clear();
+        DataFiles.write(basePath.resolve(FILE_PREFIX + name + FILE_SUFFIX), bytes);
+    }
+
+    /**
+     * Returns the number of edges of the graph of the cost function.
+     *
+     * @return int number of edges
+     */
+
+    public int edgeCount() {
+        return factors.capacity();
+    }
+
+    @Override
+    public double costFactor(int nodeId, int edgeId) {
+        return factors.get(edgeId);
+    }
+}
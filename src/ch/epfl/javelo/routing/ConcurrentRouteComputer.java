@@ -0,0 +1,173 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.EdgePoint;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.concurrent.CancellationException;
+import java.util.stream.IntStream;
+
+/**
+ * ConcurrentRouteComputer class
+ * A thread-safe facade of RouteComputer, used to compute many routes concurrently on a single shared graph.
+ * Each search leases a search state from a bounded pool, so that the memory used stays within a fixed budget
+ * while threads never share any mutable state during a search.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class ConcurrentRouteComputer {
+
+    private final RouteComputer routeComputer;
+    private final RouteSearchStatePool pool;
+
+    /**
+     * Constructs a ConcurrentRouteComputer using at most maxSearchStates search states.
+     *
+     * @param routeComputer   the RouteComputer performing the searches
+     * @param maxSearchStates maximum number of searches that can run at the same time
+     * @throws IllegalArgumentException if maxSearchStates is not strictly positive
+     */
+
+    public ConcurrentRouteComputer(RouteComputer routeComputer, int maxSearchStates) {
+        this.routeComputer = routeComputer;
+        pool = new RouteSearchStatePool(routeComputer::newSearchState, maxSearchStates);
+    }
+
+    /**
+     * Constructs a ConcurrentRouteComputer whose search states use at most memoryBudget bytes (but at least one
+     * search state is always allowed), and never more than one search state per available processor.
+     *
+     * @param graph        the Graph in which the routes need to be found
+     * @param costFunction the CostFunction associated to the edges of the graph
+     * @param memoryBudget maximum number of bytes used by the search states
+     * @return ConcurrentRouteComputer for the given graph and cost function
+     */
+
+    public static ConcurrentRouteComputer withMemoryBudget(Graph graph, CostFunction costFunction, long memoryBudget) {
+        return withMemoryBudget(new RouteComputer(graph, costFunction), memoryBudget);
+    }
+
+    /**
+     * Constructs a ConcurrentRouteComputer performing its searches with the given RouteComputer, whose search states
+     * use at most memoryBudget bytes (see RouteComputer.searchStateBytes, at least one search state is always
+     * allowed), and never more than one search state per available processor.
+     *
+     * @param routeComputer the RouteComputer performing the searches
+     * @param memoryBudget  maximum number of bytes used by the search states
+     * @return ConcurrentRouteComputer using the given RouteComputer
+     */
+
+    public static ConcurrentRouteComputer withMemoryBudget(RouteComputer routeComputer, long memoryBudget) {
+        int maxSearchStates = Math.min(Runtime.getRuntime().availableProcessors(),
+                RouteSearchStatePool.capacityOf(routeComputer.searchStateBytes(), memoryBudget));
+        return new ConcurrentRouteComputer(routeComputer, maxSearchStates);
+    }
+
+    /**
+     * Returns the maximum number of searches that can run at the same time.
+     *
+     * @return int maximum number of search states
+     */
+
+    public int maxSearchStates() {
+        return pool.capacity();
+    }
+
+    /**
+     * Computes the Route which has the minimal total length between startNodeId and endNodeId nodes,
+     * see RouteComputer.bestRouteBetween. Can be called by any number of threads at the same time, threads wait for
+     * a search state to be available if too many searches are running.
+     *
+     * @param startNodeId start of the route
+     * @param endNodeId   end of the route
+     * @return Route object that represents the best route between startNodeId and endNodeId, null if there is none
+     * @throws IllegalArgumentException if startNodeId and endNodeId are equal
+     * @throws CancellationException    if the thread is interrupted while waiting for a search state
+     */
+
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        RouteSearchState state = acquireState();
+        try {
+            return routeComputer.bestRouteBetween(startNodeId, endNodeId, state);
+        } finally {
+            pool.release(state);
+        }
+    }
+
+    /**
+     * Computes the Route which has the minimal cost between two points in the middle of edges, see
+     * RouteComputer.bestRouteBetween(EdgePoint, EdgePoint). Can be called by any number of threads at the same time,
+     * threads wait for a search state to be available if too many searches are running.
+     *
+     * @param start start of the route
+     * @param end   end of the route
+     * @return Route object that represents the best route between start and end, null if there is none
+     * @throws CancellationException if the thread is interrupted while waiting for a search state
+     */
+
+    public Route bestRouteBetween(EdgePoint start, EdgePoint end) {
+        RouteSearchState state = acquireState();
+        try {
+            return routeComputer.bestRouteBetween(start, end, state);
+        } finally {
+            pool.release(state);
+        }
+    }
+
+    /**
+     * Computes the costs and lengths of the best routes from every start node to every end node, see
+     * RouteComputer.matrixBetween. The rows of the matrix are computed in parallel, using at most maxSearchStates()
+     * search states at the same time.
+     *
+     * @param startNodeIds start nodes of the routes (rows of the matrix)
+     * @param endNodeIds   end nodes of the routes (columns of the matrix)
+     * @return RouteMatrix of the costs and lengths of the best routes
+     * @throws CancellationException if the thread is interrupted while waiting for a search state
+     */
+
+    public RouteMatrix matrixBetween(int[] startNodeIds, int[] endNodeIds) {
+        float[][] costs = new float[startNodeIds.length][];
+        float[][] lengths = new float[startNodeIds.length][];
+        IntStream.range(0, startNodeIds.length).parallel().forEach(i -> {
+            RouteSearchState state = acquireState();
+            try {
+                RouteMatrix row = routeComputer.matrixBetween(new int[]{startNodeIds[i]}, endNodeIds, state);
+                costs[i] = row.costs()[0];
+                lengths[i] = row.lengths()[0];
+            } finally {
+                pool.release(state);
+            }
+        });
+        return new RouteMatrix(costs, lengths);
+    }
+
+    /**
+     * Computes the nodes reachable from startNodeId within the given maximal cost, see RouteComputer.isochroneFrom.
+     *
+     * @param startNodeId  start node of the routes
+     * @param maxCost      maximal cost of the routes
+     * @param withBoundary true if the boundary of the reachable area has to be computed
+     * @return Isochrone of the start node
+     * @throws IllegalArgumentException if maxCost is negative
+     * @throws CancellationException    if the thread is interrupted while waiting for a search state
+     */
+
+    public Isochrone isochroneFrom(int startNodeId, double maxCost, boolean withBoundary) {
+        RouteSearchState state = acquireState();
+        try {
+            return routeComputer.isochroneFrom(startNodeId, maxCost, withBoundary, state);
+        } finally {
+            pool.release(state);
+        }
+    }
+
+    private RouteSearchState acquireState() {
+        try {
+            return pool.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("interrupted while waiting for a search state");
+        }
+    }
+}
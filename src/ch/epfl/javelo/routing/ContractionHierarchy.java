@@ -0,0 +1,340 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.DataFiles;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+
+/**
+ * ContractionHierarchy class
+ * Represents a contraction hierarchy of the JaVelo graph for a given cost function: a rank for every node, and a list
+ * of arcs made of the (finite cost) edges of the graph and of the shortcuts added while contracting the nodes
+ * by increasing rank. A shortcut replaces two consecutive arcs going through a node of lower rank than both of
+ * its extremities.
+ * The hierarchy is built by ContractionHierarchyBuilder and can be stored next to the other files of the graph. Both
+ * stored files are preceded by a header: the version of the format, the number of nodes (or arcs) and the fingerprint
+ * of the graph the hierarchy was built for (see Graph.fingerprint), so that a hierarchy of another graph, whose
+ * shortest paths would be wrong, is never loaded.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class ContractionHierarchy {
+
+    //Size of an arc in bytes in the arcs buffer
+    private static final int ARC_BYTES = 20;
+
+    //Offsets of the attributes of an arc in the arcs buffer
+    private static final int OFFSET_FROM = 0;
+    private static final int OFFSET_TO = OFFSET_FROM + Integer.BYTES;
+    private static final int OFFSET_WEIGHT = OFFSET_TO + Integer.BYTES;
+    private static final int OFFSET_FIRST_CHILD = OFFSET_WEIGHT + Float.BYTES;
+    private static final int OFFSET_SECOND_CHILD = OFFSET_FIRST_CHILD + Integer.BYTES;
+
+    //Value of the second child of an arc that is an edge of the graph, its first child being the identity of the edge
+    private static final int NO_CHILD = -1;
+
+    //version of the format of the stored hierarchy, to increment whenever it changes
+    private static final int FORMAT_VERSION = 1;
+
+    //Offsets of the header fields in both stored files, followed by the ranks or the arcs
+    private static final int OFFSET_VERSION = 0;
+    private static final int OFFSET_COUNT = OFFSET_VERSION + Integer.BYTES;
+    private static final int OFFSET_FINGERPRINT = OFFSET_COUNT + Integer.BYTES;
+    private static final int HEADER_BYTES = OFFSET_FINGERPRINT + Long.BYTES;
+
+    private static final String RANKS_FILE_SUFFIX = "_ranks.bin";
+    private static final String ARCS_FILE_SUFFIX = "_arcs.bin";
+    private static final String FILE_PREFIX = "ch_";
+
+    private final IntBuffer ranks;
+    private final ByteBuffer arcs;
+
+    //arcs leading to a node of higher rank, grouped by origin node (compressed sparse row format)
+    private final int[] upOffsets;
+    private final int[] upArcs;
+
+    //arcs coming from a node of higher rank, grouped by destination node (compressed sparse row format)
+    private final int[] downOffsets;
+    private final int[] downArcs;
+
+    /**
+     * ContractionHierarchy constructor.
+     *
+     * @param ranks buffer containing the rank of each node, all ranks are distinct
+     * @param arcs  buffer containing the arcs, 20 bytes each: origin node, destination node, weight (float),
+     *              and either the identity of the edge followed by -1, or the identities of the two arcs that the
+     *              shortcut replaces
+     */
+
+    public ContractionHierarchy(IntBuffer ranks, ByteBuffer arcs) {
+        Preconditions.checkArgument(arcs.capacity() % ARC_BYTES == 0);
+        this.ranks = ranks;
+        this.arcs = arcs;
+
+        int nodeCount = ranks.capacity();
+        int arcCount = arcCount();
+        upOffsets = new int[nodeCount + 1];
+        downOffsets = new int[nodeCount + 1];
+
+        //first pass counts the arcs of each node, second pass fills the arrays
+        for (int a = 0; a < arcCount; ++a) {
+            if (isUpward(a)) {
+                ++upOffsets[arcFrom(a) + 1];
+            } else {
+                ++downOffsets[arcTo(a) + 1];
+            }
+        }
+        for (int n = 0; n < nodeCount; ++n) {
+            upOffsets[n + 1] += upOffsets[n];
+            downOffsets[n + 1] += downOffsets[n];
+        }
+
+        upArcs = new int[upOffsets[nodeCount]];
+        downArcs = new int[downOffsets[nodeCount]];
+        int[] upFill = new int[nodeCount];
+        int[] downFill = new int[nodeCount];
+        for (int a = 0; a < arcCount; ++a) {
+            if (isUpward(a)) {
+                int from = arcFrom(a);
+                upArcs[upOffsets[from] + upFill[from]++] = a;
+            } else {
+                int to = arcTo(a);
+                downArcs[downOffsets[to] + downFill[to]++] = a;
+            }
+        }
+    }
+
+    /**
+     * Loads the contraction hierarchy stored in the basePath folder under the given name (see writeTo), if it was built
+     * for the given graph and written in the current format.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the hierarchy, usually the name of its cost function
+     * @param graph    the Graph of the hierarchy
+     * @return ContractionHierarchy instance, or null if the stored hierarchy doesn't match the graph or the format
+     * @throws IOException if something went wrong while loading data from the files
+     */
+
+    public static ContractionHierarchy loadFrom(Path basePath, String name, Graph graph) throws IOException {
+        ByteBuffer ranksBytes = DataFiles.load(basePath.resolve(FILE_PREFIX + name + RANKS_FILE_SUFFIX));
+        ByteBuffer arcsBytes = DataFiles.load(basePath.resolve(FILE_PREFIX + name + ARCS_FILE_SUFFIX));
+        long fingerprint = graph.fingerprint();
+        if (!hasHeader(ranksBytes, Integer.BYTES, fingerprint)
+                || ranksBytes.getInt(OFFSET_COUNT) != graph.nodeCount()
+                || !hasHeader(arcsBytes, ARC_BYTES, fingerprint)) {
+            return null;
+        }
+        return new ContractionHierarchy(ranksBytes.position(HEADER_BYTES).slice().asIntBuffer(),
+                arcsBytes.position(HEADER_BYTES).slice());
+    }
+
+    /**
+     * Writes the contraction hierarchy in the basePath folder under the given name, next to the files of the graph,
+     * preceded by the header identifying the graph it was built for.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the hierarchy, usually the name of its cost function
+     * @param graph    the Graph of the hierarchy
+     * @throws IOException if something went wrong while writing the files
+     * @throws IllegalArgumentException if the graph doesn't have as many nodes as the hierarchy
+     */
+
+    public void writeTo(Path basePath, String name, Graph graph) throws IOException {
+        Preconditions.checkArgument(graph.nodeCount() == nodeCount());
+        long fingerprint = graph.fingerprint();
+        ByteBuffer ranksBytes = header(nodeCount(), fingerprint, ranks.capacity() * Integer.BYTES);
+        ranksBytes.asIntBuffer().put(ranks.duplicate().clear());
+        DataFiles.write(basePath.resolve(FILE_PREFIX + name + RANKS_FILE_SUFFIX), ranksBytes.clear());
+
+        ByteBuffer arcsBytes = header(arcCount(), fingerprint, arcs.capacity());
+        arcsBytes.put(arcs.duplicate().clear());
+        DataFiles.write(basePath.resolve(FILE_PREFIX + name + ARCS_FILE_SUFFIX), arcsBytes.clear());
+    }
+
+    //buffer of a stored file, positioned after its header, whose data has the given size in bytes
+    private static ByteBuffer header(int count, long fingerprint, int dataBytes) {
+        return ByteBuffer.allocate(HEADER_BYTES + dataBytes)
+                .putInt(FORMAT_VERSION)
+                .putInt(count)
+                .putLong(fingerprint);
+    }
+
+    //check if the stored file has a header of the current format and of the graph, followed by as many elements of
+    //the given size as the header announces
+    private static boolean hasHeader(ByteBuffer bytes, int elementBytes, long fingerprint) {
+        return bytes.capacity() >= HEADER_BYTES
+                && bytes.getInt(OFFSET_VERSION) == FORMAT_VERSION
+                && bytes.capacity() == HEADER_BYTES + (long) bytes.getInt(OFFSET_COUNT) * elementBytes
+                && bytes.getLong(OFFSET_FINGERPRINT) == fingerprint;
+    }
+
+    /**
+     * Returns the number of nodes of the hierarchy, equal to the number of nodes of its graph.
+     *
+     * @return int number of nodes
+     */
+
+    public int nodeCount() {
+        return ranks.capacity();
+    }
+
+    /**
+     * Returns the rank of the node of identity 'nodeId', nodes of low rank were contracted first.
+     *
+     * @param nodeId identity of the node
+     * @return int rank of the node
+     */
+
+    public int rank(int nodeId) {
+        return ranks.get(nodeId);
+    }
+
+    /**
+     * Returns the total number of arcs (edges and shortcuts) of the hierarchy.
+     *
+     * @return int number of arcs
+     */
+
+    public int arcCount() {
+        return arcs.capacity() / ARC_BYTES;
+    }
+
+    /**
+     * Returns the identity of the origin node of the arc of identity 'arcId'.
+     *
+     * @param arcId identity of the arc
+     * @return int identity of the origin node
+     */
+
+    public int arcFrom(int arcId) {
+        return arcs.getInt(arcId * ARC_BYTES + OFFSET_FROM);
+    }
+
+    /**
+     * Returns the identity of the destination node of the arc of identity 'arcId'.
+     *
+     * @param arcId identity of the arc
+     * @return int identity of the destination node
+     */
+
+    public int arcTo(int arcId) {
+        return arcs.getInt(arcId * ARC_BYTES + OFFSET_TO);
+    }
+
+    /**
+     * Returns the weight of the arc of identity 'arcId', its cost for the cost function of the hierarchy.
+     *
+     * @param arcId identity of the arc
+     * @return float weight of the arc
+     */
+
+    public float arcWeight(int arcId) {
+        return arcs.getFloat(arcId * ARC_BYTES + OFFSET_WEIGHT);
+    }
+
+    /**
+     * Check if the arc of identity 'arcId' is a shortcut.
+     *
+     * @param arcId identity of the arc
+     * @return boolean true if the arc is a shortcut, false if it is an edge of the graph
+     */
+
+    public boolean isShortcut(int arcId) {
+        return arcs.getInt(arcId * ARC_BYTES + OFFSET_SECOND_CHILD) != NO_CHILD;
+    }
+
+    /**
+     * Returns the identity of the edge of the graph corresponding to the arc of identity 'arcId'.
+     *
+     * @param arcId identity of an arc that is not a shortcut
+     * @return int identity of the edge
+     */
+
+    public int arcEdgeId(int arcId) {
+        assert !isShortcut(arcId);
+        return arcs.getInt(arcId * ARC_BYTES + OFFSET_FIRST_CHILD);
+    }
+
+    /**
+     * Returns the identity of the first arc replaced by the shortcut of identity 'arcId'.
+     *
+     * @param arcId identity of a shortcut
+     * @return int identity of the arc going from the origin of the shortcut to the contracted node
+     */
+
+    public int shortcutFirstArc(int arcId) {
+        assert isShortcut(arcId);
+        return arcs.getInt(arcId * ARC_BYTES + OFFSET_FIRST_CHILD);
+    }
+
+    /**
+     * Returns the identity of the second arc replaced by the shortcut of identity 'arcId'.
+     *
+     * @param arcId identity of a shortcut
+     * @return int identity of the arc going from the contracted node to the destination of the shortcut
+     */
+
+    public int shortcutSecondArc(int arcId) {
+        assert isShortcut(arcId);
+        return arcs.getInt(arcId * ARC_BYTES + OFFSET_SECOND_CHILD);
+    }
+
+    /**
+     * Returns the number of arcs leaving the node of identity 'nodeId' towards a node of higher rank.
+     *
+     * @param nodeId identity of the node
+     * @return int number of upward arcs of the node
+     */
+
+    public int upDegree(int nodeId) {
+        return upOffsets[nodeId + 1] - upOffsets[nodeId];
+    }
+
+    /**
+     * Returns the identity of the arcIndex-th arc leaving the node of identity 'nodeId' towards a node of higher rank.
+     *
+     * @param nodeId   identity of the node
+     * @param arcIndex index of the arc, between 0 (included) and upDegree(nodeId) (excluded)
+     * @return int identity of the arc
+     */
+
+    public int upArcId(int nodeId, int arcIndex) {
+        assert 0 <= arcIndex && arcIndex < upDegree(nodeId);
+        return upArcs[upOffsets[nodeId] + arcIndex];
+    }
+
+    /**
+     * Returns the number of arcs reaching the node of identity 'nodeId' from a node of higher rank.
+     *
+     * @param nodeId identity of the node
+     * @return int number of downward arcs reaching the node
+     */
+
+    public int downDegree(int nodeId) {
+        return downOffsets[nodeId + 1] - downOffsets[nodeId];
+    }
+
+    /**
+     * Returns the identity of the arcIndex-th arc reaching the node of identity 'nodeId' from a node of higher rank.
+     *
+     * @param nodeId   identity of the node
+     * @param arcIndex index of the arc, between 0 (included) and downDegree(nodeId) (excluded)
+     * @return int identity of the arc
+     */
+
+    public int downArcId(int nodeId, int arcIndex) {
+        assert 0 <= arcIndex && arcIndex < downDegree(nodeId);
+        return downArcs[downOffsets[nodeId] + arcIndex];
+    }
+
+    //an arc is upward if it leads to a node of higher rank
+    private boolean isUpward(int arcId) {
+        return rank(arcTo(arcId)) > rank(arcFrom(arcId));
+    }
+}
@@ -0,0 +1,289 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * ContractionHierarchyBuilder class
+ * Offline builder of the contraction hierarchy of a graph for a given cost function.
+ * Nodes are contracted one by one, by increasing priority (the number of shortcuts their contraction requires minus
+ * the number of arcs it removes, plus the number of their neighbours already contracted). When a node is contracted,
+ * a shortcut is added between two of its neighbours unless a local search finds a path between them that is not
+ * longer and avoids the node (a witness).
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class ContractionHierarchyBuilder {
+
+    //maximum number of nodes explored by a witness search, more shortcuts than necessary may be added beyond.
+    //Priorities are only estimations, so their witness searches are smaller than the ones of actual contractions.
+    private static final int PRIORITY_WITNESS_SEARCH_MAX_SETTLED = 30;
+    private static final int CONTRACTION_WITNESS_SEARCH_MAX_SETTLED = 300;
+
+    //initial capacity of the adjacency list of a node
+    private static final int INITIAL_ADJACENCY_CAPACITY = 4;
+
+    private static final String DEFAULT_NAME = "citybike";
+
+    private final int nodeCount;
+
+    //arcs of the hierarchy being built: edges of the graph then shortcuts
+    private int arcCount;
+    private int[] arcFrom;
+    private int[] arcTo;
+    private float[] arcWeight;
+    private int[] arcFirstChild;
+    private int[] arcSecondChild;
+
+    //arcs between nodes that are not contracted yet, by origin (out) and destination (in) node
+    private final int[][] outArcs;
+    private final int[] outArcsCount;
+    private final int[][] inArcs;
+    private final int[] inArcsCount;
+
+    private final boolean[] contracted;
+    private final int[] contractedNeighbours;
+    private final int[] ranks;
+
+    //search state of the witness searches
+    private final RouteSearchState witnessState;
+
+    //Non-instantiable class outside of build()
+    private ContractionHierarchyBuilder(Graph graph, CostFunction costFunction) {
+        nodeCount = graph.nodeCount();
+
+        arcFrom = new int[nodeCount];
+        arcTo = new int[nodeCount];
+        arcWeight = new float[nodeCount];
+        arcFirstChild = new int[nodeCount];
+        arcSecondChild = new int[nodeCount];
+
+        outArcs = new int[nodeCount][];
+        outArcsCount = new int[nodeCount];
+        inArcs = new int[nodeCount][];
+        inArcsCount = new int[nodeCount];
+        contracted = new boolean[nodeCount];
+        contractedNeighbours = new int[nodeCount];
+        ranks = new int[nodeCount];
+        witnessState = new RouteSearchState(nodeCount);
+
+        //edges of infinite cost don't exist for the cost function, and self-loops are never useful
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                int targetNodeId = graph.edgeTargetNodeId(edgeId);
+                float cost = (float) (costFunction.costFactor(nodeId, edgeId) * graph.edgeLength(edgeId));
+                if (targetNodeId != nodeId && cost < Float.POSITIVE_INFINITY) {
+                    addArc(nodeId, targetNodeId, cost, edgeId, -1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the contraction hierarchy of the given graph for the given cost function.
+     *
+     * @param graph        the Graph of the hierarchy
+     * @param costFunction the CostFunction associated to the edges of the graph
+     * @return ContractionHierarchy of the graph
+     */
+
+    public static ContractionHierarchy build(Graph graph, CostFunction costFunction) {
+        return new ContractionHierarchyBuilder(graph, costFunction).contractAll();
+    }
+
+    /**
+     * Builds the contraction hierarchy of the graph stored in the folder given as first argument, for the CityBikeCF
+     * cost function, and writes it in the same folder under the name given as second argument ("citybike" if absent).
+     *
+     * @param args folder of the graph, and optionally the name of the hierarchy
+     * @throws IOException if something went wrong while reading the graph or writing the hierarchy
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: ContractionHierarchyBuilder <graph directory> [name]");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        String name = args.length > 1 ? args[1] : DEFAULT_NAME;
+
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        ContractionHierarchy hierarchy = build(graph, CompiledCostFunction.compile(graph, new CityBikeCF(graph)));
+        hierarchy.writeTo(basePath, name, graph);
+        System.out.printf("%d nodes, %d arcs, built in %.1f s%n", hierarchy.nodeCount(), hierarchy.arcCount(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    //contracts all nodes by increasing priority, lazily updating the priority of the node about to be contracted
+    private ContractionHierarchy contractAll() {
+        NodePriorityQueue order = new NodePriorityQueue(nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            order.insertOrDecrease(nodeId, priority(nodeId));
+        }
+
+        int rank = 0;
+        while (!order.isEmpty()) {
+            int nodeId = order.removeMin();
+            float priority = priority(nodeId);
+            if (!order.isEmpty() && priority > order.minKey()) {
+                order.insertOrDecrease(nodeId, priority);
+                continue;
+            }
+
+            contract(nodeId);
+            ranks[nodeId] = rank++;
+
+            //the priority of the neighbours of the contracted node increases, it is recomputed when they are removed
+            for (int i = 0; i < outArcsCount[nodeId]; ++i) {
+                ++contractedNeighbours[arcTo[outArcs[nodeId][i]]];
+            }
+            for (int i = 0; i < inArcsCount[nodeId]; ++i) {
+                ++contractedNeighbours[arcFrom[inArcs[nodeId][i]]];
+            }
+        }
+
+        ByteBuffer arcs = ByteBuffer.allocate(arcCount * 20);
+        for (int a = 0; a < arcCount; ++a) {
+            arcs.putInt(arcFrom[a]).putInt(arcTo[a]).putFloat(arcWeight[a])
+                    .putInt(arcFirstChild[a]).putInt(arcSecondChild[a]);
+        }
+        return new ContractionHierarchy(IntBuffer.wrap(ranks), arcs.flip());
+    }
+
+    private float priority(int nodeId) {
+        int shortcuts = shortcuts(nodeId, false);
+        return shortcuts - outArcsCount[nodeId] - inArcsCount[nodeId] + contractedNeighbours[nodeId];
+    }
+
+    //contracts the node: adds the needed shortcuts, then removes the node from the remaining graph
+    private void contract(int nodeId) {
+        shortcuts(nodeId, true);
+        contracted[nodeId] = true;
+
+        for (int i = 0; i < outArcsCount[nodeId]; ++i) {
+            int target = arcTo[outArcs[nodeId][i]];
+            inArcsCount[target] = removeArcsOf(inArcs[target], inArcsCount[target], nodeId, true);
+        }
+        for (int i = 0; i < inArcsCount[nodeId]; ++i) {
+            int source = arcFrom[inArcs[nodeId][i]];
+            outArcsCount[source] = removeArcsOf(outArcs[source], outArcsCount[source], nodeId, false);
+        }
+    }
+
+    //removes the arcs of the list coming from (or going to) the given node, returns the new size of the list
+    private int removeArcsOf(int[] list, int size, int nodeId, boolean byOrigin) {
+        int newSize = 0;
+        for (int i = 0; i < size; ++i) {
+            int other = byOrigin ? arcFrom[list[i]] : arcTo[list[i]];
+            if (other != nodeId) {
+                list[newSize++] = list[i];
+            }
+        }
+        return newSize;
+    }
+
+    //counts (and adds if add is true) the shortcuts needed to contract the given node
+    private int shortcuts(int nodeId, boolean add) {
+        int shortcuts = 0;
+        float maxOutWeight = 0;
+        for (int j = 0; j < outArcsCount[nodeId]; ++j) {
+            maxOutWeight = Math.max(maxOutWeight, arcWeight[outArcs[nodeId][j]]);
+        }
+
+        //arcs may be added to the lists of the node while iterating, only the initial ones are considered
+        int inCount = inArcsCount[nodeId];
+        int outCount = outArcsCount[nodeId];
+        for (int i = 0; i < inCount; ++i) {
+            int inArc = inArcs[nodeId][i];
+            int source = arcFrom[inArc];
+            float inWeight = arcWeight[inArc];
+            witnessSearch(source, nodeId, inWeight + maxOutWeight,
+                    add ? CONTRACTION_WITNESS_SEARCH_MAX_SETTLED : PRIORITY_WITNESS_SEARCH_MAX_SETTLED);
+
+            for (int j = 0; j < outCount; ++j) {
+                int outArc = outArcs[nodeId][j];
+                int target = arcTo[outArc];
+                float viaWeight = inWeight + arcWeight[outArc];
+                if (target != source && witnessState.distance(target) > viaWeight) {
+                    ++shortcuts;
+                    if (add) {
+                        addArc(source, target, viaWeight, inArc, outArc);
+                        //the shortcut is the new best known path, it serves as a witness for the following arcs
+                        witnessState.reach(target, viaWeight, source);
+                    }
+                }
+            }
+        }
+        return shortcuts;
+    }
+
+    //Dijkstra search from source in the remaining graph without the excluded node, bounded by maxWeight
+    private void witnessSearch(int source, int excludedNodeId, float maxWeight, int maxSettled) {
+        witnessState.reset();
+        NodePriorityQueue queue = witnessState.queue();
+        witnessState.reach(source, 0f, source);
+        queue.insertOrDecrease(source, 0f);
+
+        int settled = 0;
+        while (!queue.isEmpty() && settled < maxSettled) {
+            int n = queue.removeMin();
+            witnessState.settle(n);
+            ++settled;
+
+            float distance = witnessState.distance(n);
+            for (int i = 0; i < outArcsCount[n]; ++i) {
+                int arc = outArcs[n][i];
+                int target = arcTo[arc];
+                if (target == excludedNodeId || witnessState.isSettled(target)) {
+                    continue;
+                }
+                //paths longer than maxWeight can't be witnesses, there is no need to queue them
+                float d = distance + arcWeight[arc];
+                if (d <= maxWeight && d < witnessState.distance(target)) {
+                    witnessState.reach(target, d, n);
+                    queue.insertOrDecrease(target, d);
+                }
+            }
+        }
+    }
+
+    private void addArc(int from, int to, float weight, int firstChild, int secondChild) {
+        if (arcCount == arcFrom.length) {
+            int newCapacity = Math.max(INITIAL_ADJACENCY_CAPACITY, arcCount * 2);
+            arcFrom = Arrays.copyOf(arcFrom, newCapacity);
+            arcTo = Arrays.copyOf(arcTo, newCapacity);
+            arcWeight = Arrays.copyOf(arcWeight, newCapacity);
+            arcFirstChild = Arrays.copyOf(arcFirstChild, newCapacity);
+            arcSecondChild = Arrays.copyOf(arcSecondChild, newCapacity);
+        }
+        int arcId = arcCount++;
+        arcFrom[arcId] = from;
+        arcTo[arcId] = to;
+        arcWeight[arcId] = weight;
+        arcFirstChild[arcId] = firstChild;
+        arcSecondChild[arcId] = secondChild;
+
+        outArcsCount[from] = append(outArcs, outArcsCount[from], from, arcId);
+        inArcsCount[to] = append(inArcs, inArcsCount[to], to, arcId);
+    }
+
+    //appends the arc to the list of the given node, returns the new size of the list
+    private static int append(int[][] lists, int size, int nodeId, int arcId) {
+        if (lists[nodeId] == null) {
+            lists[nodeId] = new int[INITIAL_ADJACENCY_CAPACITY];
+        } else if (size == lists[nodeId].length) {
+            lists[nodeId] = Arrays.copyOf(lists[nodeId], size * 2);
+        }
+        lists[nodeId][size] = arcId;
+        return size + 1;
+    }
+}
@@ -0,0 +1,170 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+
+import java.util.Arrays;
+
+/**
+ * ContractionHierarchyRouteComputer class
+ * Computes the best route between two nodes using a contraction hierarchy: a forward search from the start node
+ * only follows arcs leading to nodes of higher rank, a backward search from the end node only follows arcs coming
+ * from nodes of higher rank, and the best route goes through the node where both searches meet with the lowest total
+ * cost. The shortcuts of that route are then unpacked into the edges of the graph.
+ * Instances are not thread-safe.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class ContractionHierarchyRouteComputer {
+
+    //predecessor of the start and end nodes in the search states
+    private static final int NO_ARC = -1;
+
+    private final Graph graph;
+    private final ContractionHierarchy hierarchy;
+
+    private final RouteSearchState forwardState;
+    private final RouteSearchState backwardState;
+
+    //stack of arcs used to unpack shortcuts
+    private int[] unpackStack;
+    //identities of the edges of the route being unpacked, the first edgeCount ones being used
+    private int[] edgeBuffer;
+    private int edgeCount;
+
+    /**
+     * Constructor for ContractionHierarchyRouteComputer
+     *
+     * @param graph     the Graph in which the Route needs to be found
+     * @param hierarchy the ContractionHierarchy of the graph, built for the wanted cost function
+     * @throws IllegalArgumentException if the hierarchy doesn't have as many nodes as the graph
+     */
+
+    public ContractionHierarchyRouteComputer(Graph graph, ContractionHierarchy hierarchy) {
+        Preconditions.checkArgument(graph.nodeCount() == hierarchy.nodeCount());
+        this.graph = graph;
+        this.hierarchy = hierarchy;
+        forwardState = new RouteSearchState(graph.nodeCount());
+        backwardState = new RouteSearchState(graph.nodeCount());
+        unpackStack = new int[16];
+        edgeBuffer = new int[16];
+    }
+
+    /**
+     * Computes the Route which has the minimal total cost between startNodeId and endNodeId nodes.
+     * If no route is found, returns null.
+     *
+     * @param startNodeId start of the route
+     * @param endNodeId   end of the route
+     * @return Route object made of the edges of the graph that represents the best route between the two nodes
+     * @throws IllegalArgumentException if startNodeId and endNodeId are equal
+     */
+
+    public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        Preconditions.checkArgument(startNodeId != endNodeId);
+        forwardState.reset();
+        backwardState.reset();
+        NodePriorityQueue forwardQueue = forwardState.queue();
+        NodePriorityQueue backwardQueue = backwardState.queue();
+
+        forwardState.reach(startNodeId, 0f, NO_ARC);
+        forwardQueue.insertOrDecrease(startNodeId, 0f);
+        backwardState.reach(endNodeId, 0f, NO_ARC);
+        backwardQueue.insertOrDecrease(endNodeId, 0f);
+
+        float bestCost = Float.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+
+        //a search stops once its next node can't improve the best cost, the searches alternate by lowest key
+        while (true) {
+            boolean forwardActive = !forwardQueue.isEmpty() && forwardQueue.minKey() < bestCost;
+            boolean backwardActive = !backwardQueue.isEmpty() && backwardQueue.minKey() < bestCost;
+            if (!forwardActive && !backwardActive) {
+                break;
+            }
+
+            boolean forward = forwardActive && (!backwardActive || forwardQueue.minKey() <= backwardQueue.minKey());
+            RouteSearchState state = forward ? forwardState : backwardState;
+            RouteSearchState otherState = forward ? backwardState : forwardState;
+
+            int n = state.queue().removeMin();
+            state.settle(n);
+            float distance = state.distance(n);
+
+            float viaCost = distance + otherState.distance(n);
+            if (viaCost < bestCost) {
+                bestCost = viaCost;
+                meetingNodeId = n;
+            }
+
+            int degree = forward ? hierarchy.upDegree(n) : hierarchy.downDegree(n);
+            for (int i = 0; i < degree; ++i) {
+                int arcId = forward ? hierarchy.upArcId(n, i) : hierarchy.downArcId(n, i);
+                int nPrime = forward ? hierarchy.arcTo(arcId) : hierarchy.arcFrom(arcId);
+                if (state.isSettled(nPrime)) {
+                    continue;
+                }
+                float d = distance + hierarchy.arcWeight(arcId);
+                if (d < state.distance(nPrime)) {
+                    state.reach(nPrime, d, arcId);
+                    state.queue().insertOrDecrease(nPrime, d);
+                }
+            }
+        }
+
+        if (meetingNodeId == -1) {
+            return null;
+        }
+        return new CompactRoute(graph, startNodeId, edgesThrough(meetingNodeId));
+    }
+
+    //identities of the edges of the route going through the given meeting node, by unpacking the arcs of both
+    //searches
+    private int[] edgesThrough(int meetingNodeId) {
+        //arcs of the forward search, from the meeting node back to the start node
+        int[] forwardArcs = new int[16];
+        int forwardCount = 0;
+        for (int arc = forwardState.predecessor(meetingNodeId); arc != NO_ARC;
+             arc = forwardState.predecessor(hierarchy.arcFrom(arc))) {
+            if (forwardCount == forwardArcs.length) {
+                forwardArcs = Arrays.copyOf(forwardArcs, forwardCount * 2);
+            }
+            forwardArcs[forwardCount++] = arc;
+        }
+
+        edgeCount = 0;
+        for (int i = forwardCount - 1; i >= 0; --i) {
+            unpack(forwardArcs[i]);
+        }
+        //arcs of the backward search, from the meeting node to the end node
+        for (int arc = backwardState.predecessor(meetingNodeId); arc != NO_ARC;
+             arc = backwardState.predecessor(hierarchy.arcTo(arc))) {
+            unpack(arc);
+        }
+        return Arrays.copyOf(edgeBuffer, edgeCount);
+    }
+
+    //adds the identities of the edges of the graph making up the given arc to the edge buffer, in order
+    private void unpack(int arcId) {
+        int size = 0;
+        unpackStack[size++] = arcId;
+        while (size > 0) {
+            int arc = unpackStack[--size];
+            if (hierarchy.isShortcut(arc)) {
+                if (size + 2 > unpackStack.length) {
+                    unpackStack = Arrays.copyOf(unpackStack, unpackStack.length * 2);
+                }
+                //the second arc is pushed first, so that the first one is unpacked first
+                unpackStack[size++] = hierarchy.shortcutSecondArc(arc);
+                unpackStack[size++] = hierarchy.shortcutFirstArc(arc);
+            } else {
+                if (edgeCount == edgeBuffer.length) {
+                    edgeBuffer = Arrays.copyOf(edgeBuffer, edgeCount * 2);
+                }
+                edgeBuffer[edgeCount++] = hierarchy.arcEdgeId(arc);
+            }
+        }
+    }
+}
@@ -4,6 +4,7 @@ import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.Preconditions;
 
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * ElevationProfileComputer class
@@ -21,6 +22,8 @@ public final class ElevationProfileComputer {
     /**
      * Computes the elevation profile of the given Route route param given the double maxStepLength maximum spacing
      * Throws IllegalArgumentException if maxStepLength <= 0.
+     * The edges and the samples are swept together once, so that the time is linear in their number. The edges of a
+     * CompactRoute aren't built: the samples of each edge are read from the graph, decoding its profile at most once.
      * @param route the route of which we will compute the elevation profile
      * @param maxStepLength the maximum spacing between profile samples
      * @return ElevationProfile the elevation profile object of the given route
@@ -51,45 +54,128 @@ public final class ElevationProfileComputer {
     }
 
 
-    // Initialize samples array with NaN values
+    // Samples the elevations of the route in a single sweep over its edges, the samples and the edges being both
+    // in increasing order of position, so that the time is linear in their number. A sample at the junction of two
+    // edges takes the elevation of the start of the next edge, or, if it is unknown (NaN) and the sample is neither the
+    // first nor the last one, the elevation of the end of the previous edge. The other samples of an edge are computed
+    // together, see RouteElevations.elevationsAt.
     private static float[] initializeSamplesArray(int SAMPLE_NUMBER, Route route, double STEP_LENGTH){
-        float[] samples = new float[SAMPLE_NUMBER];
+        double[] elevations = new double[SAMPLE_NUMBER];
+        RouteElevations routeElevations = route instanceof CompactRoute compactRoute
+                ? new CompactRouteElevations(compactRoute)
+                : new EdgesElevations(route.edges());
+        int lastEdgeIndex = routeElevations.edgeCount() - 1;
+
+        int edgeIndex = 0;
+        double edgeStart = 0;
+        double edgeEnd = routeElevations.edgeLength(0);
+        //first sample of the current edge whose elevation isn't computed yet
+        int runStart = 0;
+
+        for (int i = 0; i < SAMPLE_NUMBER; ++i){
+            double position = Math2.clamp(0, i*STEP_LENGTH, route.length());
+
+            //the sample is on the first edge ending at or after its position
+            while(position > edgeEnd && edgeIndex < lastEdgeIndex){
+                routeElevations.elevationsAt(edgeIndex, runStart*STEP_LENGTH - edgeStart, STEP_LENGTH, elevations,
+                        runStart, i - runStart);
+                runStart = i;
+                edgeIndex += 1;
+                edgeStart = edgeEnd;
+                edgeEnd += routeElevations.edgeLength(edgeIndex);
+            }
 
-        Edge previousEdge;
-        boolean notFirstNorLastValueOfI;
-        boolean consideredPointIsOnTheExtremityOfAnEdge;
-        boolean consideredPointHasNaNValue;
-        double searchForRightEdge;
-        int indexOfPreviousEdge;
+            if(position == edgeEnd && edgeIndex < lastEdgeIndex){
+                routeElevations.elevationsAt(edgeIndex, runStart*STEP_LENGTH - edgeStart, STEP_LENGTH, elevations,
+                        runStart, i - runStart);
+                double elevation = routeElevations.elevationAt(edgeIndex + 1, 0);
+                if(Double.isNaN(elevation) && i != 0 && i != SAMPLE_NUMBER - 1){
+                    elevation = routeElevations.elevationAt(edgeIndex, routeElevations.edgeLength(edgeIndex));
+                }
+                elevations[i] = elevation;
+                runStart = i + 1;
+            }
+        }
+        routeElevations.elevationsAt(edgeIndex, runStart*STEP_LENGTH - edgeStart, STEP_LENGTH, elevations,
+                runStart, SAMPLE_NUMBER - runStart);
 
+        float[] samples = new float[SAMPLE_NUMBER];
         for (int i = 0; i < SAMPLE_NUMBER; ++i){
+            samples[i] = (float) elevations[i];
+        }
+        return samples;
+    }
 
-            notFirstNorLastValueOfI = i != 0 && i != SAMPLE_NUMBER - 1;
-            consideredPointIsOnTheExtremityOfAnEdge = route.points().contains(route.pointAt(i*STEP_LENGTH));
-            consideredPointHasNaNValue = Float.isNaN((float) route.elevationAt(i*STEP_LENGTH));
-            // Here, we treat the case where a NaN overlaps a valid elevation value (last node of an edge
-            // and first node of the next edge) to prioritize the valid elevation value.
-            if(notFirstNorLastValueOfI && consideredPointHasNaNValue && consideredPointIsOnTheExtremityOfAnEdge){
+    // Elevations along the edges of a route, given by their index in the route.
+    private interface RouteElevations {
 
-                searchForRightEdge = route.edges().get(0).length();
-                indexOfPreviousEdge = 0;
+        int edgeCount();
 
-                //locate previous edge
-                while(searchForRightEdge < i*STEP_LENGTH){
-                    indexOfPreviousEdge += 1;
-                    searchForRightEdge += route.edges().get(indexOfPreviousEdge).length();
-                }
+        double edgeLength(int edgeIndex);
+
+        double elevationAt(int edgeIndex, double position);
+
+        // Writes the elevations at the positions startPosition + j * stepLength along the edge, for j from 0 to
+        // count - 1, in destination from the index offset.
+        void elevationsAt(int edgeIndex, double startPosition, double stepLength, double[] destination, int offset,
+                          int count);
+    }
+
+    // Elevations of the edges of any route, read from their profiles.
+    private record EdgesElevations(List<Edge> edges) implements RouteElevations {
 
-                previousEdge = route.edges().get(indexOfPreviousEdge);
+        @Override
+        public int edgeCount() {
+            return edges.size();
+        }
+
+        @Override
+        public double edgeLength(int edgeIndex) {
+            return edges.get(edgeIndex).length();
+        }
+
+        @Override
+        public double elevationAt(int edgeIndex, double position) {
+            return edges.get(edgeIndex).elevationAt(position);
+        }
 
-                //Take previous edge last sample
-                samples[i] = (float) previousEdge.elevationAt(previousEdge.length());
-            }else{
-                samples[i] = (float) route.elevationAt(i*STEP_LENGTH);
+        @Override
+        public void elevationsAt(int edgeIndex, double startPosition, double stepLength, double[] destination,
+                                 int offset, int count) {
+            Edge edge = edges.get(edgeIndex);
+            for (int j = 0; j < count; ++j){
+                destination[offset + j] = edge.elevationAt(startPosition + j * stepLength);
             }
         }
+    }
 
-        return samples;
+    // Elevations of the edges of a CompactRoute, read from the graph without building the edges.
+    private record CompactRouteElevations(CompactRoute route) implements RouteElevations {
+
+        @Override
+        public int edgeCount() {
+            return route.edgeCount();
+        }
+
+        @Override
+        public double edgeLength(int edgeIndex) {
+            return route.graph().edgeLength(route.edgeId(edgeIndex));
+        }
+
+        @Override
+        public double elevationAt(int edgeIndex, double position) {
+            return route.graph().edgeElevationAt(route.edgeId(edgeIndex), position);
+        }
+
+        @Override
+        public void elevationsAt(int edgeIndex, double startPosition, double stepLength, double[] destination,
+                                 int offset, int count) {
+            //an empty run doesn't decode the profile
+            if (count > 0){
+                route.graph().edgeElevationsAt(route.edgeId(edgeIndex), startPosition, stepLength, destination,
+                        offset, count);
+            }
+        }
     }
 
     // Method gets rid of Nan values at the beginning and treats the case of an all NaN samples array.
@@ -94,16 +94,36 @@ public class GpxGenerator {
      */
 
     public static void writeGpx(String fileName, Route route, ElevationProfile elevationProfile) throws IOException {
+        try (Writer w = new FileWriter(fileName)) {
+            writeGpx(w, route, elevationProfile);
+        }
+    }
+
+    /**
+     * Writes the Gpx Document based on the route and elevationProfile parameters to the given writer, which is
+     * neither flushed nor closed.
+     *
+     * @param writer           Writer to which the Gpx Document is written
+     * @param route            Route on which the Gpx Document will be based
+     * @param elevationProfile the ElevationProfile corresponding to the route
+     * @throws IOException if something went wrong while writing
+     */
+
+    public static void writeGpx(Writer writer, Route route, ElevationProfile elevationProfile) throws IOException {
         Document doc = createGpx(route, elevationProfile);
 
-        try (Writer w = new FileWriter(fileName)) {
+        try {
             Transformer transformer = TransformerFactory
                     .newDefaultInstance()
                     .newTransformer();
             transformer.setOutputProperty(OutputKeys.INDENT, "yes");
             transformer.transform(new DOMSource(doc),
-                    new StreamResult(w));
+                    new StreamResult(writer));
         } catch (TransformerException e) {
+            //the transformer reports the exceptions of the writer wrapped
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
             throw new Error(e); //Should never happen
         }
     }
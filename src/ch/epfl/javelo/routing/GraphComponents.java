@@ -0,0 +1,328 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.DataFiles;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+/**
+ * GraphComponents class
+ * Represents the connected components of the graph for a given cost function, the edges of infinite cost being
+ * removed. Every node has two labels:
+ * - the label of its strongly connected component, numbered in reverse topological order: if a node can reach
+ * another one, the label of the first is greater than or equal to the label of the second (equal if and only if they
+ * reach each other),
+ * - the label of its weakly connected component: nodes with different labels can't reach each other.
+ * Together, they allow rejecting in constant time most pairs of nodes between which no route exists.
+ * The stored labels are preceded by a header: the version of the format, the number of nodes and the fingerprint of
+ * the graph they were computed for (see Graph.fingerprint), so that components of another graph, or written in an
+ * older format, are never loaded.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class GraphComponents {
+
+    private static final String DEFAULT_NAME = "citybike";
+    private static final String FILE_PREFIX = "components_";
+    private static final String FILE_SUFFIX = ".bin";
+
+    //version of the format of the stored components, to increment whenever it changes
+    private static final int FORMAT_VERSION = 1;
+
+    //Offsets of the header fields in the stored file, followed by the labels
+    private static final int OFFSET_VERSION = 0;
+    private static final int OFFSET_NODE_COUNT = OFFSET_VERSION + Integer.BYTES;
+    private static final int OFFSET_FINGERPRINT = OFFSET_NODE_COUNT + Integer.BYTES;
+    private static final int HEADER_BYTES = OFFSET_FINGERPRINT + Long.BYTES;
+
+    //Offsets of the labels of a node in the buffer
+    private static final int OFFSET_STRONG = 0;
+    private static final int OFFSET_WEAK = OFFSET_STRONG + 1;
+    private static final int NODE_INTS = OFFSET_WEAK + 1;
+
+    //labels of the nodes, NODE_INTS int values each
+    private final IntBuffer labels;
+
+    /**
+     * GraphComponents constructor.
+     *
+     * @param labels buffer containing, for each node, the label of its strongly connected component followed by the
+     *               label of its weakly connected component
+     * @throws IllegalArgumentException if the size of the buffer is odd
+     */
+
+    public GraphComponents(IntBuffer labels) {
+        Preconditions.checkArgument(labels.capacity() % NODE_INTS == 0);
+        this.labels = labels;
+    }
+
+    /**
+     * Computes the connected components of the graph for the given cost function, using the edges of finite cost only.
+     *
+     * @param graph        the Graph of the components
+     * @param costFunction the CostFunction associated to the edges of the graph
+     * @return GraphComponents of the graph
+     */
+
+    public static GraphComponents compute(Graph graph, CostFunction costFunction) {
+        int nodeCount = graph.nodeCount();
+        int[] strong = strongComponents(graph, costFunction);
+        int[] weak = weakComponents(graph, costFunction);
+
+        IntBuffer labels = IntBuffer.allocate(NODE_INTS * nodeCount);
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            labels.put(strong[nodeId]).put(weak[nodeId]);
+        }
+        return new GraphComponents(labels.flip());
+    }
+
+    /**
+     * Computes the connected components of the graph stored in the folder given as first argument, for the CityBikeCF
+     * cost function, and writes them in the same folder under the name given as second argument ("citybike" if
+     * absent).
+     *
+     * @param args folder of the graph, and optionally the name of the components
+     * @throws IOException if something went wrong while reading the graph or writing the components
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: GraphComponents <graph directory> [name]");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        String name = args.length > 1 ? args[1] : DEFAULT_NAME;
+
+        Graph graph = Graph.loadFrom(basePath);
+        compute(graph, CompiledCostFunction.compile(graph, new CityBikeCF(graph))).writeTo(basePath, name, graph);
+    }
+
+    /**
+     * Loads the components stored in the basePath folder under the given name (see writeTo), if they were computed
+     * for the given graph and written in the current format.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the components, usually the name of their cost function
+     * @param graph    the Graph of the components
+     * @return GraphComponents instance, or null if the stored components don't match the graph or the format
+     * @throws IOException if something went wrong while loading data from the file
+     */
+
+    public static GraphComponents loadFrom(Path basePath, String name, Graph graph) throws IOException {
+        ByteBuffer bytes = DataFiles.load(basePath.resolve(FILE_PREFIX + name + FILE_SUFFIX));
+        if (bytes.capacity() < HEADER_BYTES
+                || bytes.getInt(OFFSET_VERSION) != FORMAT_VERSION
+                || bytes.getInt(OFFSET_NODE_COUNT) != graph.nodeCount()
+                || bytes.capacity() != HEADER_BYTES + NODE_INTS * graph.nodeCount() * Integer.BYTES
+                || bytes.getLong(OFFSET_FINGERPRINT) != graph.fingerprint()) {
+            return null;
+        }
+        return new GraphComponents(bytes.position(HEADER_BYTES).slice().asIntBuffer());
+    }
+
+    /**
+     * Loads the components stored in the basePath folder under the given name if they exist and match the graph,
+     * otherwise computes them for the given cost function.
+     *
+     * @param basePath     path where data files are stored
+     * @param name         name of the components, usually the name of their cost function
+     * @param graph        the Graph of the components
+     * @param costFunction the CostFunction used if no matching components are stored
+     * @return GraphComponents instance
+     * @throws IOException if something went wrong while loading data from the file
+     */
+
+    public static GraphComponents loadOrCompute(Path basePath, String name, Graph graph, CostFunction costFunction)
+            throws IOException {
+        try {
+            GraphComponents stored = loadFrom(basePath, name, graph);
+            if (stored != null) {
+                return stored;
+            }
+        } catch (NoSuchFileException e) {
+            //no stored components, they are computed below
+        }
+        return compute(graph, costFunction);
+    }
+
+    /**
+     * Writes the components in the basePath folder under the given name, next to the files of the graph, preceded by
+     * the header identifying the graph they were computed for.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the components, usually the name of their cost function
+     * @param graph    the Graph of the components
+     * @throws IOException if something went wrong while writing the file
+     * @throws IllegalArgumentException if the graph doesn't have as many nodes as the components
+     */
+
+    public void writeTo(Path basePath, String name, Graph graph) throws IOException {
+        Preconditions.checkArgument(graph.nodeCount() == nodeCount());
+        ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES + labels.capacity() * Integer.BYTES)
+                .putInt(FORMAT_VERSION)
+                .putInt(nodeCount())
+                .putLong(graph.fingerprint());
+        bytes.asIntBuffer().put(labels.duplicate().clear());
+        bytes.clear();
+        DataFiles.write(basePath.resolve(FILE_PREFIX + name + FILE_SUFFIX), bytes);
+    }
+
+    /**
+     * Returns the number of nodes of the graph of the components.
+     *
+     * @return int number of nodes
+     */
+
+    public int nodeCount() {
+        return labels.capacity() / NODE_INTS;
+    }
+
+    /**
+     * Returns the label of the strongly connected component of the node.
+     *
+     * @param nodeId identity of the node
+     * @return int label of the strongly connected component, two nodes reach each other if and only if their labels
+     * are equal
+     */
+
+    public int strongComponent(int nodeId) {
+        return labels.get(NODE_INTS * nodeId + OFFSET_STRONG);
+    }
+
+    /**
+     * Returns the label of the weakly connected component of the node.
+     *
+     * @param nodeId identity of the node
+     * @return int label of the weakly connected component
+     */
+
+    public int weakComponent(int nodeId) {
+        return labels.get(NODE_INTS * nodeId + OFFSET_WEAK);
+    }
+
+    /**
+     * Check, in constant time, if a route may exist from the node startNodeId to the node endNodeId.
+     *
+     * @param startNodeId start of the route
+     * @param endNodeId   end of the route
+     * @return boolean false if no route exists for sure, true if a route exists (when both nodes are in the same
+     * strongly connected component) or may exist
+     */
+
+    public boolean mayReach(int startNodeId, int endNodeId) {
+        return weakComponent(startNodeId) == weakComponent(endNodeId)
+                && strongComponent(startNodeId) >= strongComponent(endNodeId);
+    }
+
+    //Iterative version of Tarjan's algorithm, components are labelled in the order they are completed, which is the
+    //reverse topological order of the graph of the components
+    private static int[] strongComponents(Graph graph, CostFunction costFunction) {
+        int nodeCount = graph.nodeCount();
+        int[] component = new int[nodeCount];
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+
+        //nodes of the components being built
+        int[] stack = new int[nodeCount];
+        int stackSize = 0;
+        //nodes being visited, with the index of their next edge to visit
+        int[] callStack = new int[nodeCount];
+        int[] nextEdgeIndex = new int[nodeCount];
+        int callStackSize = 0;
+
+        int nextIndex = 1;
+        int componentCount = 0;
+        for (int root = 0; root < nodeCount; ++root) {
+            if (index[root] != 0) {
+                continue;
+            }
+            index[root] = lowLink[root] = nextIndex++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            callStack[callStackSize] = root;
+            nextEdgeIndex[callStackSize++] = 0;
+
+            while (callStackSize > 0) {
+                int n = callStack[callStackSize - 1];
+                int edgeIndex = nextEdgeIndex[callStackSize - 1];
+                if (edgeIndex < graph.nodeOutDegree(n)) {
+                    nextEdgeIndex[callStackSize - 1] = edgeIndex + 1;
+                    int edgeId = graph.nodeOutEdgeId(n, edgeIndex);
+                    if (costFunction.costFactor(n, edgeId) == Double.POSITIVE_INFINITY) {
+                        continue;
+                    }
+                    int nPrime = graph.edgeTargetNodeId(edgeId);
+                    if (index[nPrime] == 0) {
+                        index[nPrime] = lowLink[nPrime] = nextIndex++;
+                        stack[stackSize++] = nPrime;
+                        onStack[nPrime] = true;
+                        callStack[callStackSize] = nPrime;
+                        nextEdgeIndex[callStackSize++] = 0;
+                    } else if (onStack[nPrime]) {
+                        lowLink[n] = Math.min(lowLink[n], index[nPrime]);
+                    }
+                } else {
+                    //all the edges of n are visited, n is the root of a component or gives its low link to its parent
+                    --callStackSize;
+                    if (lowLink[n] == index[n]) {
+                        int m;
+                        do {
+                            m = stack[--stackSize];
+                            onStack[m] = false;
+                            component[m] = componentCount;
+                        } while (m != n);
+                        ++componentCount;
+                    }
+                    if (callStackSize > 0) {
+                        int parent = callStack[callStackSize - 1];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[n]);
+                    }
+                }
+            }
+        }
+        return component;
+    }
+
+    //Union-find of the nodes joined by an edge of finite cost, labels are the indices of the roots of the sets
+    private static int[] weakComponents(Graph graph, CostFunction costFunction) {
+        int nodeCount = graph.nodeCount();
+        int[] parent = new int[nodeCount];
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            parent[nodeId] = nodeId;
+        }
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); ++i) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                if (costFunction.costFactor(nodeId, edgeId) == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                int root1 = root(parent, nodeId);
+                int root2 = root(parent, graph.edgeTargetNodeId(edgeId));
+                if (root1 != root2) {
+                    parent[Math.max(root1, root2)] = Math.min(root1, root2);
+                }
+            }
+        }
+        for (int nodeId = 0; nodeId < nodeCount; ++nodeId) {
+            parent[nodeId] = root(parent, nodeId);
+        }
+        return parent;
+    }
+
+    //root of the set of the node, with path halving
+    private static int root(int[] parent, int nodeId) {
+        while (parent[nodeId] != nodeId) {
+            parent[nodeId] = parent[parent[nodeId]];
+            nodeId = parent[nodeId];
+        }
+        return nodeId;
+    }
+}
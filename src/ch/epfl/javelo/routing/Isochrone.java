@@ -0,0 +1,68 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.projection.PointCh;
+
+import java.util.List;
+
+/**
+ * Isochrone record
+ * Represents the part of the graph reachable from a start node within a maximal cost: the nodes whose best route
+ * from the start node costs at most maxCost, in increasing order of cost, and optionally the boundary of the area
+ * they cover.
+ * The boundary is made of the points where the cost reaches maxCost along the edges leaving the area, sorted by
+ * angle around the start node, so that they can be drawn as a polygon.
+ *
+ * @param startNodeId identity of the start node
+ * @param maxCost     maximal cost of the routes from the start node
+ * @param nodeIds     identities of the reachable nodes, in increasing order of cost (the start node being the first)
+ * @param costs       costs of the best routes to the reachable nodes, in the same order
+ * @param boundary    points of the boundary of the reachable area, empty if it wasn't computed
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public record Isochrone(int startNodeId, double maxCost, int[] nodeIds, float[] costs, List<PointCh> boundary) {
+
+    /**
+     * @throws IllegalArgumentException if maxCost is negative, or if nodeIds and costs don't have the same size
+     */
+
+    public Isochrone {
+        Preconditions.checkArgument(maxCost >= 0 && nodeIds.length == costs.length);
+        boundary = List.copyOf(boundary);
+    }
+
+    /**
+     * Returns the number of reachable nodes.
+     *
+     * @return int number of nodes whose cost is at most maxCost
+     */
+
+    public int nodeCount() {
+        return nodeIds.length;
+    }
+
+    /**
+     * Returns the identity of the index-th reachable node, in increasing order of cost.
+     *
+     * @param index starts at 0
+     * @return int identity of the node
+     */
+
+    public int nodeId(int index) {
+        return nodeIds[index];
+    }
+
+    /**
+     * Returns the cost of the best route to the index-th reachable node, in increasing order of cost.
+     *
+     * @param index starts at 0
+     * @return float cost of the route from the start node
+     */
+
+    public float cost(int index) {
+        return costs[index];
+    }
+}
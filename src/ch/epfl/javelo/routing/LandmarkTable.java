@@ -0,0 +1,387 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.DataFiles;
+import ch.epfl.javelo.data.Graph;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * LandmarkTable class
+ * Represents the distances, for a given cost function, between a few nodes of the graph called landmarks and every
+ * node of the graph, in both directions. Thanks to the triangle inequality, these distances give a lower bound of the
+ * cost of the best route between any two nodes (ALT heuristic), which is usually much tighter than the crow-flies
+ * distance when the cost factors are greater than 1.
+ * The table is computed by compute (or main) and can be stored next to the other files of the graph. Both stored
+ * files are preceded by a header: the version of the format, the number of landmarks (or nodes) and the fingerprint of
+ * the graph the table was computed for (see Graph.fingerprint), so that a table of another graph, whose distances
+ * would no longer be lower bounds, is never loaded.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class LandmarkTable {
+
+    //number of landmarks used by a search, the ones giving the best bound between its start and end nodes
+    public static final int ACTIVE_LANDMARKS = 4;
+
+    private static final int DEFAULT_LANDMARK_COUNT = 16;
+    private static final String DEFAULT_NAME = "citybike";
+
+    //version of the format of the stored table, to increment whenever it changes
+    private static final int FORMAT_VERSION = 1;
+
+    //Offsets of the header fields in both stored files, followed by the landmarks or the distances
+    private static final int OFFSET_VERSION = 0;
+    private static final int OFFSET_COUNT = OFFSET_VERSION + Integer.BYTES;
+    private static final int OFFSET_FINGERPRINT = OFFSET_COUNT + Integer.BYTES;
+    private static final int HEADER_BYTES = OFFSET_FINGERPRINT + Long.BYTES;
+
+    private static final String FILE_PREFIX = "landmarks_";
+    private static final String NODES_FILE_SUFFIX = "_nodes.bin";
+    private static final String DISTANCES_FILE_SUFFIX = "_distances.bin";
+
+    private final IntBuffer landmarks;
+
+    //For each node, the distances from every landmark to the node, then from the node to every landmark.
+    //The distances of a node are contiguous, so that computing a bound reads only two small areas of the buffer.
+    private final FloatBuffer distances;
+
+    /**
+     * LandmarkTable constructor.
+     *
+     * @param landmarks buffer containing the identities of the landmark nodes
+     * @param distances buffer containing, for each node, the costs of the best routes from every landmark to the
+     *                  node, followed by the costs of the best routes from the node to every landmark
+     *                  (infinite if there is no such route)
+     * @throws IllegalArgumentException if there is no landmark, or if the size of the distances buffer isn't a
+     *                                  multiple of twice the number of landmarks
+     */
+
+    public LandmarkTable(IntBuffer landmarks, FloatBuffer distances) {
+        Preconditions.checkArgument(landmarks.capacity() > 0 && distances.capacity() % (2 * landmarks.capacity()) == 0);
+        this.landmarks = landmarks;
+        this.distances = distances;
+    }
+
+    /**
+     * Selects landmarkCount landmarks in the graph and computes their distances to every node, for the given cost
+     * function. Landmarks are chosen one after the other, each of them being the node that is the farthest from the
+     * landmarks already chosen, which spreads them on the border of the graph.
+     *
+     * @param graph         the Graph of the table
+     * @param costFunction  the CostFunction associated to the edges of the graph
+     * @param landmarkCount maximal number of landmarks, fewer are chosen if the graph is too small
+     * @return LandmarkTable of the graph
+     * @throws IllegalArgumentException if landmarkCount isn't strictly positive or if the graph is empty
+     */
+
+    public static LandmarkTable compute(Graph graph, CostFunction costFunction, int landmarkCount) {
+        int nodeCount = graph.nodeCount();
+        Preconditions.checkArgument(landmarkCount > 0 && nodeCount > 0);
+
+        //the forward distances of each landmark are needed to choose the next one, they are computed in sequence
+        float[][] fromLandmarks = new float[landmarkCount][];
+        int[] landmarkIds = new int[landmarkCount];
+        int seed = nodeCount / 2;
+        float[] closestLandmarkDistance = distances(graph, costFunction, seed, false);
+        int count = 0;
+        while (count < landmarkCount) {
+            int farthest = farthestNode(closestLandmarkDistance);
+            if (farthest == -1 && count == 0) {
+                //nothing can be reached from the seed, which is then the only landmark
+                farthest = seed;
+            } else if (farthest == -1) {
+                break;
+            }
+            landmarkIds[count] = farthest;
+            fromLandmarks[count] = distances(graph, costFunction, farthest, false);
+            if (count == 0) {
+                Arrays.fill(closestLandmarkDistance, Float.POSITIVE_INFINITY);
+            }
+            for (int n = 0; n < nodeCount; ++n) {
+                closestLandmarkDistance[n] = Math.min(closestLandmarkDistance[n], fromLandmarks[count][n]);
+            }
+            ++count;
+        }
+
+        //the backward distances are independent from each other
+        int finalCount = count;
+        float[][] toLandmarks = new float[finalCount][];
+        IntStream.range(0, finalCount).parallel().forEach(i ->
+                toLandmarks[i] = distances(graph, costFunction, landmarkIds[i], true));
+
+        FloatBuffer distances = FloatBuffer.allocate(2 * finalCount * nodeCount);
+        for (int n = 0; n < nodeCount; ++n) {
+            for (int i = 0; i < finalCount; ++i) distances.put(fromLandmarks[i][n]);
+            for (int i = 0; i < finalCount; ++i) distances.put(toLandmarks[i][n]);
+        }
+        return new LandmarkTable(IntBuffer.wrap(landmarkIds, 0, finalCount).slice(), distances.flip());
+    }
+
+    /**
+     * Computes the landmark table of the graph stored in the folder given as first argument, for the CityBikeCF cost
+     * function, and writes it in the same folder under the name given as second argument ("citybike" if absent).
+     * The number of landmarks can be given as third argument (16 if absent).
+     *
+     * @param args folder of the graph, and optionally the name of the table and the number of landmarks
+     * @throws IOException if something went wrong while reading the graph or writing the table
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: LandmarkTable <graph directory> [name] [landmark count]");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        String name = args.length > 1 ? args[1] : DEFAULT_NAME;
+        int landmarkCount = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_LANDMARK_COUNT;
+
+        Graph graph = Graph.loadFrom(basePath);
+        long start = System.nanoTime();
+        CostFunction costFunction = CompiledCostFunction.compile(graph, new CityBikeCF(graph));
+        LandmarkTable table = compute(graph, costFunction, landmarkCount);
+        table.writeTo(basePath, name, graph);
+        System.out.printf("%d landmarks, computed in %.1f s%n", table.landmarkCount(),
+                (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Loads the landmark table stored in the basePath folder under the given name (see writeTo), if it was computed
+     * for the given graph and written in the current format.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the table, usually the name of its cost function
+     * @param graph    the Graph of the table
+     * @return LandmarkTable instance, or null if the stored table doesn't match the graph or the format
+     * @throws IOException if something went wrong while loading data from the files
+     */
+
+    public static LandmarkTable loadFrom(Path basePath, String name, Graph graph) throws IOException {
+        ByteBuffer landmarksBytes = DataFiles.load(basePath.resolve(FILE_PREFIX + name + NODES_FILE_SUFFIX));
+        ByteBuffer distancesBytes = DataFiles.load(basePath.resolve(FILE_PREFIX + name + DISTANCES_FILE_SUFFIX));
+        long fingerprint = graph.fingerprint();
+        if (!hasHeader(landmarksBytes, Integer.BYTES, fingerprint)
+                || landmarksBytes.getInt(OFFSET_COUNT) <= 0
+                || !hasHeader(distancesBytes, 2 * landmarksBytes.getInt(OFFSET_COUNT) * Float.BYTES, fingerprint)
+                || distancesBytes.getInt(OFFSET_COUNT) != graph.nodeCount()) {
+            return null;
+        }
+        return new LandmarkTable(landmarksBytes.position(HEADER_BYTES).slice().asIntBuffer(),
+                distancesBytes.position(HEADER_BYTES).slice().asFloatBuffer());
+    }
+
+    /**
+     * Writes the landmark table in the basePath folder under the given name, next to the files of the graph, preceded
+     * by the header identifying the graph it was computed for.
+     *
+     * @param basePath path where data files are stored
+     * @param name     name of the table, usually the name of its cost function
+     * @param graph    the Graph of the table
+     * @throws IOException if something went wrong while writing the files
+     * @throws IllegalArgumentException if the graph doesn't have as many nodes as the table
+     */
+
+    public void writeTo(Path basePath, String name, Graph graph) throws IOException {
+        Preconditions.checkArgument(graph.nodeCount() == nodeCount());
+        long fingerprint = graph.fingerprint();
+        ByteBuffer landmarksBytes = header(landmarkCount(), fingerprint, landmarks.capacity() * Integer.BYTES);
+        landmarksBytes.asIntBuffer().put(landmarks.duplicate().clear());
+        DataFiles.write(basePath.resolve(FILE_PREFIX + name + NODES_FILE_SUFFIX), landmarksBytes.clear());
+
+        ByteBuffer distancesBytes = header(nodeCount(), fingerprint, distances.capacity() * Float.BYTES);
+        distancesBytes.asFloatBuffer().put(distances.duplicate().clear());
+        DataFiles.write(basePath.resolve(FILE_PREFIX + name + DISTANCES_FILE_SUFFIX), distancesBytes.clear());
+    }
+
+    /**
+     * Returns the number of landmarks of the table.
+     *
+     * @return int number of landmarks
+     */
+
+    public int landmarkCount() {
+        return landmarks.capacity();
+    }
+
+    /**
+     * Returns the number of nodes of the graph of the table.
+     *
+     * @return int number of nodes
+     */
+
+    public int nodeCount() {
+        return distances.capacity() / (2 * landmarkCount());
+    }
+
+    /**
+     * Returns the identity of the node of the landmark of given index.
+     *
+     * @param landmarkIndex index of the landmark
+     * @return int identity of the node of the landmark
+     */
+
+    public int landmarkNodeId(int landmarkIndex) {
+        return landmarks.get(landmarkIndex);
+    }
+
+    /**
+     * Returns the cost of the best route from the given landmark to the given node.
+     *
+     * @param landmarkIndex index of the landmark
+     * @param nodeId        identity of the node
+     * @return float cost of the best route, infinite if there is none
+     */
+
+    public float distanceFromLandmark(int landmarkIndex, int nodeId) {
+        return distances.get(2 * landmarkCount() * nodeId + landmarkIndex);
+    }
+
+    /**
+     * Returns the cost of the best route from the given node to the given landmark.
+     *
+     * @param landmarkIndex index of the landmark
+     * @param nodeId        identity of the node
+     * @return float cost of the best route, infinite if there is none
+     */
+
+    public float distanceToLandmark(int landmarkIndex, int nodeId) {
+        return distances.get(2 * landmarkCount() * nodeId + landmarkCount() + landmarkIndex);
+    }
+
+    /**
+     * Returns the indices of the (at most ACTIVE_LANDMARKS) landmarks giving the best lower bounds of the cost of
+     * the best route between startNodeId and endNodeId. Using only them during a search keeps the heuristic cheap.
+     *
+     * @param startNodeId start of the route
+     * @param endNodeId   end of the route
+     * @return int[] indices of the selected landmarks
+     */
+
+    public int[] selectLandmarks(int startNodeId, int endNodeId) {
+        int landmarkCount = landmarkCount();
+        int selectedCount = Math.min(ACTIVE_LANDMARKS, landmarkCount);
+        int[] selected = new int[selectedCount];
+        float[] selectedBounds = new float[selectedCount];
+        Arrays.fill(selectedBounds, Float.NEGATIVE_INFINITY);
+
+        //insertion in a small array sorted by decreasing bound
+        for (int i = 0; i < landmarkCount; ++i) {
+            float bound = landmarkBound(i, startNodeId, endNodeId);
+            int j = selectedCount;
+            while (j > 0 && bound > selectedBounds[j - 1]) {
+                if (j < selectedCount) {
+                    selected[j] = selected[j - 1];
+                    selectedBounds[j] = selectedBounds[j - 1];
+                }
+                --j;
+            }
+            if (j < selectedCount) {
+                selected[j] = i;
+                selectedBounds[j] = bound;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns a lower bound of the cost of the best route from nodeId to endNodeId, using the given landmarks.
+     * The bound is infinite if the table proves that there is no such route.
+     *
+     * @param nodeId    start of the route
+     * @param endNodeId end of the route
+     * @param landmarks indices of the landmarks used, see selectLandmarks
+     * @return float lower bound of the cost of the route, always positive or zero
+     */
+
+    public float lowerBound(int nodeId, int endNodeId, int[] landmarks) {
+        float bound = 0;
+        for (int landmarkIndex : landmarks) {
+            float landmarkBound = landmarkBound(landmarkIndex, nodeId, endNodeId);
+            //NaN (infinite minus infinite) gives no information and is ignored by the comparison
+            if (landmarkBound > bound) {
+                bound = landmarkBound;
+            }
+        }
+        return bound;
+    }
+
+    //lower bound given by one landmark L, using d(n, t) >= d(L, t) - d(L, n) and d(n, t) >= d(n, L) - d(t, L)
+    private float landmarkBound(int landmarkIndex, int nodeId, int endNodeId) {
+        int landmarkCount = landmarkCount();
+        int nodeBase = 2 * landmarkCount * nodeId + landmarkIndex;
+        int endBase = 2 * landmarkCount * endNodeId + landmarkIndex;
+        float fromLandmark = distances.get(endBase) - distances.get(nodeBase);
+        float toLandmark = distances.get(nodeBase + landmarkCount) - distances.get(endBase + landmarkCount);
+        return fromLandmark > toLandmark || Float.isNaN(toLandmark) ? fromLandmark : toLandmark;
+    }
+
+    //buffer of a stored file, positioned after its header, whose data has the given size in bytes
+    private static ByteBuffer header(int count, long fingerprint, int dataBytes) {
+        return ByteBuffer.allocate(HEADER_BYTES + dataBytes)
+                .putInt(FORMAT_VERSION)
+                .putInt(count)
+                .putLong(fingerprint);
+    }
+
+    //check if the stored file has a header of the current format and of the graph, followed by as many elements of
+    //the given size as the header announces
+    private static boolean hasHeader(ByteBuffer bytes, int elementBytes, long fingerprint) {
+        return bytes.capacity() >= HEADER_BYTES
+                && bytes.getInt(OFFSET_VERSION) == FORMAT_VERSION
+                && bytes.capacity() == HEADER_BYTES + (long) bytes.getInt(OFFSET_COUNT) * elementBytes
+                && bytes.getLong(OFFSET_FINGERPRINT) == fingerprint;
+    }
+
+    //identity of the node with the greatest finite distance, -1 if all the finite distances are zero
+    private static int farthestNode(float[] distances) {
+        int farthest = -1;
+        float farthestDistance = 0;
+        for (int n = 0; n < distances.length; ++n) {
+            if (distances[n] > farthestDistance && distances[n] < Float.POSITIVE_INFINITY) {
+                farthest = n;
+                farthestDistance = distances[n];
+            }
+        }
+        return farthest;
+    }
+
+    //Dijkstra search computing the costs of the best routes from (or to, if backward is true) the source node
+    private static float[] distances(Graph graph, CostFunction costFunction, int source, boolean backward) {
+        float[] distance = new float[graph.nodeCount()];
+        Arrays.fill(distance, Float.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[graph.nodeCount()];
+        NodePriorityQueue queue = new NodePriorityQueue(graph.nodeCount());
+        distance[source] = 0f;
+        queue.insertOrDecrease(source, 0f);
+
+        while (!queue.isEmpty()) {
+            int n = queue.removeMin();
+            settled[n] = true;
+            int degree = backward ? graph.nodeInDegree(n) : graph.nodeOutDegree(n);
+            for (int i = 0; i < degree; ++i) {
+                int edgeId = backward ? graph.nodeInEdgeId(n, i) : graph.nodeOutEdgeId(n, i);
+                int nPrime = backward ? graph.nodeInEdgeSourceNodeId(n, i) : graph.edgeTargetNodeId(edgeId);
+                if (settled[nPrime]) {
+                    continue;
+                }
+                //the cost factor is the one of the edge taken from its source node, whatever the search direction
+                int sourceNodeId = backward ? nPrime : n;
+                float d = (float) (distance[n] + costFunction.costFactor(sourceNodeId, edgeId)
+                        * graph.edgeLength(edgeId));
+                if (d < distance[nPrime]) {
+                    distance[nPrime] = d;
+                    queue.insertOrDecrease(nPrime, d);
+                }
+            }
+        }
+        return distance;
+    }
+}
@@ -4,11 +4,15 @@ import ch.epfl.javelo.Preconditions;
 import ch.epfl.javelo.projection.PointCh;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * MultiRoute class
  * Represents a multiple route, composed of a sequence of contiguous routes.
+ * The positions of the starts of the segments are computed once, so that the segment at a position is found by
+ * binary search, and the lists of the edges and of the points are built on first use and then shared by all the
+ * calls, which therefore don't allocate anything (the GUI calls these methods on every move of the mouse).
  *
  * @author Arthur Bigot (324366)
  * @author Léo Paoletti (342165)
@@ -19,6 +23,16 @@ public final class MultiRoute implements Route {
     //List of segments composing the MultiRoute
     private final List<Route> SEGMENTS_LIST;
 
+    //position of the start of each segment on the MultiRoute, the last one being the length of the MultiRoute
+    private final double[] SEGMENTS_START;
+
+    //number of segments (of the SingleRoutes composing the MultiRoute) preceding each segment
+    private final int[] SEGMENTS_INDEX_OFFSET;
+
+    //built on first use
+    private volatile List<Edge> edges;
+    private volatile List<PointCh> points;
+
     /**
      * Constructs a MultiRoute composed of the given segments.
      *
@@ -30,6 +44,15 @@ public final class MultiRoute implements Route {
         Preconditions.checkArgument(!segments.isEmpty());
 
         SEGMENTS_LIST = List.copyOf(segments);
+
+        SEGMENTS_START = new double[SEGMENTS_LIST.size() + 1];
+        SEGMENTS_INDEX_OFFSET = new int[SEGMENTS_LIST.size() + 1];
+        for (int i = 0; i < SEGMENTS_LIST.size(); ++i) {
+            Route r = SEGMENTS_LIST.get(i);
+            SEGMENTS_START[i + 1] = SEGMENTS_START[i] + r.length();
+            //the index of the last segment of the Route + 1 gives its number of segments
+            SEGMENTS_INDEX_OFFSET[i + 1] = SEGMENTS_INDEX_OFFSET[i] + r.indexOfSegmentAt(r.length()) + 1;
+        }
     }
 
     /**
@@ -38,26 +61,16 @@ public final class MultiRoute implements Route {
 
     @Override
     public int indexOfSegmentAt(double position) {
-        int indexOfSegmentAt = 0;
-
-        for (Route r : SEGMENTS_LIST) {
-            //the position isn't on the Route
-            if (position > r.length()) {
-                //we get the index of the last segment of this Route and add + 1 to get the number of segments
-                indexOfSegmentAt += r.indexOfSegmentAt(r.length()) + 1;
-            } else {
-                //the position is on the route
-                indexOfSegmentAt += r.indexOfSegmentAt(position);
-            }
-            position -= r.length();
+        //the position is before the start of the full Route
+        if (position <= 0) {
+            return SEGMENTS_LIST.get(0).indexOfSegmentAt(position);
         }
-
-        //the position was out of the full Route
-        if(position > 0){
-            return (indexOfSegmentAt - 1);
+        //the position is after the end of the full Route
+        if (position > length()) {
+            return SEGMENTS_INDEX_OFFSET[SEGMENTS_LIST.size()] - 1;
         }
-
-        return indexOfSegmentAt;
+        int i = segmentIndexAt(position);
+        return SEGMENTS_INDEX_OFFSET[i] + SEGMENTS_LIST.get(i).indexOfSegmentAt(position - SEGMENTS_START[i]);
     }
 
     /**
@@ -66,11 +79,7 @@ public final class MultiRoute implements Route {
 
     @Override
     public double length() {
-        double cumulatedLength = 0.0;
-        for (Route r : SEGMENTS_LIST) {
-            cumulatedLength += r.length();
-        }
-        return cumulatedLength;
+        return SEGMENTS_START[SEGMENTS_LIST.size()];
     }
 
     /**
@@ -79,9 +88,14 @@ public final class MultiRoute implements Route {
 
     @Override
     public List<Edge> edges() {
-        List<Edge> edgesList = new ArrayList<>();
-        for (Route r : SEGMENTS_LIST) {
-            edgesList.addAll(r.edges());
+        List<Edge> edgesList = edges;
+        if (edgesList == null) {
+            List<Edge> list = new ArrayList<>();
+            for (Route r : SEGMENTS_LIST) {
+                list.addAll(r.edges());
+            }
+            edgesList = Collections.unmodifiableList(list);
+            edges = edgesList;
         }
         return edgesList;
     }
@@ -91,16 +105,33 @@ public final class MultiRoute implements Route {
      */
 
     @Override
-    public List<PointCh> points() {
-        List<PointCh> pointsList = new ArrayList<>();
-
+    public int edgeCount() {
+        int edgeCount = 0;
         for (Route r : SEGMENTS_LIST) {
-            if(!pointsList.isEmpty()){
-                pointsList.remove(pointsList.size() - 1);
-            }
-            pointsList.addAll(r.points());
+            edgeCount += r.edgeCount();
         }
+        return edgeCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
 
+    @Override
+    public List<PointCh> points() {
+        List<PointCh> pointsList = points;
+        if (pointsList == null) {
+            List<PointCh> list = new ArrayList<>();
+            for (Route r : SEGMENTS_LIST) {
+                //the last point of a segment is the first one of the next segment
+                if (!list.isEmpty()) {
+                    list.remove(list.size() - 1);
+                }
+                list.addAll(r.points());
+            }
+            pointsList = Collections.unmodifiableList(list);
+            points = pointsList;
+        }
         return pointsList;
     }
 
@@ -112,22 +143,15 @@ public final class MultiRoute implements Route {
     public PointCh pointAt(double position) {
         //we first handle cases where the position is negative
         if (position <= 0) {
-            Route firstSegment = SEGMENTS_LIST.get(0);
-            return firstSegment.pointAt(0);
+            return SEGMENTS_LIST.get(0).pointAt(0);
         }
-
-        double cumulatedLength = 0.0;
-        for (Route r : SEGMENTS_LIST) {
-            if (cumulatedLength <= position && (cumulatedLength + r.length()) >= position) {
-                return r.pointAt(position - cumulatedLength);
-            }
-            cumulatedLength += r.length();
+        //if the position is out of the global route, we return the pointAt the last position of the global route.
+        if (position > length()) {
+            Route lastSegment = SEGMENTS_LIST.get(SEGMENTS_LIST.size() - 1);
+            return lastSegment.pointAt(lastSegment.length());
         }
-
-        //if we still didn't find the sub route on which the position is, it means it is out of the global route
-        //we return the pointAt the last position of the global route.
-        Route lastSegment = SEGMENTS_LIST.get(SEGMENTS_LIST.size() - 1);
-        return lastSegment.pointAt(lastSegment.length());
+        int i = segmentIndexAt(position);
+        return SEGMENTS_LIST.get(i).pointAt(position - SEGMENTS_START[i]);
     }
 
     /**
@@ -138,22 +162,15 @@ public final class MultiRoute implements Route {
     public double elevationAt(double position) {
         //we first handle cases where the position is negative
         if (position <= 0) {
-            Route firstSegment = SEGMENTS_LIST.get(0);
-            return firstSegment.elevationAt(0);
+            return SEGMENTS_LIST.get(0).elevationAt(0);
         }
-
-        double cumulatedLength = 0.0;
-        for (Route r : SEGMENTS_LIST) {
-            if (cumulatedLength <= position && (cumulatedLength + r.length()) >= position) {
-                return r.elevationAt(position - cumulatedLength);
-            }
-            cumulatedLength += r.length();
+        //if the position is out of the global route, we return the elevationAt the last position of the global route.
+        if (position > length()) {
+            Route lastSegment = SEGMENTS_LIST.get(SEGMENTS_LIST.size() - 1);
+            return lastSegment.elevationAt(lastSegment.length());
         }
-
-        //if we still didn't find the sub route on which the position is, it means it is out of the global route
-        //we return the elevationAt the last position of the global route.
-        Route lastSegment = SEGMENTS_LIST.get(SEGMENTS_LIST.size() - 1);
-        return lastSegment.elevationAt(lastSegment.length());
+        int i = segmentIndexAt(position);
+        return SEGMENTS_LIST.get(i).elevationAt(position - SEGMENTS_START[i]);
     }
 
     /**
@@ -164,22 +181,15 @@ public final class MultiRoute implements Route {
     public int nodeClosestTo(double position) {
         //we first handle cases where the position is negative
         if (position <= 0) {
-            Route firstSegment = SEGMENTS_LIST.get(0);
-            return firstSegment.nodeClosestTo(0);
+            return SEGMENTS_LIST.get(0).nodeClosestTo(0);
         }
-
-        double cumulatedLength = 0.0;
-        for (Route r : SEGMENTS_LIST) {
-            if (cumulatedLength <= position && (cumulatedLength + r.length()) >= position) {
-                return r.nodeClosestTo(position - cumulatedLength);
-            }
-            cumulatedLength += r.length();
+        //if the position is out of the global route, we return the nodeClosestTo the last position of the global route.
+        if (position > length()) {
+            Route lastSegment = SEGMENTS_LIST.get(SEGMENTS_LIST.size() - 1);
+            return lastSegment.nodeClosestTo(lastSegment.length());
         }
-
-        //if we still didn't find the sub route on which the position is, it means it is out of the global route
-        //we return the nodeClosestTo the last position of the global route.
-        Route lastSegment = SEGMENTS_LIST.get(SEGMENTS_LIST.size() - 1);
-        return lastSegment.nodeClosestTo(lastSegment.length());
+        int i = segmentIndexAt(position);
+        return SEGMENTS_LIST.get(i).nodeClosestTo(position - SEGMENTS_START[i]);
     }
 
     /**
@@ -189,18 +199,33 @@ public final class MultiRoute implements Route {
     @Override
     public RoutePoint pointClosestTo(PointCh point) {
         RoutePoint nearestPoint = RoutePoint.NONE;
-        double cumulatedLength = 0.0;
 
         //we find the nearestPoint to each segment
-        for (Route r : SEGMENTS_LIST) {
-            //if we found a new nearestPoint we adjust the Position with cumulatedLength to have position according the global Route
-            //and not only the segment
-            if (nearestPoint.min(r.pointClosestTo(point)) != nearestPoint) {
-                nearestPoint = nearestPoint.min(r.pointClosestTo(point)).withPositionShiftedBy(cumulatedLength);
+        for (int i = 0; i < SEGMENTS_LIST.size(); ++i) {
+            RoutePoint segmentNearestPoint = SEGMENTS_LIST.get(i).pointClosestTo(point);
+            //if we found a new nearestPoint we adjust the Position with the start of the segment to have position
+            //according the global Route and not only the segment
+            if (nearestPoint.min(segmentNearestPoint) != nearestPoint) {
+                nearestPoint = segmentNearestPoint.withPositionShiftedBy(SEGMENTS_START[i]);
             }
-            cumulatedLength += r.length();
         }
 
         return nearestPoint;
     }
+
+    //index of the first segment ending at or after the position, which must be strictly positive and at most the
+    //length of the Route (binary search on the ends of the segments)
+    private int segmentIndexAt(double position) {
+        int low = 0;
+        int high = SEGMENTS_LIST.size() - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (SEGMENTS_START[middle + 1] >= position) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
 }
@@ -0,0 +1,187 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * NodePriorityQueue class
+ * An indexed binary min-heap specialized for node identities (int) weighted by float keys.
+ * Every node is present at most once in the queue: inserting a node that is already queued with a lower key
+ * decreases its key in place, so that no stale duplicate is ever stored and no object is allocated per insertion.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class NodePriorityQueue {
+
+    //position of a node that is not in the queue
+    private static final int ABSENT = -1;
+
+    //initial capacity of the heap arrays, they grow when needed
+    private static final int INITIAL_CAPACITY = 1 << 10;
+
+    //index of each node in the heap, ABSENT if the node is not queued
+    private final int[] positions;
+
+    //node identities and keys stored in heap order
+    private int[] heapNodes;
+    private float[] heapKeys;
+
+    private int size;
+
+    /**
+     * Constructs an empty queue able to hold the nodes of identity 0 to nodeCount - 1.
+     *
+     * @param nodeCount number of nodes that can be stored in the queue
+     * @throws IllegalArgumentException if nodeCount is negative
+     */
+
+    public NodePriorityQueue(int nodeCount) {
+        Preconditions.checkArgument(nodeCount >= 0);
+        positions = new int[nodeCount];
+        Arrays.fill(positions, ABSENT);
+
+        int capacity = Math.max(1, Math.min(nodeCount, INITIAL_CAPACITY));
+        heapNodes = new int[capacity];
+        heapKeys = new float[capacity];
+    }
+
+    /**
+     * Returns the number of nodes in the queue.
+     *
+     * @return int number of nodes in the queue
+     */
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if the queue is empty.
+     *
+     * @return boolean true if the queue doesn't contain any node, false otherwise
+     */
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check if the node of identity 'nodeId' is in the queue.
+     *
+     * @param nodeId identity of the node
+     * @return boolean true if the node is in the queue, false otherwise
+     */
+
+    public boolean contains(int nodeId) {
+        return positions[nodeId] != ABSENT;
+    }
+
+    /**
+     * Inserts the node of identity 'nodeId' with the given key, or decreases its key if it is already in the queue
+     * with a greater key. Does nothing if the node is already in the queue with a lower or equal key.
+     *
+     * @param nodeId identity of the node
+     * @param key    priority of the node, the lowest key is removed first
+     * @return boolean true if the queue was modified, false otherwise
+     */
+
+    public boolean insertOrDecrease(int nodeId, float key) {
+        int position = positions[nodeId];
+        if (position == ABSENT) {
+            if (size == heapNodes.length) {
+                grow();
+            }
+            siftUp(size++, nodeId, key);
+            return true;
+        } else if (key < heapKeys[position]) {
+            siftUp(position, nodeId, key);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the key of the node with the lowest key, without removing it.
+     *
+     * @return float lowest key of the queue
+     * @throws NoSuchElementException if the queue is empty
+     */
+
+    public float minKey() {
+        if (size == 0) throw new NoSuchElementException();
+        return heapKeys[0];
+    }
+
+    /**
+     * Removes the node with the lowest key from the queue and returns its identity.
+     *
+     * @return int identity of the removed node
+     * @throws NoSuchElementException if the queue is empty
+     */
+
+    public int removeMin() {
+        if (size == 0) throw new NoSuchElementException();
+        int minNode = heapNodes[0];
+        positions[minNode] = ABSENT;
+
+        --size;
+        if (size > 0) {
+            siftDown(0, heapNodes[size], heapKeys[size]);
+        }
+        return minNode;
+    }
+
+    /**
+     * Removes all the nodes from the queue, in a time proportional to the number of nodes it contains.
+     */
+
+    public void clear() {
+        for (int i = 0; i < size; ++i) {
+            positions[heapNodes[i]] = ABSENT;
+        }
+        size = 0;
+    }
+
+    //moves the given node up from the hole at the given position until the heap order is restored
+    private void siftUp(int hole, int nodeId, float key) {
+        while (hole > 0) {
+            int parent = (hole - 1) >>> 1;
+            if (heapKeys[parent] <= key) break;
+            place(hole, heapNodes[parent], heapKeys[parent]);
+            hole = parent;
+        }
+        place(hole, nodeId, key);
+    }
+
+    //moves the given node down from the hole at the given position until the heap order is restored
+    private void siftDown(int hole, int nodeId, float key) {
+        int half = size >>> 1;
+        while (hole < half) {
+            int child = 2 * hole + 1;
+            if (child + 1 < size && heapKeys[child + 1] < heapKeys[child]) {
+                ++child;
+            }
+            if (key <= heapKeys[child]) break;
+            place(hole, heapNodes[child], heapKeys[child]);
+            hole = child;
+        }
+        place(hole, nodeId, key);
+    }
+
+    private void place(int position, int nodeId, float key) {
+        heapNodes[position] = nodeId;
+        heapKeys[position] = key;
+        positions[nodeId] = position;
+    }
+
+    //the heap can never hold more nodes than positions.length
+    private void grow() {
+        int newCapacity = (int) Math.min((long) heapNodes.length << 1, positions.length);
+        heapNodes = Arrays.copyOf(heapNodes, newCapacity);
+        heapKeys = Arrays.copyOf(heapKeys, newCapacity);
+    }
+}
@@ -40,6 +40,17 @@ public interface Route {
 
     List<Edge> edges();
 
+    /**
+     * Returns the number of edges of the Route, which doesn't require building the list of its edges for the routes
+     * that build it on first use (see CompactRoute).
+     *
+     * @return int number of edges of the Route
+     */
+
+    default int edgeCount() {
+        return edges().size();
+    }
+
     /**
      * Returns all the points that are on an extremity of an edge that belongs to the Route.
      *
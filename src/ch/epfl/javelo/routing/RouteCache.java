@@ -0,0 +1,163 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.SegmentedLruCache;
+
+/**
+ * RouteCache class
+ * A thread-safe cache of the best routes between pairs of nodes, shared by all the users of a graph. The routes are
+ * identified by their start and end nodes and by the identity of the cost function they were computed with, so
+ * that a single cache can serve several cost functions. The cache is bounded by the total number of edges of its
+ * routes, and evicts them with the segmented LRU policy (see SegmentedLruCache). Its stripes hold at least
+ * MIN_STRIPE_EDGE_COUNT edges each (the whole cache if it is smaller), a route being cached only if it isn't longer
+ * than its stripe (see maxRouteEdgeCount).
+ * Only the routes that exist are cached: a search finding no route is run again on every request.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class RouteCache {
+
+    //the stripes let threads asking for different routes use the cache without waiting for each other
+    private static final int MAX_STRIPE_COUNT = 64;
+    //minimal number of edges of a stripe, so that the longest routes can be cached
+    private static final long MIN_STRIPE_EDGE_COUNT = 50_000;
+
+    private final SegmentedLruCache<Key, Route> cache;
+    private final long maxRouteEdgeCount;
+
+    //identity of a cached route
+    private record Key(int startNodeId, int endNodeId, String costFunctionId) {}
+
+    /**
+     * Computes the best route between two nodes, such as RouteComputer::bestRouteBetween or
+     * ConcurrentRouteComputer::bestRouteBetween.
+     */
+
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Computes the best route between startNodeId and endNodeId.
+         *
+         * @param startNodeId start of the route
+         * @param endNodeId   end of the route
+         * @return Route the best route, null if there is none
+         */
+
+        Route bestRouteBetween(int startNodeId, int endNodeId);
+    }
+
+    /**
+     * RouteCache constructor.
+     *
+     * @param maxEdgeCount maximal total number of edges of the cached routes
+     * @throws IllegalArgumentException if maxEdgeCount is not strictly positive
+     */
+
+    public RouteCache(long maxEdgeCount) {
+        Preconditions.checkArgument(maxEdgeCount > 0);
+        //rounded down to a power of two, as SegmentedLruCache would round it up
+        int stripeCount = Integer.highestOneBit(
+                (int) Math.max(1, Math.min(MAX_STRIPE_COUNT, maxEdgeCount / MIN_STRIPE_EDGE_COUNT)));
+        cache = new SegmentedLruCache<>(maxEdgeCount, stripeCount, (key, route) -> route.edgeCount());
+        maxRouteEdgeCount = maxEdgeCount / stripeCount;
+    }
+
+    /**
+     * Returns the maximal number of edges of a cached route, the longer routes being computed on every request.
+     *
+     * @return long maximal number of edges of a cached route
+     */
+
+    public long maxRouteEdgeCount() {
+        return maxRouteEdgeCount;
+    }
+
+    /**
+     * Returns the best route between two nodes for the given cost function, computing it with the loader if it
+     * isn't in the cache.
+     *
+     * @param costFunctionId identity of the cost function of the loader
+     * @param startNodeId    start of the route
+     * @param endNodeId      end of the route
+     * @param loader         the Loader computing the route with the cost function of identity costFunctionId
+     * @return Route the best route, null if there is none
+     */
+
+    public Route bestRouteBetween(String costFunctionId, int startNodeId, int endNodeId, Loader loader) {
+        return cache.computeIfAbsent(new Key(startNodeId, endNodeId, costFunctionId),
+                key -> loader.bestRouteBetween(startNodeId, endNodeId));
+    }
+
+    /**
+     * Returns a loader answering from this cache, and calling the given loader only when a route isn't cached.
+     *
+     * @param costFunctionId identity of the cost function of the loader
+     * @param loader         the Loader computing the routes with the cost function of identity costFunctionId
+     * @return Loader using this cache
+     */
+
+    public Loader cached(String costFunctionId, Loader loader) {
+        return (startNodeId, endNodeId) -> bestRouteBetween(costFunctionId, startNodeId, endNodeId, loader);
+    }
+
+    /**
+     * Removes all the routes of the cache, e.g. when the graph or a cost function changed.
+     */
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the number of routes in the cache.
+     *
+     * @return long number of routes
+     */
+
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the number of routes found in the cache.
+     *
+     * @return long number of hits
+     */
+
+    public long hitCount() {
+        return cache.hitCount();
+    }
+
+    /**
+     * Returns the number of routes that weren't in the cache.
+     *
+     * @return long number of misses
+     */
+
+    public long missCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * Returns the number of routes evicted from the cache.
+     *
+     * @return long number of evictions
+     */
+
+    public long evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * Returns the ratio of the routes found in the cache.
+     *
+     * @return double between 0 and 1, NaN if the cache was never used
+     */
+
+    public double hitRate() {
+        return cache.hitRate();
+    }
+}
@@ -1,12 +1,19 @@
 package ch.epfl.javelo.routing;
 
+import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.EdgePoint;
 import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.DoubleUnaryOperator;
+import java.util.stream.IntStream;
 
 
 /**
@@ -19,12 +26,23 @@ import java.util.PriorityQueue;
 
 public final class RouteComputer {
 
-    //All fields are initialized in the constructor
-    private final float[] distance;
-    private final int[] predecessor;
+    //graph and cost_function are initialized in the constructor, they are never modified afterwards.
     private final Graph graph;
     private final CostFunction cost_function;
 
+    //landmark table giving the ALT heuristic, null if the crow-flies distance is used alone
+    private final LandmarkTable landmarks;
+
+    //connected components rejecting the impossible searches before they start, null if every search is run
+    private final GraphComponents components;
+
+    //true if the searches start from both ends of the route (see withBidirectionalSearch)
+    private final boolean bidirectional;
+
+    //search state used by bestRouteBetween(int, int), created on its first call. Because of it, that method is not
+    //thread-safe, contrary to bestRouteBetween(int, int, RouteSearchState) (see ConcurrentRouteComputer).
+    private RouteSearchState state;
+
 
     /**
      * Constructor for RouteComputer function
@@ -33,10 +51,86 @@ public final class RouteComputer {
      */
 
     public RouteComputer(Graph graph, CostFunction costFunction) {
+        this(graph, costFunction, null, null, false);
+    }
+
+    private RouteComputer(Graph graph, CostFunction costFunction, LandmarkTable landmarks,
+                          GraphComponents components, boolean bidirectional) {
         this.graph = graph;
         cost_function = costFunction;
-        distance = new float[graph.nodeCount()];
-        predecessor = new int[graph.nodeCount()];
+        this.landmarks = landmarks;
+        this.components = components;
+        this.bidirectional = bidirectional;
+    }
+
+
+    /**
+     * Returns a RouteComputer identical to this one, except that its searches are guided by the given landmark table
+     * (ALT heuristic) in addition to the crow-flies distance, which greatly reduces the number of nodes explored
+     * on long routes. The table must have been computed for the cost function of this RouteComputer.
+     *
+     * @param landmarks the LandmarkTable of the graph for the cost function of this RouteComputer
+     * @return RouteComputer using the landmark table
+     * @throws IllegalArgumentException if the table wasn't computed for a graph with as many nodes as this one
+     */
+
+    public RouteComputer withLandmarks(LandmarkTable landmarks) {
+        Preconditions.checkArgument(landmarks.nodeCount() == graph.nodeCount());
+        return new RouteComputer(graph, cost_function, landmarks, components, bidirectional);
+    }
+
+
+    /**
+     * Returns a RouteComputer identical to this one, except that it returns null immediately, without exploring the
+     * graph, when the given components prove that no route exists between the two nodes. The components must have
+     * been computed for the cost function of this RouteComputer.
+     *
+     * @param components the GraphComponents of the graph for the cost function of this RouteComputer
+     * @return RouteComputer using the components
+     * @throws IllegalArgumentException if the components weren't computed for a graph with as many nodes as this one
+     */
+
+    public RouteComputer withComponents(GraphComponents components) {
+        Preconditions.checkArgument(components.nodeCount() == graph.nodeCount());
+        return new RouteComputer(graph, cost_function, landmarks, components, bidirectional);
+    }
+
+
+    /**
+     * Returns a RouteComputer identical to this one, except that its searches progress from both the start node
+     * (along the outgoing edges) and the end node (along the incoming edges) until they meet, which roughly halves
+     * the number of nodes explored on long routes. Both searches are guided by the average of the bounds to the end
+     * node and from the start node, so that the best route is still found.
+     * The search states used by the returned RouteComputer need twice as much memory (see RouteSearchState.backwardState).
+     *
+     * @return RouteComputer using bidirectional searches
+     */
+
+    public RouteComputer withBidirectionalSearch() {
+        return new RouteComputer(graph, cost_function, landmarks, components, true);
+    }
+
+
+    /**
+     * Creates a new search state that can be given to bestRouteBetween(int, int, RouteSearchState).
+     *
+     * @return RouteSearchState a search state sized for the graph of this RouteComputer
+     */
+
+    public RouteSearchState newSearchState() {
+        return new RouteSearchState(graph.nodeCount());
+    }
+
+
+    /**
+     * Returns an estimation of the memory used by a search state of this RouteComputer once it was used, its
+     * backward state included if the searches are bidirectional.
+     *
+     * @return long number of bytes used by a search state
+     */
+
+    public long searchStateBytes() {
+        return RouteSearchState.bytesFor(graph.nodeCount(), bidirectional);
     }
 
 
@@ -49,68 +143,101 @@ public final class RouteComputer {
      */
 
     public Route bestRouteBetween(int startNodeId, int endNodeId) {
+        if (state == null) {
+            state = newSearchState();
+        }
+        return bestRouteBetween(startNodeId, endNodeId, state);
+    }
 
-        // A type of node that is used to select the next node to explore by searching the minimal distance value of the
-        // weighted node.
-        record WeightedNode(int nodeId, float distance)
-                implements Comparable<WeightedNode> {
-            @Override
-            public int compareTo(WeightedNode that) {
-                return Float.compare(this.distance, that.distance);
-            }
+
+    /**
+     * Computes the Route which has the minimal total length between startNodeId and endNodeId nodes using A* algorithm
+     * and the given search state. If no route is found, returns null.
+     * This method can be called concurrently by several threads, as long as each of them uses its own search state.
+     * @param startNodeId start of the route
+     * @param endNodeId end of the route
+     * @param state the search state used by the search, it must not be used by another thread at the same time
+     * @return Route object that represents the route which has the minimal total length between startNodeId and endNodeId
+     * @throws IllegalArgumentException if startNodeId and endNodeId are equal,
+     *                                  or if the state wasn't created for the graph of this RouteComputer
+     * @throws CancellationException if the thread is interrupted during the search, its interrupt status being kept
+     */
+
+    public Route bestRouteBetween(int startNodeId, int endNodeId, RouteSearchState state) {
+
+        //starts a new search, every node is then at an infinite distance, in constant time
+        Preconditions.checkArgument(startNodeId != endNodeId && state.nodeCount() == graph.nodeCount());
+        if (components != null && !components.mayReach(startNodeId, endNodeId)) {
+            return null;
+        }
+
+        //the landmarks giving the best bounds for this search, the others are ignored to keep the heuristic cheap
+        int[] activeLandmarks = landmarks == null ? null : landmarks.selectLandmarks(startNodeId, endNodeId);
+        if (bidirectional) {
+            return bidirectionalRouteBetween(startNodeId, endNodeId, state, state.backwardState(), activeLandmarks);
         }
 
-        //fills the distance and predecessor arrays before computing the best route
-        Preconditions.checkArgument(startNodeId != endNodeId);
-        Arrays.fill(distance, 0, distance.length, Float.POSITIVE_INFINITY);
-        //Arrays.fill(predecessor, 0, predecessor.length, 0);
-        PriorityQueue<WeightedNode> enExploration = new PriorityQueue<>();
+        state.reset();
+        NodePriorityQueue enExploration = state.queue();
 
         //sets the values of the startNodeId
-        distance[startNodeId] = 0;
-        enExploration.add(new WeightedNode(startNodeId, 0F));
+        state.reach(startNodeId, 0F, startNodeId);
+        enExploration.insertOrDecrease(startNodeId, 0F);
 
         int n;
         int nPrime;
         float d;
-        int identityOfFirstEdge;
-        int identityOfLastEdge;
-        float crowDistanceOfNPrimeToEndNode;
+        int outDegree;
+        int edgeId;
+        float lowerBoundOfNPrimeToEndNode;
+        // The coordinates of the end node are read once, the heuristic doesn't allocate any PointCh.
+        double endE = graph.nodeE(endNodeId);
+        double endN = graph.nodeN(endNodeId);
 
         while (!(enExploration.isEmpty())) {
-            n = enExploration.remove().nodeId;
-            if(distance[n] == Float.NEGATIVE_INFINITY){
-                continue;
-            }
+            // Each node is at most once in the queue, the removed node always has its final distance.
+            n = enExploration.removeMin();
+            checkNotInterrupted();
 
             if (n == endNodeId) {
                 ArrayList<Integer> nodesOfRoute = new ArrayList<>();
                 int tracker = endNodeId; // variable which will have the values of the various nodes that compose the route
                 while (tracker != startNodeId) {
                     nodesOfRoute.add(tracker);
-                    tracker = predecessor[tracker];
+                    tracker = state.predecessor(tracker);
                 }
                 nodesOfRoute.add(startNodeId); // the ArrayList has all the nodes of the route in reversed order.
-                return new SingleRoute(fromNodesReturnEdges(nodesOfRoute));
+                return fromNodesReturnRoute(nodesOfRoute);
             }
 
-            identityOfFirstEdge = graph.nodeOutEdgeId(n, 0);
-            identityOfLastEdge = graph.nodeOutEdgeId(n, graph.nodeOutDegree(n) - 1);
+            outDegree = graph.nodeOutDegree(n);
             //Browse the nodes at the end of the edges coming from the n node.
-            for (int edgeId = identityOfFirstEdge; edgeId <= identityOfLastEdge; ++edgeId) {
+            for (int i = 0; i < outDegree; ++i) {
+                edgeId = graph.nodeOutEdgeId(n, i);
                 nPrime = graph.edgeTargetNodeId(edgeId);
-                crowDistanceOfNPrimeToEndNode = (float) graph.nodePoint(endNodeId).distanceTo(graph.nodePoint(nPrime));
-                d = (float) (distance[n] + cost_function.costFactor(n, edgeId) * graph.edgeLength(edgeId));
+                // Explored nodes already have their final distance.
+                if (state.isSettled(nPrime)) {
+                    continue;
+                }
+                d = (float) (state.distance(n) + cost_function.costFactor(n, edgeId) * graph.edgeLength(edgeId));
                 // If the distance found for the nPrime node is lower than the distance already stored,
-                // Update the distance array. In all cases, all nPrime nodes are added as WeightedNode to
-                // the enExploration priority queue.
-                if (d < distance[nPrime]) {
-                    distance[nPrime] = d;
-                    predecessor[nPrime] = n;
-                    enExploration.add(new WeightedNode(nPrime, distance[nPrime]+crowDistanceOfNPrimeToEndNode));
+                // Update the search state and insert nPrime in the queue, or decrease its key if it is
+                // already waiting in it.
+                if (d < state.distance(nPrime)) {
+                    lowerBoundOfNPrimeToEndNode = (float) Math2.norm(endE - graph.nodeE(nPrime), endN - graph.nodeN(nPrime));
+                    if (activeLandmarks != null) {
+                        lowerBoundOfNPrimeToEndNode = Math.max(lowerBoundOfNPrimeToEndNode,
+                                landmarks.lowerBound(nPrime, endNodeId, activeLandmarks));
+                        // An infinite bound means that the end node can't be reached from nPrime.
+                        if (lowerBoundOfNPrimeToEndNode == Float.POSITIVE_INFINITY) {
+                            continue;
+                        }
+                    }
+                    state.reach(nPrime, d, n);
+                    enExploration.insertOrDecrease(nPrime, d + lowerBoundOfNPrimeToEndNode);
                 }
             }
-            distance[n] = Float.NEGATIVE_INFINITY;
+            state.settle(n);
         }
         // If no route is found, return null.
         return null;
@@ -118,31 +245,608 @@ public final class RouteComputer {
 
 
 
-    //takes a list of point in a reverse order to output a list of edges in the right order (starting from the beginning).
-    private List<Edge> fromNodesReturnEdges(List<Integer> nodeIds) {
-        ArrayList<Edge> edgeIds = new ArrayList<>();
+    /**
+     * Computes the Route which has the minimal cost between two points in the middle of edges (see
+     * Graph.edgePointClosestTo), using A* algorithm. If no route is found, or if both points are equal, returns null.
+     * This method is not thread-safe, see bestRouteBetween(EdgePoint, EdgePoint, RouteSearchState).
+     * @param start start of the route
+     * @param end end of the route
+     * @return Route object that represents the route which has the minimal cost between start and end
+     */
+
+    public Route bestRouteBetween(EdgePoint start, EdgePoint end) {
+        if (state == null) {
+            state = newSearchState();
+        }
+        return bestRouteBetween(start, end, state);
+    }
+
+
+    /**
+     * Computes the Route which has the minimal cost between two points in the middle of edges using A* algorithm and
+     * the given search state. If no route is found, or if both points are equal, returns null.
+     * The route leaves the edge of the start point by one of its ends (its source node through the edge going the
+     * other way, if there is one), and reaches the end point from one of the ends of its edge, the first and last
+     * edges of the route being the parts of these edges between the points and the nodes. If both points are on the
+     * same edge, the route may also simply follow it. The search is guided by the crow-flies distance to the end
+     * point only, the landmarks and the bidirectional search being used for the searches between nodes.
+     * This method can be called concurrently by several threads, as long as each of them uses its own search state.
+     * @param start start of the route
+     * @param end end of the route
+     * @param state the search state used by the search, it must not be used by another thread at the same time
+     * @return Route object that represents the route which has the minimal cost between start and end
+     * @throws IllegalArgumentException if the state wasn't created for the graph of this RouteComputer
+     * @throws CancellationException if the thread is interrupted during the search, its interrupt status being kept
+     */
+
+    public Route bestRouteBetween(EdgePoint start, EdgePoint end, RouteSearchState state) {
+        Preconditions.checkArgument(state.nodeCount() == graph.nodeCount());
+        int startTwinEdgeId = twinEdgeId(start.edgeId(), start.sourceNodeId());
+        //a start point on the edge going the other way than the one of the end point is expressed on the latter
+        if (startTwinEdgeId == end.edgeId()) {
+            start = new EdgePoint(end.edgeId(), graph.edgeTargetNodeId(start.edgeId()),
+                    Math.max(graph.edgeLength(end.edgeId()) - start.position(), 0), start.point(),
+                    start.distanceToReference());
+            startTwinEdgeId = twinEdgeId(start.edgeId(), start.sourceNodeId());
+        }
+        int startSourceNodeId = start.sourceNodeId();
+        int startTargetNodeId = graph.edgeTargetNodeId(start.edgeId());
+        double startLength = graph.edgeLength(start.edgeId());
+        int endSourceNodeId = end.sourceNodeId();
+        int endTargetNodeId = graph.edgeTargetNodeId(end.edgeId());
+        double endLength = graph.edgeLength(end.edgeId());
+        int endTwinEdgeId = twinEdgeId(end.edgeId(), endSourceNodeId);
+
+        //costs from the start point to the ends of its edge, and from the ends of the edge of the end point to it
+        float toStartTarget = (float) partialCost(startSourceNodeId, start.edgeId(),
+                startLength - start.position());
+        float toStartSource = (float) partialCost(startTargetNodeId, startTwinEdgeId, start.position());
+        float fromEndSource = (float) partialCost(endSourceNodeId, end.edgeId(), end.position());
+        float fromEndTarget = (float) partialCost(endTargetNodeId, endTwinEdgeId, endLength - end.position());
+
+        //cost of the route following the common edge of both points, if any
+        float bestCost = Float.POSITIVE_INFINITY;
+        if (start.edgeId() == end.edgeId()) {
+            bestCost = start.position() <= end.position()
+                    ? (float) partialCost(startSourceNodeId, start.edgeId(), end.position() - start.position())
+                    : (float) partialCost(startTargetNodeId, startTwinEdgeId, start.position() - end.position());
+        }
+        int bestEndNodeId = -1;
+
+        if (components == null || mayReach(startSourceNodeId, startTargetNodeId, endSourceNodeId, endTargetNodeId)) {
+            state.reset();
+            NodePriorityQueue queue = state.queue();
+            double endE = end.point().e();
+            double endN = end.point().n();
+            //the ends of the start edge are the sources of the search, each one being its own predecessor
+            for (int i = 0; i < 2; ++i) {
+                int nodeId = i == 0 ? startTargetNodeId : startSourceNodeId;
+                float d = i == 0 ? toStartTarget : toStartSource;
+                if (d < state.distance(nodeId)) {
+                    state.reach(nodeId, d, nodeId);
+                    queue.insertOrDecrease(nodeId,
+                            d + (float) Math2.norm(endE - graph.nodeE(nodeId), endN - graph.nodeN(nodeId)));
+                }
+            }
+
+            // The keys are lower bounds of the cost of the routes through the nodes, no better route can be found
+            // once the lowest one reaches the cost of the best route found so far.
+            while (!queue.isEmpty() && queue.minKey() < bestCost) {
+                int n = queue.removeMin();
+                checkNotInterrupted();
+                state.settle(n);
+                float distance = state.distance(n);
+                if (n == endSourceNodeId && distance + fromEndSource < bestCost) {
+                    bestCost = distance + fromEndSource;
+                    bestEndNodeId = n;
+                }
+                if (n == endTargetNodeId && distance + fromEndTarget < bestCost) {
+                    bestCost = distance + fromEndTarget;
+                    bestEndNodeId = n;
+                }
+
+                for (int i = 0; i < graph.nodeOutDegree(n); ++i) {
+                    int edgeId = graph.nodeOutEdgeId(n, i);
+                    int nPrime = graph.edgeTargetNodeId(edgeId);
+                    if (state.isSettled(nPrime)) {
+                        continue;
+                    }
+                    float d = (float) (distance + cost_function.costFactor(n, edgeId) * graph.edgeLength(edgeId));
+                    if (d < state.distance(nPrime)) {
+                        state.reach(nPrime, d, n);
+                        queue.insertOrDecrease(nPrime,
+                                d + (float) Math2.norm(endE - graph.nodeE(nPrime), endN - graph.nodeN(nPrime)));
+                    }
+                }
+            }
+        }
+        // If no route is found, return null.
+        if (bestCost == Float.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        List<Edge> edges = new ArrayList<>();
+        if (bestEndNodeId == -1) {
+            //the route follows the common edge of both points
+            if (start.position() <= end.position()) {
+                addPartialEdge(edges, start.edgeId(), startSourceNodeId, startTargetNodeId, start.point(), end.point(),
+                        start.position(), end.position() - start.position());
+            } else {
+                addPartialEdge(edges, startTwinEdgeId, startTargetNodeId, startSourceNodeId, start.point(),
+                        end.point(), startLength - start.position(), start.position() - end.position());
+            }
+        } else {
+            ArrayList<Integer> nodesOfRoute = new ArrayList<>();
+            int tracker = bestEndNodeId;
+            while (state.predecessor(tracker) != tracker) {
+                nodesOfRoute.add(tracker);
+                tracker = state.predecessor(tracker);
+            }
+            nodesOfRoute.add(tracker); // the ArrayList has all the nodes of the route in reversed order.
+
+            //the first node of the path is the end of the start edge it was reached from
+            boolean leavesByTarget = tracker == startTargetNodeId
+                    && (tracker != startSourceNodeId || toStartTarget <= toStartSource);
+            if (leavesByTarget) {
+                addPartialEdge(edges, start.edgeId(), startSourceNodeId, startTargetNodeId, start.point(),
+                        graph.nodePoint(startTargetNodeId), start.position(), startLength - start.position());
+            } else {
+                addPartialEdge(edges, startTwinEdgeId, startTargetNodeId, startSourceNodeId, start.point(),
+                        graph.nodePoint(startSourceNodeId), startLength - start.position(), start.position());
+            }
+            int[] edgeIds = edgeIdsOf(nodesOfRoute);
+            for (int i = 0; i < edgeIds.length; ++i) {
+                edges.add(Edge.of(graph, edgeIds[i], nodesOfRoute.get(nodesOfRoute.size() - 1 - i),
+                        nodesOfRoute.get(nodesOfRoute.size() - 2 - i)));
+            }
+            boolean arrivesBySource = bestEndNodeId == endSourceNodeId
+                    && (bestEndNodeId != endTargetNodeId || fromEndSource <= fromEndTarget);
+            if (arrivesBySource) {
+                addPartialEdge(edges, end.edgeId(), endSourceNodeId, endTargetNodeId,
+                        graph.nodePoint(endSourceNodeId), end.point(), 0, end.position());
+            } else {
+                addPartialEdge(edges, endTwinEdgeId, endTargetNodeId, endSourceNodeId,
+                        graph.nodePoint(endTargetNodeId), end.point(), 0, endLength - end.position());
+            }
+        }
+        return edges.isEmpty() ? null : new SingleRoute(edges);
+    }
+
+
+    //identity of the edge going from the target node of the given edge back to its source node with the same length
+    //(the other direction of the same way), -1 if there is none
+    private int twinEdgeId(int edgeId, int sourceNodeId) {
+        int targetNodeId = graph.edgeTargetNodeId(edgeId);
+        for (int i = 0; i < graph.nodeOutDegree(targetNodeId); ++i) {
+            int twinEdgeId = graph.nodeOutEdgeId(targetNodeId, i);
+            if (twinEdgeId != edgeId && graph.edgeTargetNodeId(twinEdgeId) == sourceNodeId
+                    && graph.edgeLength(twinEdgeId) == graph.edgeLength(edgeId)) {
+                return twinEdgeId;
+            }
+        }
+        return -1;
+    }
+
+
+    //cost of the given length of the edge starting at nodeId, 0 if the length is 0 and infinite if there is no edge
+    private double partialCost(int nodeId, int edgeId, double length) {
+        if (length <= 0) {
+            return 0;
+        }
+        return edgeId == -1 ? Double.POSITIVE_INFINITY : cost_function.costFactor(nodeId, edgeId) * length;
+    }
+
+
+    //true if an end of the end edge may be reached from an end of the start edge, according to the components
+    private boolean mayReach(int startSourceNodeId, int startTargetNodeId, int endSourceNodeId, int endTargetNodeId) {
+        for (int from : new int[]{startSourceNodeId, startTargetNodeId}) {
+            for (int to : new int[]{endSourceNodeId, endTargetNodeId}) {
+                if (from == to || components.mayReach(from, to)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    //adds the part of the given length of the edge, starting at the given position on it, unless it is empty
+    private void addPartialEdge(List<Edge> edges, int edgeId, int fromNodeId, int toNodeId, PointCh fromPoint,
+                                PointCh toPoint, double position, double length) {
+        if (length <= 0) {
+            return;
+        }
+        DoubleUnaryOperator profile = graph.edgeProfile(edgeId);
+        edges.add(new Edge(fromNodeId, toNodeId, fromPoint, toPoint, length,
+                x -> profile.applyAsDouble(position + x)));
+    }
+
+
+
+    /**
+     * Computes the costs and lengths of the best routes from every start node to every end node, see RouteMatrix.
+     * A single search is run from each start node, it stops once all the end nodes are explored, and no Route is
+     * built. This method is not thread-safe, see ConcurrentRouteComputer.matrixBetween.
+     *
+     * @param startNodeIds start nodes of the routes (rows of the matrix)
+     * @param endNodeIds   end nodes of the routes (columns of the matrix)
+     * @return RouteMatrix of the costs and lengths of the best routes
+     */
+
+    public RouteMatrix matrixBetween(int[] startNodeIds, int[] endNodeIds) {
+        if (state == null) {
+            state = newSearchState();
+        }
+        return matrixBetween(startNodeIds, endNodeIds, state);
+    }
+
+
+    /**
+     * Computes the costs and lengths of the best routes from every start node to every end node using the given
+     * search state, see matrixBetween(int[], int[]).
+     * This method can be called concurrently by several threads, as long as each of them uses its own search state.
+     *
+     * @param startNodeIds start nodes of the routes (rows of the matrix)
+     * @param endNodeIds   end nodes of the routes (columns of the matrix)
+     * @param state        the search state used by the searches, it must not be used by another thread at the same time
+     * @return RouteMatrix of the costs and lengths of the best routes
+     * @throws IllegalArgumentException if the state wasn't created for the graph of this RouteComputer
+     */
+
+    public RouteMatrix matrixBetween(int[] startNodeIds, int[] endNodeIds, RouteSearchState state) {
+        Preconditions.checkArgument(state.nodeCount() == graph.nodeCount());
+        //sorted distinct end nodes, to know in logarithmic time if an explored node is one of them
+        int[] sortedEndNodeIds = IntStream.of(endNodeIds).distinct().sorted().toArray();
+
+        float[][] costs = new float[startNodeIds.length][endNodeIds.length];
+        float[][] lengths = new float[startNodeIds.length][endNodeIds.length];
+        for (int i = 0; i < startNodeIds.length; ++i) {
+            int startNodeId = startNodeIds[i];
+            exploreUntilReached(startNodeId, sortedEndNodeIds, state);
+            for (int j = 0; j < endNodeIds.length; ++j) {
+                int endNodeId = endNodeIds[j];
+                if (state.isSettled(endNodeId)) {
+                    costs[i][j] = state.distance(endNodeId);
+                    lengths[i][j] = (float) lengthOfPathTo(startNodeId, endNodeId, state);
+                } else {
+                    costs[i][j] = Float.POSITIVE_INFINITY;
+                    lengths[i][j] = Float.POSITIVE_INFINITY;
+                }
+            }
+        }
+        return new RouteMatrix(costs, lengths);
+    }
+
+
+    //Dijkstra search from startNodeId, stopping once all the (reachable) end nodes are settled
+    private void exploreUntilReached(int startNodeId, int[] sortedEndNodeIds, RouteSearchState state) {
+        state.reset();
+        NodePriorityQueue queue = state.queue();
+        state.reach(startNodeId, 0F, startNodeId);
+        queue.insertOrDecrease(startNodeId, 0F);
+
+        int remaining = 0;
+        for (int endNodeId : sortedEndNodeIds) {
+            if (components == null || components.mayReach(startNodeId, endNodeId)) {
+                ++remaining;
+            }
+        }
+
+        while (remaining > 0 && !queue.isEmpty()) {
+            int n = queue.removeMin();
+            checkNotInterrupted();
+            state.settle(n);
+            if (Arrays.binarySearch(sortedEndNodeIds, n) >= 0) {
+                --remaining;
+            }
+
+            float distance = state.distance(n);
+            for (int i = 0; i < graph.nodeOutDegree(n); ++i) {
+                int edgeId = graph.nodeOutEdgeId(n, i);
+                int nPrime = graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(nPrime)) {
+                    continue;
+                }
+                float d = (float) (distance + cost_function.costFactor(n, edgeId) * graph.edgeLength(edgeId));
+                if (d < state.distance(nPrime)) {
+                    state.reach(nPrime, d, n);
+                    queue.insertOrDecrease(nPrime, d);
+                }
+            }
+        }
+    }
+
+
+    //length of the path found by the last search from startNodeId to the (settled) node endNodeId, each step taking
+    //the cheapest edge between two consecutive nodes, as the search did
+    private double lengthOfPathTo(int startNodeId, int endNodeId, RouteSearchState state) {
+        double length = 0;
+        for (int n = endNodeId; n != startNodeId; ) {
+            int predecessor = state.predecessor(n);
+            double bestCost = Double.POSITIVE_INFINITY;
+            double bestLength = 0;
+            for (int i = 0; i < graph.nodeOutDegree(predecessor); ++i) {
+                int edgeId = graph.nodeOutEdgeId(predecessor, i);
+                if (graph.edgeTargetNodeId(edgeId) == n) {
+                    double cost = cost_function.costFactor(predecessor, edgeId) * graph.edgeLength(edgeId);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestLength = graph.edgeLength(edgeId);
+                    }
+                }
+            }
+            length += bestLength;
+            n = predecessor;
+        }
+        return length;
+    }
+
+
+    /**
+     * Computes the nodes reachable from startNodeId within the given maximal cost, see Isochrone.
+     * This method is not thread-safe, see isochroneFrom(int, double, boolean, RouteSearchState).
+     *
+     * @param startNodeId  start node of the routes
+     * @param maxCost      maximal cost of the routes
+     * @param withBoundary true if the boundary of the reachable area has to be computed
+     * @return Isochrone of the start node
+     * @throws IllegalArgumentException if maxCost is negative
+     */
+
+    public Isochrone isochroneFrom(int startNodeId, double maxCost, boolean withBoundary) {
+        if (state == null) {
+            state = newSearchState();
+        }
+        return isochroneFrom(startNodeId, maxCost, withBoundary, state);
+    }
+
+
+    /**
+     * Computes the nodes reachable from startNodeId within the given maximal cost using the given search state,
+     * see isochroneFrom(int, double, boolean). The search explores the nodes in increasing order of cost with the
+     * queue of the state, and stops as soon as the next one costs more than maxCost: its time only depends on the
+     * size of the reachable area.
+     * This method can be called concurrently by several threads, as long as each of them uses its own search state.
+     *
+     * @param startNodeId  start node of the routes
+     * @param maxCost      maximal cost of the routes
+     * @param withBoundary true if the boundary of the reachable area has to be computed
+     * @param state        the search state used by the search, it must not be used by another thread at the same time
+     * @return Isochrone of the start node
+     * @throws IllegalArgumentException if maxCost is negative, or if the state wasn't created for the graph of this
+     *                                  RouteComputer
+     */
+
+    public Isochrone isochroneFrom(int startNodeId, double maxCost, boolean withBoundary, RouteSearchState state) {
+        Preconditions.checkArgument(maxCost >= 0 && state.nodeCount() == graph.nodeCount());
+        state.reset();
+        NodePriorityQueue queue = state.queue();
+        state.reach(startNodeId, 0F, startNodeId);
+        queue.insertOrDecrease(startNodeId, 0F);
+
+        //settled nodes and their costs, in the order they are settled (increasing cost)
+        int[] nodeIds = new int[16];
+        float[] costs = new float[16];
+        int count = 0;
+
+        while (!queue.isEmpty()) {
+            int n = queue.removeMin();
+            checkNotInterrupted();
+            state.settle(n);
+            float distance = state.distance(n);
+            if (count == nodeIds.length) {
+                nodeIds = Arrays.copyOf(nodeIds, 2 * count);
+                costs = Arrays.copyOf(costs, 2 * count);
+            }
+            nodeIds[count] = n;
+            costs[count] = distance;
+            ++count;
+
+            for (int i = 0; i < graph.nodeOutDegree(n); ++i) {
+                int edgeId = graph.nodeOutEdgeId(n, i);
+                int nPrime = graph.edgeTargetNodeId(edgeId);
+                if (state.isSettled(nPrime)) {
+                    continue;
+                }
+                float d = (float) (distance + cost_function.costFactor(n, edgeId) * graph.edgeLength(edgeId));
+                // Nodes beyond the maximal cost are never queued, so the queue only holds the frontier of the area.
+                if (d <= maxCost && d < state.distance(nPrime)) {
+                    state.reach(nPrime, d, n);
+                    queue.insertOrDecrease(nPrime, d);
+                }
+            }
+        }
+
+        nodeIds = Arrays.copyOf(nodeIds, count);
+        costs = Arrays.copyOf(costs, count);
+        List<PointCh> boundary = withBoundary
+                ? boundaryOf(startNodeId, maxCost, nodeIds, state)
+                : List.of();
+        return new Isochrone(startNodeId, maxCost, nodeIds, costs, boundary);
+    }
+
+
+    //points where the cost reaches maxCost along the edges going from a reachable node to an unreachable one,
+    //sorted by angle around the start node
+    private List<PointCh> boundaryOf(int startNodeId, double maxCost, int[] nodeIds, RouteSearchState state) {
+        double startE = graph.nodeE(startNodeId);
+        double startN = graph.nodeN(startNodeId);
+        List<PointCh> points = new ArrayList<>();
+        List<Double> angles = new ArrayList<>();
+        for (int n : nodeIds) {
+            float distance = state.distance(n);
+            for (int i = 0; i < graph.nodeOutDegree(n); ++i) {
+                int edgeId = graph.nodeOutEdgeId(n, i);
+                int nPrime = graph.edgeTargetNodeId(edgeId);
+                double costFactor = cost_function.costFactor(n, edgeId);
+                if (state.isSettled(nPrime) || costFactor == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+                //fraction of the edge that can be travelled with the remaining cost
+                double x = Math.min(1, (maxCost - distance) / (costFactor * graph.edgeLength(edgeId)));
+                double e = Math2.interpolate(graph.nodeE(n), graph.nodeE(nPrime), x);
+                double north = Math2.interpolate(graph.nodeN(n), graph.nodeN(nPrime), x);
+                points.add(new PointCh(e, north));
+                angles.add(Math.atan2(north - startN, e - startE));
+            }
+        }
+
+        Integer[] order = new Integer[points.size()];
+        for (int i = 0; i < order.length; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(angles::get));
+        List<PointCh> boundary = new ArrayList<>(order.length);
+        for (int i : order) {
+            boundary.add(points.get(i));
+        }
+        return boundary;
+    }
+
+
+    //Bidirectional A*: the forward search explores the outgoing edges from startNodeId with keys d + p(n), the
+    //backward search explores the incoming edges from endNodeId with keys d - p(n), where p is the average potential
+    //(see potential). Both searches are then Dijkstra searches on the same (positive) reduced costs, and the best
+    //route found so far can't be improved once the sum of the lowest keys of both queues reaches its cost.
+    private Route bidirectionalRouteBetween(int startNodeId, int endNodeId, RouteSearchState forwardState,
+                                            RouteSearchState backwardState, int[] activeLandmarks) {
+        float startPotential = potential(startNodeId, startNodeId, endNodeId, activeLandmarks);
+        float endPotential = potential(endNodeId, startNodeId, endNodeId, activeLandmarks);
+        // The end node can't be reached from the start node.
+        if (!Float.isFinite(startPotential) || !Float.isFinite(endPotential)) {
+            return null;
+        }
+
+        forwardState.reset();
+        backwardState.reset();
+        NodePriorityQueue forwardQueue = forwardState.queue();
+        NodePriorityQueue backwardQueue = backwardState.queue();
+        forwardState.reach(startNodeId, 0F, startNodeId);
+        forwardQueue.insertOrDecrease(startNodeId, startPotential);
+        backwardState.reach(endNodeId, 0F, endNodeId);
+        backwardQueue.insertOrDecrease(endNodeId, -endPotential);
+
+        float bestCost = Float.POSITIVE_INFINITY;
+        int meetingNodeId = -1;
+
+        while (!forwardQueue.isEmpty() && !backwardQueue.isEmpty()
+                && forwardQueue.minKey() + backwardQueue.minKey() < bestCost) {
+            // The search with the fewest nodes waiting to be explored progresses.
+            boolean forward = forwardQueue.size() <= backwardQueue.size();
+            RouteSearchState state = forward ? forwardState : backwardState;
+            RouteSearchState otherState = forward ? backwardState : forwardState;
+
+            int n = state.queue().removeMin();
+            checkNotInterrupted();
+            state.settle(n);
+            float distance = state.distance(n);
+
+            int degree = forward ? graph.nodeOutDegree(n) : graph.nodeInDegree(n);
+            for (int i = 0; i < degree; ++i) {
+                int edgeId = forward ? graph.nodeOutEdgeId(n, i) : graph.nodeInEdgeId(n, i);
+                int nPrime = forward ? graph.edgeTargetNodeId(edgeId) : graph.nodeInEdgeSourceNodeId(n, i);
+                if (state.isSettled(nPrime)) {
+                    continue;
+                }
+                // The cost factor is the one of the edge taken from its origin, whatever the direction of the search.
+                int edgeOriginId = forward ? n : nPrime;
+                float d = (float) (distance + cost_function.costFactor(edgeOriginId, edgeId) * graph.edgeLength(edgeId));
+                if (d < state.distance(nPrime)) {
+                    float p = potential(nPrime, startNodeId, endNodeId, activeLandmarks);
+                    // An infinite potential means that nPrime can't be on a route from the start to the end node.
+                    if (!Float.isFinite(p)) {
+                        continue;
+                    }
+                    state.reach(nPrime, d, n);
+                    state.queue().insertOrDecrease(nPrime, forward ? d + p : d - p);
+
+                    float viaCost = d + otherState.distance(nPrime);
+                    if (viaCost < bestCost) {
+                        bestCost = viaCost;
+                        meetingNodeId = nPrime;
+                    }
+                }
+            }
+        }
+        // If no route is found, return null.
+        if (meetingNodeId == -1) {
+            return null;
+        }
+
+        //the nodes from the end node back to the meeting node (excluded), then to the start node, in reverse order
+        ArrayList<Integer> nodesOfRoute = new ArrayList<>();
+        for (int tracker = meetingNodeId; tracker != endNodeId; ) {
+            tracker = backwardState.predecessor(tracker);
+            nodesOfRoute.add(tracker);
+        }
+        Collections.reverse(nodesOfRoute);
+        for (int tracker = meetingNodeId; tracker != startNodeId; tracker = forwardState.predecessor(tracker)) {
+            nodesOfRoute.add(tracker);
+        }
+        nodesOfRoute.add(startNodeId);
+        return fromNodesReturnRoute(nodesOfRoute);
+    }
+
+    //Stops the search if its thread was interrupted, e.g. by Future.cancel(true) when its result isn't awaited
+    //anymore. Reading the interrupt status costs much less than settling a node, it is done for each of them.
+    private static void checkNotInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("route search interrupted");
+        }
+    }
+
+
+    //Average potential of the node: half the difference between the lower bounds of the cost from the node to the
+    //end node and from the start node to the node. It is infinite (or NaN) if the node can't be on a route between
+    //them.
+    private float potential(int nodeId, int startNodeId, int endNodeId, int[] activeLandmarks) {
+        float toEnd = (float) graph.nodeDistance(nodeId, endNodeId);
+        float fromStart = (float) graph.nodeDistance(startNodeId, nodeId);
+        if (activeLandmarks != null) {
+            toEnd = Math.max(toEnd, landmarks.lowerBound(nodeId, endNodeId, activeLandmarks));
+            fromStart = Math.max(fromStart, landmarks.lowerBound(startNodeId, nodeId, activeLandmarks));
+        }
+        return (toEnd - fromStart) / 2;
+    }
+
+
+    //takes a list of point in a reverse order to output the route going through them in the right order (starting
+    //from the beginning), represented by the identities of its edges.
+    private Route fromNodesReturnRoute(List<Integer> nodeIds) {
+        return new CompactRoute(graph, nodeIds.get(nodeIds.size() - 1), edgeIdsOf(nodeIds));
+    }
+
+
+    //identities of the cheapest edges going through the nodes given in reverse order, in the right order
+    private int[] edgeIdsOf(List<Integer> nodeIds) {
+        int[] edgeIds = new int[nodeIds.size() - 1];
         int identityOfStartingNode;
         int identityOfEndNode;
         int tempEdgeId;
 
-
         for (int i = 1; i < nodeIds.size(); ++i) {
 
             identityOfStartingNode = nodeIds.get(nodeIds.size() - i);
             identityOfEndNode = nodeIds.get(nodeIds.size() - i - 1);
 
+            //among parallel edges, the cheapest one is the one that gave its distance to the end node during the
+            //search, the cost of the route is then the one computed by the search
+            double bestCost = Double.POSITIVE_INFINITY;
             for (int j = 0; j < graph.nodeOutDegree(identityOfStartingNode); ++j) {
 
                 tempEdgeId = graph.nodeOutEdgeId(identityOfStartingNode, j);
                 if (graph.edgeTargetNodeId(tempEdgeId) == identityOfEndNode) {
-                    edgeIds.add(Edge.of(graph, tempEdgeId, identityOfStartingNode, identityOfEndNode));
-                    break;
+                    double cost = cost_function.costFactor(identityOfStartingNode, tempEdgeId)
+                            * graph.edgeLength(tempEdgeId);
+                    if (cost < bestCost) {
+                        edgeIds[i - 1] = tempEdgeId;
+                        bestCost = cost;
+                    }
                 }
 
             }
         }
 
-
         return edgeIds;
     }
 }
@@ -0,0 +1,151 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * RouteEdgeIndex class
+ * A packed hierarchy of bounding boxes over the edges of a route, used to find the edge closest to a point without
+ * computing the distance to every edge. The edges of a route being contiguous, consecutive edges are close to each
+ * other: the boxes of the first level group NODE_SIZE consecutive edges, those of each following level NODE_SIZE
+ * consecutive boxes of the previous one, up to a single root box. The search descends the hierarchy, visiting the
+ * closest boxes first and skipping the boxes farther than the closest edge found so far.
+ * The result is exactly the one of a scan of all the edges keeping the first closest one: the distances to the
+ * edges are computed by the route itself, the boxes being only lower bounds of them, and ties are broken by index.
+ * Instances are immutable, and thus thread-safe.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+final class RouteEdgeIndex {
+
+    /**
+     * Minimal number of edges of a route for which an index is worth building, smaller routes being scanned.
+     */
+
+    static final int MIN_EDGE_COUNT = 64;
+
+    //number of children of every box
+    private static final int NODE_SIZE = 16;
+    //margin added to the boxes, so that the rounding errors of the distances to the edges can't make them smaller
+    //than the distances to the boxes
+    private static final double MARGIN = 1e-6;
+
+    private final int edgeCount;
+    //boxes of all the levels (minE, minN, maxE, maxN each), from the boxes of the edges to the root box
+    private final double[] boxes;
+    //index of the first box of each level, the last one being the root
+    private final int[] levelStarts;
+
+    /**
+     * RouteEdgeIndex constructor.
+     *
+     * @param edgeCoordinates coordinates of the ends of the edges of the route, in order (fromE, fromN, toE, toN for
+     *                        each edge)
+     * @throws IllegalArgumentException if there is no edge, or if the length of the array isn't a multiple of 4
+     */
+
+    RouteEdgeIndex(double[] edgeCoordinates) {
+        Preconditions.checkArgument(edgeCoordinates.length > 0 && edgeCoordinates.length % 4 == 0);
+        edgeCount = edgeCoordinates.length / 4;
+
+        int levelCount = 1;
+        int boxCount = edgeCount;
+        for (int count = edgeCount; count > 1; count = ceilDivByNodeSize(count)) {
+            ++levelCount;
+            boxCount += ceilDivByNodeSize(count);
+        }
+        boxes = new double[4 * boxCount];
+        levelStarts = new int[levelCount];
+
+        for (int i = 0; i < edgeCount; ++i) {
+            int c = 4 * i;
+            boxes[c] = Math.min(edgeCoordinates[c], edgeCoordinates[c + 2]) - MARGIN;
+            boxes[c + 1] = Math.min(edgeCoordinates[c + 1], edgeCoordinates[c + 3]) - MARGIN;
+            boxes[c + 2] = Math.max(edgeCoordinates[c], edgeCoordinates[c + 2]) + MARGIN;
+            boxes[c + 3] = Math.max(edgeCoordinates[c + 1], edgeCoordinates[c + 3]) + MARGIN;
+        }
+        int count = edgeCount;
+        for (int level = 1; level < levelCount; ++level) {
+            levelStarts[level] = levelStarts[level - 1] + count;
+            int parentCount = ceilDivByNodeSize(count);
+            for (int parent = 0; parent < parentCount; ++parent) {
+                int box = 4 * (levelStarts[level] + parent);
+                boxes[box] = boxes[box + 1] = Double.POSITIVE_INFINITY;
+                boxes[box + 2] = boxes[box + 3] = Double.NEGATIVE_INFINITY;
+                for (int child = parent * NODE_SIZE; child < Math.min((parent + 1) * NODE_SIZE, count); ++child) {
+                    int c = 4 * (levelStarts[level - 1] + child);
+                    boxes[box] = Math.min(boxes[box], boxes[c]);
+                    boxes[box + 1] = Math.min(boxes[box + 1], boxes[c + 1]);
+                    boxes[box + 2] = Math.max(boxes[box + 2], boxes[c + 2]);
+                    boxes[box + 3] = Math.max(boxes[box + 3], boxes[c + 3]);
+                }
+            }
+            count = parentCount;
+        }
+    }
+
+    /**
+     * Returns the index of the edge closest to the point, the first one if several are equally close.
+     *
+     * @param e              E coordinate of the point
+     * @param n              N coordinate of the point
+     * @param edgeDistanceTo function giving the distance between the point and the edge of the given index
+     * @return int index of the closest edge, -1 if no distance is a number
+     */
+
+    int closestEdgeIndex(double e, double n, IntToDoubleFunction edgeDistanceTo) {
+        double[] best = {Double.POSITIVE_INFINITY, -1};
+        search(levelStarts.length - 1, 0, e, n, edgeDistanceTo, best);
+        return (int) best[1];
+    }
+
+    //visits the children of the index-th box of the level, best holding the distance and the index of the closest
+    //edge found so far
+    private void search(int level, int index, double e, double n, IntToDoubleFunction edgeDistanceTo, double[] best) {
+        if (level == 0) {
+            double distance = edgeDistanceTo.applyAsDouble(index);
+            if (distance < best[0] || (distance == best[0] && index < best[1])) {
+                best[0] = distance;
+                best[1] = index;
+            }
+            return;
+        }
+        int childLevelSize = levelStarts[level] - levelStarts[level - 1];
+        int firstChild = index * NODE_SIZE;
+        int childCount = Math.min(NODE_SIZE, childLevelSize - firstChild);
+
+        //the children are visited by increasing distance of their boxes (insertion sort of at most NODE_SIZE)
+        int[] children = new int[childCount];
+        double[] distances = new double[childCount];
+        for (int i = 0; i < childCount; ++i) {
+            int child = firstChild + i;
+            double distance = boxDistanceTo(levelStarts[level - 1] + child, e, n);
+            int j = i;
+            while (j > 0 && distances[j - 1] > distance) {
+                children[j] = children[j - 1];
+                distances[j] = distances[j - 1];
+                --j;
+            }
+            children[j] = child;
+            distances[j] = distance;
+        }
+        for (int i = 0; i < childCount && distances[i] <= best[0]; ++i) {
+            search(level - 1, children[i], e, n, edgeDistanceTo, best);
+        }
+    }
+
+    //distance between the point and the box, 0 if the point is inside
+    private double boxDistanceTo(int box, double e, double n) {
+        int c = 4 * box;
+        double dE = Math.max(Math.max(boxes[c] - e, e - boxes[c + 2]), 0);
+        double dN = Math.max(Math.max(boxes[c + 1] - n, n - boxes[c + 3]), 0);
+        return Math.sqrt(dE * dE + dN * dN);
+    }
+
+    private static int ceilDivByNodeSize(int count) {
+        return (count + NODE_SIZE - 1) / NODE_SIZE;
+    }
+}
@@ -0,0 +1,77 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+/**
+ * RouteMatrix record
+ * Represents the costs and lengths of the best routes between every start node (rows) and every end node (columns)
+ * of a many-to-many query, without the routes themselves.
+ * The cost and the length of a route are infinite if there is no route, and zero if its start and end nodes are
+ * the same.
+ *
+ * @param costs   costs of the best routes, costs[i][j] being the cost of the route from the i-th start node to the
+ *                j-th end node
+ * @param lengths lengths (in meters) of the same routes
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public record RouteMatrix(float[][] costs, float[][] lengths) {
+
+    /**
+     * @throws IllegalArgumentException if costs and lengths don't have the same dimensions, or if their rows don't all
+     *                                  have the same size
+     */
+
+    public RouteMatrix {
+        Preconditions.checkArgument(costs.length == lengths.length);
+        for (int i = 0; i < costs.length; ++i) {
+            Preconditions.checkArgument(costs[i].length == costs[0].length && lengths[i].length == costs[0].length);
+        }
+    }
+
+    /**
+     * Returns the number of start nodes of the matrix.
+     *
+     * @return int number of rows
+     */
+
+    public int rowCount() {
+        return costs.length;
+    }
+
+    /**
+     * Returns the number of end nodes of the matrix.
+     *
+     * @return int number of columns
+     */
+
+    public int columnCount() {
+        return costs.length == 0 ? 0 : costs[0].length;
+    }
+
+    /**
+     * Returns the cost of the best route from the start node of given row to the end node of given column.
+     *
+     * @param row    index of the start node
+     * @param column index of the end node
+     * @return float cost of the route, infinite if there is none
+     */
+
+    public float cost(int row, int column) {
+        return costs[row][column];
+    }
+
+    /**
+     * Returns the length of the best route from the start node of given row to the end node of given column.
+     *
+     * @param row    index of the start node
+     * @param column index of the end node
+     * @return float length of the route in meters, infinite if there is none
+     */
+
+    public float length(int row, int column) {
+        return lengths[row][column];
+    }
+}
@@ -0,0 +1,183 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.Arrays;
+
+/**
+ * RouteSearchState class
+ * Holds the distance and predecessor of every node during a search in the graph, along with the queue of the nodes
+ * to explore. Every entry is stamped with the generation of the search that wrote it, so that starting a new search
+ * only increments the generation instead of clearing the arrays: a search costs a time proportional to the number
+ * of nodes it actually reaches, not to the size of the graph.
+ * Instances are not thread-safe.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class RouteSearchState {
+
+    //Generation of the current search, a node was reached during this search if its stamp is +generation,
+    //and it was explored (settled) if its stamp is -generation. Generations are always strictly positive.
+    private int generation;
+
+    private final int[] stamps;
+    private final float[] distance;
+    private final int[] predecessor;
+    private final NodePriorityQueue queue;
+
+    //state of the backward half of bidirectional searches, created on first use
+    private RouteSearchState backwardState;
+
+    /**
+     * Constructs a search state for a graph containing nodeCount nodes.
+     *
+     * @param nodeCount number of nodes of the graph
+     * @throws IllegalArgumentException if nodeCount is negative
+     */
+
+    public RouteSearchState(int nodeCount) {
+        Preconditions.checkArgument(nodeCount >= 0);
+        stamps = new int[nodeCount];
+        distance = new float[nodeCount];
+        predecessor = new int[nodeCount];
+        queue = new NodePriorityQueue(nodeCount);
+        generation = 1;
+    }
+
+    /**
+     * Returns an estimation of the memory used by a search state for a graph containing nodeCount nodes, without its
+     * backward state (see bytesFor(int, boolean)).
+     *
+     * @param nodeCount number of nodes of the graph
+     * @return long number of bytes used by the arrays of the search state
+     */
+
+    public static long bytesFor(int nodeCount) {
+        //stamps, distance, predecessor, and the positions, nodes and keys of the queue, whose heap arrays grow up to
+        //the number of nodes
+        return 6L * Integer.BYTES * nodeCount;
+    }
+
+    /**
+     * Returns an estimation of the memory used by a search state for a graph containing nodeCount nodes, with its
+     * backward state if it is used for bidirectional searches (see RouteComputer.withBidirectionalSearch).
+     *
+     * @param nodeCount          number of nodes of the graph
+     * @param withBackwardState  true if the backward state of the search state is created
+     * @return long number of bytes used by the arrays of the search state
+     */
+
+    public static long bytesFor(int nodeCount, boolean withBackwardState) {
+        return withBackwardState ? 2 * bytesFor(nodeCount) : bytesFor(nodeCount);
+    }
+
+    /**
+     * Starts a new search: every node becomes unreached and the queue is emptied.
+     * Runs in constant time, except once every 2^31 searches where the stamps have to be cleared.
+     */
+
+    public void reset() {
+        queue.clear();
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            generation = 0;
+        }
+        ++generation;
+    }
+
+    /**
+     * Returns the number of nodes of the graph this state was created for.
+     *
+     * @return int number of nodes
+     */
+
+    public int nodeCount() {
+        return stamps.length;
+    }
+
+    /**
+     * Returns the companion state used by the backward half of a bidirectional search, creating it on the first call.
+     * Like this state, it must not be used by several threads at the same time, and it doubles the memory used by
+     * the state once created.
+     *
+     * @return RouteSearchState the backward state, of the same number of nodes
+     */
+
+    public RouteSearchState backwardState() {
+        if (backwardState == null) {
+            backwardState = new RouteSearchState(nodeCount());
+        }
+        return backwardState;
+    }
+
+    /**
+     * Returns the queue of the nodes to explore of the current search.
+     *
+     * @return NodePriorityQueue the queue of the current search
+     */
+
+    public NodePriorityQueue queue() {
+        return queue;
+    }
+
+    /**
+     * Returns the distance of the node of identity 'nodeId' found during the current search.
+     *
+     * @param nodeId identity of the node
+     * @return float the distance of the node, Float.POSITIVE_INFINITY if it wasn't reached yet
+     */
+
+    public float distance(int nodeId) {
+        int stamp = stamps[nodeId];
+        return (stamp == generation || stamp == -generation) ? distance[nodeId] : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Sets the distance and the predecessor of the node of identity 'nodeId' for the current search.
+     *
+     * @param nodeId      identity of the node
+     * @param d           distance of the node
+     * @param predecessorId identity of the predecessor of the node (its meaning is up to the search)
+     */
+
+    public void reach(int nodeId, float d, int predecessorId) {
+        stamps[nodeId] = generation;
+        distance[nodeId] = d;
+        predecessor[nodeId] = predecessorId;
+    }
+
+    /**
+     * Returns the predecessor of the node of identity 'nodeId', only meaningful if it was reached.
+     *
+     * @param nodeId identity of the node
+     * @return int the predecessor of the node given to reach
+     */
+
+    public int predecessor(int nodeId) {
+        return predecessor[nodeId];
+    }
+
+    /**
+     * Marks the node of identity 'nodeId' as explored: its distance is final.
+     *
+     * @param nodeId identity of a node reached during the current search
+     */
+
+    public void settle(int nodeId) {
+        assert stamps[nodeId] == generation;
+        stamps[nodeId] = -generation;
+    }
+
+    /**
+     * Check if the node of identity 'nodeId' was explored during the current search.
+     *
+     * @param nodeId identity of the node
+     * @return boolean true if the node was settled, false otherwise
+     */
+
+    public boolean isSettled(int nodeId) {
+        return stamps[nodeId] == -generation;
+    }
+}
@@ -0,0 +1,132 @@
+package ch.epfl.javelo.routing;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * RouteSearchStatePool class
+ * A thread-safe pool of search states, bounded to a maximum number of states.
+ * States are created lazily, when all the existing ones are leased and the maximum is not reached yet.
+ * Once the maximum is reached, acquire() waits until another thread releases a state.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class RouteSearchStatePool {
+
+    private final Supplier<RouteSearchState> factory;
+    private final int capacity;
+
+    //states created and not leased at the moment
+    private final BlockingQueue<RouteSearchState> idleStates;
+
+    //number of states created so far, never greater than capacity
+    private final AtomicInteger createdStates;
+
+    /**
+     * Constructs an empty pool that will contain at most capacity states created by factory.
+     *
+     * @param factory  creates the states of the pool
+     * @param capacity maximum number of states of the pool
+     * @throws IllegalArgumentException if capacity is not strictly positive
+     */
+
+    public RouteSearchStatePool(Supplier<RouteSearchState> factory, int capacity) {
+        Preconditions.checkArgument(capacity > 0);
+        this.factory = factory;
+        this.capacity = capacity;
+        idleStates = new ArrayBlockingQueue<>(capacity);
+        createdStates = new AtomicInteger();
+    }
+
+    /**
+     * Returns the number of states, for a graph of nodeCount nodes, that fit in the given memory budget.
+     * At least one state is always allowed.
+     *
+     * @param nodeCount    number of nodes of the graph
+     * @param memoryBudget number of bytes that the states can use
+     * @return int the number of states that fit in the budget, at least 1
+     */
+
+    public static int capacityWithin(int nodeCount, long memoryBudget) {
+        return capacityOf(RouteSearchState.bytesFor(nodeCount), memoryBudget);
+    }
+
+    /**
+     * Returns the number of states of the given size that fit in the given memory budget.
+     * At least one state is always allowed.
+     *
+     * @param stateBytes   number of bytes used by each state (see RouteComputer.searchStateBytes)
+     * @param memoryBudget number of bytes that the states can use
+     * @return int the number of states that fit in the budget, at least 1
+     */
+
+    public static int capacityOf(long stateBytes, long memoryBudget) {
+        return (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudget / Math.max(1, stateBytes)));
+    }
+
+    /**
+     * Returns the maximum number of states of the pool.
+     *
+     * @return int capacity of the pool
+     */
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of states created so far by the pool.
+     *
+     * @return int number of states created
+     */
+
+    public int createdStates() {
+        return createdStates.get();
+    }
+
+    /**
+     * Leases a state of the pool, that must be given back with release() once the search is over.
+     * Waits for a state to be released if all the states are leased and the pool is full.
+     *
+     * @return RouteSearchState a state that isn't used by any other thread
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+
+    public RouteSearchState acquire() throws InterruptedException {
+        RouteSearchState state = idleStates.poll();
+        if (state != null) {
+            return state;
+        }
+
+        int created = createdStates.get();
+        while (created < capacity) {
+            if (createdStates.compareAndSet(created, created + 1)) {
+                try {
+                    return factory.get();
+                } catch (RuntimeException | Error e) {
+                    createdStates.decrementAndGet();
+                    throw e;
+                }
+            }
+            created = createdStates.get();
+        }
+        return idleStates.take();
+    }
+
+    /**
+     * Gives back a state leased with acquire(), the calling thread must not use it anymore.
+     *
+     * @param state the state to give back
+     */
+
+    public void release(RouteSearchState state) {
+        boolean added = idleStates.offer(state);
+        assert added;
+    }
+}
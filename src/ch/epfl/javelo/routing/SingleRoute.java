@@ -11,6 +11,7 @@ import java.util.List;
 /**
  * SingleRoute class
  * Represents a simple route, connecting a starting point to an ending point, without intermediate points.
+ * The closest point of long routes is found with an index of their edges (see RouteEdgeIndex), built on first use.
  *
  * @author Arthur Bigot (324366)
  * @author Léo Paoletti (342165)
@@ -22,6 +23,8 @@ public final class SingleRoute implements Route {
     private final double[] NODES_POSITION_LIST;
     private final List<PointCh> points;
     private final double length;
+    //built on the first call to pointClosestTo, if the route has enough edges
+    private volatile RouteEdgeIndex edgeIndex;
 
     /**
      * SingleRoute Constructor from a list of edges
@@ -175,6 +178,18 @@ public final class SingleRoute implements Route {
 
     @Override
     public RoutePoint pointClosestTo(PointCh point) {
+        if (EDGES_LIST.size() >= RouteEdgeIndex.MIN_EDGE_COUNT) {
+            int index = edgeIndex().closestEdgeIndex(point.e(), point.n(), i -> distanceToEdge(i, point));
+            if (index < 0) {
+                return RoutePoint.NONE;
+            }
+            Edge e = EDGES_LIST.get(index);
+            double lengthOfProjection = Math2.clamp(0.0, e.positionClosestTo(point), e.length());
+            PointCh nearestPointOnEdge = e.pointAt(lengthOfProjection);
+            return new RoutePoint(nearestPointOnEdge, NODES_POSITION_LIST[index] + lengthOfProjection,
+                    nearestPointOnEdge.distanceTo(point));
+        }
+
         RoutePoint nearestPoint = RoutePoint.NONE;
         double cumulatedLength = 0.0;
 
@@ -190,4 +205,28 @@ public final class SingleRoute implements Route {
 
         return nearestPoint;
     }
+
+    //distance between the point and the closest point of the index-th edge, as computed by pointClosestTo
+    private double distanceToEdge(int index, PointCh point) {
+        Edge e = EDGES_LIST.get(index);
+        double lengthOfProjection = Math2.clamp(0.0, e.positionClosestTo(point), e.length());
+        return e.pointAt(lengthOfProjection).distanceTo(point);
+    }
+
+    private RouteEdgeIndex edgeIndex() {
+        RouteEdgeIndex index = edgeIndex;
+        if (index == null) {
+            double[] edgeCoordinates = new double[4 * EDGES_LIST.size()];
+            for (int i = 0; i < EDGES_LIST.size(); ++i) {
+                Edge e = EDGES_LIST.get(i);
+                edgeCoordinates[4 * i] = e.fromPoint().e();
+                edgeCoordinates[4 * i + 1] = e.fromPoint().n();
+                edgeCoordinates[4 * i + 2] = e.toPoint().e();
+                edgeCoordinates[4 * i + 3] = e.toPoint().n();
+            }
+            index = new RouteEdgeIndex(edgeCoordinates);
+            edgeIndex = index;
+        }
+        return index;
+    }
 }
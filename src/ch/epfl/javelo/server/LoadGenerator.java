@@ -0,0 +1,136 @@
+package ch.epfl.javelo.server;
+
+import ch.epfl.javelo.Preconditions;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * LoadGenerator class
+ * A client measuring the throughput and latency of a RoutingServer: it sends a given number of /route requests
+ * between random points of a rectangle, from a given number of threads each waiting for the answer of its request
+ * before sending the next one, and prints the number of requests per second, the percentiles of the latencies and
+ * the number of answers of each status. The latency of a request that failed (e.g. timed out) is the time elapsed
+ * until its failure, so that failures raise the percentiles.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class LoadGenerator {
+
+    //default rectangle of the points, in Swiss coordinates, around Lausanne
+    private static final double[] DEFAULT_AREA = {2_532_000, 1_152_000, 2_546_000, 1_160_000};
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long SEED = 2022;
+
+    //status of the requests that didn't receive an answer
+    private static final int NO_ANSWER = -1;
+    //latency of the requests whose sending was interrupted
+    private static final long NOT_MEASURED = -1;
+
+    private LoadGenerator() {}
+
+    /**
+     * Sends the number of requests given as second argument to the server whose URL is given as first argument
+     * (e.g. http://localhost:8080), from the number of threads given as third argument, between random points of the
+     * rectangle given by the four following arguments (minE minN maxE maxN, around Lausanne if absent).
+     *
+     * @param args URL of the server, number of requests, number of threads, and optionally the rectangle
+     * @throws InterruptedException if the thread was interrupted while waiting for the requests
+     */
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length != 3 && args.length != 7) {
+            System.err.println("usage: LoadGenerator <server url> <requests> <threads> [minE minN maxE maxN]");
+            System.exit(1);
+        }
+        String baseUrl = args[0].endsWith("/") ? args[0].substring(0, args[0].length() - 1) : args[0];
+        int requestCount = Integer.parseInt(args[1]);
+        int threadCount = Integer.parseInt(args[2]);
+        Preconditions.checkArgument(requestCount > 0 && threadCount > 0);
+        double[] area = DEFAULT_AREA;
+        if (args.length == 7) {
+            area = new double[4];
+            for (int i = 0; i < 4; ++i) {
+                area[i] = Double.parseDouble(args[3 + i]);
+            }
+        }
+
+        //the requests are drawn in advance, so that the threads only measure the server
+        SplittableRandom rng = new SplittableRandom(SEED);
+        URI[] uris = new URI[requestCount];
+        for (int i = 0; i < requestCount; ++i) {
+            uris[i] = URI.create(String.format(Locale.ROOT, "%s/route?from=%.1f,%.1f&to=%.1f,%.1f", baseUrl,
+                    rng.nextDouble(area[0], area[2]), rng.nextDouble(area[1], area[3]),
+                    rng.nextDouble(area[0], area[2]), rng.nextDouble(area[1], area[3])));
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(REQUEST_TIMEOUT).build();
+        long[] latencies = new long[requestCount];
+        Arrays.fill(latencies, NOT_MEASURED);
+        int[] statuses = new int[requestCount];
+        AtomicInteger nextRequest = new AtomicInteger();
+
+        Thread[] threads = new Thread[threadCount];
+        long start = System.nanoTime();
+        for (int t = 0; t < threadCount; ++t) {
+            threads[t] = new Thread(() -> {
+                for (int i = nextRequest.getAndIncrement(); i < requestCount; i = nextRequest.getAndIncrement()) {
+                    HttpRequest request = HttpRequest.newBuilder(uris[i]).timeout(REQUEST_TIMEOUT).GET().build();
+                    long requestStart = System.nanoTime();
+                    try {
+                        statuses[i] = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    } catch (IOException e) {
+                        //the time until the failure is measured as well
+                        statuses[i] = NO_ANSWER;
+                    } catch (InterruptedException e) {
+                        statuses[i] = NO_ANSWER;
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    latencies[i] = System.nanoTime() - requestStart;
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<Integer, Integer> statusCounts = new TreeMap<>();
+        for (int status : statuses) {
+            statusCounts.merge(status, 1, Integer::sum);
+        }
+        long[] sortedLatencies = Arrays.stream(latencies)
+                .filter(latency -> latency != NOT_MEASURED)
+                .sorted()
+                .toArray();
+
+        System.out.printf(Locale.ROOT, "%d requests in %.2f s: %.1f requests/s on %d threads%n",
+                requestCount, seconds, requestCount / seconds, threadCount);
+        if (sortedLatencies.length > 0) {
+            System.out.printf(Locale.ROOT, "latency (ms): p50 %.2f, p95 %.2f, p99 %.2f, max %.2f%n",
+                    percentile(sortedLatencies, 50), percentile(sortedLatencies, 95), percentile(sortedLatencies, 99),
+                    sortedLatencies[sortedLatencies.length - 1] / 1e6);
+        }
+        System.out.println("statuses (-1: no answer): " + statusCounts);
+    }
+
+    //p-th percentile of the sorted latencies, in milliseconds (nearest-rank method)
+    private static double percentile(long[] sortedLatencies, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sortedLatencies.length);
+        return sortedLatencies[Math.max(rank - 1, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,405 @@
+package ch.epfl.javelo.server;
+
+import ch.epfl.javelo.Preconditions;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphContainer;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.projection.SwissBounds;
+import ch.epfl.javelo.routing.*;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * RoutingServer class
+ * A routing service over HTTP, built on the HTTP server of the JDK. It answers GET requests on three endpoints, whose
+ * parameters 'from' and 'to' are the Swiss coordinates "e,n" of the start and end points of the route:
+ * - /route: the route as JSON (its length, total ascent and descent, and its points in degrees),
+ * - /profile: the elevation profile of the route as JSON (samples every MAX_STEP_LENGTH meters at most),
+ * - /gpx: the route as a GPX document (see GpxGenerator),
+ * - /stats: the statistics of the cache of the routes, and of the cache of the profiles of the graph, as JSON.
+ * The points are snapped to the closest node within SEARCH_DISTANCE meters, the answer is 404 if there is none or if
+ * no route exists between them, and 400 if a parameter is missing or invalid.
+ * The routes are computed by a fixed number of worker threads, the requests waiting for one in a bounded queue:
+ * requests arriving when the queue is full are rejected with 503, and requests not answered within the timeout
+ * with 504, so that the latency of the server stays bounded under load. The search of a request that timed out is
+ * interrupted (see RouteComputer), which frees its worker thread for the requests waiting in the queue. The routes
+ * are kept in a RouteCache shared by all the requests, so that popular routes are only computed once.
+ *
+ * @author Arthur Bigot (324366)
+ * @author Léo Paoletti (342165)
+ */
+
+public final class RoutingServer {
+
+    private static final String COST_FUNCTION_NAME = "citybike";
+    private static final int DEFAULT_PORT = 8080;
+    private static final int DEFAULT_QUEUE_CAPACITY = 256;
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    //maximal distance, in meters, between a point and the node it is snapped to
+    private static final double SEARCH_DISTANCE = 500;
+    //maximal distance between two samples of the elevation profiles, as in RouteBean
+    private static final int MAX_STEP_LENGTH = 5;
+    //maximal total number of edges of the cached routes
+    private static final long ROUTE_CACHE_EDGES = 1_000_000;
+    //identity of the cost function of the cached routes, a server only uses one
+    private static final String ROUTE_CACHE_ID = "server";
+    //maximal total number of samples of the cached profiles of the edges (4 bytes each)
+    private static final long PROFILE_CACHE_SAMPLES = 4_000_000;
+
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+    private static final int HTTP_INTERNAL_ERROR = 500;
+    private static final int HTTP_UNAVAILABLE = 503;
+    private static final int HTTP_TIMEOUT = 504;
+
+    private static final String JSON = "application/json";
+    private static final String GPX = "application/gpx+xml";
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    private final Graph graph;
+    private final ConcurrentRouteComputer routeComputer;
+    private final RouteCache routeCache;
+    private final Duration timeout;
+    private final ThreadPoolExecutor workers;
+
+    //server and executor of the exchanges, created by start
+    private HttpServer server;
+    private ExecutorService dispatcher;
+
+    //answer to a request, computed by a worker
+    private record Response(int status, String contentType, byte[] body) {
+        static Response text(int status, String text) {
+            return new Response(status, TEXT, text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * RoutingServer constructor, the server only accepts requests once started.
+     *
+     * @param graph         the Graph of the routes
+     * @param routeComputer the ConcurrentRouteComputer computing the routes, it should have at least as many search
+     *                      states as there are worker threads
+     * @param threads       number of worker threads computing the routes
+     * @param queueCapacity maximal number of requests waiting for a worker thread
+     * @param timeout       maximal time between the arrival of a request and its answer
+     * @throws IllegalArgumentException if threads is not strictly positive, queueCapacity is negative or timeout is
+     *                                  not strictly positive
+     */
+
+    public RoutingServer(Graph graph, ConcurrentRouteComputer routeComputer, int threads, int queueCapacity,
+                         Duration timeout) {
+        Preconditions.checkArgument(threads > 0 && queueCapacity >= 0
+                && !timeout.isNegative() && !timeout.isZero());
+        this.graph = graph;
+        this.routeComputer = routeComputer;
+        this.routeCache = new RouteCache(ROUTE_CACHE_EDGES);
+        this.timeout = timeout;
+        //a synchronous queue rejects every request that can't be given to a worker immediately
+        BlockingQueue<Runnable> queue = queueCapacity == 0
+                ? new SynchronousQueue<>()
+                : new ArrayBlockingQueue<>(queueCapacity);
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Starts the server of the graph stored in the folder or the container given as first argument, on the port
+     * given as second argument (8080 if absent), with the number of worker threads given as third argument (the
+     * number of available processors if absent) and the queue capacity given as fourth argument (256 if absent).
+     * The checksums of a container are verified while the server answers, and the server stops if it is corrupted,
+     * rather than keep giving routes computed on a corrupted graph.
+     *
+     * @param args folder or container of the graph, and optionally the port, the number of threads and the queue
+     *             capacity
+     * @throws IOException if something went wrong while reading the graph or starting the server
+     */
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: RoutingServer <graph directory or container> [port] [threads] [queue capacity]");
+            System.exit(1);
+        }
+        Path graphBasePath = Path.of(args[0]);
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int queueCapacity = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_QUEUE_CAPACITY;
+
+        GraphContainer container = Files.isRegularFile(graphBasePath) ? GraphContainer.open(graphBasePath) : null;
+        Graph graph = (container == null ? Graph.loadFrom(graphBasePath) : Graph.loadFrom(container))
+                .withProfileCache(PROFILE_CACHE_SAMPLES);
+        //the tables computed offline are stored next to the container, or in the folder of the graph
+        Path tablesBasePath = container == null ? graphBasePath : graphBasePath.toAbsolutePath().getParent();
+        CostFunction cf = CompiledCostFunction.loadOrCompile(tablesBasePath, COST_FUNCTION_NAME, graph,
+                new CityBikeCF(graph));
+        RouteComputer routeComputer = new RouteComputer(graph, cf)
+                .withComponents(GraphComponents.loadOrCompute(tablesBasePath, COST_FUNCTION_NAME, graph, cf));
+        try {
+            LandmarkTable landmarks = LandmarkTable.loadFrom(tablesBasePath, COST_FUNCTION_NAME, graph);
+            //a table of another graph is ignored, its distances wouldn't be lower bounds
+            if (landmarks != null) {
+                routeComputer = routeComputer.withLandmarks(landmarks);
+            }
+        } catch (NoSuchFileException e) {
+            //no landmark table, the crow-flies distance is used alone
+        }
+
+        RoutingServer server = new RoutingServer(graph, new ConcurrentRouteComputer(routeComputer, threads),
+                threads, queueCapacity, DEFAULT_TIMEOUT);
+        server.start(new InetSocketAddress(port));
+        System.out.printf("JaVelo routing server listening on port %d (%d threads)%n", server.port(), threads);
+        if (container != null) {
+            container.verification().whenComplete((result, exception) -> {
+                if (exception != null) {
+                    System.err.println("error: " + exception.getMessage() + ", stopping the server");
+                    server.stop();
+                    System.exit(1);
+                }
+            });
+        }
+    }
+
+    /**
+     * Starts accepting requests on the given address.
+     *
+     * @param address the address of the server, its port being chosen by the system if it is 0
+     * @throws IOException if the server can't be bound to the address
+     * @throws IllegalStateException if the server was already started
+     */
+
+    public void start(InetSocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("server already started");
+        }
+        server = HttpServer.create(address, 0);
+        server.createContext("/route", exchange -> handle(exchange, this::routeResponse));
+        server.createContext("/profile", exchange -> handle(exchange, this::profileResponse));
+        server.createContext("/gpx", exchange -> handle(exchange, this::gpxResponse));
+        server.createContext("/stats", exchange -> handle(exchange, this::statsResponse));
+        //the exchanges only wait for the workers, which bound the number of requests in progress: a thread per
+        //exchange is the closest equivalent of virtual threads, which aren't available
+        dispatcher = Executors.newCachedThreadPool();
+        server.setExecutor(dispatcher);
+        server.start();
+    }
+
+    /**
+     * Returns the port on which the server accepts requests.
+     *
+     * @return int port of the server
+     * @throws IllegalStateException if the server wasn't started
+     */
+
+    public int port() {
+        if (server == null) {
+            throw new IllegalStateException("server not started");
+        }
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Stops the server, the requests in progress are given at most one second to complete.
+     */
+
+    public void stop() {
+        if (server != null) {
+            server.stop(1);
+            dispatcher.shutdown();
+        }
+        workers.shutdownNow();
+    }
+
+    //answers the exchange with the response computed by a worker, or an error if it couldn't be computed in time
+    private void handle(HttpExchange exchange, Function<Map<String, String>, Response> responder) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                send(exchange, Response.text(HTTP_METHOD_NOT_ALLOWED, "only GET requests are accepted"));
+                return;
+            }
+            Map<String, String> parameters = parameters(exchange.getRequestURI().getRawQuery());
+
+            Future<Response> future;
+            try {
+                future = workers.submit(() -> responder.apply(parameters));
+            } catch (RejectedExecutionException e) {
+                send(exchange, Response.text(HTTP_UNAVAILABLE, "server overloaded"));
+                return;
+            }
+
+            Response response;
+            try {
+                response = future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                response = Response.text(HTTP_TIMEOUT, "request timed out");
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                response = Response.text(HTTP_UNAVAILABLE, "server stopping");
+            } catch (ExecutionException e) {
+                response = e.getCause() instanceof IllegalArgumentException
+                        ? Response.text(HTTP_BAD_REQUEST, String.valueOf(e.getCause().getMessage()))
+                        : Response.text(HTTP_INTERNAL_ERROR, "internal error");
+            }
+            send(exchange, response);
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", response.contentType());
+        exchange.sendResponseHeaders(response.status(), response.body().length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(response.body());
+        }
+    }
+
+    //parameters of the query string, decoded
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equal = parameter.indexOf('=');
+            if (equal > 0) {
+                parameters.put(URLDecoder.decode(parameter.substring(0, equal), StandardCharsets.UTF_8),
+                        URLDecoder.decode(parameter.substring(equal + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    //closest node of the point given by the parameter "e,n", -1 if there is none
+    private int nodeOf(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        Preconditions.checkArgument(value != null);
+        String[] coordinates = value.split(",");
+        Preconditions.checkArgument(coordinates.length == 2);
+        double e;
+        double n;
+        try {
+            e = Double.parseDouble(coordinates[0].strip());
+            n = Double.parseDouble(coordinates[1].strip());
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("invalid coordinates: " + value);
+        }
+        return SwissBounds.containsEN(e, n) ? graph.nodeClosestTo(e, n, SEARCH_DISTANCE) : -1;
+    }
+
+    //best route between the points of the parameters, null if there is none
+    private Route route(Map<String, String> parameters) {
+        int startNodeId = nodeOf(parameters, "from");
+        int endNodeId = nodeOf(parameters, "to");
+        if (startNodeId == -1 || endNodeId == -1 || startNodeId == endNodeId) {
+            return null;
+        }
+        return routeCache.bestRouteBetween(ROUTE_CACHE_ID, startNodeId, endNodeId, routeComputer::bestRouteBetween);
+    }
+
+    private Response routeResponse(Map<String, String> parameters) {
+        Route route = route(parameters);
+        if (route == null) {
+            return Response.text(HTTP_NOT_FOUND, "no route found");
+        }
+        ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"length\":").append(jsonNumber(route.length()))
+                .append(",\"totalAscent\":").append(jsonNumber(profile.totalAscent()))
+                .append(",\"totalDescent\":").append(jsonNumber(profile.totalDescent()))
+                .append(',');
+        json.append("\"points\":[");
+        boolean first = true;
+        for (PointCh point : route.points()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append(String.format(Locale.ROOT, "[%.6f,%.6f]",
+                    Math.toDegrees(point.lon()), Math.toDegrees(point.lat())));
+        }
+        json.append("]}");
+        return new Response(HTTP_OK, JSON, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response profileResponse(Map<String, String> parameters) {
+        Route route = route(parameters);
+        if (route == null) {
+            return Response.text(HTTP_NOT_FOUND, "no route found");
+        }
+        ElevationProfile profile = ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH);
+        int sampleCount = (int) Math.ceil(profile.length() / MAX_STEP_LENGTH) + 1;
+        double stepLength = profile.length() / (sampleCount - 1);
+
+        StringBuilder json = new StringBuilder();
+        json.append("{\"length\":").append(jsonNumber(profile.length()))
+                .append(",\"minElevation\":").append(jsonNumber(profile.minElevation()))
+                .append(",\"maxElevation\":").append(jsonNumber(profile.maxElevation()))
+                .append(",\"totalAscent\":").append(jsonNumber(profile.totalAscent()))
+                .append(",\"totalDescent\":").append(jsonNumber(profile.totalDescent()))
+                .append(",\"stepLength\":").append(jsonNumber(stepLength))
+                .append(',');
+        json.append("\"samples\":[");
+        for (int i = 0; i < sampleCount; ++i) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(jsonNumber(profile.elevationAt(i * stepLength)));
+        }
+        json.append("]}");
+        return new Response(HTTP_OK, JSON, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response statsResponse(Map<String, String> parameters) {
+        String json = String.format(Locale.ROOT,
+                "{\"cachedRoutes\":%d,\"hits\":%d,\"misses\":%d,\"evictions\":%d,\"hitRate\":%s,"
+                        + "\"profileHits\":%d,\"profileMisses\":%d,\"profileHitRate\":%s}",
+                routeCache.size(), routeCache.hitCount(), routeCache.missCount(), routeCache.evictionCount(),
+                jsonRate(routeCache.hitRate()), graph.profileCacheHitCount(), graph.profileCacheMissCount(),
+                jsonRate(graph.profileCacheHitRate()));
+        return new Response(HTTP_OK, JSON, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    //the ratio with three decimals, or null if it is unknown
+    private static String jsonRate(double rate) {
+        return Double.isNaN(rate) ? "null" : String.format(Locale.ROOT, "%.3f", rate);
+    }
+
+    //the value with one decimal, or null if it isn't finite (elevations are unknown on some routes)
+    private static String jsonNumber(double value) {
+        return Double.isFinite(value) ? String.format(Locale.ROOT, "%.1f", value) : "null";
+    }
+
+    private Response gpxResponse(Map<String, String> parameters) {
+        Route route = route(parameters);
+        if (route == null) {
+            return Response.text(HTTP_NOT_FOUND, "no route found");
+        }
+        StringWriter gpx = new StringWriter();
+        try {
+            GpxGenerator.writeGpx(gpx, route, ElevationProfileComputer.elevationProfile(route, MAX_STEP_LENGTH));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); //Should never happen with a StringWriter
+        }
+        return new Response(HTTP_OK, GPX, gpx.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,207 @@
+package ch.epfl.test;
+
+import ch.epfl.javelo.data.*;
+import ch.epfl.javelo.projection.SwissBounds;
+import ch.epfl.javelo.routing.CostFunction;
+import ch.epfl.javelo.routing.Edge;
+import ch.epfl.javelo.routing.Route;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+public final class TestGraphs {
+    // Attribute sets used by the edges of the generated graphs, chosen to give varied (and sometimes infinite)
+    // costs with CityBikeCF.
+    public final static List<AttributeSet> ATTRIBUTE_SETS = List.of(
+            AttributeSet.of(Attribute.HIGHWAY_RESIDENTIAL),
+            AttributeSet.of(Attribute.HIGHWAY_CYCLEWAY),
+            AttributeSet.of(Attribute.HIGHWAY_PRIMARY),
+            AttributeSet.of(Attribute.HIGHWAY_SECONDARY, Attribute.ONEWAY_YES),
+            AttributeSet.of(Attribute.LCN_YES),
+            AttributeSet.of(Attribute.HIGHWAY_MOTORWAY));
+
+    private final static double ORIGIN_E = 2_530_000;
+    private final static double ORIGIN_N = 1_150_000;
+    private final static int SECTORS_PER_SIDE = 128;
+
+    private TestGraphs() {}
+
+    /**
+     * Returns a random graph whose nodes lie on a (jittered) width x height grid, spaced by the given number of
+     * meters, near Lausanne. Neighbouring nodes are linked by a pair of edges (one in each direction), with random
+     * attribute sets and profiles of all types. The two last columns of the grid are disconnected from the rest of
+     * it. Node identities are sorted by sector, as in the real data.
+     */
+    public static Graph newGridGraph(int width, int height, double spacing, RandomGenerator rng) {
+        GridGraphParts parts = newGridGraphParts(width, height, spacing, rng);
+        return new Graph(parts.nodes(), parts.sectors(), parts.edges(), ATTRIBUTE_SETS);
+    }
+
+    /**
+     * Returns the cost of the given route of the graph for the given cost function. Each edge of the route is costed
+     * as the cheapest edge of the graph joining its nodes with its length, as RouteComputer chooses among parallel
+     * edges, and an edge of the route shorter than all of them (a part of an edge, at the ends of a route between
+     * points) as the cheapest of them per meter.
+     */
+    public static double cost(Graph graph, CostFunction costFunction, Route route) {
+        double cost = 0;
+        for (Edge edge : route.edges()) {
+            double edgeCost = Double.POSITIVE_INFINITY;
+            double partialEdgeCost = Double.POSITIVE_INFINITY;
+            for (int i = 0; i < graph.nodeOutDegree(edge.fromNodeId()); i += 1) {
+                int edgeId = graph.nodeOutEdgeId(edge.fromNodeId(), i);
+                if (graph.edgeTargetNodeId(edgeId) != edge.toNodeId()) continue;
+                double edgeIdCost = costFunction.costFactor(edge.fromNodeId(), edgeId) * edge.length();
+                partialEdgeCost = Math.min(partialEdgeCost, edgeIdCost);
+                if (graph.edgeLength(edgeId) == edge.length()) edgeCost = Math.min(edgeCost, edgeIdCost);
+            }
+            if (partialEdgeCost == Double.POSITIVE_INFINITY)
+                throw new IllegalArgumentException("no edge of the graph joins the nodes of " + edge);
+            cost += edgeCost < Double.POSITIVE_INFINITY ? edgeCost : partialEdgeCost;
+        }
+        return cost;
+    }
+
+    /**
+     * Writes the files of the graph returned by newGridGraph for the same arguments in the given directory, as
+     * Graph.loadFrom expects them (nodes.bin, edges.bin, profile_ids.bin, elevations.bin, sectors.bin and
+     * attributes.bin).
+     */
+    public static void writeGridGraph(Path directory, int width, int height, double spacing, RandomGenerator rng)
+            throws IOException {
+        GridGraphParts parts = newGridGraphParts(width, height, spacing, rng);
+        ByteBuffer nodes = ByteBuffer.allocate(parts.nodes().buffer().capacity() * Integer.BYTES);
+        nodes.asIntBuffer().put(parts.nodes().buffer().duplicate().clear());
+        ByteBuffer profileIds = ByteBuffer.allocate(parts.edges().profileIds().capacity() * Integer.BYTES);
+        profileIds.asIntBuffer().put(parts.edges().profileIds().duplicate().clear());
+        ByteBuffer elevations = ByteBuffer.allocate(parts.edges().elevations().capacity() * Short.BYTES);
+        elevations.asShortBuffer().put(parts.edges().elevations().duplicate().clear());
+        ByteBuffer attributes = ByteBuffer.allocate(ATTRIBUTE_SETS.size() * Long.BYTES);
+        for (AttributeSet set : ATTRIBUTE_SETS) attributes.putLong(set.bits());
+
+        Files.write(directory.resolve("nodes.bin"), nodes.array());
+        Files.write(directory.resolve("edges.bin"), bytesOf(parts.edges().edgesBuffer()));
+        Files.write(directory.resolve("profile_ids.bin"), profileIds.array());
+        Files.write(directory.resolve("elevations.bin"), elevations.array());
+        Files.write(directory.resolve("sectors.bin"), bytesOf(parts.sectors().buffer()));
+        Files.write(directory.resolve("attributes.bin"), attributes.array());
+    }
+
+    private static byte[] bytesOf(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.capacity()];
+        buffer.duplicate().clear().get(bytes);
+        return bytes;
+    }
+
+    private record GridGraphParts(GraphNodes nodes, GraphSectors sectors, GraphEdges edges) {}
+
+    private static GridGraphParts newGridGraphParts(int width, int height, double spacing, RandomGenerator rng) {
+        int count = width * height;
+        double[] es = new double[count];
+        double[] ns = new double[count];
+        int[] sectors = new int[count];
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i += 1) {
+            es[i] = ORIGIN_E + (i % width) * spacing + rng.nextDouble() * spacing * 0.3;
+            ns[i] = ORIGIN_N + (i / width) * spacing + rng.nextDouble() * spacing * 0.3;
+            int sectorE = (int) ((es[i] - SwissBounds.MIN_E) / (SwissBounds.WIDTH / SECTORS_PER_SIDE));
+            int sectorN = (int) ((ns[i] - SwissBounds.MIN_N) / (SwissBounds.HEIGHT / SECTORS_PER_SIDE));
+            sectors[i] = sectorN * SECTORS_PER_SIDE + sectorE;
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> sectors[i]));
+        int[] nodeIds = new int[count];
+        for (int k = 0; k < count; k += 1) nodeIds[order[k]] = k;
+
+        // Each way gives two edges: [target, inverted, length (Q28.4), gain (Q28.4), attributes, profile id]
+        List<List<int[]>> outEdges = new ArrayList<>();
+        for (int i = 0; i < count; i += 1) outEdges.add(new ArrayList<>());
+        ShortBuffer elevations = ShortBuffer.allocate(count * 4 * 200);
+        for (int i = 0; i < count; i += 1) {
+            int x = i % width, y = i / width;
+            boolean eastLinked = x + 1 < width && x + 1 != width - 2;
+            if (eastLinked) addWay(i, i + 1, es, ns, nodeIds, outEdges, elevations, rng);
+            if (y + 1 < height) addWay(i, i + width, es, ns, nodeIds, outEdges, elevations, rng);
+            if (eastLinked && y + 1 < height && rng.nextInt(5) == 0)
+                addWay(i, i + width + 1, es, ns, nodeIds, outEdges, elevations, rng);
+        }
+
+        int edgesCount = outEdges.stream().mapToInt(List::size).sum();
+        IntBuffer nodesBuffer = IntBuffer.allocate(3 * count);
+        ByteBuffer edgesBuffer = ByteBuffer.allocate(10 * edgesCount);
+        IntBuffer profileIds = IntBuffer.allocate(edgesCount);
+        int edgeId = 0;
+        for (int k = 0; k < count; k += 1) {
+            int i = order[k];
+            nodesBuffer.put((int) Math.round(es[i] * 16));
+            nodesBuffer.put((int) Math.round(ns[i] * 16));
+            nodesBuffer.put((outEdges.get(k).size() << 28) | edgeId);
+            for (int[] e : outEdges.get(k)) {
+                edgesBuffer.putInt(e[1] == 1 ? ~e[0] : e[0]);
+                edgesBuffer.putShort((short) e[2]);
+                edgesBuffer.putShort((short) e[3]);
+                edgesBuffer.putShort((short) e[4]);
+                profileIds.put(e[5]);
+                edgeId += 1;
+            }
+        }
+
+        ByteBuffer sectorsBuffer = ByteBuffer.allocate(SECTORS_PER_SIDE * SECTORS_PER_SIDE * 6);
+        int k = 0;
+        for (int s = 0; s < SECTORS_PER_SIDE * SECTORS_PER_SIDE; s += 1) {
+            int start = k;
+            while (k < count && sectors[order[k]] == s) k += 1;
+            sectorsBuffer.putInt(start);
+            sectorsBuffer.putShort((short) (k - start));
+        }
+
+        return new GridGraphParts(
+                new GraphNodes(nodesBuffer.flip()),
+                new GraphSectors(sectorsBuffer.flip()),
+                new GraphEdges(edgesBuffer.flip(), profileIds.flip(), elevations.flip().slice()));
+    }
+
+    private static void addWay(int i1, int i2, double[] es, double[] ns, int[] nodeIds, List<List<int[]>> outEdges,
+                               ShortBuffer elevations, RandomGenerator rng) {
+        int length = (int) Math.round(Math.hypot(es[i1] - es[i2], ns[i1] - ns[i2]) * 16);
+        int samplesCount = 1 + (length + 31) / 32;
+        int type = rng.nextInt(4);
+        int firstSample = elevations.position();
+        int base = (400 + rng.nextInt(200)) << 4;
+        switch (type) {
+            case 1 -> {
+                for (int s = 0; s < samplesCount; s += 1)
+                    elevations.put((short) (base + s * 8 + rng.nextInt(48)));
+            }
+            case 2, 3 -> {
+                elevations.put((short) base);
+                int bits = type == 2 ? 8 : 4, perShort = 16 / bits, current = 0, inCurrent = 0;
+                for (int s = 1; s < samplesCount; s += 1) {
+                    int delta = rng.nextInt(1 << bits) - (1 << (bits - 1));
+                    current = (current << bits) | (delta & ((1 << bits) - 1));
+                    if (++inCurrent == perShort) {
+                        elevations.put((short) current);
+                        current = 0;
+                        inCurrent = 0;
+                    }
+                }
+                if (inCurrent > 0) elevations.put((short) (current << (bits * (perShort - inCurrent))));
+            }
+            default -> {}
+        }
+        int profileId = (type << 30) | (type == 0 ? 0 : firstSample);
+        int gain = rng.nextInt(20 << 4);
+        int attributes = rng.nextInt(ATTRIBUTE_SETS.size());
+        outEdges.get(nodeIds[i1]).add(new int[]{nodeIds[i2], 0, length, gain, attributes, profileId});
+        outEdges.get(nodeIds[i2]).add(new int[]{nodeIds[i1], 1, length, gain, attributes, profileId});
+    }
+}
@@ -0,0 +1,61 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BidirectionalSearchTest {
+
+    private static void assertSameCosts(Graph graph, CostFunction costFunction, RouteComputer bidirectional) {
+        var rng = newRandom();
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int i = 0; i < 300; i += 1) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId == endNodeId) continue;
+            Route expected = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            Route actual = bidirectional.bestRouteBetween(startNodeId, endNodeId);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertNotNull(actual);
+                List<Edge> edges = actual.edges();
+                assertEquals(startNodeId, edges.get(0).fromNodeId());
+                for (int j = 1; j < edges.size(); j += 1)
+                    assertEquals(edges.get(j - 1).toNodeId(), edges.get(j).fromNodeId());
+                assertEquals(endNodeId, edges.get(edges.size() - 1).toNodeId());
+                double expectedCost = TestGraphs.cost(graph, costFunction, expected);
+                assertEquals(expectedCost, TestGraphs.cost(graph, costFunction, actual), 1e-4 * expectedCost);
+            }
+        }
+    }
+
+    @Test
+    void bidirectionalSearchFindsRoutesOfTheSameCost() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        assertSameCosts(graph, costFunction, new RouteComputer(graph, costFunction).withBidirectionalSearch());
+    }
+
+    @Test
+    void bidirectionalSearchWithLandmarksFindsRoutesOfTheSameCost() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        LandmarkTable table = LandmarkTable.compute(graph, costFunction, 8);
+        assertSameCosts(graph, costFunction,
+                new RouteComputer(graph, costFunction).withBidirectionalSearch().withLandmarks(table));
+    }
+
+    @Test
+    void bidirectionalSearchStatesAreCountedTwice() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        assertEquals(RouteSearchState.bytesFor(graph.nodeCount()), routeComputer.searchStateBytes());
+        assertEquals(RouteSearchState.bytesFor(graph.nodeCount(), true),
+                routeComputer.withBidirectionalSearch().searchStateBytes());
+    }
+}
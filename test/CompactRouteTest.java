@@ -0,0 +1,84 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactRouteTest {
+
+    private static SingleRoute singleRouteOf(Graph graph, CompactRoute route) {
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < route.edgeCount(); i += 1)
+            edges.add(Edge.of(graph, route.edgeId(i), route.nodeId(i), route.nodeId(i + 1)));
+        return new SingleRoute(edges);
+    }
+
+    private static void assertEqualElevations(double expected, double actual) {
+        if (Double.isNaN(expected)) assertTrue(Double.isNaN(actual));
+        else assertEquals(expected, actual, 1e-9);
+    }
+
+    @Test
+    void compactRouteBehavesLikeSingleRoute() {
+        Graph graph = TestGraphs.newGridGraph(30, 30, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        var rng = newRandom();
+        int checked = 0;
+        while (checked < 30) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId == endNodeId) continue;
+            Route route = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            if (route == null) continue;
+            checked += 1;
+
+            assertTrue(route instanceof CompactRoute);
+            CompactRoute compact = (CompactRoute) route;
+            assertEquals(startNodeId, compact.nodeId(0));
+            assertEquals(endNodeId, compact.nodeId(compact.edgeCount()));
+            assertEquals(compact.edges().size(), compact.edgeCount());
+            SingleRoute single = singleRouteOf(graph, compact);
+
+            assertEquals(single.length(), compact.length());
+            assertEquals(single.points(), compact.points());
+            for (int i = 0; i < 50; i += 1) {
+                double position = rng.nextDouble(-10, single.length() + 10);
+                assertEquals(single.pointAt(position), compact.pointAt(position));
+                assertEqualElevations(single.elevationAt(position), compact.elevationAt(position));
+                assertEquals(single.nodeClosestTo(position), compact.nodeClosestTo(position));
+
+                PointCh point = new PointCh(2_530_000 + rng.nextDouble(1600), 1_150_000 + rng.nextDouble(1600));
+                assertEquals(single.pointClosestTo(point), compact.pointClosestTo(point));
+            }
+            // Positions of the nodes, where the elevation is the one of the edge starting there.
+            double position = 0;
+            for (int i = 0; i < compact.edgeCount(); i += 1) {
+                assertEqualElevations(single.elevationAt(position), compact.elevationAt(position));
+                assertEquals(single.pointAt(position), compact.pointAt(position));
+                position += graph.edgeLength(compact.edgeId(i));
+            }
+            assertEqualElevations(single.elevationAt(single.length()), compact.elevationAt(compact.length()));
+
+            List<Edge> edges = compact.edges();
+            assertSame(edges, compact.edges());
+            assertEquals(single.edges().size(), edges.size());
+            for (int i = 0; i < edges.size(); i += 1) {
+                assertEquals(single.edges().get(i).fromNodeId(), edges.get(i).fromNodeId());
+                assertEquals(single.edges().get(i).toNodeId(), edges.get(i).toNodeId());
+                assertEquals(single.edges().get(i).length(), edges.get(i).length());
+            }
+        }
+    }
+
+    @Test
+    void compactRouteConstructorThrowsOnEmptyRoute() {
+        Graph graph = TestGraphs.newGridGraph(5, 5, 50, newRandom());
+        assertThrows(IllegalArgumentException.class, () -> new CompactRoute(graph, 0, new int[0]));
+    }
+}
@@ -0,0 +1,99 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.CompiledCostFunction;
+import ch.epfl.javelo.routing.CostFunction;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompiledCostFunctionTest {
+
+    @Test
+    void compiledCostFactorsAreTheOriginalOnes() {
+        Graph graph = TestGraphs.newGridGraph(30, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        CompiledCostFunction compiled = CompiledCostFunction.compile(graph, costFunction);
+        assertEquals(graph.edgeCount(), compiled.edgeCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i += 1) {
+                int edgeId = graph.nodeOutEdgeId(nodeId, i);
+                assertEquals((float) costFunction.costFactor(nodeId, edgeId), compiled.costFactor(nodeId, edgeId));
+            }
+        }
+    }
+
+    @Test
+    void compiledCostFunctionCanBeWrittenAndLoaded() throws IOException {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        CompiledCostFunction compiled = CompiledCostFunction.compile(graph, new CityBikeCF(graph));
+        Path directory = Files.createTempDirectory("javelo-costs");
+        try {
+            compiled.writeTo(directory, "test", graph);
+            CompiledCostFunction loaded = CompiledCostFunction.loadFrom(directory, "test", graph);
+            assertEquals(compiled.edgeCount(), loaded.edgeCount());
+            for (int edgeId = 0; edgeId < compiled.edgeCount(); edgeId += 1)
+                assertEquals(compiled.costFactor(0, edgeId), loaded.costFactor(0, edgeId));
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void staleCostFactorsAreNotLoaded() throws IOException {
+        //two graphs with the same edges, whose attribute sets are in a different order
+        Path graphDirectory = Files.createTempDirectory("javelo-graph");
+        Path otherGraphDirectory = Files.createTempDirectory("javelo-graph");
+        Path directory = Files.createTempDirectory("javelo-costs");
+        try {
+            TestGraphs.writeGridGraph(graphDirectory, 20, 20, 50, newRandom());
+            TestGraphs.writeGridGraph(otherGraphDirectory, 20, 20, 50, newRandom());
+            ByteBuffer attributes = ByteBuffer.allocate(TestGraphs.ATTRIBUTE_SETS.size() * Long.BYTES);
+            for (int i = TestGraphs.ATTRIBUTE_SETS.size() - 1; i >= 0; i -= 1)
+                attributes.putLong(TestGraphs.ATTRIBUTE_SETS.get(i).bits());
+            Files.write(otherGraphDirectory.resolve("attributes.bin"), attributes.array());
+            Graph graph = Graph.loadFrom(graphDirectory);
+            Graph otherGraph = Graph.loadFrom(otherGraphDirectory);
+            assertEquals(graph.edgeCount(), otherGraph.edgeCount());
+            assertEquals(graph.fingerprint(), Graph.loadFrom(graphDirectory).fingerprint());
+            assertNotEquals(graph.fingerprint(), otherGraph.fingerprint());
+
+            CompiledCostFunction.compile(graph, new CityBikeCF(graph)).writeTo(directory, "test", graph);
+            assertNotNull(CompiledCostFunction.loadFrom(directory, "test", graph));
+            assertNull(CompiledCostFunction.loadFrom(directory, "test", otherGraph));
+            CostFunction costFunction = new CityBikeCF(otherGraph);
+            CompiledCostFunction compiled = CompiledCostFunction.loadOrCompile(directory, "test", otherGraph,
+                    costFunction);
+            for (int nodeId = 0; nodeId < otherGraph.nodeCount(); nodeId += 1) {
+                for (int i = 0; i < otherGraph.nodeOutDegree(nodeId); i += 1) {
+                    int edgeId = otherGraph.nodeOutEdgeId(nodeId, i);
+                    assertEquals((float) costFunction.costFactor(nodeId, edgeId), compiled.costFactor(nodeId, edgeId));
+                }
+            }
+
+            //cost factors written without header, as before the format had a version
+            Files.write(directory.resolve("costs_test.bin"), new byte[graph.edgeCount() * Float.BYTES]);
+            assertNull(CompiledCostFunction.loadFrom(directory, "test", graph));
+        } finally {
+            deleteDirectory(graphDirectory);
+            deleteDirectory(otherGraphDirectory);
+            deleteDirectory(directory);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.CityBikeCF;
+import ch.epfl.javelo.routing.ConcurrentRouteComputer;
+import ch.epfl.javelo.routing.Route;
+import ch.epfl.javelo.routing.RouteComputer;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentRouteComputerTest {
+
+    @Test
+    void concurrentRouteComputerThrowsOnIdenticalStartAndEndNodes() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 200, newRandom());
+        var rc = new ConcurrentRouteComputer(new RouteComputer(graph, new CityBikeCF(graph)), 2);
+        assertThrows(IllegalArgumentException.class, () -> rc.bestRouteBetween(42, 42));
+    }
+
+    @Test
+    void concurrentRouteComputerMatchesRouteComputerOnManyThreads() throws Exception {
+        Graph graph = TestGraphs.newGridGraph(40, 40, 200, newRandom());
+        var cf = new CityBikeCF(graph);
+        var rc = ConcurrentRouteComputer.withMemoryBudget(graph, cf, 1L << 20);
+        assertTrue(rc.maxSearchStates() >= 1);
+
+        var rng = newRandom();
+        int[][] pairs = new int[16][];
+        for (int i = 0; i < pairs.length; i += 1) {
+            int from = rng.nextInt(graph.nodeCount());
+            int to = rng.nextInt(graph.nodeCount() - 1);
+            pairs[i] = new int[]{from, to < from ? to : to + 1};
+        }
+        var expected = new RouteComputer(graph, cf);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Route>> futures = new ArrayList<>();
+        for (int i = 0; i < 64; i += 1) {
+            int[] pair = pairs[i % pairs.length];
+            futures.add(executor.submit(() -> rc.bestRouteBetween(pair[0], pair[1])));
+        }
+
+        for (int i = 0; i < futures.size(); i += 1) {
+            int[] pair = pairs[i % pairs.length];
+            Route expectedRoute = expected.bestRouteBetween(pair[0], pair[1]);
+            Route actualRoute = futures.get(i).get();
+            if (expectedRoute == null) {
+                assertNull(actualRoute);
+            } else {
+                assertNotNull(actualRoute);
+                assertEquals(expectedRoute.length(), actualRoute.length(), 1e-6);
+                assertEquals(expectedRoute.edges().size(), actualRoute.edges().size());
+            }
+        }
+        executor.shutdown();
+    }
+}
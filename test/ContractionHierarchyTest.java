@@ -0,0 +1,116 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContractionHierarchyTest {
+
+    private static void assertContiguous(int startNodeId, int endNodeId, List<Edge> edges) {
+        assertEquals(startNodeId, edges.get(0).fromNodeId());
+        for (int i = 1; i < edges.size(); i += 1)
+            assertEquals(edges.get(i - 1).toNodeId(), edges.get(i).fromNodeId());
+        assertEquals(endNodeId, edges.get(edges.size() - 1).toNodeId());
+    }
+
+    private static void assertSameRoutes(Graph graph, CostFunction costFunction, ContractionHierarchy hierarchy) {
+        var rng = newRandom();
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        ContractionHierarchyRouteComputer chRouteComputer = new ContractionHierarchyRouteComputer(graph, hierarchy);
+        for (int i = 0; i < 300; i += 1) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId == endNodeId) continue;
+
+            Route expected = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            Route actual = chRouteComputer.bestRouteBetween(startNodeId, endNodeId);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertNotNull(actual);
+                assertContiguous(startNodeId, endNodeId, actual.edges());
+                double expectedCost = TestGraphs.cost(graph, costFunction, expected);
+                assertEquals(expectedCost, TestGraphs.cost(graph, costFunction, actual), 1e-4 * expectedCost);
+            }
+        }
+    }
+
+    @Test
+    void hierarchyRoutesHaveTheSameCostAsRouteComputer() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph, costFunction);
+
+        assertEquals(graph.nodeCount(), hierarchy.nodeCount());
+        assertSameRoutes(graph, costFunction, hierarchy);
+    }
+
+    @Test
+    void shortcutsHaveTheWeightOfTheirArcs() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph, new CityBikeCF(graph));
+        for (int arcId = 0; arcId < hierarchy.arcCount(); arcId += 1) {
+            if (!hierarchy.isShortcut(arcId)) continue;
+            int first = hierarchy.shortcutFirstArc(arcId);
+            int second = hierarchy.shortcutSecondArc(arcId);
+            assertEquals(hierarchy.arcFrom(arcId), hierarchy.arcFrom(first));
+            assertEquals(hierarchy.arcTo(first), hierarchy.arcFrom(second));
+            assertEquals(hierarchy.arcTo(arcId), hierarchy.arcTo(second));
+            assertEquals(hierarchy.arcWeight(arcId), hierarchy.arcWeight(first) + hierarchy.arcWeight(second));
+        }
+    }
+
+    @Test
+    void hierarchyCanBeWrittenAndLoaded() throws IOException {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph, costFunction);
+
+        Path directory = Files.createTempDirectory("javelo-ch");
+        try {
+            hierarchy.writeTo(directory, "test", graph);
+            ContractionHierarchy loaded = ContractionHierarchy.loadFrom(directory, "test", graph);
+            assertEquals(hierarchy.arcCount(), loaded.arcCount());
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1)
+                assertEquals(hierarchy.rank(nodeId), loaded.rank(nodeId));
+            assertSameRoutes(graph, costFunction, loaded);
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void staleHierarchyIsNotLoaded() throws IOException {
+        //two graphs with as many nodes, but different edges
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, rng);
+        Graph otherGraph = TestGraphs.newGridGraph(20, 20, 50, rng);
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph, new CityBikeCF(graph));
+
+        Path directory = Files.createTempDirectory("javelo-ch");
+        try {
+            hierarchy.writeTo(directory, "test", graph);
+            assertNotNull(ContractionHierarchy.loadFrom(directory, "test", graph));
+            assertNull(ContractionHierarchy.loadFrom(directory, "test", otherGraph));
+
+            //ranks written without header, as before the format had a version
+            Files.write(directory.resolve("ch_test_ranks.bin"), new byte[graph.nodeCount() * Integer.BYTES]);
+            assertNull(ContractionHierarchy.loadFrom(directory, "test", graph));
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+}
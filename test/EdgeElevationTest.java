@@ -0,0 +1,61 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeElevationTest {
+
+    private static void assertSameElevation(double expected, double actual) {
+        if (Double.isNaN(expected)) assertTrue(Double.isNaN(actual));
+        else assertEquals(expected, actual);
+    }
+
+    @Test
+    void edgeElevationAtEqualsEdgeProfile() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 70, newRandom());
+        var rng = newRandom();
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            DoubleUnaryOperator profile = graph.edgeProfile(edgeId);
+            double length = graph.edgeLength(edgeId);
+            // Positions of the samples, between them, and outside of the edge.
+            for (double position = -2; position <= length + 2; position += 0.5)
+                assertSameElevation(profile.applyAsDouble(position), graph.edgeElevationAt(edgeId, position));
+            for (int i = 0; i < 20; i += 1) {
+                double position = rng.nextDouble(-1, length + 1);
+                assertSameElevation(profile.applyAsDouble(position), graph.edgeElevationAt(edgeId, position));
+            }
+            assertSameElevation(profile.applyAsDouble(length), graph.edgeElevationAt(edgeId, length));
+        }
+    }
+
+    @Test
+    void edgeElevationsAtEqualsEdgeProfile() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 70, newRandom());
+        var rng = newRandom();
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            DoubleUnaryOperator profile = graph.edgeProfile(edgeId);
+            double length = graph.edgeLength(edgeId);
+            double start = rng.nextDouble(-5, length / 2);
+            double step = rng.nextBoolean() ? rng.nextDouble(0.1, 7) : -rng.nextDouble(0.1, 3);
+            int count = 1 + rng.nextInt(40);
+            double[] elevations = new double[count + 3];
+            graph.edgeElevationsAt(edgeId, start, step, elevations, 2, count);
+            assertEquals(0, elevations[0]);
+            assertEquals(0, elevations[1]);
+            for (int i = 0; i < count; i += 1)
+                assertSameElevation(profile.applyAsDouble(start + i * step), elevations[2 + i]);
+            assertEquals(0, elevations[count + 2]);
+        }
+    }
+
+    @Test
+    void edgeElevationsAtThrowsOnTooSmallDestination() {
+        Graph graph = TestGraphs.newGridGraph(5, 5, 70, newRandom());
+        assertThrows(IndexOutOfBoundsException.class,
+                () -> graph.edgeElevationsAt(0, 0, 1, new double[4], 2, 3));
+    }
+}
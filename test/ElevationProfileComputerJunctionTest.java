@@ -0,0 +1,86 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+import static ch.epfl.javelo.routing.ElevationProfileComputer.elevationProfile;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ElevationProfileComputerJunctionTest {
+    private static final double ORIGIN_E = 2_600_000;
+    private static final double ORIGIN_N = 1_200_000;
+
+    private static SingleRoute route(double edgeLength, DoubleUnaryOperator... profiles) {
+        List<Edge> edges = new ArrayList<>();
+        for (int i = 0; i < profiles.length; i += 1) {
+            PointCh from = new PointCh(ORIGIN_E + i * edgeLength, ORIGIN_N);
+            PointCh to = new PointCh(ORIGIN_E + (i + 1) * edgeLength, ORIGIN_N);
+            edges.add(new Edge(i, i + 1, from, to, edgeLength, profiles[i]));
+        }
+        return new SingleRoute(edges);
+    }
+
+    @Test
+    void sampleAtJunctionUsesStartOfNextEdge() {
+        ElevationProfile profile = elevationProfile(route(10, x -> 100, x -> 200), 5);
+        assertEquals(100, profile.elevationAt(5));
+        assertEquals(200, profile.elevationAt(10));
+        assertEquals(200, profile.elevationAt(15));
+    }
+
+    @Test
+    void sampleAtJunctionUsesEndOfPreviousEdgeIfNextIsUnknown() {
+        ElevationProfile profile = elevationProfile(route(10, x -> 100 + x, x -> Double.NaN, x -> 300), 10);
+        // Samples: 100 (start), 110 (end of the first edge), 300 (start of the third edge), 300 (end).
+        assertEquals(100, profile.elevationAt(0));
+        assertEquals(110, profile.elevationAt(10));
+        assertEquals(205, profile.elevationAt(15));
+        assertEquals(300, profile.elevationAt(20));
+    }
+
+    @Test
+    void longRouteProfileIsSampledAlongAllEdges() {
+        int edgeCount = 20_000;
+        DoubleUnaryOperator[] profiles = new DoubleUnaryOperator[edgeCount];
+        for (int i = 0; i < edgeCount; i += 1) {
+            double start = i * 10.0;
+            profiles[i] = x -> start + x;
+        }
+        SingleRoute route = route(10, profiles);
+        ElevationProfile profile = elevationProfile(route, 5);
+        assertEquals(0, profile.minElevation());
+        assertEquals(route.length(), profile.maxElevation());
+        assertEquals(route.length(), profile.totalAscent(), 1e-6);
+        assertEquals(12_345, profile.elevationAt(12_345));
+    }
+
+    @Test
+    void compactRouteProfileEqualsProfileOfItsEdges() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(30, 30, 70, rng);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        int checked = 0;
+        while (checked < 50) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId == endNodeId) continue;
+            Route route = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            if (route == null) continue;
+            checked += 1;
+            for (double maxStepLength : new double[]{1, 5, 33.3}) {
+                ElevationProfile expected = elevationProfile(new SingleRoute(route.edges()), maxStepLength);
+                ElevationProfile actual = elevationProfile(route, maxStepLength);
+                assertEquals(expected.length(), actual.length());
+                for (double position = 0; position <= route.length(); position += maxStepLength / 3)
+                    assertEquals(expected.elevationAt(position), actual.elevationAt(position), 1e-3);
+                assertEquals(expected.totalAscent(), actual.totalAscent(), 1e-2);
+            }
+        }
+    }
+}
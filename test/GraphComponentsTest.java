@@ -0,0 +1,148 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.IntStream;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphComponentsTest {
+
+    @Test
+    void mayReachWorksOnKnownValues() {
+        //nodes 0 and 1 reach each other (component 1) and reach node 2 (component 0), node 3 is isolated
+        GraphComponents components = new GraphComponents(IntBuffer.wrap(new int[]{1, 0, 1, 0, 0, 0, 2, 3}));
+        assertEquals(4, components.nodeCount());
+        assertTrue(components.mayReach(0, 1));
+        assertTrue(components.mayReach(1, 0));
+        assertTrue(components.mayReach(0, 2));
+        assertFalse(components.mayReach(2, 0));
+        assertFalse(components.mayReach(0, 3));
+        assertFalse(components.mayReach(3, 0));
+    }
+
+    @Test
+    void componentsAgreeWithRouteComputer() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(30, 20, 50, rng);
+        CostFunction costFunction = new CityBikeCF(graph);
+        GraphComponents components = GraphComponents.compute(graph, costFunction);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+
+        int rejected = 0;
+        for (int i = 0; i < 500; i += 1) {
+            int nodeId1 = rng.nextInt(graph.nodeCount());
+            int nodeId2 = rng.nextInt(graph.nodeCount());
+            if (nodeId1 == nodeId2) continue;
+            boolean reaches = routeComputer.bestRouteBetween(nodeId1, nodeId2) != null;
+            boolean isReached = routeComputer.bestRouteBetween(nodeId2, nodeId1) != null;
+            //a route that exists is never rejected, and routes exist both ways exactly within a strong component
+            if (reaches) assertTrue(components.mayReach(nodeId1, nodeId2));
+            if (isReached) assertTrue(components.mayReach(nodeId2, nodeId1));
+            assertEquals(reaches && isReached,
+                    components.strongComponent(nodeId1) == components.strongComponent(nodeId2));
+            if (!components.mayReach(nodeId1, nodeId2)) rejected += 1;
+        }
+        //the two last columns of the grid are disconnected from the rest of it
+        assertTrue(rejected > 0);
+    }
+
+    @Test
+    void routeComputerWithComponentsFindsTheSameRoutes() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(30, 20, 50, rng);
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RouteComputer withComponents = routeComputer.withComponents(GraphComponents.compute(graph, costFunction));
+        for (int i = 0; i < 300; i += 1) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId == endNodeId) continue;
+            Route expected = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            Route actual = withComponents.bestRouteBetween(startNodeId, endNodeId);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertEquals(expected.edges().size(), actual.edges().size());
+                for (int j = 0; j < expected.edges().size(); j += 1)
+                    assertEquals(expected.edges().get(j).toNodeId(), actual.edges().get(j).toNodeId());
+            }
+        }
+    }
+
+    @Test
+    void componentsCanBeWrittenAndLoaded() throws IOException {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        GraphComponents components = GraphComponents.compute(graph, new CityBikeCF(graph));
+        Path directory = Files.createTempDirectory("javelo-components");
+        try {
+            components.writeTo(directory, "test", graph);
+            GraphComponents loaded = GraphComponents.loadFrom(directory, "test", graph);
+            assertEquals(components.nodeCount(), loaded.nodeCount());
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                assertEquals(components.strongComponent(nodeId), loaded.strongComponent(nodeId));
+                assertEquals(components.weakComponent(nodeId), loaded.weakComponent(nodeId));
+            }
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void staleComponentsAreNotLoaded() throws IOException {
+        //two graphs with the same nodes, whose attribute sets are in a different order
+        Path graphDirectory = Files.createTempDirectory("javelo-graph");
+        Path otherGraphDirectory = Files.createTempDirectory("javelo-graph");
+        Path directory = Files.createTempDirectory("javelo-components");
+        try {
+            TestGraphs.writeGridGraph(graphDirectory, 20, 20, 50, newRandom());
+            TestGraphs.writeGridGraph(otherGraphDirectory, 20, 20, 50, newRandom());
+            ByteBuffer attributes = ByteBuffer.allocate(TestGraphs.ATTRIBUTE_SETS.size() * Long.BYTES);
+            for (int i = TestGraphs.ATTRIBUTE_SETS.size() - 1; i >= 0; i -= 1)
+                attributes.putLong(TestGraphs.ATTRIBUTE_SETS.get(i).bits());
+            Files.write(otherGraphDirectory.resolve("attributes.bin"), attributes.array());
+            Graph graph = Graph.loadFrom(graphDirectory);
+            Graph otherGraph = Graph.loadFrom(otherGraphDirectory);
+            assertEquals(graph.nodeCount(), otherGraph.nodeCount());
+
+            //components where every node is alone, which can't be those of the other graph
+            GraphComponents isolated = new GraphComponents(IntBuffer.wrap(
+                    IntStream.range(0, 2 * graph.nodeCount()).map(i -> i / 2).toArray()));
+            isolated.writeTo(directory, "test", graph);
+            assertNotNull(GraphComponents.loadFrom(directory, "test", graph));
+            assertNull(GraphComponents.loadFrom(directory, "test", otherGraph));
+            CostFunction costFunction = new CityBikeCF(otherGraph);
+            GraphComponents expected = GraphComponents.compute(otherGraph, costFunction);
+            GraphComponents actual = GraphComponents.loadOrCompute(directory, "test", otherGraph, costFunction);
+            for (int nodeId = 0; nodeId < otherGraph.nodeCount(); nodeId += 1) {
+                assertEquals(expected.strongComponent(nodeId), actual.strongComponent(nodeId));
+                assertEquals(expected.weakComponent(nodeId), actual.weakComponent(nodeId));
+            }
+
+            //labels written without header, as before the format had a version
+            Files.write(directory.resolve("components_test.bin"), new byte[2 * graph.nodeCount() * Integer.BYTES]);
+            assertNull(GraphComponents.loadFrom(directory, "test", graph));
+        } finally {
+            deleteDirectory(graphDirectory);
+            deleteDirectory(otherGraphDirectory);
+            deleteDirectory(directory);
+        }
+    }
+}
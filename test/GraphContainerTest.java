@@ -0,0 +1,185 @@
+import ch.epfl.javelo.data.*;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphContainerTest {
+
+    private static Path newGraphDirectory() throws IOException {
+        Path directory = Files.createTempDirectory("javelo-container");
+        TestGraphs.writeGridGraph(directory, 30, 20, 100, newRandom());
+        return directory;
+    }
+
+    private static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(file);
+        }
+    }
+
+    private static void assertSameGraph(Graph expected, Graph actual) {
+        assertEquals(expected.nodeCount(), actual.nodeCount());
+        assertEquals(expected.edgeCount(), actual.edgeCount());
+        assertEquals(expected.fingerprint(), actual.fingerprint());
+        for (int nodeId = 0; nodeId < expected.nodeCount(); nodeId += 1) {
+            assertEquals(expected.nodePoint(nodeId), actual.nodePoint(nodeId));
+            assertEquals(expected.nodeOutDegree(nodeId), actual.nodeOutDegree(nodeId));
+            assertEquals(expected.nodeInDegree(nodeId), actual.nodeInDegree(nodeId));
+        }
+        for (int edgeId = 0; edgeId < expected.edgeCount(); edgeId += 1) {
+            assertEquals(expected.edgeTargetNodeId(edgeId), actual.edgeTargetNodeId(edgeId));
+            assertEquals(expected.edgeIsInverted(edgeId), actual.edgeIsInverted(edgeId));
+            assertEquals(expected.edgeLength(edgeId), actual.edgeLength(edgeId));
+            assertEquals(expected.edgeElevationGain(edgeId), actual.edgeElevationGain(edgeId));
+            assertEquals(expected.edgeAttributes(edgeId), actual.edgeAttributes(edgeId));
+            for (double x = 0; x <= expected.edgeLength(edgeId); x += 1.5)
+                assertEquals(expected.edgeProfile(edgeId).applyAsDouble(x), actual.edgeProfile(edgeId).applyAsDouble(x));
+        }
+        var rng = newRandom();
+        for (int i = 0; i < 200; i += 1) {
+            PointCh point = new PointCh(2_530_000 + rng.nextDouble(-200, 3_200), 1_150_000 + rng.nextDouble(-200, 2_200));
+            assertEquals(expected.nodeClosestTo(point, 300), actual.nodeClosestTo(point, 300));
+            assertEquals(expected.edgePointClosestTo(point, 300), actual.edgePointClosestTo(point, 300));
+        }
+    }
+
+    @Test
+    void containersLoadTheSameGraphAsDirectories() throws IOException {
+        Path directory = newGraphDirectory();
+        try {
+            Graph expected = Graph.loadFrom(directory);
+            for (ByteOrder order : List.of(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+                Path file = directory.resolve("graph-" + order + ".javelo");
+                GraphContainer.pack(directory, file, order);
+                GraphContainer container = GraphContainer.open(file);
+                assertEquals(order, container.order());
+                assertEquals(GraphContainer.VERSION, container.version());
+                assertEquals(GraphContainer.SECTION_NAMES.subList(0, GraphContainer.REQUIRED_SECTION_COUNT),
+                        container.sectionNames());
+                container.verify();
+                assertNull(container.verification().join());
+                assertSameGraph(expected, Graph.loadFrom(file));
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void containersHoldTheOptionalFiles() throws IOException {
+        Path directory = newGraphDirectory();
+        try {
+            GraphInEdges.main(new String[]{directory.toString()});
+            GraphEdgeIndex.main(new String[]{directory.toString()});
+            NodeQuadtree.main(new String[]{directory.toString()});
+            Graph expected = Graph.loadFrom(directory);
+            for (ByteOrder order : List.of(ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN)) {
+                Path file = directory.resolve("graph-" + order + ".javelo");
+                GraphContainer.pack(directory, file, order);
+                GraphContainer container = GraphContainer.open(file);
+                assertEquals(GraphContainer.SECTION_NAMES, container.sectionNames());
+                for (String name : GraphContainer.SECTION_NAMES) {
+                    ByteBuffer section = container.section(name);
+                    assertEquals(Files.size(directory.resolve(name)), section.capacity());
+                    if (order == ByteOrder.BIG_ENDIAN)
+                        assertEquals(ByteBuffer.wrap(Files.readAllBytes(directory.resolve(name))), section);
+                }
+                assertSameGraph(expected, Graph.loadFrom(file));
+            }
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void corruptedSectionsAreDetected() throws IOException {
+        Path directory = newGraphDirectory();
+        try {
+            Path file = directory.resolve("graph.javelo");
+            GraphContainer.pack(directory, file, ByteOrder.BIG_ENDIAN);
+            // The last byte of the file belongs to the last section (attributes.bin).
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer b = ByteBuffer.allocate(1);
+                channel.read(b, channel.size() - 1);
+                b.put(0, (byte) (b.get(0) ^ 1)).clear();
+                channel.write(b, channel.size() - 1);
+            }
+            // Loading the graph doesn't verify the container, its caller decides how to report a corruption.
+            assertEquals(Graph.loadFrom(directory).nodeCount(), Graph.loadFrom(file).nodeCount());
+
+            GraphContainer container = GraphContainer.open(file);
+            IOException e = assertThrows(IOException.class, container::verify);
+            assertTrue(e.getMessage().contains("attributes.bin"));
+            CompletionException completion = assertThrows(CompletionException.class,
+                    () -> container.verification().join());
+            assertTrue(completion.getCause() instanceof IOException);
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void invalidHeadersAreRejected() throws IOException {
+        Path directory = newGraphDirectory();
+        try {
+            Path file = directory.resolve("graph.javelo");
+            GraphContainer.pack(directory, file, ByteOrder.BIG_ENDIAN);
+            byte[] bytes = Files.readAllBytes(file);
+
+            Path badMagic = directory.resolve("bad-magic.javelo");
+            byte[] copy = bytes.clone();
+            copy[0] = 'X';
+            Files.write(badMagic, copy);
+            assertThrows(IOException.class, () -> GraphContainer.open(badMagic));
+
+            Path laterVersion = directory.resolve("later-version.javelo");
+            copy = bytes.clone();
+            ByteBuffer.wrap(copy).putShort(4, (short) (GraphContainer.VERSION + 1));
+            Files.write(laterVersion, copy);
+            assertThrows(IOException.class, () -> GraphContainer.open(laterVersion));
+
+            Path truncated = directory.resolve("truncated.javelo");
+            Files.write(truncated, java.util.Arrays.copyOf(bytes, bytes.length / 2));
+            assertThrows(IOException.class, () -> GraphContainer.open(truncated));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+
+    @Test
+    void writeRejectsMissingAndUnknownSections() throws IOException {
+        Path directory = newGraphDirectory();
+        try {
+            Path file = directory.resolve("graph.javelo");
+            Map<String, ByteBuffer> sections = new LinkedHashMap<>();
+            for (String name : GraphContainer.SECTION_NAMES.subList(0, GraphContainer.REQUIRED_SECTION_COUNT - 1))
+                sections.put(name, ByteBuffer.wrap(Files.readAllBytes(directory.resolve(name))));
+            assertThrows(IllegalArgumentException.class,
+                    () -> GraphContainer.write(sections, file, ByteOrder.BIG_ENDIAN));
+            sections.put("attributes.bin", ByteBuffer.wrap(Files.readAllBytes(directory.resolve("attributes.bin"))));
+            sections.put("unknown.bin", ByteBuffer.allocate(4));
+            assertThrows(IllegalArgumentException.class,
+                    () -> GraphContainer.write(sections, file, ByteOrder.BIG_ENDIAN));
+            assertFalse(Files.exists(file));
+        } finally {
+            deleteRecursively(directory);
+        }
+    }
+}
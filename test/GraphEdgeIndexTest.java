@@ -0,0 +1,262 @@
+import ch.epfl.javelo.Math2;
+import ch.epfl.javelo.data.EdgePoint;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphEdgeIndex;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphEdgeIndexTest {
+
+    private static int[] sourceNodeIds(Graph graph) {
+        int[] sourceNodeIds = new int[graph.edgeCount()];
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < graph.nodeOutDegree(nodeId); i += 1)
+                sourceNodeIds[graph.nodeOutEdgeId(nodeId, i)] = nodeId;
+        }
+        return sourceNodeIds;
+    }
+
+    // Closest edge point found by scanning all the edges: {squared distance, edge id}.
+    private static double[] scan(Graph graph, int[] sourceNodeIds, PointCh point, double distance) {
+        double[] best = {distance * distance, -1};
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            int s = sourceNodeIds[edgeId], t = graph.edgeTargetNodeId(edgeId);
+            double aE = graph.nodeE(s), aN = graph.nodeN(s), bE = graph.nodeE(t), bN = graph.nodeN(t);
+            double length = Math2.norm(bE - aE, bN - aN);
+            double x = length == 0 ? 0 : Math2.clamp(0, Math2.projectionLength(aE, aN, bE, bN, point.e(), point.n()) / length, 1);
+            double dE = Math2.interpolate(aE, bE, x) - point.e(), dN = Math2.interpolate(aN, bN, x) - point.n();
+            if (dE * dE + dN * dN < best[0]) {
+                best[0] = dE * dE + dN * dN;
+                best[1] = edgeId;
+            }
+        }
+        return best;
+    }
+
+    private static PointCh randomPoint(RandomGenerator rng) {
+        return new PointCh(2_530_000 + rng.nextDouble(-500, 9_500), 1_150_000 + rng.nextDouble(-500, 9_500));
+    }
+
+    private static void assertSameAsScan(Graph graph, GraphEdgeIndex index) {
+        int[] sourceNodeIds = sourceNodeIds(graph);
+        var rng = newRandom();
+        for (int i = 0; i < 500; i += 1) {
+            PointCh point = randomPoint(rng);
+            double distance = new double[]{5, 50, 400, 3_000}[i % 4];
+            double[] expected = scan(graph, sourceNodeIds, point, distance);
+            EdgePoint actual = index.closestEdgePoint(graph, point.e(), point.n(), distance);
+            if (expected[1] < 0) {
+                assertNull(actual);
+                continue;
+            }
+            assertNotNull(actual);
+            assertEquals((int) expected[1], actual.edgeId());
+            assertEquals(sourceNodeIds[actual.edgeId()], actual.sourceNodeId());
+            assertEquals(Math.sqrt(expected[0]), actual.distanceToReference(), 1e-9);
+            assertEquals(actual.distanceToReference(), actual.point().distanceTo(point), 1e-6);
+            assertTrue(actual.position() >= 0 && actual.position() <= graph.edgeLength(actual.edgeId()) + 1e-9);
+        }
+    }
+
+    @Test
+    void closestEdgePointEqualsScan() {
+        Graph graph = TestGraphs.newGridGraph(30, 30, 300, newRandom());
+        assertSameAsScan(graph, GraphEdgeIndex.build(graph));
+    }
+
+    @Test
+    void closestEdgePointWorksOnTinyGraphs() {
+        for (int size : new int[]{1, 2, 3}) {
+            Graph graph = TestGraphs.newGridGraph(size, size, 300, newRandom());
+            GraphEdgeIndex index = GraphEdgeIndex.build(graph);
+            assertEquals(graph.edgeCount(), index.edgeCount());
+            assertSameAsScan(graph, index);
+        }
+    }
+
+    @Test
+    void indexCanBeWrittenAndLoaded() throws IOException {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 300, newRandom());
+        GraphEdgeIndex index = GraphEdgeIndex.build(graph);
+        Path directory = Files.createTempDirectory("javelo-edge-index");
+        try {
+            index.writeTo(directory);
+            GraphEdgeIndex loaded = GraphEdgeIndex.loadFrom(directory, graph);
+            assertEquals(index.edgeCount(), loaded.edgeCount());
+            assertSameAsScan(graph, loaded);
+        } finally {
+            Files.deleteIfExists(directory.resolve(GraphEdgeIndex.FILE_NAME));
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void graphEdgePointClosestToUsesTheIndex() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 300, newRandom());
+        GraphEdgeIndex index = GraphEdgeIndex.build(graph);
+        var rng = newRandom();
+        for (int i = 0; i < 100; i += 1) {
+            PointCh point = randomPoint(rng);
+            assertEquals(index.closestEdgePoint(graph, point.e(), point.n(), 500), graph.edgePointClosestTo(point, 500));
+        }
+    }
+
+    @Test
+    void staleIndexIsIgnoredByTheGraph() throws IOException {
+        //two graphs with the same edges, whose attribute sets are in a different order
+        Path directory = Files.createTempDirectory("javelo-edge-index");
+        Path otherDirectory = Files.createTempDirectory("javelo-edge-index");
+        try {
+            TestGraphs.writeGridGraph(directory, 20, 20, 300, newRandom());
+            TestGraphs.writeGridGraph(otherDirectory, 20, 20, 300, newRandom());
+            ByteBuffer attributes = ByteBuffer.allocate(TestGraphs.ATTRIBUTE_SETS.size() * Long.BYTES);
+            for (int i = TestGraphs.ATTRIBUTE_SETS.size() - 1; i >= 0; i -= 1)
+                attributes.putLong(TestGraphs.ATTRIBUTE_SETS.get(i).bits());
+            Files.write(otherDirectory.resolve("attributes.bin"), attributes.array());
+            Graph graph = Graph.loadFrom(directory);
+            Graph otherGraph = Graph.loadFrom(otherDirectory);
+            GraphEdgeIndex.build(graph).writeTo(directory);
+            assertNotNull(GraphEdgeIndex.loadFrom(directory, graph));
+            assertNull(GraphEdgeIndex.loadFrom(directory, otherGraph));
+
+            //index of the other graph next to the files of the graph
+            Files.copy(directory.resolve(GraphEdgeIndex.FILE_NAME), otherDirectory.resolve(GraphEdgeIndex.FILE_NAME));
+            assertEdgePointsOfRebuiltIndex(Graph.loadFrom(otherDirectory));
+
+            //index of a smaller graph
+            GraphEdgeIndex.build(TestGraphs.newGridGraph(10, 10, 300, newRandom())).writeTo(otherDirectory);
+            assertEdgePointsOfRebuiltIndex(Graph.loadFrom(otherDirectory));
+
+            //index without header, as before the format had a version
+            byte[] bytes = Files.readAllBytes(directory.resolve(GraphEdgeIndex.FILE_NAME));
+            ByteBuffer.wrap(bytes).putInt(0, graph.edgeCount());
+            Files.write(directory.resolve(GraphEdgeIndex.FILE_NAME), bytes);
+            assertNull(GraphEdgeIndex.loadFrom(directory, graph));
+            assertEdgePointsOfRebuiltIndex(Graph.loadFrom(directory));
+        } finally {
+            deleteDirectory(directory);
+            deleteDirectory(otherDirectory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private static void assertEdgePointsOfRebuiltIndex(Graph graph) {
+        GraphEdgeIndex index = GraphEdgeIndex.build(graph);
+        var rng = newRandom();
+        for (int i = 0; i < 100; i += 1) {
+            PointCh point = randomPoint(rng);
+            assertEquals(index.closestEdgePoint(graph, point.e(), point.n(), 500), graph.edgePointClosestTo(point, 500));
+        }
+    }
+
+    private static int twinEdgeId(Graph graph, int edgeId, int sourceNodeId) {
+        int targetNodeId = graph.edgeTargetNodeId(edgeId);
+        for (int i = 0; i < graph.nodeOutDegree(targetNodeId); i += 1) {
+            int twin = graph.nodeOutEdgeId(targetNodeId, i);
+            if (graph.edgeTargetNodeId(twin) == sourceNodeId) return twin;
+        }
+        return -1;
+    }
+
+    private static double nodeCost(Graph graph, CostFunction costFunction, RouteComputer routeComputer, int from, int to) {
+        if (from == to) return 0;
+        Route route = routeComputer.bestRouteBetween(from, to);
+        return route == null ? Double.POSITIVE_INFINITY : TestGraphs.cost(graph, costFunction, route);
+    }
+
+    private static double partialCost(CostFunction costFunction, int nodeId, int edgeId, double length) {
+        return length == 0 ? 0 : costFunction.costFactor(nodeId, edgeId) * length;
+    }
+
+    @Test
+    void midEdgeRoutesCostAsMuchAsTheBestNodeRoutes() {
+        Graph graph = TestGraphs.newGridGraph(15, 15, 200, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RouteComputer nodeRouteComputer = new RouteComputer(graph, costFunction);
+        var rng = newRandom();
+        for (int i = 0; i < 200; i += 1) {
+            EdgePoint start = graph.edgePointClosestTo(new PointCh(2_530_000 + rng.nextDouble(0, 2_800),
+                    1_150_000 + rng.nextDouble(0, 2_800)), 1_000);
+            EdgePoint end = i % 10 == 0
+                    ? graph.edgePointClosestTo(start.point(), 1)
+                    : graph.edgePointClosestTo(new PointCh(2_530_000 + rng.nextDouble(0, 2_800),
+                    1_150_000 + rng.nextDouble(0, 2_800)), 1_000);
+            if (i % 10 == 0)
+                end = new EdgePoint(end.edgeId(), end.sourceNodeId(),
+                        rng.nextDouble(0, graph.edgeLength(end.edgeId())), end.point(), 0);
+
+            int s1 = start.sourceNodeId(), t1 = graph.edgeTargetNodeId(start.edgeId());
+            int s2 = end.sourceNodeId(), t2 = graph.edgeTargetNodeId(end.edgeId());
+            double len1 = graph.edgeLength(start.edgeId()), len2 = graph.edgeLength(end.edgeId());
+            int twin1 = twinEdgeId(graph, start.edgeId(), s1), twin2 = twinEdgeId(graph, end.edgeId(), s2);
+            double[] startCosts = {partialCost(costFunction, s1, start.edgeId(), len1 - start.position()),
+                    partialCost(costFunction, t1, twin1, start.position())};
+            double[] endCosts = {partialCost(costFunction, s2, end.edgeId(), end.position()),
+                    partialCost(costFunction, t2, twin2, len2 - end.position())};
+            int[] startNodes = {t1, s1};
+            int[] endNodes = {s2, t2};
+            double expected = Double.POSITIVE_INFINITY;
+            for (int a = 0; a < 2; a += 1) {
+                for (int b = 0; b < 2; b += 1) {
+                    expected = Math.min(expected, startCosts[a]
+                            + nodeCost(graph, costFunction, nodeRouteComputer, startNodes[a], endNodes[b]) + endCosts[b]);
+                }
+            }
+            if (start.edgeId() == end.edgeId()) {
+                expected = Math.min(expected, start.position() <= end.position()
+                        ? partialCost(costFunction, s1, start.edgeId(), end.position() - start.position())
+                        : partialCost(costFunction, t1, twin1, start.position() - end.position()));
+            }
+
+            Route route = routeComputer.bestRouteBetween(start, end);
+            if (expected == Double.POSITIVE_INFINITY || expected == 0) {
+                assertNull(route);
+                continue;
+            }
+            assertNotNull(route);
+            assertEquals(expected, TestGraphs.cost(graph, costFunction, route), 1e-4 * expected);
+            assertEquals(0, route.pointAt(0).distanceTo(start.point()), 1e-6);
+            for (int j = 1; j < route.edges().size(); j += 1)
+                assertEquals(route.edges().get(j - 1).toNodeId(), route.edges().get(j).fromNodeId());
+        }
+    }
+
+    @Test
+    void midEdgeRoutesFollowTheProfilesOfTheirEdges() {
+        Graph graph = TestGraphs.newGridGraph(5, 5, 200, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, (nodeId, edgeId) -> 1);
+        int edgeId = graph.nodeOutEdgeId(0, 0);
+        double length = graph.edgeLength(edgeId);
+        EdgePoint start = new EdgePoint(edgeId, 0, length / 4, graph.nodePoint(0), 0);
+        EdgePoint end = new EdgePoint(edgeId, 0, 3 * length / 4, graph.nodePoint(0), 0);
+        Route route = routeComputer.bestRouteBetween(start, end);
+        assertNotNull(route);
+        assertEquals(1, route.edges().size());
+        assertEquals(length / 2, route.length(), 1e-9);
+        assertEquals(graph.edgeElevationAt(edgeId, length / 4), route.elevationAt(0), 1e-6);
+        assertEquals(graph.edgeElevationAt(edgeId, 3 * length / 4), route.elevationAt(length / 2), 1e-6);
+
+        Route backwards = routeComputer.bestRouteBetween(end, start);
+        assertNotNull(backwards);
+        assertEquals(length / 2, backwards.length(), 1e-9);
+        assertEquals(graph.edgeElevationAt(edgeId, 3 * length / 4), backwards.elevationAt(0), 1e-3);
+    }
+}
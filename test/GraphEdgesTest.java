@@ -1,13 +1,17 @@
+import ch.epfl.javelo.Math2;
 import ch.epfl.javelo.Q28_4;
 import ch.epfl.javelo.data.GraphEdges;
+import ch.epfl.javelo.data.ProfileDecoder;
 import org.junit.jupiter.api.Test;
 
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
+import java.util.SplittableRandom;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class GraphEdgesTest {
 
@@ -336,4 +340,102 @@ public class GraphEdgesTest {
         };
         assertArrayEquals(expectedSamples3, edges.profileSamples(3));
     }
+
+    @Test
+    void testScalarProfileSamples() {
+        checkProfileSamples(ProfileDecoder.SCALAR);
+    }
+
+    @Test
+    void testBulkProfileSamples() {
+        checkProfileSamples(ProfileDecoder.BULK);
+    }
+
+    @Test
+    void bulkProfileSamplesEqualScalarProfileSamples() {
+        SplittableRandom rng = new SplittableRandom(2022);
+        int edgeCount = 2000;
+        ByteBuffer edgesBuffer = ByteBuffer.allocate(edgeCount * 10);
+        IntBuffer profileIds = IntBuffer.allocate(edgeCount);
+        ShortBuffer elevations = ShortBuffer.allocate(edgeCount * 300);
+        int firstSample = 0;
+        for (int i = 0; i < edgeCount; i += 1) {
+            int length = rng.nextInt(0, 0x2000);
+            edgesBuffer.putInt(i * 10, rng.nextBoolean() ? ~i : i);
+            edgesBuffer.putShort(i * 10 + 4, (short) length);
+            int type = rng.nextInt(4);
+            profileIds.put(i, (type << 30) | firstSample);
+            int samplesNumber = 1 + Math2.ceilDiv(length, 32);
+            int shortCount = switch (type) {
+                case 1 -> samplesNumber;
+                case 2 -> 1 + Math2.ceilDiv(samplesNumber - 1, 2);
+                case 3 -> 1 + Math2.ceilDiv(samplesNumber - 1, 4);
+                default -> 0;
+            };
+            for (int j = 0; j < shortCount; j += 1)
+                elevations.put(firstSample + j, (short) rng.nextInt(1 << 16));
+            firstSample += shortCount;
+        }
+        GraphEdges edges = new GraphEdges(edgesBuffer, profileIds, elevations);
+        for (int i = 0; i < edgeCount; i += 1)
+            assertArrayEquals(edges.profileSamples(i, ProfileDecoder.SCALAR), edges.profileSamples(i, ProfileDecoder.BULK));
+    }
+
+    @Test
+    void profileDecoderFromProperty() {
+        assertEquals(ProfileDecoder.SCALAR, ProfileDecoder.fromProperty(null));
+        assertEquals(ProfileDecoder.BULK, ProfileDecoder.fromProperty(" bulk"));
+        assertEquals(ProfileDecoder.SCALAR, ProfileDecoder.fromProperty("Scalar"));
+        assertThrows(IllegalArgumentException.class, () -> ProfileDecoder.fromProperty("simd"));
+    }
+
+    private static void checkProfileSamples(ProfileDecoder decoder) {
+        ByteBuffer edgesBuffer = ByteBuffer.allocate(40);
+        // Sens : inversé. Nœud destination : 12.
+        edgesBuffer.putInt(0, ~12);
+        // Longueur : 0x10.b m (= 16.6875 m)
+        edgesBuffer.putShort(4, (short) 0x10_b);
+        // Dénivelé : 0x10.0 m (= 16.0 m)
+        edgesBuffer.putShort(6, (short) 0x10_0);
+        // Identité de l'ensemble d'attributs OSM : 1
+        edgesBuffer.putShort(8, (short) 2022);
+
+        // Longueur: 6.25
+        edgesBuffer.putShort(24, (short) 100);
+
+        // Longueur: 6.25 -> 5 samples -> 16 bits + 4 * 8 bits = 16 + 32 = 48 bits = 3 shorts
+        edgesBuffer.putShort(34, (short) 100);
+
+        IntBuffer profileIds = IntBuffer.wrap(new int[]{
+                // Type : 3. Index du premier échantillon : 1.
+                (3 << 30) | 1, (0 << 30) | 1, (1 << 30) | 5, (2 << 30) | 10
+        });
+
+        ShortBuffer elevations = ShortBuffer.wrap(new short[]{
+                (short) 0, (short) 0x180C, (short) 0xFEFF, (short) 0xFFFE, (short) 0xF000,
+                (short) 10, (short) 20, (short) 30, (short) 40, (short) 50,
+                (short) 100, (short) 0, (short) 1
+        });
+
+        GraphEdges edges = new GraphEdges(edgesBuffer, profileIds, elevations);
+
+        assertEquals(true, edges.hasProfile(0));
+        float[] expectedSamples = new float[]{
+                384.0625f, 384.125f, 384.25f, 384.3125f, 384.375f,
+                384.4375f, 384.5f, 384.5625f, 384.6875f, 384.75f
+        };
+        assertArrayEquals(expectedSamples, edges.profileSamples(0, decoder));
+
+        assertArrayEquals(new float[]{}, edges.profileSamples(1, decoder));
+
+        float[] expectedSamples2 = new float[]{
+                Q28_4.asFloat(10), Q28_4.asFloat(20), Q28_4.asFloat(30), Q28_4.asFloat(40), Q28_4.asFloat(50)
+        };
+        assertArrayEquals(expectedSamples2, edges.profileSamples(2, decoder));
+
+        float[] expectedSamples3 = new float[]{
+                Q28_4.asFloat(100), Q28_4.asFloat(100), Q28_4.asFloat(100), Q28_4.asFloat(100), Q28_4.asFloat(101)
+        };
+        assertArrayEquals(expectedSamples3, edges.profileSamples(3, decoder));
+    }
 }
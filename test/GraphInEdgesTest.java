@@ -0,0 +1,55 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.GraphInEdges;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.nio.IntBuffer;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphInEdgesTest {
+
+    @Test
+    void inEdgesWorkOnKnownValues() {
+        //node 0: 2 incoming edges (4 from node 1, 7 from node 2), node 1: none, node 2: 1 (5 from node 0)
+        IntBuffer buffer = IntBuffer.wrap(new int[]{4, 8, 8, 10, 4, 1, 7, 2, 5, 0});
+        GraphInEdges inEdges = new GraphInEdges(buffer);
+        assertEquals(3, inEdges.count());
+        assertEquals(2, inEdges.inDegree(0));
+        assertEquals(0, inEdges.inDegree(1));
+        assertEquals(1, inEdges.inDegree(2));
+        assertEquals(4, inEdges.edgeId(0, 0));
+        assertEquals(1, inEdges.sourceNodeId(0, 0));
+        assertEquals(7, inEdges.edgeId(0, 1));
+        assertEquals(2, inEdges.sourceNodeId(0, 1));
+        assertEquals(5, inEdges.edgeId(2, 0));
+        assertEquals(0, inEdges.sourceNodeId(2, 0));
+    }
+
+    @Test
+    void graphInEdgesAreTheOutEdgesGroupedByTarget() {
+        Graph graph = TestGraphs.newGridGraph(30, 20, 50, newRandom());
+        int[] seen = new int[graph.nodeCount() * 8];
+        int inEdgesCount = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            for (int i = 0; i < graph.nodeInDegree(nodeId); i += 1) {
+                int edgeId = graph.nodeInEdgeId(nodeId, i);
+                int sourceNodeId = graph.nodeInEdgeSourceNodeId(nodeId, i);
+                assertEquals(nodeId, graph.edgeTargetNodeId(edgeId));
+                boolean isOutEdgeOfSource = false;
+                for (int j = 0; j < graph.nodeOutDegree(sourceNodeId); j += 1)
+                    isOutEdgeOfSource |= graph.nodeOutEdgeId(sourceNodeId, j) == edgeId;
+                assertTrue(isOutEdgeOfSource);
+                seen[edgeId] += 1;
+                inEdgesCount += 1;
+            }
+        }
+        int outEdgesCount = 0;
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1)
+            outEdgesCount += graph.nodeOutDegree(nodeId);
+        assertEquals(outEdgesCount, inEdgesCount);
+        for (int i = 0; i < outEdgesCount; i += 1)
+            assertEquals(1, seen[i]);
+    }
+}
@@ -0,0 +1,53 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphNodeCoordinatesTest {
+
+    @Test
+    void nodeCoordinatesAreTheOnesOfNodePoint() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        Graph cached = graph.withNodeCoordinatesCache();
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            PointCh point = graph.nodePoint(nodeId);
+            assertEquals(point.e(), graph.nodeE(nodeId));
+            assertEquals(point.n(), graph.nodeN(nodeId));
+            assertEquals(point.e(), cached.nodeE(nodeId));
+            assertEquals(point.n(), cached.nodeN(nodeId));
+            assertEquals(point, cached.nodePoint(nodeId));
+        }
+    }
+
+    @Test
+    void nodeDistancesAreTheOnesOfNodePoints() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, rng);
+        Graph cached = graph.withNodeCoordinatesCache();
+        for (int i = 0; i < RANDOM_ITERATIONS; i += 1) {
+            int nodeId1 = rng.nextInt(graph.nodeCount());
+            int nodeId2 = rng.nextInt(graph.nodeCount());
+            double expected = graph.nodePoint(nodeId1).distanceTo(graph.nodePoint(nodeId2));
+            assertEquals(expected, graph.nodeDistance(nodeId1, nodeId2));
+            assertEquals(expected, cached.nodeDistance(nodeId1, nodeId2));
+            assertEquals(expected * expected, cached.nodeSquaredDistance(nodeId1, nodeId2), 1e-6);
+        }
+    }
+
+    @Test
+    void withNodeCoordinatesCacheKeepsTheGraphStructure() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        Graph cached = graph.withNodeCoordinatesCache();
+        assertSame(cached, cached.withNodeCoordinatesCache());
+        assertEquals(graph.nodeCount(), cached.nodeCount());
+        assertEquals(graph.edgeCount(), cached.edgeCount());
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            assertEquals(graph.nodeOutDegree(nodeId), cached.nodeOutDegree(nodeId));
+            assertEquals(graph.nodeInDegree(nodeId), cached.nodeInDegree(nodeId));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.DoubleUnaryOperator;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphProfileCacheTest {
+
+    private static void assertSameElevation(double expected, double actual) {
+        if (Double.isNaN(expected)) assertTrue(Double.isNaN(actual));
+        else assertEquals(expected, actual);
+    }
+
+    @Test
+    void cachedProfilesEqualDecodedProfiles() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 70, newRandom());
+        Graph cached = graph.withProfileCache(100_000);
+        for (int round = 0; round < 2; round += 1) {
+            for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+                DoubleUnaryOperator expected = graph.edgeProfile(edgeId);
+                DoubleUnaryOperator actual = cached.edgeProfile(edgeId);
+                for (double position = -1; position <= graph.edgeLength(edgeId) + 1; position += 0.5)
+                    assertSameElevation(expected.applyAsDouble(position), actual.applyAsDouble(position));
+            }
+        }
+    }
+
+    @Test
+    void profileCacheCountsHitsAndMisses() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 70, newRandom()).withProfileCache(100_000);
+        assertTrue(Double.isNaN(graph.profileCacheHitRate()));
+        int profiledEdges = 0;
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            // Edges without profile aren't cached.
+            if (!Double.isNaN(graph.edgeProfile(edgeId).applyAsDouble(0)))
+                profiledEdges += 1;
+            graph.edgeProfile(edgeId);
+            graph.edgeProfile(edgeId);
+        }
+        assertTrue(profiledEdges > 0);
+        // The first call of each profiled edge misses, the two others hit.
+        assertEquals((long) profiledEdges, graph.profileCacheMissCount());
+        assertEquals((long) 2 * profiledEdges, graph.profileCacheHitCount());
+        assertEquals(2.0 / 3, graph.profileCacheHitRate(), 1e-9);
+    }
+
+    @Test
+    void smallProfileCacheEvictsProfiles() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 70, newRandom()).withProfileCache(100);
+        for (int round = 0; round < 2; round += 1)
+            for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1)
+                graph.edgeProfile(edgeId);
+        assertTrue(graph.profileCacheMissCount() > graph.profileCacheHitCount());
+    }
+
+    @Test
+    void profileCacheIsKeptByNodeCoordinatesCache() {
+        Graph graph = TestGraphs.newGridGraph(5, 5, 70, newRandom())
+                .withProfileCache(10_000)
+                .withNodeCoordinatesCache();
+        for (int edgeId = 0; edgeId < graph.edgeCount(); edgeId += 1) {
+            graph.edgeProfile(edgeId);
+            graph.edgeProfile(edgeId);
+        }
+        assertTrue(graph.profileCacheHitCount() > 0);
+    }
+
+    @Test
+    void graphWithoutProfileCacheHasNoStatistics() {
+        Graph graph = TestGraphs.newGridGraph(5, 5, 70, newRandom());
+        graph.edgeProfile(0);
+        assertEquals(0L, graph.profileCacheHitCount());
+        assertEquals(0L, graph.profileCacheMissCount());
+        assertTrue(Double.isNaN(graph.profileCacheHitRate()));
+    }
+
+    @Test
+    void profileCacheRejectsNonPositiveSize() {
+        Graph graph = TestGraphs.newGridGraph(5, 5, 70, newRandom());
+        assertThrows(IllegalArgumentException.class, () -> graph.withProfileCache(0));
+    }
+}
@@ -0,0 +1,74 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphSpatialQueryTest {
+
+    private static double squaredDistance(Graph graph, int nodeId, PointCh point) {
+        double dE = graph.nodeE(nodeId) - point.e();
+        double dN = graph.nodeN(nodeId) - point.n();
+        return dE * dE + dN * dN;
+    }
+
+    // Nodes closer than the distance, by increasing distance then identity, found by scanning all the nodes.
+    private static List<Integer> scan(Graph graph, PointCh point, double distance) {
+        List<Integer> nodeIds = new ArrayList<>();
+        for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+            if (squaredDistance(graph, nodeId, point) < distance * distance)
+                nodeIds.add(nodeId);
+        }
+        nodeIds.sort(Comparator.comparingDouble((Integer nodeId) -> squaredDistance(graph, nodeId, point))
+                .thenComparingInt(nodeId -> nodeId));
+        return nodeIds;
+    }
+
+    private static PointCh randomPoint(java.util.random.RandomGenerator rng) {
+        // The grid spans about 18 km on each axis, i.e. several sectors.
+        return new PointCh(2_530_000 + rng.nextDouble(-500, 19_000), 1_150_000 + rng.nextDouble(-500, 19_000));
+    }
+
+    @Test
+    void spatialQueriesEqualScan() {
+        Graph graph = TestGraphs.newGridGraph(60, 60, 300, newRandom());
+        var rng = newRandom();
+        for (int i = 0; i < 300; i += 1) {
+            PointCh point = randomPoint(rng);
+            double distance = new double[]{50, 200, 500, 3_000}[i % 4];
+            List<Integer> expected = scan(graph, point, distance);
+
+            assertEquals(expected.isEmpty() ? -1 : (int) expected.get(0), graph.nodeClosestTo(point, distance));
+            assertEquals(graph.nodeClosestTo(point, distance), graph.nodeClosestTo(point.e(), point.n(), distance));
+
+            for (int k : new int[]{0, 1, 5, 40}) {
+                int[] nodeIds = graph.nodesClosestTo(point, distance, k);
+                assertEquals(Math.min(k, expected.size()), nodeIds.length);
+                for (int j = 0; j < nodeIds.length; j += 1)
+                    assertEquals((int) expected.get(j), nodeIds[j]);
+            }
+
+            int[] within = graph.nodesWithin(point, distance);
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).sorted().toArray(), within);
+        }
+    }
+
+    @Test
+    void spatialQueriesWithNonPositiveDistanceFindNothing() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 300, newRandom());
+        PointCh point = new PointCh(graph.nodeE(12), graph.nodeN(12));
+        assertEquals(-1, graph.nodeClosestTo(point, 0));
+        assertEquals(-1, graph.nodeClosestTo(point, -4));
+        assertEquals(0, graph.nodesClosestTo(point, 0, 3).length);
+        assertEquals(0, graph.nodesWithin(point, -1).length);
+        assertEquals(12, graph.nodeClosestTo(point, 1));
+        assertArrayEquals(new int[]{12}, graph.nodesClosestTo(point, 1, 3));
+        assertThrows(IllegalArgumentException.class, () -> graph.nodesClosestTo(point, 10, -1));
+    }
+}
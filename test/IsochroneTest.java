@@ -0,0 +1,80 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class IsochroneTest {
+
+    @Test
+    void isochroneContainsExactlyTheNodesWithinMaxCost() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        int[] allNodes = IntStream.range(0, graph.nodeCount()).toArray();
+        var rng = newRandom();
+        for (int i = 0; i < 10; i += 1) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            double maxCost = 200 + rng.nextDouble(1500);
+            Isochrone isochrone = routeComputer.isochroneFrom(startNodeId, maxCost, false);
+            float[] expected = routeComputer.matrixBetween(new int[]{startNodeId}, allNodes).costs()[0];
+
+            Map<Integer, Float> actual = new HashMap<>();
+            for (int j = 0; j < isochrone.nodeCount(); j += 1) {
+                actual.put(isochrone.nodeId(j), isochrone.cost(j));
+                if (j > 0) assertTrue(isochrone.cost(j - 1) <= isochrone.cost(j));
+            }
+            assertEquals(startNodeId, isochrone.nodeId(0));
+            assertEquals(0, isochrone.cost(0));
+            for (int nodeId = 0; nodeId < graph.nodeCount(); nodeId += 1) {
+                if (expected[nodeId] <= maxCost) {
+                    assertEquals(expected[nodeId], (float) actual.get(nodeId));
+                } else {
+                    assertFalse(actual.containsKey(nodeId));
+                }
+            }
+            assertTrue(isochrone.boundary().isEmpty());
+        }
+    }
+
+    @Test
+    void isochroneBoundaryIsSortedByAngleAroundStartNode() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        int startNodeId = graph.nodeClosestTo(new PointCh(2_530_000 + 15 * 50, 1_150_000 + 15 * 50), 100);
+        Isochrone isochrone = routeComputer.isochroneFrom(startNodeId, 500, true);
+        List<PointCh> boundary = isochrone.boundary();
+        assertFalse(boundary.isEmpty());
+        PointCh start = graph.nodePoint(startNodeId);
+        double previousAngle = Double.NEGATIVE_INFINITY;
+        for (PointCh point : boundary) {
+            double angle = Math.atan2(point.n() - start.n(), point.e() - start.e());
+            assertTrue(previousAngle <= angle);
+            previousAngle = angle;
+            // Costs are at least the distances, the boundary can't be farther than maxCost.
+            assertTrue(start.distanceTo(point) <= 500 + 1e-6);
+        }
+    }
+
+    @Test
+    void isochroneWithZeroMaxCostOnlyContainsStartNode() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        Isochrone isochrone = new RouteComputer(graph, new CityBikeCF(graph)).isochroneFrom(42, 0, true);
+        assertArrayEquals(new int[]{42}, isochrone.nodeIds());
+    }
+
+    @Test
+    void isochroneThrowsOnNegativeMaxCost() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> routeComputer.isochroneFrom(0, -1, false));
+    }
+}
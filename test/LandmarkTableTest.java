@@ -0,0 +1,130 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LandmarkTableTest {
+
+    @Test
+    void computeChoosesDistinctLandmarks() {
+        Graph graph = TestGraphs.newGridGraph(30, 30, 50, newRandom());
+        LandmarkTable table = LandmarkTable.compute(graph, new CityBikeCF(graph), 8);
+        assertEquals(8, table.landmarkCount());
+        assertEquals(graph.nodeCount(), table.nodeCount());
+        for (int i = 0; i < table.landmarkCount(); i += 1) {
+            assertEquals(0f, table.distanceFromLandmark(i, table.landmarkNodeId(i)));
+            assertEquals(0f, table.distanceToLandmark(i, table.landmarkNodeId(i)));
+            for (int j = 0; j < i; j += 1)
+                assertNotEquals(table.landmarkNodeId(j), table.landmarkNodeId(i));
+        }
+    }
+
+    @Test
+    void computeThrowsOnInvalidLandmarkCount() {
+        Graph graph = TestGraphs.newGridGraph(5, 5, 50, newRandom());
+        assertThrows(IllegalArgumentException.class, () -> LandmarkTable.compute(graph, new CityBikeCF(graph), 0));
+    }
+
+    @Test
+    void lowerBoundNeverExceedsTheBestRouteCost() {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(30, 30, 50, rng);
+        CostFunction costFunction = new CityBikeCF(graph);
+        LandmarkTable table = LandmarkTable.compute(graph, costFunction, 8);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        for (int i = 0; i < 200; i += 1) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId == endNodeId) continue;
+            Route route = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            float bound = table.lowerBound(startNodeId, endNodeId, table.selectLandmarks(startNodeId, endNodeId));
+            if (route != null) {
+                double cost = TestGraphs.cost(graph, costFunction, route);
+                assertTrue(bound <= cost * (1 + 1e-5), bound + " > " + cost);
+            }
+        }
+    }
+
+    @Test
+    void routeComputerWithLandmarksFindsRoutesOfTheSameCost() throws IOException {
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, rng);
+        CostFunction costFunction = new CityBikeCF(graph);
+        LandmarkTable computed = LandmarkTable.compute(graph, costFunction, 8);
+
+        Path directory = Files.createTempDirectory("javelo-landmarks");
+        LandmarkTable table;
+        try {
+            computed.writeTo(directory, "test", graph);
+            table = LandmarkTable.loadFrom(directory, "test", graph);
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+        assertEquals(computed.landmarkCount(), table.landmarkCount());
+
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RouteComputer altRouteComputer = routeComputer.withLandmarks(table);
+        for (int i = 0; i < 300; i += 1) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId == endNodeId) continue;
+            Route expected = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            Route actual = altRouteComputer.bestRouteBetween(startNodeId, endNodeId);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertNotNull(actual);
+                double expectedCost = TestGraphs.cost(graph, costFunction, expected);
+                assertEquals(expectedCost, TestGraphs.cost(graph, costFunction, actual), 1e-4 * expectedCost);
+            }
+        }
+    }
+
+    @Test
+    void withLandmarksThrowsOnTableOfAnotherGraph() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        Graph otherGraph = TestGraphs.newGridGraph(11, 10, 50, newRandom());
+        LandmarkTable table = LandmarkTable.compute(otherGraph, new CityBikeCF(otherGraph), 2);
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        assertThrows(IllegalArgumentException.class, () -> routeComputer.withLandmarks(table));
+    }
+
+    @Test
+    void staleTableIsNotLoaded() throws IOException {
+        //two graphs with as many nodes, but different edges
+        var rng = newRandom();
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, rng);
+        Graph otherGraph = TestGraphs.newGridGraph(20, 20, 50, rng);
+        Graph smallerGraph = TestGraphs.newGridGraph(10, 10, 50, rng);
+        LandmarkTable table = LandmarkTable.compute(graph, new CityBikeCF(graph), 4);
+
+        Path directory = Files.createTempDirectory("javelo-landmarks");
+        try {
+            table.writeTo(directory, "test", graph);
+            assertNotNull(LandmarkTable.loadFrom(directory, "test", graph));
+            assertNull(LandmarkTable.loadFrom(directory, "test", otherGraph));
+            assertNull(LandmarkTable.loadFrom(directory, "test", smallerGraph));
+            assertThrows(IllegalArgumentException.class, () -> table.writeTo(directory, "test", smallerGraph));
+
+            //distances written without header, as before the format had a version
+            Files.write(directory.resolve("landmarks_test_distances.bin"),
+                    new byte[2 * table.landmarkCount() * graph.nodeCount() * Float.BYTES]);
+            assertNull(LandmarkTable.loadFrom(directory, "test", graph));
+        } finally {
+            try (var files = Files.list(directory)) {
+                for (Path file : files.toList()) Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+}
@@ -276,4 +276,40 @@ public class MultiRouteTest {
             }
         }
     }
+
+    @Test
+    void testManySegmentsLookup(){
+        int segmentCount = 1000;
+        List<Route> segments = new ArrayList<>();
+        for (int i = 0; i < segmentCount; ++i) {
+            PointCh fromPoint = new PointCh(SwissBounds.MIN_E + 10 * i, SwissBounds.MIN_N);
+            PointCh toPoint = new PointCh(SwissBounds.MIN_E + 10 * (i + 1), SwissBounds.MIN_N);
+            double start = 10 * i;
+            Edge edge = new Edge(i, i + 1, fromPoint, toPoint, 10, x -> start + x);
+            segments.add(new SingleRoute(List.of(edge)));
+        }
+        MultiRoute m = new MultiRoute(List.of(new MultiRoute(segments.subList(0, 500)),
+                new MultiRoute(segments.subList(500, segmentCount))));
+
+        assertEquals(10_000, m.length());
+        for (double p = 0; p <= 10_000; p += 2.5) {
+            assertEquals(new PointCh(SwissBounds.MIN_E + p, SwissBounds.MIN_N), m.pointAt(p));
+            assertEquals(p, m.elevationAt(p), 1e-9);
+            //a position at the middle of an edge is closest to its first node
+            assertEquals((int) Math.ceil(p / 10 - 0.5), m.nodeClosestTo(p));
+            //a position at the end of a segment belongs to it
+            assertEquals(Math.max(0, (int) Math.ceil(p / 10) - 1), m.indexOfSegmentAt(p));
+        }
+        assertEquals(segmentCount - 1, m.indexOfSegmentAt(10_001));
+        assertEquals(0, m.indexOfSegmentAt(-1));
+
+        //the lists are built once, and can't be modified
+        assertEquals(segmentCount, m.edges().size());
+        assertEquals(segmentCount, m.edgeCount());
+        assertEquals(segmentCount + 1, m.points().size());
+        assertEquals(true, m.edges() == m.edges());
+        assertEquals(true, m.points() == m.points());
+        assertThrows(UnsupportedOperationException.class, () -> m.edges().clear());
+        assertThrows(UnsupportedOperationException.class, () -> m.points().clear());
+    }
 }
@@ -0,0 +1,98 @@
+import ch.epfl.javelo.routing.NodePriorityQueue;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import static ch.epfl.test.TestRandomizer.RANDOM_ITERATIONS;
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodePriorityQueueTest {
+
+    @Test
+    void emptyQueueThrowsOnRemoveAndMinKey() {
+        NodePriorityQueue queue = new NodePriorityQueue(10);
+        assertTrue(queue.isEmpty());
+        assertThrows(NoSuchElementException.class, queue::removeMin);
+        assertThrows(NoSuchElementException.class, queue::minKey);
+    }
+
+    @Test
+    void constructorThrowsOnNegativeNodeCount() {
+        assertThrows(IllegalArgumentException.class, () -> new NodePriorityQueue(-1));
+    }
+
+    @Test
+    void nodesAreRemovedInKeyOrder() {
+        NodePriorityQueue queue = new NodePriorityQueue(5);
+        queue.insertOrDecrease(3, 30f);
+        queue.insertOrDecrease(1, 10f);
+        queue.insertOrDecrease(4, 5f);
+        queue.insertOrDecrease(0, 20f);
+
+        assertEquals(4, queue.size());
+        assertEquals(5f, queue.minKey());
+        assertEquals(4, queue.removeMin());
+        assertEquals(1, queue.removeMin());
+        assertEquals(0, queue.removeMin());
+        assertEquals(3, queue.removeMin());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void insertOrDecreaseOnlyDecreasesKeys() {
+        NodePriorityQueue queue = new NodePriorityQueue(3);
+        assertTrue(queue.insertOrDecrease(0, 10f));
+        assertTrue(queue.insertOrDecrease(1, 5f));
+        assertFalse(queue.insertOrDecrease(0, 12f));
+        assertTrue(queue.insertOrDecrease(0, 1f));
+
+        assertEquals(2, queue.size());
+        assertEquals(0, queue.removeMin());
+        assertFalse(queue.contains(0));
+        assertTrue(queue.contains(1));
+        assertEquals(1, queue.removeMin());
+    }
+
+    @Test
+    void clearEmptiesTheQueue() {
+        NodePriorityQueue queue = new NodePriorityQueue(100);
+        for (int i = 0; i < 100; i += 1) {
+            queue.insertOrDecrease(i, 100 - i);
+        }
+        queue.clear();
+        assertTrue(queue.isEmpty());
+        for (int i = 0; i < 100; i += 1) {
+            assertFalse(queue.contains(i));
+        }
+        queue.insertOrDecrease(42, 1f);
+        assertEquals(42, queue.removeMin());
+    }
+
+    @Test
+    void queueSortsRandomKeysWithDecreases() {
+        var rng = newRandom();
+        int nodeCount = 5_000;
+        for (int i = 0; i < RANDOM_ITERATIONS / 100; i += 1) {
+            NodePriorityQueue queue = new NodePriorityQueue(nodeCount);
+            float[] keys = new float[nodeCount];
+            Arrays.fill(keys, Float.POSITIVE_INFINITY);
+            for (int j = 0; j < 3 * nodeCount; j += 1) {
+                int node = rng.nextInt(nodeCount);
+                float key = rng.nextFloat(1000f);
+                queue.insertOrDecrease(node, key);
+                keys[node] = Math.min(keys[node], key);
+            }
+
+            float previousKey = Float.NEGATIVE_INFINITY;
+            while (!queue.isEmpty()) {
+                float key = queue.minKey();
+                int node = queue.removeMin();
+                assertEquals(keys[node], key);
+                assertTrue(previousKey <= key);
+                previousKey = key;
+            }
+        }
+    }
+}
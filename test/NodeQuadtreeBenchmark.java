@@ -0,0 +1,85 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.NodeQuadtree;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.SplittableRandom;
+
+/**
+ * Compares the cost of Graph.nodeClosestTo with the grid of sectors and with the quadtree of the nodes (loaded from
+ * the directory of the graph if present, built otherwise), on points drawn near random nodes, as the clicks of the
+ * users, and on points drawn uniformly in the rectangle of the nodes, most of them in empty areas.
+ */
+public final class NodeQuadtreeBenchmark {
+    private static final int ROUNDS = 5;
+    private static final double SEARCH_DISTANCE = 500;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: NodeQuadtreeBenchmark <graph directory> [queries]");
+            System.exit(1);
+        }
+        Path basePath = Path.of(args[0]);
+        int queryCount = args.length == 2 ? Integer.parseInt(args[1]) : 200_000;
+
+        Graph loaded = Graph.loadFrom(basePath);
+        long buildStart = System.nanoTime();
+        NodeQuadtree quadtree = Files.exists(basePath.resolve(NodeQuadtree.FILE_NAME))
+                ? NodeQuadtree.loadFrom(basePath, loaded)
+                : null;
+        if (quadtree == null) {
+            quadtree = NodeQuadtree.build(loaded);
+        }
+        System.out.printf(Locale.ROOT, "quadtree: %d cells for %d nodes, ready in %.0f ms%n",
+                quadtree.cellCount(), quadtree.nodeCount(), (System.nanoTime() - buildStart) / 1e6);
+        Graph grid = loaded.withNodeQuadtree(null);
+        Graph adaptive = loaded.withNodeQuadtree(quadtree);
+
+        double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+        double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+        for (int nodeId = 0; nodeId < loaded.nodeCount(); nodeId += 1) {
+            minE = Math.min(minE, loaded.nodeE(nodeId));
+            minN = Math.min(minN, loaded.nodeN(nodeId));
+            maxE = Math.max(maxE, loaded.nodeE(nodeId));
+            maxN = Math.max(maxN, loaded.nodeN(nodeId));
+        }
+
+        SplittableRandom rng = new SplittableRandom(2022);
+        double[] nearNodes = new double[2 * queryCount];
+        double[] uniform = new double[2 * queryCount];
+        for (int i = 0; i < queryCount; i += 1) {
+            int nodeId = rng.nextInt(loaded.nodeCount());
+            nearNodes[2 * i] = loaded.nodeE(nodeId) + rng.nextDouble(-100, 100);
+            nearNodes[2 * i + 1] = loaded.nodeN(nodeId) + rng.nextDouble(-100, 100);
+            uniform[2 * i] = rng.nextDouble(minE, maxE);
+            uniform[2 * i + 1] = rng.nextDouble(minN, maxN);
+        }
+
+        for (int round = 0; round < ROUNDS; round += 1) {
+            for (String name : new String[]{"near nodes", "uniform"}) {
+                double[] points = name.equals("uniform") ? uniform : nearNodes;
+                long gridTime = time(grid, points);
+                long adaptiveTime = time(adaptive, points);
+                System.out.printf(Locale.ROOT, "round %d, %-10s: grid %.2f us, quadtree %.2f us per query%n",
+                        round, name, gridTime / 1e3 / queryCount, adaptiveTime / 1e3 / queryCount);
+            }
+        }
+        for (int i = 0; i < queryCount; i += 1) {
+            if (grid.nodeClosestTo(nearNodes[2 * i], nearNodes[2 * i + 1], SEARCH_DISTANCE)
+                    != adaptive.nodeClosestTo(nearNodes[2 * i], nearNodes[2 * i + 1], SEARCH_DISTANCE))
+                throw new AssertionError("different nodes at query " + i);
+        }
+    }
+
+    private static long time(Graph graph, double[] points) {
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < points.length; i += 2)
+            checksum += graph.nodeClosestTo(points[i], points[i + 1], SEARCH_DISTANCE);
+        long time = System.nanoTime() - start;
+        if (checksum == Long.MIN_VALUE) System.out.println(checksum);
+        return time;
+    }
+}
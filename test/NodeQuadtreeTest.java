@@ -0,0 +1,137 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.data.NodeQuadtree;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.random.RandomGenerator;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NodeQuadtreeTest {
+
+    private static PointCh randomPoint(RandomGenerator rng) {
+        return new PointCh(2_530_000 + rng.nextDouble(-500, 19_000), 1_150_000 + rng.nextDouble(-500, 19_000));
+    }
+
+    private static void assertSameAsGrid(Graph graph, NodeQuadtree quadtree) {
+        Graph withQuadtree = graph.withNodeQuadtree(quadtree);
+        var rng = newRandom();
+        for (int i = 0; i < 1_000; i += 1) {
+            PointCh point = i % 2 == 0
+                    ? randomPoint(rng)
+                    : graph.nodePoint(rng.nextInt(graph.nodeCount()));
+            double distance = new double[]{0, 50, 200, 500, 3_000}[i % 5];
+            assertEquals(graph.nodeClosestTo(point, distance), quadtree.nodeClosestTo(graph, point.e(), point.n(), distance));
+            assertEquals(graph.nodeClosestTo(point, distance), withQuadtree.nodeClosestTo(point, distance));
+        }
+    }
+
+    @Test
+    void nodeClosestToEqualsGrid() {
+        Graph graph = TestGraphs.newGridGraph(60, 60, 300, newRandom());
+        NodeQuadtree quadtree = NodeQuadtree.build(graph);
+        assertEquals(graph.nodeCount(), quadtree.nodeCount());
+        assertSameAsGrid(graph, quadtree);
+    }
+
+    @Test
+    void denseGraphsAreSplitInSmallCells() {
+        // 10 000 nodes 20 meters apart, far more than the maximal number of nodes of a leaf
+        Graph graph = TestGraphs.newGridGraph(100, 100, 20, newRandom());
+        NodeQuadtree quadtree = NodeQuadtree.build(graph);
+        assertTrue(quadtree.cellCount() > graph.nodeCount() / NodeQuadtree.MAX_LEAF_NODES);
+        assertSameAsGrid(graph, quadtree);
+    }
+
+    @Test
+    void tinyGraphsHaveASingleCell() {
+        Graph graph = TestGraphs.newGridGraph(2, 2, 300, newRandom());
+        NodeQuadtree quadtree = NodeQuadtree.build(graph);
+        assertEquals(1, quadtree.cellCount());
+        assertSameAsGrid(graph, quadtree);
+    }
+
+    @Test
+    void quadtreeCanBeWrittenAndLoaded() throws IOException {
+        Graph graph = TestGraphs.newGridGraph(40, 40, 100, newRandom());
+        NodeQuadtree quadtree = NodeQuadtree.build(graph);
+        Path directory = Files.createTempDirectory("javelo-quadtree");
+        try {
+            quadtree.writeTo(directory);
+            NodeQuadtree loaded = NodeQuadtree.loadFrom(directory, graph);
+            assertEquals(quadtree.nodeCount(), loaded.nodeCount());
+            assertEquals(quadtree.cellCount(), loaded.cellCount());
+            assertSameAsGrid(graph, loaded);
+        } finally {
+            Files.deleteIfExists(directory.resolve(NodeQuadtree.FILE_NAME));
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void graphRejectsQuadtreesOfOtherGraphs() {
+        Graph small = TestGraphs.newGridGraph(5, 5, 100, newRandom());
+        Graph large = TestGraphs.newGridGraph(6, 6, 100, newRandom());
+        assertThrows(IllegalArgumentException.class, () -> large.withNodeQuadtree(NodeQuadtree.build(small)));
+    }
+
+    @Test
+    void staleQuadtreeIsIgnoredByTheGraph() throws IOException {
+        //two graphs with the same nodes, whose attribute sets are in a different order
+        Path directory = Files.createTempDirectory("javelo-quadtree");
+        Path otherDirectory = Files.createTempDirectory("javelo-quadtree");
+        try {
+            TestGraphs.writeGridGraph(directory, 20, 20, 100, newRandom());
+            TestGraphs.writeGridGraph(otherDirectory, 20, 20, 100, newRandom());
+            ByteBuffer attributes = ByteBuffer.allocate(TestGraphs.ATTRIBUTE_SETS.size() * Long.BYTES);
+            for (int i = TestGraphs.ATTRIBUTE_SETS.size() - 1; i >= 0; i -= 1)
+                attributes.putLong(TestGraphs.ATTRIBUTE_SETS.get(i).bits());
+            Files.write(otherDirectory.resolve("attributes.bin"), attributes.array());
+            Graph graph = Graph.loadFrom(directory);
+            Graph otherGraph = Graph.loadFrom(otherDirectory);
+            NodeQuadtree.build(graph).writeTo(directory);
+            assertNotNull(NodeQuadtree.loadFrom(directory, graph));
+            assertNull(NodeQuadtree.loadFrom(directory, otherGraph));
+
+            //quadtree of the other graph next to the files of the graph
+            Files.copy(directory.resolve(NodeQuadtree.FILE_NAME), otherDirectory.resolve(NodeQuadtree.FILE_NAME));
+            assertUsesTheGrid(Graph.loadFrom(otherDirectory));
+
+            //quadtree of a smaller graph
+            NodeQuadtree.build(TestGraphs.newGridGraph(5, 5, 100, newRandom())).writeTo(otherDirectory);
+            assertUsesTheGrid(Graph.loadFrom(otherDirectory));
+
+            //quadtree without header, as before the format had a version
+            byte[] bytes = Files.readAllBytes(directory.resolve(NodeQuadtree.FILE_NAME));
+            ByteBuffer.wrap(bytes).putInt(0, graph.nodeCount());
+            Files.write(directory.resolve(NodeQuadtree.FILE_NAME), bytes);
+            assertNull(NodeQuadtree.loadFrom(directory, graph));
+            assertUsesTheGrid(Graph.loadFrom(directory));
+        } finally {
+            deleteDirectory(directory);
+            deleteDirectory(otherDirectory);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    private static void assertUsesTheGrid(Graph graph) {
+        Graph grid = graph.withNodeQuadtree(null);
+        var rng = newRandom();
+        for (int i = 0; i < 1_000; i += 1) {
+            PointCh point = randomPoint(rng);
+            assertEquals(grid.nodeClosestTo(point, 500), graph.nodeClosestTo(point, 500));
+        }
+    }
+}
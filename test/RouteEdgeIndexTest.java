@@ -0,0 +1,61 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteEdgeIndexTest {
+
+    // A route made of one-edge segments, whose closest point is found by scanning all the edges.
+    private static Route scannedRouteOf(List<Edge> edges) {
+        List<Route> segments = new ArrayList<>();
+        for (Edge edge : edges)
+            segments.add(new SingleRoute(List.of(edge)));
+        return new MultiRoute(segments);
+    }
+
+    @Test
+    void indexedPointClosestToEqualsScan() {
+        Graph graph = TestGraphs.newGridGraph(80, 80, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        var rng = newRandom();
+        int checked = 0;
+        while (checked < 20) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            Route route = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+            if (route == null || route.edges().size() < 100) continue;
+            checked += 1;
+
+            SingleRoute single = new SingleRoute(route.edges());
+            Route scanned = scannedRouteOf(route.edges());
+            double minE = Double.POSITIVE_INFINITY, minN = Double.POSITIVE_INFINITY;
+            double maxE = Double.NEGATIVE_INFINITY, maxN = Double.NEGATIVE_INFINITY;
+            for (PointCh p : route.points()) {
+                minE = Math.min(minE, p.e());
+                minN = Math.min(minN, p.n());
+                maxE = Math.max(maxE, p.e());
+                maxN = Math.max(maxN, p.n());
+            }
+            for (int i = 0; i < 200; i += 1) {
+                PointCh point = new PointCh(rng.nextDouble(minE - 500, maxE + 500),
+                        rng.nextDouble(minN - 500, maxN + 500));
+                RoutePoint expected = scanned.pointClosestTo(point);
+                assertEquals(expected, single.pointClosestTo(point));
+                assertEquals(expected, route.pointClosestTo(point));
+            }
+            // Points of the route, at the same distance (0) of two edges.
+            for (PointCh point : route.points()) {
+                RoutePoint expected = scanned.pointClosestTo(point);
+                assertEquals(expected, single.pointClosestTo(point));
+                assertEquals(expected, route.pointClosestTo(point));
+            }
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteMatrixTest {
+
+    private static int[] randomNodes(Graph graph, int count) {
+        var rng = newRandom();
+        int[] nodeIds = new int[count];
+        for (int i = 0; i < count; i += 1) nodeIds[i] = rng.nextInt(graph.nodeCount());
+        return nodeIds;
+    }
+
+    private static void assertMatchesRoutes(Graph graph, CostFunction costFunction, int[] starts, int[] ends,
+                                            RouteMatrix matrix) {
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        assertEquals(starts.length, matrix.rowCount());
+        assertEquals(ends.length, matrix.columnCount());
+        for (int i = 0; i < starts.length; i += 1) {
+            for (int j = 0; j < ends.length; j += 1) {
+                if (starts[i] == ends[j]) {
+                    assertEquals(0, matrix.cost(i, j));
+                    assertEquals(0, matrix.length(i, j));
+                    continue;
+                }
+                Route route = routeComputer.bestRouteBetween(starts[i], ends[j]);
+                if (route == null) {
+                    assertEquals(Float.POSITIVE_INFINITY, matrix.cost(i, j));
+                    assertEquals(Float.POSITIVE_INFINITY, matrix.length(i, j));
+                } else {
+                    double expectedCost = TestGraphs.cost(graph, costFunction, route);
+                    assertEquals(expectedCost, matrix.cost(i, j), 1e-4 * expectedCost);
+                    assertEquals(route.length(), matrix.length(i, j), 1e-4 * route.length());
+                }
+            }
+        }
+    }
+
+    @Test
+    void routeMatrixMatchesBestRoutes() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        int[] starts = randomNodes(graph, 12);
+        int[] ends = randomNodes(graph, 15);
+        ends[3] = starts[2];
+        ends[7] = ends[5];
+        RouteMatrix matrix = new RouteComputer(graph, costFunction).matrixBetween(starts, ends);
+        assertMatchesRoutes(graph, costFunction, starts, ends, matrix);
+    }
+
+    @Test
+    void routeMatrixWithComponentsMatchesBestRoutes() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        int[] starts = randomNodes(graph, 10);
+        int[] ends = randomNodes(graph, 20);
+        RouteMatrix matrix = new RouteComputer(graph, costFunction)
+                .withComponents(GraphComponents.compute(graph, costFunction))
+                .matrixBetween(starts, ends);
+        assertMatchesRoutes(graph, costFunction, starts, ends, matrix);
+    }
+
+    @Test
+    void concurrentRouteMatrixEqualsSequentialOne() {
+        Graph graph = TestGraphs.newGridGraph(40, 30, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        int[] starts = randomNodes(graph, 40);
+        int[] ends = randomNodes(graph, 25);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RouteMatrix expected = routeComputer.matrixBetween(starts, ends);
+        RouteMatrix actual = new ConcurrentRouteComputer(routeComputer, 4).matrixBetween(starts, ends);
+        for (int i = 0; i < starts.length; i += 1) {
+            assertArrayEquals(expected.costs()[i], actual.costs()[i]);
+            assertArrayEquals(expected.lengths()[i], actual.lengths()[i]);
+        }
+    }
+
+    @Test
+    void routeMatrixConstructorThrowsOnMismatchedDimensions() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new RouteMatrix(new float[2][3], new float[3][3]));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RouteMatrix(new float[][]{{1, 2}, {1}}, new float[][]{{1, 2}, {1}}));
+    }
+}
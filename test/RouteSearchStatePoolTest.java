@@ -0,0 +1,81 @@
+import ch.epfl.javelo.routing.RouteSearchState;
+import ch.epfl.javelo.routing.RouteSearchStatePool;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteSearchStatePoolTest {
+
+    @Test
+    void constructorThrowsOnInvalidCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new RouteSearchStatePool(() -> new RouteSearchState(1), 0));
+    }
+
+    @Test
+    void capacityWithinWorks() {
+        long stateBytes = RouteSearchState.bytesFor(1_000);
+        assertEquals(1, RouteSearchStatePool.capacityWithin(1_000, 0));
+        assertEquals(1, RouteSearchStatePool.capacityWithin(1_000, stateBytes));
+        assertEquals(3, RouteSearchStatePool.capacityWithin(1_000, 3 * stateBytes + 1));
+    }
+
+    @Test
+    void capacityOfCountsBidirectionalStatesTwice() {
+        long stateBytes = RouteSearchState.bytesFor(1_000);
+        long bidirectionalStateBytes = RouteSearchState.bytesFor(1_000, true);
+        assertEquals(4, RouteSearchStatePool.capacityOf(stateBytes, 4 * stateBytes));
+        assertEquals(2, RouteSearchStatePool.capacityOf(bidirectionalStateBytes, 4 * stateBytes));
+        assertEquals(1, RouteSearchStatePool.capacityOf(bidirectionalStateBytes, 0));
+    }
+
+    @Test
+    void statesAreCreatedLazilyAndReused() throws InterruptedException {
+        RouteSearchStatePool pool = new RouteSearchStatePool(() -> new RouteSearchState(10), 2);
+        assertEquals(0, pool.createdStates());
+
+        RouteSearchState s1 = pool.acquire();
+        assertEquals(1, pool.createdStates());
+        pool.release(s1);
+
+        RouteSearchState s2 = pool.acquire();
+        assertSame(s1, s2);
+        RouteSearchState s3 = pool.acquire();
+        assertNotSame(s2, s3);
+        assertEquals(2, pool.createdStates());
+    }
+
+    @Test
+    void poolNeverCreatesMoreStatesThanItsCapacity() throws Exception {
+        int capacity = 3;
+        RouteSearchStatePool pool = new RouteSearchStatePool(() -> new RouteSearchState(10), capacity);
+        AtomicInteger leased = new AtomicInteger();
+        AtomicInteger maxLeased = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        Future<?>[] futures = new Future<?>[64];
+        for (int i = 0; i < futures.length; i += 1) {
+            futures[i] = executor.submit(() -> {
+                RouteSearchState state = pool.acquire();
+                maxLeased.accumulateAndGet(leased.incrementAndGet(), Math::max);
+                Thread.sleep(1);
+                leased.decrementAndGet();
+                pool.release(state);
+                return null;
+            });
+        }
+        for (Future<?> f : futures) {
+            f.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(maxLeased.get() <= capacity);
+        assertTrue(pool.createdStates() <= capacity);
+    }
+}
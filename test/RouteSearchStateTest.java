@@ -0,0 +1,110 @@
+import ch.epfl.javelo.routing.RouteSearchState;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RouteSearchStateTest {
+
+    @Test
+    void newStateHasOnlyUnreachedNodes() {
+        RouteSearchState state = new RouteSearchState(10);
+        assertEquals(10, state.nodeCount());
+        for (int i = 0; i < 10; i += 1) {
+            assertEquals(Float.POSITIVE_INFINITY, state.distance(i));
+            assertFalse(state.isSettled(i));
+        }
+        assertTrue(state.queue().isEmpty());
+    }
+
+    @Test
+    void reachAndSettleWork() {
+        RouteSearchState state = new RouteSearchState(4);
+        state.reach(2, 12.5f, 1);
+        assertEquals(12.5f, state.distance(2));
+        assertEquals(1, state.predecessor(2));
+        assertFalse(state.isSettled(2));
+
+        state.settle(2);
+        assertTrue(state.isSettled(2));
+        assertEquals(12.5f, state.distance(2));
+    }
+
+    @Test
+    void resetForgetsThePreviousSearch() {
+        RouteSearchState state = new RouteSearchState(4);
+        state.reach(0, 1f, 0);
+        state.settle(0);
+        state.reach(3, 7f, 0);
+        state.queue().insertOrDecrease(3, 7f);
+
+        state.reset();
+        assertEquals(Float.POSITIVE_INFINITY, state.distance(0));
+        assertEquals(Float.POSITIVE_INFINITY, state.distance(3));
+        assertFalse(state.isSettled(0));
+        assertTrue(state.queue().isEmpty());
+
+        state.reach(3, 2f, 1);
+        assertEquals(2f, state.distance(3));
+    }
+
+    @Test
+    void manyResetsKeepStatesIndependent() {
+        RouteSearchState state = new RouteSearchState(3);
+        for (int i = 0; i < 10_000; i += 1) {
+            state.reset();
+            assertEquals(Float.POSITIVE_INFINITY, state.distance(i % 3));
+            state.reach(i % 3, i, 0);
+            state.settle(i % 3);
+        }
+    }
+
+    @Test
+    void bytesForIsProportionalToNodeCount() {
+        assertEquals(0, RouteSearchState.bytesFor(0));
+        assertEquals(2 * RouteSearchState.bytesFor(1_000), RouteSearchState.bytesFor(2_000));
+    }
+
+    // Bytes of the elements of the arrays reachable from the object through the fields of the classes of the routing
+    // package (the search state, its queue and its backward state).
+    private static long arrayBytes(Object object) throws IllegalAccessException {
+        long bytes = 0;
+        for (Field field : object.getClass().getDeclaredFields()) {
+            if (Modifier.isStatic(field.getModifiers())) continue;
+            field.setAccessible(true);
+            Object value = field.get(object);
+            if (value == null) continue;
+            Class<?> type = value.getClass();
+            if (type.isArray()) {
+                int elementBytes = type == int[].class || type == float[].class ? 4 : 8;
+                bytes += (long) elementBytes * Array.getLength(value);
+            } else if (type.getPackageName().equals(RouteSearchState.class.getPackageName())) {
+                bytes += arrayBytes(value);
+            }
+        }
+        return bytes;
+    }
+
+    private static void fillQueue(RouteSearchState state) {
+        state.reset();
+        for (int nodeId = 0; nodeId < state.nodeCount(); nodeId += 1)
+            state.queue().insertOrDecrease(nodeId, nodeId);
+    }
+
+    @Test
+    void bytesForMatchesTheArraysOfAFullState() throws IllegalAccessException {
+        int nodeCount = 1_000;
+        RouteSearchState state = new RouteSearchState(nodeCount);
+        // The heap arrays of the queue only reach their final size once every node was queued.
+        fillQueue(state);
+        assertEquals(RouteSearchState.bytesFor(nodeCount), arrayBytes(state));
+        assertEquals(RouteSearchState.bytesFor(nodeCount, false), arrayBytes(state));
+
+        fillQueue(state.backwardState());
+        assertEquals(RouteSearchState.bytesFor(nodeCount, true), arrayBytes(state));
+        assertEquals(2 * RouteSearchState.bytesFor(nodeCount), RouteSearchState.bytesFor(nodeCount, true));
+    }
+}
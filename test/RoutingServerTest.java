@@ -0,0 +1,203 @@
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.projection.PointCh;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.javelo.server.RoutingServer;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoutingServerTest {
+
+    private static HttpResponse<String> get(RoutingServer server, String path) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path)).build();
+        return HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static String query(PointCh from, PointCh to) {
+        return String.format(Locale.ROOT, "?from=%.2f,%.2f&to=%.2f,%.2f", from.e(), from.n(), to.e(), to.n());
+    }
+
+    @Test
+    void routingServerAnswersTheThreeEndpoints() throws Exception {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        CostFunction costFunction = new CityBikeCF(graph);
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RoutingServer server = new RoutingServer(graph, new ConcurrentRouteComputer(routeComputer, 2), 2, 8,
+                Duration.ofSeconds(10));
+        server.start(new InetSocketAddress("localhost", 0));
+        try {
+            int found = 0;
+            var rng = newRandom();
+            for (int i = 0; i < 20; i += 1) {
+                int startNodeId = rng.nextInt(graph.nodeCount());
+                int endNodeId = rng.nextInt(graph.nodeCount());
+                if (startNodeId == endNodeId) continue;
+                String query = query(graph.nodePoint(startNodeId), graph.nodePoint(endNodeId));
+                Route expected = routeComputer.bestRouteBetween(startNodeId, endNodeId);
+
+                HttpResponse<String> route = get(server, "/route" + query);
+                HttpResponse<String> profile = get(server, "/profile" + query);
+                HttpResponse<String> gpx = get(server, "/gpx" + query);
+                if (expected == null) {
+                    assertEquals(404, route.statusCode());
+                    assertEquals(404, profile.statusCode());
+                    assertEquals(404, gpx.statusCode());
+                } else {
+                    found += 1;
+                    assertEquals(200, route.statusCode());
+                    assertTrue(route.body().startsWith(
+                            String.format(Locale.ROOT, "{\"length\":%.1f,", expected.length())));
+                    assertEquals(200, profile.statusCode());
+                    assertTrue(profile.body().contains("\"samples\":["));
+                    assertEquals(200, gpx.statusCode());
+                    assertTrue(gpx.body().contains("<rtept"));
+                    assertEquals(expected.points().size(), gpx.body().split("<rtept").length - 1);
+                }
+            }
+            assertTrue(found > 0);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void routingServerRejectsInvalidRequests() throws Exception {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        RoutingServer server = new RoutingServer(graph, new ConcurrentRouteComputer(routeComputer, 1), 1, 0,
+                Duration.ofSeconds(10));
+        server.start(new InetSocketAddress("localhost", 0));
+        try {
+            assertEquals(400, get(server, "/route").statusCode());
+            assertEquals(400, get(server, "/route?from=1,2").statusCode());
+            assertEquals(400, get(server, "/route?from=a,b&to=1,2").statusCode());
+            // Points outside of Switzerland can't be snapped to a node.
+            assertEquals(404, get(server, "/route?from=1,2&to=3,4").statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void routingServerConstructorThrowsOnInvalidArguments() {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        var routeComputer = new ConcurrentRouteComputer(new RouteComputer(graph, new CityBikeCF(graph)), 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> new RoutingServer(graph, routeComputer, 0, 1, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RoutingServer(graph, routeComputer, 1, -1, Duration.ofSeconds(1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> new RoutingServer(graph, routeComputer, 1, 1, Duration.ZERO));
+    }
+
+    // Cost function which is slow for the first thread using it while slow is true: its first call blocks until its
+    // thread is interrupted or release is counted down, and the following ones take SLOW_CALL_NANOS each without
+    // checking the interrupt status, as an expensive computation would.
+    private static final class SlowCostFunction implements CostFunction {
+        private static final long SLOW_CALL_NANOS = 50_000_000;
+
+        private final CostFunction costFunction;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicReference<Thread> slowThread = new AtomicReference<>();
+        private volatile boolean slow = true;
+
+        SlowCostFunction(CostFunction costFunction) {
+            this.costFunction = costFunction;
+        }
+
+        @Override
+        public double costFactor(int nodeId, int edgeId) {
+            if (slow && (slowThread.compareAndSet(null, Thread.currentThread())
+                    ? awaitRelease()
+                    : slowThread.get() == Thread.currentThread())) {
+                long end = System.nanoTime() + SLOW_CALL_NANOS;
+                while (slow && System.nanoTime() < end) Thread.onSpinWait();
+            }
+            return costFunction.costFactor(nodeId, edgeId);
+        }
+
+        private boolean awaitRelease() {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+    }
+
+    // Query of a pair of nodes between which a route exists.
+    private static String routeQuery(Graph graph, CostFunction costFunction) {
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        var rng = newRandom();
+        while (true) {
+            int startNodeId = rng.nextInt(graph.nodeCount());
+            int endNodeId = rng.nextInt(graph.nodeCount());
+            if (startNodeId != endNodeId && routeComputer.bestRouteBetween(startNodeId, endNodeId) != null)
+                return query(graph.nodePoint(startNodeId), graph.nodePoint(endNodeId));
+        }
+    }
+
+    @Test
+    void routingServerRejectsRequestsWhenItsQueueIsFull() throws Exception {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        String query = routeQuery(graph, new CityBikeCF(graph));
+        SlowCostFunction costFunction = new SlowCostFunction(new CityBikeCF(graph));
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        RoutingServer server = new RoutingServer(graph, new ConcurrentRouteComputer(routeComputer, 1), 1, 0,
+                Duration.ofSeconds(10));
+        server.start(new InetSocketAddress("localhost", 0));
+        try {
+            HttpRequest request = HttpRequest.newBuilder(
+                    URI.create("http://localhost:" + server.port() + "/route" + query)).build();
+            CompletableFuture<HttpResponse<String>> first = HttpClient.newHttpClient()
+                    .sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            assertTrue(costFunction.entered.await(10, TimeUnit.SECONDS));
+
+            // The only worker is busy and there is no queue.
+            assertEquals(503, get(server, "/route" + query).statusCode());
+
+            costFunction.slow = false;
+            costFunction.release.countDown();
+            assertEquals(200, first.get(10, TimeUnit.SECONDS).statusCode());
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    void routingServerInterruptsTheSearchesThatTimeOut() throws Exception {
+        Graph graph = TestGraphs.newGridGraph(10, 10, 50, newRandom());
+        String query = routeQuery(graph, new CityBikeCF(graph));
+        SlowCostFunction costFunction = new SlowCostFunction(new CityBikeCF(graph));
+        RouteComputer routeComputer = new RouteComputer(graph, costFunction);
+        // Two workers share a single search state: the second search can only start once the first one stopped.
+        RoutingServer server = new RoutingServer(graph, new ConcurrentRouteComputer(routeComputer, 1), 2, 0,
+                Duration.ofSeconds(1));
+        server.start(new InetSocketAddress("localhost", 0));
+        try {
+            assertEquals(504, get(server, "/route" + query).statusCode());
+            // The search that timed out would take several more seconds if it wasn't interrupted.
+            assertEquals(200, get(server, "/route" + query).statusCode());
+        } finally {
+            costFunction.slow = false;
+            server.stop();
+        }
+    }
+}
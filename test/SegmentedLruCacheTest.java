@@ -0,0 +1,172 @@
+import ch.epfl.javelo.SegmentedLruCache;
+import ch.epfl.javelo.data.Graph;
+import ch.epfl.javelo.routing.*;
+import ch.epfl.test.TestGraphs;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ch.epfl.test.TestRandomizer.newRandom;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedLruCacheTest {
+
+    @Test
+    void segmentedLruCacheCountsHitsAndMisses() {
+        var cache = new SegmentedLruCache<Integer, String>(10);
+        assertNull(cache.get(1));
+        cache.put(1, "one");
+        assertEquals("one", cache.get(1));
+        assertEquals("one", cache.get(1));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(2.0 / 3, cache.hitRate(), 1e-9);
+        cache.put(1, "un");
+        assertEquals("un", cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void segmentedLruCacheRespectsItsMaximalWeight() {
+        var cache = new SegmentedLruCache<Integer, int[]>(1000, 8, (k, v) -> v.length);
+        var rng = newRandom();
+        for (int i = 0; i < 10_000; i += 1) {
+            cache.put(rng.nextInt(5000), new int[rng.nextInt(50)]);
+            if (rng.nextBoolean()) cache.get(rng.nextInt(5000));
+            assertTrue(cache.weight() <= 1000);
+        }
+        assertTrue(cache.evictionCount() > 0);
+        cache.put(-1, new int[10_000]);
+        assertNull(cache.get(-1));
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    void segmentedLruCacheKeepsFrequentValuesDuringScans() {
+        var cache = new SegmentedLruCache<Integer, Integer>(100, 1, (k, v) -> 1);
+        for (int i = 0; i < 50; i += 1) {
+            cache.put(i, i);
+            cache.get(i);
+        }
+        // A scan of values read once only evicts other values read once.
+        for (int i = 1000; i < 2000; i += 1) cache.put(i, i);
+        for (int i = 0; i < 50; i += 1) assertEquals((Integer) i, cache.get(i));
+    }
+
+    @Test
+    void segmentedLruCacheKeepsHeavyValuesWhenItsProtectedSegmentIsFull() {
+        var cache = new SegmentedLruCache<Integer, int[]>(100, 1, (k, v) -> v.length);
+        for (int i = 0; i < 80; i += 1) {
+            cache.put(i, new int[1]);
+            cache.get(i);
+        }
+        // The new value is heavier than the room left by the protected segment.
+        cache.put(-1, new int[50]);
+        assertNotNull(cache.get(-1));
+        assertTrue(cache.weight() <= 100);
+        assertEquals(50 + 50, cache.weight());
+    }
+
+    @Test
+    void segmentedLruCacheComputesMissingValuesOnce() {
+        var cache = new SegmentedLruCache<Integer, Integer>(100);
+        AtomicInteger calls = new AtomicInteger();
+        for (int i = 0; i < 5; i += 1) {
+            assertEquals((Integer) 42, cache.computeIfAbsent(7, k -> {
+                calls.incrementAndGet();
+                return 6 * k;
+            }));
+        }
+        assertEquals(1, calls.get());
+        assertNull(cache.computeIfAbsent(8, k -> null));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void segmentedLruCacheWorksOnManyThreads() throws Exception {
+        var cache = new SegmentedLruCache<Integer, Integer>(500, 16, (k, v) -> 1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t += 1) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                var rng = new java.util.Random(seed);
+                for (int i = 0; i < 20_000; i += 1) {
+                    int key = rng.nextInt(2000);
+                    Integer value = cache.computeIfAbsent(key, k -> -k);
+                    assertEquals((Integer) (-key), value);
+                }
+            }));
+        }
+        for (Future<?> future : futures) future.get();
+        executor.shutdown();
+        assertTrue(cache.size() <= 500);
+        assertEquals(8 * 20_000, cache.hitCount() + cache.missCount());
+    }
+
+    @Test
+    void segmentedLruCacheThrowsOnInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new SegmentedLruCache<Integer, Integer>(0));
+        var cache = new SegmentedLruCache<Integer, Integer>(10);
+        assertThrows(NullPointerException.class, () -> cache.put(null, 1));
+        assertThrows(NullPointerException.class, () -> cache.put(1, null));
+    }
+
+    @Test
+    void routeCacheReturnsTheRoutesOfTheLoader() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        RouteCache cache = new RouteCache(100_000);
+        AtomicInteger loads = new AtomicInteger();
+        RouteCache.Loader loader = cache.cached("citybike", (s, e) -> {
+            loads.incrementAndGet();
+            return routeComputer.bestRouteBetween(s, e);
+        });
+        Route route = loader.bestRouteBetween(3, 250);
+        assertSame(route, loader.bestRouteBetween(3, 250));
+        assertEquals(1, loads.get());
+        // Another cost function doesn't share the routes.
+        cache.bestRouteBetween("other", 3, 250, routeComputer::bestRouteBetween);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    void routeCacheKeepsRoutesLongerThanTheShareOfAStripe() {
+        Graph graph = TestGraphs.newGridGraph(20, 20, 50, newRandom());
+        RouteComputer routeComputer = new RouteComputer(graph, new CityBikeCF(graph));
+        Route route = null;
+        for (int endNodeId = graph.nodeCount() - 1; route == null; endNodeId -= 1)
+            route = routeComputer.bestRouteBetween(0, endNodeId);
+        Route shortRoute = route;
+
+        // A route with as many edges as 1/16 of the cache, repeated, and much more than 1/64 of it.
+        List<Route> segments = new ArrayList<>();
+        while (segments.size() * route.edges().size() < 100_000 / 16) segments.add(route);
+        Route longRoute = new MultiRoute(segments);
+        RouteCache cache = new RouteCache(100_000);
+        assertTrue(longRoute.edges().size() <= cache.maxRouteEdgeCount());
+
+        // Routes read several times fill the protected segments first.
+        for (int i = 0; i < 100; i += 1) {
+            cache.bestRouteBetween("citybike", i, i + 1, (s, e) -> shortRoute);
+            cache.bestRouteBetween("citybike", i, i + 1, (s, e) -> shortRoute);
+        }
+        AtomicInteger loads = new AtomicInteger();
+        RouteCache.Loader loader = (s, e) -> {
+            loads.incrementAndGet();
+            return longRoute;
+        };
+        assertSame(longRoute, cache.bestRouteBetween("citybike", 0, 399, loader));
+        assertSame(longRoute, cache.bestRouteBetween("citybike", 0, 399, loader));
+        assertEquals(1, loads.get());
+    }
+}